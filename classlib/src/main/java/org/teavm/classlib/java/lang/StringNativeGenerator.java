@@ -0,0 +1,48 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.lang;
+
+import java.io.IOException;
+import org.teavm.codegen.SourceWriter;
+import org.teavm.javascript.spi.Generator;
+import org.teavm.javascript.spi.GeneratorContext;
+import org.teavm.model.MethodReference;
+
+/**
+ * <p>Generates conversions between <code>char[]</code> arrays and native JavaScript strings, used by
+ * native representation of strings.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class StringNativeGenerator implements Generator {
+    @Override
+    public void generate(GeneratorContext context, SourceWriter writer, MethodReference methodRef) throws IOException {
+        switch (methodRef.getName()) {
+            case "charsToString":
+                writer.append("return $rt_charsToString(" + context.getParameterName(1) + ".data,").ws()
+                        .append(context.getParameterName(2) + ",").ws()
+                        .append(context.getParameterName(3) + ");").softNewLine();
+                break;
+            case "stringToChars":
+                writer.append("$rt_stringToChars(" + context.getParameterName(1) + ",").ws()
+                        .append(context.getParameterName(2) + ",").ws()
+                        .append(context.getParameterName(3) + ",").ws()
+                        .append(context.getParameterName(4) + ".data,").ws()
+                        .append(context.getParameterName(5) + ");").softNewLine();
+                break;
+        }
+    }
+}
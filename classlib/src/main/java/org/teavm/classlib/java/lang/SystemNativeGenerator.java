@@ -72,17 +72,8 @@ public class SystemNativeGenerator implements Generator, DependencyPlugin {
         String dest = context.getParameterName(3);
         String destPos = context.getParameterName(4);
         String length = context.getParameterName(5);
-        writer.append("if (" + src + " !== " +  dest + " || " + destPos + " < " + srcPos + ") {").indent().newLine();
-        writer.append("for (var i = 0; i < " + length + "; i = (i + 1) | 0) {").indent().softNewLine();
-        writer.append(dest + ".data[" + destPos + "++] = " + src + ".data[" + srcPos + "++];").softNewLine();
-        writer.outdent().append("}").softNewLine();
-        writer.outdent().append("} else {").indent().softNewLine();
-        writer.append(srcPos + " = (" + srcPos + " + " + length + ") | 0;").softNewLine();
-        writer.append(destPos + " = (" + destPos + " + " + length + ") | 0;").softNewLine();
-        writer.append("for (var i = 0; i < " + length + "; i = (i + 1) | 0) {").indent().softNewLine();
-        writer.append(dest + ".data[--" + destPos + "] = " + src + ".data[--" + srcPos + "];").softNewLine();
-        writer.outdent().append("}").softNewLine();
-        writer.outdent().append("}").softNewLine();
+        writer.append("$rt_arraycopy(" + src + ",").ws().append(srcPos + ",").ws().append(dest + ",").ws()
+                .append(destPos + ",").ws().append(length + ");").softNewLine();
     }
 
     private void generateCurrentTimeMillis(SourceWriter writer) throws IOException {
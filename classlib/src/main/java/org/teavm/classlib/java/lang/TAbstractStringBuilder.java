@@ -17,8 +17,14 @@ package org.teavm.classlib.java.lang;
 
 import org.teavm.classlib.java.io.TSerializable;
 import org.teavm.classlib.java.util.TArrays;
+import org.teavm.jso.JSBody;
+import org.teavm.jso.core.JSString;
 
 /**
+ * <p>When strings are represented by native JavaScript strings, the builder keeps its content
+ * in a native string as long as characters are only appended, so that the JavaScript engine accumulates
+ * them by concatenation (usually without copying). Any other modification moves the content
+ * to the character buffer.</p>
  *
  * @author Alexey Andreev
  */
@@ -43,6 +49,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     private static final int FLOAT_MAX_POS = 1000000;
     private static final long DOUBLE_MAX_POS = 1000000000000000L;
     char[] buffer;
+    private JSString content;
     private int length;
 
     public TAbstractStringBuilder() {
@@ -58,6 +65,11 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     public TAbstractStringBuilder(TCharSequence value) {
+        if (TString.isNativeRepresentation() && value instanceof TString) {
+            buffer = new char[0];
+            append((TString) value);
+            return;
+        }
         buffer = new char[value.length()];
         for (int i = 0; i < buffer.length; ++i) {
             buffer[i] = value.charAt(i);
@@ -66,9 +78,34 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     protected TAbstractStringBuilder append(TString string) {
+        if (canAppendNatively()) {
+            if (string == null) {
+                string = TString.wrap("null");
+            }
+            return appendNatively(string.getNativeString());
+        }
         return insert(length, string);
     }
 
+    private boolean canAppendNatively() {
+        return TString.isNativeRepresentation() && (content != null || length == 0);
+    }
+
+    private TAbstractStringBuilder appendNatively(JSString str) {
+        content = content != null ? content.concat(str) : str;
+        length += str.getLength();
+        return this;
+    }
+
+    private void materialize() {
+        if (TString.isNativeRepresentation() && content != null) {
+            TString str = TString.fromNativeString(content);
+            content = null;
+            ensureCapacity(length);
+            str.getChars(0, length, buffer, 0);
+        }
+    }
+
     protected TAbstractStringBuilder insert(int index, TString string) {
         if (index < 0 || index > length) {
             throw new TStringIndexOutOfBoundsException();
@@ -79,8 +116,8 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
             return this;
         }
         ensureCapacity(length + string.length());
-        for (int i = length - 1; i >= index; --i) {
-            buffer[i + string.length()] = buffer[i];
+        if (index < length) {
+            System.arraycopy(buffer, index, buffer, index + string.length(), length - index);
         }
         length += string.length();
         int j = index;
@@ -91,6 +128,9 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     protected TAbstractStringBuilder append(int value) {
+        if (canAppendNatively()) {
+            return appendNatively(intToString(value));
+        }
         return append(value, 10);
     }
 
@@ -144,6 +184,9 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     protected TAbstractStringBuilder append(long value) {
+        if (canAppendNatively()) {
+            return append(TString.wrap(new TAbstractStringBuilder(20).insert(0, value).toString()));
+        }
         return insert(length, value);
     }
 
@@ -189,6 +232,9 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     protected TAbstractStringBuilder append(float value) {
+        if (canAppendNatively()) {
+            return append(TString.wrap(new TAbstractStringBuilder(20).insert(0, value).toString()));
+        }
         return insert(length, value);
     }
 
@@ -343,6 +389,9 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     protected TAbstractStringBuilder append(double value) {
+        if (canAppendNatively()) {
+            return append(TString.wrap(new TAbstractStringBuilder(30).insert(0, value).toString()));
+        }
         return insert(length, value);
     }
 
@@ -542,6 +591,9 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     protected TAbstractStringBuilder append(char c) {
+        if (canAppendNatively()) {
+            return appendNatively(JSString.fromCharCode(c));
+        }
         return insert(length, c);
     }
 
@@ -555,6 +607,10 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
         if (codePoint < TCharacter.MIN_SUPPLEMENTARY_CODE_POINT) {
             return append((char) codePoint);
         }
+        if (canAppendNatively()) {
+            return appendNatively(JSString.fromCharCode(TCharacter.highSurrogate(codePoint))
+                    .concat(JSString.fromCharCode(TCharacter.lowSurrogate(codePoint))));
+        }
         ensureCapacity(length + 2);
         buffer[length++] = TCharacter.highSurrogate(codePoint);
         buffer[length++] = TCharacter.lowSurrogate(codePoint);
@@ -562,7 +618,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     protected TAbstractStringBuilder append(TObject obj) {
-        return insert(length, obj);
+        return append(TString.wrap(obj != null ? obj.toString() : "null"));
     }
 
     protected TAbstractStringBuilder insert(int index, TObject obj) {
@@ -570,7 +626,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     protected TAbstractStringBuilder append(boolean b) {
-        return insert(length, b);
+        return append(b ? TString.wrap("true") : TString.wrap("false"));
     }
 
     protected TAbstractStringBuilder insert(int index, boolean b) {
@@ -578,6 +634,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     public void ensureCapacity(int capacity) {
+        materialize();
         if (buffer.length >= capacity) {
             return;
         }
@@ -585,17 +642,28 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     public void trimToSize() {
+        materialize();
         if (buffer.length > length) {
             buffer = TArrays.copyOf(buffer, length);
         }
     }
 
     public int capacity() {
-        return buffer.length;
+        return Math.max(buffer.length, length);
     }
 
     @Override
     public String toString() {
+        if (TString.isNativeRepresentation()) {
+            if (content != null) {
+                return TString.fromNativeString(content).toString();
+            } else if (length == 0) {
+                return "";
+            }
+            String result = new String(buffer, 0, length);
+            content = TString.wrap(result).getNativeString();
+            return result;
+        }
         return new String(buffer, 0, length);
     }
 
@@ -609,7 +677,8 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
         if (index < 0 || index >= length) {
             throw new TIndexOutOfBoundsException();
         }
-        return buffer[index];
+        return TString.isNativeRepresentation() && content != null ? (char) content.charCodeAt(index)
+                : buffer[index];
     }
 
     protected TAbstractStringBuilder append(TCharSequence s, int start, int end) {
@@ -649,10 +718,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
 
     protected TAbstractStringBuilder insert(int index, char[] chars, int offset, int len) {
         insertSpace(index, index + len);
-        len += offset;
-        while (offset < len) {
-            buffer[index++] = chars[offset++];
-        }
+        System.arraycopy(chars, offset, buffer, index, len);
         return this;
     }
 
@@ -669,12 +735,16 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
         if (srcBegin > srcEnd) {
             throw new TIndexOutOfBoundsException(TString.wrap("Index out of bounds"));
         }
-        while (srcBegin < srcEnd) {
-            dst[dstBegin++] = buffer[srcBegin++];
-        }
+        materialize();
+        System.arraycopy(buffer, srcBegin, dst, dstBegin, srcEnd - srcBegin);
     }
 
     public void setLength(int newLength) {
+        if (TString.isNativeRepresentation() && content != null && newLength <= length) {
+            content = newLength > 0 ? content.substring(0, newLength) : null;
+        } else {
+            materialize();
+        }
         length = newLength;
     }
 
@@ -682,10 +752,9 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
         if (index < 0 || index >= length) {
             throw new TStringIndexOutOfBoundsException();
         }
+        materialize();
         length--;
-        for (int i = index; i < length; ++i) {
-            buffer[i] = buffer[i + 1];
-        }
+        System.arraycopy(buffer, index + 1, buffer, index, length - index);
         return this;
     }
 
@@ -693,18 +762,20 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
         if (start > end || start > length) {
             throw new TStringIndexOutOfBoundsException();
         }
+        if (end > length) {
+            end = length;
+        }
         if (start == end) {
             return this;
         }
-        int sz = length - end;
+        materialize();
+        System.arraycopy(buffer, end, buffer, start, length - end);
         length -= end - start;
-        for (int i = 0; i < sz; ++i) {
-            buffer[start++] = buffer[end++];
-        }
         return this;
     }
 
     public TAbstractStringBuilder replace(int start, int end, TString str) {
+        materialize();
         int oldSize = end - start;
         if (str.length() > oldSize) {
             insertSpace(end, start + str.length());
@@ -720,8 +791,8 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     private void insertSpace(int start, int end) {
         int sz = length - start;
         ensureCapacity(length + end - start);
-        for (int i = sz - 1; i >= 0; --i) {
-            buffer[end + i] = buffer[start + i];
+        if (sz > 0) {
+            System.arraycopy(buffer, start, buffer, end, sz);
         }
         length += end - start;
     }
@@ -731,6 +802,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     public int indexOf(TString str, int fromIndex) {
+        materialize();
         int sz = length - str.length();
         outer: for (int i = fromIndex; i < sz; ++i) {
             for (int j = 0; j < str.length(); ++j) {
@@ -748,6 +820,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     public int lastIndexOf(TString str, int fromIndex) {
+        materialize();
         outer: for (int i = fromIndex; i >= 0; --i) {
             for (int j = 0; j < str.length(); ++j) {
                 if (buffer[i + j] != str.charAt(j)) {
@@ -760,6 +833,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     public TAbstractStringBuilder reverse() {
+        materialize();
         int half = length / 2;
         for (int i = 0; i < half; ++i) {
             char tmp = buffer[i];
@@ -773,6 +847,9 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
         if (from > to || from < 0 || to > length) {
             throw new TIndexOutOfBoundsException();
         }
+        if (TString.isNativeRepresentation() && content != null) {
+            return TString.fromNativeString(content).substring(from, to);
+        }
         return new TString(buffer, from, to - from);
     }
 
@@ -784,6 +861,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
         if (index > length) {
             throw new TIndexOutOfBoundsException();
         }
+        materialize();
         buffer[index] = ch;
     }
 
@@ -802,4 +880,7 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     public int codePointBefore(int index) {
         return TCharacter.codePointBefore(this, index);
     }
+
+    @JSBody(params = "value", script = "return String(value);")
+    private static native JSString intToString(int value);
 }
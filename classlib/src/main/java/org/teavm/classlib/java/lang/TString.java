@@ -20,6 +20,7 @@ import java.util.Locale;
 
 import org.teavm.classlib.java.io.TSerializable;
 import org.teavm.classlib.java.io.TUnsupportedEncodingException;
+import org.teavm.classlib.java.lang.ref.TWeakReference;
 import org.teavm.classlib.java.nio.TByteBuffer;
 import org.teavm.classlib.java.nio.TCharBuffer;
 import org.teavm.classlib.java.nio.charset.TCharset;
@@ -28,7 +29,11 @@ import org.teavm.classlib.java.util.TArrays;
 import org.teavm.classlib.java.util.TComparator;
 import org.teavm.classlib.java.util.THashMap;
 import org.teavm.classlib.java.util.TMap;
+import org.teavm.classlib.java.util.TWeakHashMap;
 import org.teavm.classlib.java.util.regex.TPattern;
+import org.teavm.javascript.spi.GeneratedBy;
+import org.teavm.jso.JSBody;
+import org.teavm.jso.core.JSString;
 
 /**
  *
@@ -37,28 +42,42 @@ import org.teavm.classlib.java.util.regex.TPattern;
 public class TString extends TObject implements TSerializable, TComparable<TString>, TCharSequence {
     public static final TComparator<TString> CASE_INSENSITIVE_ORDER = (o1, o2) -> o1.compareToIgnoreCase(o2);
     private char[] characters;
+    private JSString nativeString;
     private transient int hashCode;
-    private static TMap<TString, TString> pool = new THashMap<>();
+    private static TMap<TString, TString> pool;
+    private static TMap<TString, TWeakReference<TString>> weakPool;
 
     public TString() {
-        this.characters = new char[0];
+        initWithOwnedChars(new char[0]);
     }
 
     public TString(TString other) {
-        characters = other.characters;
+        if (isNativeRepresentation()) {
+            nativeString = other.nativeString;
+        } else {
+            characters = other.characters;
+        }
+    }
+
+    private TString(JSString nativeString) {
+        this.nativeString = nativeString;
     }
 
     public TString(char[] characters) {
-        this.characters = new char[characters.length];
-        for (int i = 0; i < characters.length; ++i) {
-            this.characters[i] = characters[i];
-        }
+        this(characters, 0, characters.length);
     }
 
     public TString(char[] value, int offset, int count) {
-        this.characters = new char[count];
-        for (int i = 0; i < count; ++i) {
-            this.characters[i] = value[i + offset];
+        if (offset < 0 || count < 0 || offset > value.length - count) {
+            throw new TStringIndexOutOfBoundsException();
+        }
+        if (isNativeRepresentation()) {
+            nativeString = charsToString(value, offset, count);
+        } else {
+            characters = new char[count];
+            for (int i = 0; i < count; ++i) {
+                characters[i] = value[i + offset];
+            }
         }
     }
 
@@ -87,42 +106,61 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public TString(int[] codePoints, int offset, int count) {
-        characters = new char[count * 2];
+        char[] chars = new char[count * 2];
         int charCount = 0;
         for (int i = 0; i < count; ++i) {
             int codePoint = codePoints[offset++];
             if (codePoint >= TCharacter.MIN_SUPPLEMENTARY_CODE_POINT) {
-                characters[charCount++] = TCharacter.highSurrogate(codePoint);
-                characters[charCount++] = TCharacter.lowSurrogate(codePoint);
+                chars[charCount++] = TCharacter.highSurrogate(codePoint);
+                chars[charCount++] = TCharacter.lowSurrogate(codePoint);
             } else {
-                characters[charCount++] = (char) codePoint;
+                chars[charCount++] = (char) codePoint;
             }
         }
-        if (charCount < characters.length) {
-            characters = TArrays.copyOf(characters, charCount);
+        if (charCount < chars.length) {
+            chars = TArrays.copyOf(chars, charCount);
         }
+        initWithOwnedChars(chars);
     }
 
     private void initWithBytes(byte[] bytes, int offset, int length, TCharset charset) {
         TCharBuffer buffer = charset.decode(TByteBuffer.wrap(bytes, offset, length));
         if (buffer.hasArray() && buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
-            characters = buffer.array();
+            initWithOwnedChars(buffer.array());
         } else {
-            characters = new char[buffer.remaining()];
-            buffer.get(characters);
+            char[] chars = new char[buffer.remaining()];
+            buffer.get(chars);
+            initWithOwnedChars(chars);
+        }
+    }
+
+    private void initWithOwnedChars(char[] chars) {
+        if (isNativeRepresentation()) {
+            nativeString = charsToString(chars, 0, chars.length);
+        } else {
+            characters = chars;
         }
     }
 
     public TString(TStringBuilder sb) {
-        this(sb.buffer, 0, sb.length());
+        this(TString.wrap(sb.toString()));
+    }
+
+    /**
+     * <p>Tells whether strings wrap native JavaScript strings instead of keeping their characters in
+     * a <code>char[]</code> array. The compiler replaces calls to this method with a constant according to
+     * the chosen representation of strings and drops the branches of the other representation.</p>
+     */
+    static boolean isNativeRepresentation() {
+        return false;
     }
 
     @Override
     public char charAt(int index) {
-        if (index < 0 || index >= characters.length) {
+        if (index < 0 || index >= length()) {
             throw new TStringIndexOutOfBoundsException();
         }
-        return characters[index];
+        return isNativeRepresentation() ? (char) nativeString.charCodeAt(index) : characters[index];
     }
 
     public int codePointAt(int index) {
@@ -143,11 +181,11 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
 
     @Override
     public int length() {
-        return characters.length;
+        return isNativeRepresentation() ? nativeString.getLength() : characters.length;
     }
 
     public boolean isEmpty() {
-        return characters.length == 0;
+        return length() == 0;
     }
 
     public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
@@ -155,17 +193,22 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
                 || dstBegin + (srcEnd - srcBegin) > dst.length) {
             throw new TIndexOutOfBoundsException();
         }
-        while (srcBegin < srcEnd) {
-            dst[dstBegin++] = charAt(srcBegin++);
+        if (isNativeRepresentation()) {
+            stringToChars(nativeString, srcBegin, srcEnd, dst, dstBegin);
+        } else {
+            // System.arraycopy would initialize System, while $rt_ustr calls this during string bootstrap
+            for (int i = srcBegin; i < srcEnd; ++i) {
+                dst[dstBegin++] = characters[i];
+            }
         }
     }
 
     public boolean contentEquals(TStringBuffer buffer) {
-        if (characters.length != buffer.length()) {
+        if (length() != buffer.length()) {
             return false;
         }
-        for (int i = 0; i < characters.length; ++i) {
-            if (characters[i] != buffer.charAt(i)) {
+        for (int i = 0; i < buffer.length(); ++i) {
+            if (charAt(i) != buffer.charAt(i)) {
                 return false;
             }
         }
@@ -176,11 +219,11 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (this == charSeq) {
             return true;
         }
-        if (characters.length != charSeq.length()) {
+        if (length() != charSeq.length()) {
             return false;
         }
-        for (int i = 0; i < characters.length; ++i) {
-            if (characters[i] != charSeq.charAt(i)) {
+        for (int i = 0; i < charSeq.length(); ++i) {
+            if (charAt(i) != charSeq.charAt(i)) {
                 return false;
             }
         }
@@ -284,6 +327,12 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public int indexOf(int ch, int fromIndex) {
+        if (ch < 0 || ch > TCharacter.MAX_CODE_POINT) {
+            return -1;
+        }
+        if (isNativeRepresentation()) {
+            return nativeIndexOf(nativeString, codePointToNative(ch), fromIndex);
+        }
         if (ch < TCharacter.MIN_SUPPLEMENTARY_CODE_POINT) {
             char bmpChar = (char) ch;
             for (int i = fromIndex; i < characters.length; ++i) {
@@ -309,6 +358,12 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public int lastIndexOf(int ch, int fromIndex) {
+        if (ch < 0 || ch > TCharacter.MAX_CODE_POINT) {
+            return -1;
+        }
+        if (isNativeRepresentation()) {
+            return fromIndex >= 0 ? nativeLastIndexOf(nativeString, codePointToNative(ch), fromIndex) : -1;
+        }
         if (ch < TCharacter.MIN_SUPPLEMENTARY_CODE_POINT) {
             char bmpChar = (char) ch;
             for (int i = fromIndex; i >= 0; --i) {
@@ -334,6 +389,9 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public int indexOf(TString str, int fromIndex) {
+        if (isNativeRepresentation()) {
+            return nativeIndexOf(nativeString, str.nativeString, fromIndex);
+        }
         int toIndex = length() - str.length();
         outer:
         for (int i = fromIndex; i <= toIndex; ++i) {
@@ -352,6 +410,9 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public int lastIndexOf(TString str, int fromIndex) {
+        if (isNativeRepresentation()) {
+            return fromIndex >= 0 ? nativeLastIndexOf(nativeString, str.nativeString, fromIndex) : -1;
+        }
         fromIndex = Math.min(fromIndex, length() - str.length());
         outer:
         for (int i = fromIndex; i >= 0; --i) {
@@ -370,9 +431,12 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public TString substring(int beginIndex, int endIndex) {
-        if (beginIndex > endIndex) {
+        if (beginIndex < 0 || beginIndex > endIndex || endIndex > length()) {
             throw new TIndexOutOfBoundsException();
         }
+        if (isNativeRepresentation()) {
+            return new TString(nativeString.substring(beginIndex, endIndex));
+        }
         return new TString(characters, beginIndex, endIndex - beginIndex);
     }
 
@@ -389,6 +453,9 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (str.isEmpty()) {
             return this;
         }
+        if (isNativeRepresentation()) {
+            return new TString(nativeString.concat(str.nativeString));
+        }
         char[] buffer = new char[length() + str.length()];
         int index = 0;
         for (int i = 0; i < length(); ++i) {
@@ -412,8 +479,9 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public boolean contains(TCharSequence s) {
+        int sz = length() - s.length();
         outer:
-        for (int i = 0; i < length(); ++i) {
+        for (int i = 0; i <= sz; ++i) {
             for (int j = 0; j < s.length(); ++j) {
                 if (charAt(i + j) != s.charAt(j)) {
                     continue outer;
@@ -461,13 +529,23 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public char[] toCharArray() {
-        char[] array = new char[characters.length];
-        for (int i = 0; i < array.length; ++i) {
-            array[i] = characters[i];
-        }
+        char[] array = new char[length()];
+        getChars(0, array.length, array, 0);
         return array;
     }
 
+    JSString getNativeString() {
+        return isNativeRepresentation() ? nativeString : null;
+    }
+
+    static TString fromNativeString(JSString nativeString) {
+        return new TString(nativeString);
+    }
+
+    private char[] getCharacters() {
+        return isNativeRepresentation() ? toCharArray() : characters;
+    }
+
     public static TString valueOf(TObject obj) {
         return obj != null ? TString.wrap(obj.toString()) : TString.wrap("null");
     }
@@ -512,6 +590,44 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         return TString.wrap(new TStringBuilder().append(d).toString());
     }
 
+    /**
+     * <p>Concatenates two strings, replacing <code>null</code> by <code>"null"</code>. The compiler replaces
+     * <code>StringBuilder</code> chains by calls of this method, see
+     * {@link org.teavm.optimization.StringBuilderElimination}.</p>
+     */
+    static TString concatenate(TString a, TString b) {
+        if (a == null) {
+            a = TString.wrap("null");
+        }
+        if (b == null) {
+            b = TString.wrap("null");
+        }
+        return a.isEmpty() ? b : a.concat(b);
+    }
+
+    /**
+     * <p>Concatenates several strings, replacing <code>null</code> by <code>"null"</code>. Characters are
+     * copied once into an array of the exact size.</p>
+     */
+    static TString concatenate(TString[] parts) {
+        int length = 0;
+        for (int i = 0; i < parts.length; ++i) {
+            if (parts[i] == null) {
+                parts[i] = TString.wrap("null");
+            }
+            length += parts[i].length();
+        }
+        char[] chars = new char[length];
+        int offset = 0;
+        for (TString part : parts) {
+            part.getChars(0, part.length(), chars, offset);
+            offset += part.length();
+        }
+        TString result = new TString();
+        result.initWithOwnedChars(chars);
+        return result;
+    }
+
     @Override
     public boolean equals(Object other) {
         if (this == other) {
@@ -521,6 +637,9 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
             return false;
         }
         TString str = (TString) other;
+        if (isNativeRepresentation()) {
+            return nativeEquals(nativeString, str.nativeString);
+        }
         if (str.length() != length()) {
             return false;
         }
@@ -559,7 +678,7 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public byte[] getBytes(TCharset charset) {
-        TByteBuffer buffer = charset.encode(TCharBuffer.wrap(characters));
+        TByteBuffer buffer = charset.encode(TCharBuffer.wrap(getCharacters()));
         if (buffer.hasArray() && buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
             return buffer.array();
         } else {
@@ -572,8 +691,12 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     @Override
     public int hashCode() {
         if (hashCode == 0) {
-            for (char c : characters) {
-                hashCode = 31 * hashCode + c;
+            if (isNativeRepresentation()) {
+                hashCode = nativeHashCode(nativeString);
+            } else {
+                for (char c : characters) {
+                    hashCode = 31 * hashCode + c;
+                }
             }
         }
         return hashCode;
@@ -587,15 +710,16 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (isEmpty()) {
             return this;
         }
-        int[] codePoints = new int[characters.length];
+        char[] chars = getCharacters();
+        int[] codePoints = new int[chars.length];
         int codePointCount = 0;
-        for (int i = 0; i < characters.length; ++i) {
-            if (i == characters.length - 1 || !TCharacter.isHighSurrogate(characters[i])
-                    || !TCharacter.isLowSurrogate(characters[i + 1])) {
-                codePoints[codePointCount++] = TCharacter.toLowerCase(characters[i]);
+        for (int i = 0; i < chars.length; ++i) {
+            if (i == chars.length - 1 || !TCharacter.isHighSurrogate(chars[i])
+                    || !TCharacter.isLowSurrogate(chars[i + 1])) {
+                codePoints[codePointCount++] = TCharacter.toLowerCase(chars[i]);
             } else {
                 codePoints[codePointCount++] = TCharacter.toLowerCase(TCharacter.toCodePoint(
-                        characters[i], characters[i + 1]));
+                        chars[i], chars[i + 1]));
                 ++i;
             }
         }
@@ -606,15 +730,16 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (isEmpty()) {
             return this;
         }
-        int[] codePoints = new int[characters.length];
+        char[] chars = getCharacters();
+        int[] codePoints = new int[chars.length];
         int codePointCount = 0;
-        for (int i = 0; i < characters.length; ++i) {
-            if (i == characters.length - 1 || !TCharacter.isHighSurrogate(characters[i])
-                    || !TCharacter.isLowSurrogate(characters[i + 1])) {
-                codePoints[codePointCount++] = TCharacter.toUpperCase(characters[i]);
+        for (int i = 0; i < chars.length; ++i) {
+            if (i == chars.length - 1 || !TCharacter.isHighSurrogate(chars[i])
+                    || !TCharacter.isLowSurrogate(chars[i + 1])) {
+                codePoints[codePointCount++] = TCharacter.toUpperCase(chars[i]);
             } else {
                 codePoints[codePointCount++] = TCharacter.toUpperCase(TCharacter.toCodePoint(
-                        characters[i], characters[i + 1]));
+                        chars[i], chars[i + 1]));
                 ++i;
             }
         }
@@ -627,12 +752,13 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         }
 
         int firstUpper;
-        final int len = characters.length;
+        char[] chars = getCharacters();
+        final int len = chars.length;
 
         /* Now check if there are any characters that need to be changed. */
         scan: {
             for (firstUpper = 0 ; firstUpper < len; ) {
-                char c = characters[firstUpper];
+                char c = chars[firstUpper];
                 if ((c >= Character.MIN_HIGH_SURROGATE)
                         && (c <= Character.MAX_HIGH_SURROGATE)) {
                     int supplChar = codePointAt(firstUpper);
@@ -655,7 +781,7 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
                                 * is the write location in result */
 
         /* Just copy the first few lowerCase characters. */
-        System.arraycopy(characters, 0, result, 0, firstUpper);
+        System.arraycopy(chars, 0, result, 0, firstUpper);
 
         String lang = locale.getLanguage();
         boolean localeDependent =
@@ -665,7 +791,7 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         int srcChar;
         int srcCount;
         for (int i = firstUpper; i < len; i += srcCount) {
-            srcChar = (int)characters[i];
+            srcChar = (int)chars[i];
             if ((char)srcChar >= Character.MIN_HIGH_SURROGATE
                     && (char)srcChar <= Character.MAX_HIGH_SURROGATE) {
                 srcChar = codePointAt(i);
@@ -714,14 +840,53 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public TString intern() {
-        TString interned = pool.get(this);
+        TString interned = findInterned();
         if (interned == null) {
             interned = this;
-            pool.put(interned, interned);
+            if (isWeakRefSupported()) {
+                if (weakPool == null) {
+                    weakPool = new TWeakHashMap<>();
+                }
+                weakPool.put(interned, new TWeakReference<>(interned));
+            } else {
+                strongPool().put(interned, interned);
+            }
         }
         return interned;
     }
 
+    /**
+     * <p>Interns a string literal. This method is called by the runtime when it creates string constants.
+     * Literals stay reachable from compiled code while the program runs, so they are kept in a strong pool
+     * and don't pay for weak references. Strings interned by {@link #intern()} are held weakly where JavaScript
+     * <code>WeakRef</code> is available, so that they are collected once the program no longer uses them.</p>
+     */
+    private TString internLiteral() {
+        TString interned = findInterned();
+        if (interned == null) {
+            interned = this;
+        } else if (weakPool != null) {
+            weakPool.remove(interned);
+        }
+        strongPool().put(interned, interned);
+        return interned;
+    }
+
+    private TString findInterned() {
+        TString interned = pool != null ? pool.get(this) : null;
+        if (interned == null && weakPool != null) {
+            TWeakReference<TString> ref = weakPool.get(this);
+            interned = ref != null ? ref.get() : null;
+        }
+        return interned;
+    }
+
+    private static TMap<TString, TString> strongPool() {
+        if (pool == null) {
+            pool = new THashMap<>();
+        }
+        return pool;
+    }
 
     public boolean matches(String regex) {
         return TPattern.matches(regex, this.toString());
@@ -755,5 +920,39 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         return intern();
     }
 
+    private static JSString codePointToNative(int codePoint) {
+        if (codePoint < TCharacter.MIN_SUPPLEMENTARY_CODE_POINT) {
+            return JSString.fromCharCode(codePoint);
+        }
+        return JSString.fromCharCode(TCharacter.highSurrogate(codePoint))
+                .concat(JSString.fromCharCode(TCharacter.lowSurrogate(codePoint)));
+    }
+
+    @GeneratedBy(StringNativeGenerator.class)
+    private static native JSString charsToString(char[] chars, int offset, int count);
+
+    @GeneratedBy(StringNativeGenerator.class)
+    private static native void stringToChars(JSString str, int begin, int end, char[] dst, int dstBegin);
+
+    @JSBody(params = { "a", "b" }, script = "return a === b;")
+    private static native boolean nativeEquals(JSString a, JSString b);
+
+    @JSBody(params = "str", script = ""
+            + "var hash = 0;"
+            + "for (var i = 0; i < str.length; ++i) {"
+                + "hash = (31 * hash + str.charCodeAt(i)) | 0;"
+            + "}"
+            + "return hash;")
+    private static native int nativeHashCode(JSString str);
+
+    @JSBody(params = { "str", "pattern", "fromIndex" }, script = "return str.indexOf(pattern, fromIndex);")
+    private static native int nativeIndexOf(JSString str, JSString pattern, int fromIndex);
+
+    @JSBody(params = { "str", "pattern", "fromIndex" }, script = "return str.lastIndexOf(pattern, fromIndex);")
+    private static native int nativeLastIndexOf(JSString str, JSString pattern, int fromIndex);
+
+    @JSBody(params = {}, script = "return typeof WeakRef === 'function';")
+    private static native boolean isWeakRefSupported();
+
 
 }
@@ -18,11 +18,17 @@ package org.teavm.classlib.java.lang.ref;
 import org.teavm.classlib.java.lang.TObject;
 
 /**
+ * <p>Base class of reference objects. A reference registered with a queue is appended to the queue
+ * by {@link #enqueue()}, either explicitly or when the garbage collector reclaims the referent.</p>
  *
  * @author Alexey Andreev
  * @param <T> type of an object to which this reference points.
  */
 public abstract class TReference<T> extends TObject {
+    TReferenceQueue<? super T> queue;
+    TReference<?> next;
+    boolean enqueued;
+
     public T get() {
         return null;
     }
@@ -31,10 +37,16 @@ public abstract class TReference<T> extends TObject {
     }
 
     public boolean isEnqueued() {
-        return false;
+        return enqueued;
     }
 
     public boolean enqueue() {
-        return false;
+        TReferenceQueue<? super T> queue = this.queue;
+        if (queue == null) {
+            return false;
+        }
+        this.queue = null;
+        queue.add(this);
+        return true;
     }
 }
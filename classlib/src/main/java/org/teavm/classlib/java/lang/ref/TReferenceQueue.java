@@ -16,12 +16,40 @@
 package org.teavm.classlib.java.lang.ref;
 
 /**
+ * <p>Queue of references whose referents have been reclaimed. References are appended by
+ * {@link TReference#enqueue()}, which is called from the cleanup callback of JavaScript
+ * <code>FinalizationRegistry</code>. As there is no way to block in JavaScript, the queue can only
+ * be polled.</p>
  *
  * @author Alexey Andreev
- * @param <T>
+ * @param <T> type of objects to which queued references point.
  */
 public class TReferenceQueue<T> {
-    public TReference<T> poll() {
-        return null;
+    private TReference<? extends T> head;
+    private TReference<? extends T> tail;
+
+    @SuppressWarnings("unchecked")
+    public TReference<? extends T> poll() {
+        TReference<? extends T> result = head;
+        if (result == null) {
+            return null;
+        }
+        head = (TReference<? extends T>) result.next;
+        if (head == null) {
+            tail = null;
+        }
+        result.next = null;
+        result.enqueued = false;
+        return result;
+    }
+
+    void add(TReference<? extends T> reference) {
+        reference.enqueued = true;
+        if (tail == null) {
+            head = reference;
+        } else {
+            tail.next = reference;
+        }
+        tail = reference;
     }
 }
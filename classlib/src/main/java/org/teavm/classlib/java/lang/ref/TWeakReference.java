@@ -15,29 +15,86 @@
  */
 package org.teavm.classlib.java.lang.ref;
 
+import org.teavm.jso.JSBody;
+import org.teavm.jso.JSFunctor;
+import org.teavm.jso.JSObject;
+import org.teavm.platform.Platform;
+import org.teavm.platform.PlatformObject;
+
 /**
+ * <p>Weak reference on top of JavaScript <code>WeakRef</code>. When the referent is reclaimed, the reference
+ * is enqueued by the cleanup callback of a shared <code>FinalizationRegistry</code>. Where these objects
+ * are not available, the referent is held strongly and is never reclaimed.</p>
  *
  * @author Alexey Andreev
- * @param <T>
+ * @param <T> type of an object to which this reference points.
  */
 public class TWeakReference<T> extends TReference<T> {
+    private static JSObject registry;
+    private JSObject ref;
     private T value;
 
     public TWeakReference(T value) {
-        this.value = value;
+        this(value, null);
     }
 
-    public TWeakReference(T value, @SuppressWarnings("unused") TReferenceQueue<T> queue) {
-        this.value = value;
+    public TWeakReference(T value, TReferenceQueue<? super T> queue) {
+        this.queue = queue;
+        if (value == null || !isWeakRefSupported()) {
+            this.value = value;
+            return;
+        }
+        PlatformObject target = Platform.getPlatformObject(value);
+        ref = createWeakRef(target);
+        if (queue != null && isFinalizationRegistrySupported()) {
+            if (registry == null) {
+                registry = createRegistry(heldValue -> ((TReference<?>) (Object) heldValue).enqueue());
+            }
+            register(registry, target, Platform.getPlatformObject(this));
+        }
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public T get() {
-        return value;
+        return ref != null ? (T) (Object) deref(ref) : value;
     }
 
     @Override
     public void clear() {
+        if (ref != null) {
+            ref = null;
+            if (registry != null) {
+                unregister(registry, Platform.getPlatformObject(this));
+            }
+        }
         value = null;
     }
+
+    @JSFunctor
+    interface CleanupCallback extends JSObject {
+        void cleanup(JSObject heldValue);
+    }
+
+    @JSBody(params = {}, script = "return typeof WeakRef === 'function';")
+    private static native boolean isWeakRefSupported();
+
+    @JSBody(params = {}, script = "return typeof FinalizationRegistry === 'function';")
+    private static native boolean isFinalizationRegistrySupported();
+
+    @JSBody(params = "target", script = "return new WeakRef(target);")
+    private static native JSObject createWeakRef(JSObject target);
+
+    @JSBody(params = "ref", script = "var value = ref.deref(); return value !== undefined ? value : null;")
+    private static native JSObject deref(JSObject ref);
+
+    @JSBody(params = "callback", script = "return new FinalizationRegistry(callback);")
+    private static native JSObject createRegistry(CleanupCallback callback);
+
+    @JSBody(params = { "registry", "target", "reference" },
+            script = "registry.register(target, reference, reference);")
+    private static native void register(JSObject registry, JSObject target, JSObject reference);
+
+    @JSBody(params = { "registry", "reference" }, script = "registry.unregister(reference);")
+    private static native void unregister(JSObject registry, JSObject reference);
 }
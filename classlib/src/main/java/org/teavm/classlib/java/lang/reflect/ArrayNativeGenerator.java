@@ -76,7 +76,9 @@ public class ArrayNativeGenerator implements Generator, DependencyPlugin {
         MethodDescriptor cons = new MethodDescriptor("<init>", ValueType.VOID);
         writer.append("$rt_throw(").appendClass(clsName).append(".").appendMethod(cons).append("());").softNewLine();
         writer.outdent().append("}").softNewLine();
-        writer.append("return " + array + ".data.length;").softNewLine();
+        writer.append("return $rt_pairedLongArrays && " + array + ".constructor.$meta.item === $rt_longcls()")
+                .ws().append("?").ws().append(array + ".length").ws().append(":").ws()
+                .append(array + ".data.length;").softNewLine();
     }
 
     private void achieveGetLength(final DependencyAgent agent, final MethodDependency method) {
@@ -104,8 +106,10 @@ public class ArrayNativeGenerator implements Generator, DependencyPlugin {
 
     private void generateGet(GeneratorContext context, SourceWriter writer) throws IOException {
         String array = context.getParameterName(1);
-        writer.append("var item = " + array + ".data[" + context.getParameterName(2) + "];").softNewLine();
+        String index = context.getParameterName(2);
         writer.append("var type = " + array + ".constructor.$meta.item;").softNewLine();
+        writer.append("var item = type === $rt_longcls() ? $rt_longArrayGet(" + array + ", " + index + ") : "
+                + array + ".data[" + index + "];").softNewLine();
         for (int i = 0; i < primitives.length; ++i) {
             String wrapper = "java.lang." + primitiveWrappers[i];
             MethodReference methodRef = new MethodReference(wrapper, "valueOf",
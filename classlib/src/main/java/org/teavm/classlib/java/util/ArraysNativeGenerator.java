@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import java.io.IOException;
+import org.teavm.codegen.SourceWriter;
+import org.teavm.javascript.spi.Generator;
+import org.teavm.javascript.spi.GeneratorContext;
+import org.teavm.model.MethodReference;
+import org.teavm.model.ValueType;
+
+/**
+ * <p>Generates bulk filling of primitive arrays, which is delegated to <code>TypedArray.prototype.fill</code>
+ * (or <code>Array.prototype.fill</code>) when the engine supports it.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class ArraysNativeGenerator implements Generator {
+    @Override
+    public void generate(GeneratorContext context, SourceWriter writer, MethodReference methodRef) throws IOException {
+        switch (methodRef.getName()) {
+            case "fillImpl": {
+                boolean isLong = methodRef.parameterType(3).equals(ValueType.LONG);
+                String function = isLong ? "$rt_longArrayFill" : "$rt_arrayFill";
+                writer.append(function + "(" + context.getParameterName(1) + ",").ws()
+                        .append(context.getParameterName(2) + ",").ws()
+                        .append(context.getParameterName(3) + ",").ws()
+                        .append(context.getParameterName(4) + ");").softNewLine();
+                break;
+            }
+        }
+    }
+}
@@ -53,7 +53,7 @@ public class TArrayList<E> extends TAbstractList<E> implements TCloneable, TSeri
 
     public void ensureCapacity(int minCapacity) {
         if (array.length < minCapacity) {
-            array = TArrays.copyOf(array, array.length + TMath.min(5, array.length / 2));
+            array = TArrays.copyOf(array, TMath.max(minCapacity, array.length + TMath.max(5, array.length / 2)));
         }
     }
 
@@ -85,8 +85,8 @@ public class TArrayList<E> extends TAbstractList<E> implements TCloneable, TSeri
     public void add(int index, E element) {
         checkIndexForAdd(index);
         ensureCapacity(size + 1);
-        for (int i = size; i > index; --i) {
-            array[i] = array[i - 1];
+        if (index < size) {
+            System.arraycopy(array, index, array, index + 1, size - index);
         }
         array[index] = element;
         ++size;
@@ -98,8 +98,8 @@ public class TArrayList<E> extends TAbstractList<E> implements TCloneable, TSeri
         checkIndex(index);
         E old = array[index];
         --size;
-        for (int i = index; i < size; ++i) {
-            array[i] = array[i + 1];
+        if (index < size) {
+            System.arraycopy(array, index + 1, array, index, size - index);
         }
         array[size] = null;
         ++modCount;
@@ -131,8 +131,8 @@ public class TArrayList<E> extends TAbstractList<E> implements TCloneable, TSeri
         }
         ensureCapacity(size + c.size());
         int gap = c.size();
-        for (int i = size - 1; i >= index; --i) {
-            array[i + gap] = array[i];
+        if (index < size) {
+            System.arraycopy(array, index, array, index + gap, size - index);
         }
         size += gap;
         TIterator<? extends E> iter = c.iterator();
@@ -154,11 +154,10 @@ public class TArrayList<E> extends TAbstractList<E> implements TCloneable, TSeri
         if (start == end) {
             return;
         }
-        for (int i = end; i < size; ++i) {
-            array[start++] = array[end++];
-        }
-        Arrays.fill(array, start, end, null);
-        size -= end - start;
+        int count = end - start;
+        System.arraycopy(array, end, array, start, size - end);
+        Arrays.fill(array, size - count, size, null);
+        size -= count;
         ++modCount;
     }
 
@@ -19,6 +19,7 @@ import java.lang.reflect.Array;
 import java.util.Objects;
 import org.teavm.classlib.java.lang.*;
 import org.teavm.classlib.java.lang.reflect.TArray;
+import org.teavm.javascript.spi.GeneratedBy;
 
 /**
  *
@@ -28,72 +29,56 @@ public class TArrays extends TObject {
     public static char[] copyOf(char[] array, int length) {
         char[] result = new char[length];
         int sz = TMath.min(length, array.length);
-        for (int i = 0; i < sz; ++i) {
-            result[i] = array[i];
-        }
+        System.arraycopy(array, 0, result, 0, sz);
         return result;
     }
 
     public static byte[] copyOf(byte[] array, int length) {
         byte[] result = new byte[length];
         int sz = TMath.min(length, array.length);
-        for (int i = 0; i < sz; ++i) {
-            result[i] = array[i];
-        }
+        System.arraycopy(array, 0, result, 0, sz);
         return result;
     }
 
     public static short[] copyOf(short[] array, int length) {
         short[] result = new short[length];
         int sz = TMath.min(length, array.length);
-        for (int i = 0; i < sz; ++i) {
-            result[i] = array[i];
-        }
+        System.arraycopy(array, 0, result, 0, sz);
         return result;
     }
 
     public static int[] copyOf(int[] array, int length) {
         int[] result = new int[length];
         int sz = TMath.min(length, array.length);
-        for (int i = 0; i < sz; ++i) {
-            result[i] = array[i];
-        }
+        System.arraycopy(array, 0, result, 0, sz);
         return result;
     }
 
     public static long[] copyOf(long[] array, int length) {
         long[] result = new long[length];
         int sz = TMath.min(length, array.length);
-        for (int i = 0; i < sz; ++i) {
-            result[i] = array[i];
-        }
+        System.arraycopy(array, 0, result, 0, sz);
         return result;
     }
 
     public static float[] copyOf(float[] array, int length) {
         float[] result = new float[length];
         int sz = TMath.min(length, array.length);
-        for (int i = 0; i < sz; ++i) {
-            result[i] = array[i];
-        }
+        System.arraycopy(array, 0, result, 0, sz);
         return result;
     }
 
     public static double[] copyOf(double[] array, int length) {
         double[] result = new double[length];
         int sz = TMath.min(length, array.length);
-        for (int i = 0; i < sz; ++i) {
-            result[i] = array[i];
-        }
+        System.arraycopy(array, 0, result, 0, sz);
         return result;
     }
 
     public static boolean[] copyOf(boolean[] array, int length) {
         boolean[] result = new boolean[length];
         int sz = TMath.min(length, array.length);
-        for (int i = 0; i < sz; ++i) {
-            result[i] = array[i];
-        }
+        System.arraycopy(array, 0, result, 0, sz);
         return result;
     }
 
@@ -101,9 +86,7 @@ public class TArrays extends TObject {
         @SuppressWarnings("unchecked")
         T[] result = (T[]) Array.newInstance(original.getClass().getComponentType(), newLength);
         int sz = TMath.min(newLength, original.length);
-        for (int i = 0; i < sz; ++i) {
-            result[i] = original[i];
-        }
+        System.arraycopy(original, 0, result, 0, sz);
         return result;
     }
 
@@ -120,74 +103,56 @@ public class TArrays extends TObject {
 
     public static boolean[] copyOfRange(boolean[] array, int from, int to) {
         boolean[] result = new boolean[to - from];
-        for (int i = from; i < to; ++i) {
-            result[i - from] = array[i];
-        }
+        System.arraycopy(array, from, result, 0, TMath.min(to, array.length) - from);
         return result;
     }
 
     public static byte[] copyOfRange(byte[] array, int from, int to) {
         byte[] result = new byte[to - from];
-        for (int i = from; i < to; ++i) {
-            result[i - from] = array[i];
-        }
+        System.arraycopy(array, from, result, 0, TMath.min(to, array.length) - from);
         return result;
     }
 
     public static char[] copyOfRange(char[] array, int from, int to) {
         char[] result = new char[to - from];
-        for (int i = from; i < to; ++i) {
-            result[i - from] = array[i];
-        }
+        System.arraycopy(array, from, result, 0, TMath.min(to, array.length) - from);
         return result;
     }
 
     public static short[] copyOfRange(short[] array, int from, int to) {
         short[] result = new short[to - from];
-        for (int i = from; i < to; ++i) {
-            result[i - from] = array[i];
-        }
+        System.arraycopy(array, from, result, 0, TMath.min(to, array.length) - from);
         return result;
     }
 
     public static int[] copyOfRange(int[] array, int from, int to) {
         int[] result = new int[to - from];
-        for (int i = from; i < to; ++i) {
-            result[i - from] = array[i];
-        }
+        System.arraycopy(array, from, result, 0, TMath.min(to, array.length) - from);
         return result;
     }
 
     public static long[] copyOfRange(long[] array, int from, int to) {
         long[] result = new long[to - from];
-        for (int i = from; i < to; ++i) {
-            result[i - from] = array[i];
-        }
+        System.arraycopy(array, from, result, 0, TMath.min(to, array.length) - from);
         return result;
     }
 
     public static float[] copyOfRange(float[] array, int from, int to) {
         float[] result = new float[to - from];
-        for (int i = from; i < to; ++i) {
-            result[i - from] = array[i];
-        }
+        System.arraycopy(array, from, result, 0, TMath.min(to, array.length) - from);
         return result;
     }
 
     public static double[] copyOfRange(double[] array, int from, int to) {
         double[] result = new double[to - from];
-        for (int i = from; i < to; ++i) {
-            result[i - from] = array[i];
-        }
+        System.arraycopy(array, from, result, 0, TMath.min(to, array.length) - from);
         return result;
     }
 
     public static <T> T[] copyOfRange(T[] original, int from, int to) {
         @SuppressWarnings("unchecked")
         T[] result = (T[]) Array.newInstance(original.getClass().getComponentType(), to - from);
-        for (int i = from; i < to; ++i) {
-            result[i - from] = original[i];
-        }
+        System.arraycopy(original, from, result, 0, TMath.min(to, original.length) - from);
         return result;
     }
 
@@ -322,9 +287,7 @@ public class TArrays extends TObject {
         if (fromIndex > toIndex) {
             throw new TIllegalArgumentException();
         }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
-        }
+        fillImpl(a, fromIndex, toIndex, val);
     }
 
     public static void fill(long[] a, long val) {
@@ -335,9 +298,7 @@ public class TArrays extends TObject {
         if (fromIndex > toIndex) {
             throw new TIllegalArgumentException();
         }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
-        }
+        fillImpl(a, fromIndex, toIndex, val);
     }
 
     public static void fill(int[] a, int val) {
@@ -348,9 +309,7 @@ public class TArrays extends TObject {
         if (fromIndex > toIndex) {
             throw new TIllegalArgumentException();
         }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
-        }
+        fillImpl(a, fromIndex, toIndex, val);
     }
 
     public static void fill(short[] a, short val) {
@@ -361,9 +320,7 @@ public class TArrays extends TObject {
         if (fromIndex > toIndex) {
             throw new TIllegalArgumentException();
         }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
-        }
+        fillImpl(a, fromIndex, toIndex, val);
     }
 
     public static void fill(char[] a, char val) {
@@ -374,9 +331,7 @@ public class TArrays extends TObject {
         if (fromIndex > toIndex) {
             throw new TIllegalArgumentException();
         }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
-        }
+        fillImpl(a, fromIndex, toIndex, val);
     }
 
     public static void fill(byte[] a, byte val) {
@@ -387,9 +342,7 @@ public class TArrays extends TObject {
         if (fromIndex > toIndex) {
             throw new TIllegalArgumentException();
         }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
-        }
+        fillImpl(a, fromIndex, toIndex, val);
     }
 
     public static void fill(boolean[] a, boolean val) {
@@ -400,9 +353,7 @@ public class TArrays extends TObject {
         if (fromIndex > toIndex) {
             throw new TIllegalArgumentException();
         }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
-        }
+        fillImpl(a, fromIndex, toIndex, val);
     }
 
     public static void fill(float[] a, float val) {
@@ -413,15 +364,37 @@ public class TArrays extends TObject {
         if (fromIndex > toIndex) {
             throw new TIllegalArgumentException();
         }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
-        }
+        fillImpl(a, fromIndex, toIndex, val);
     }
 
     public static void fill(double[] a, double val) {
         fill(a, 0, a.length, val);
     }
 
+    @GeneratedBy(ArraysNativeGenerator.class)
+    private static native void fillImpl(long[] a, int fromIndex, int toIndex, long val);
+
+    @GeneratedBy(ArraysNativeGenerator.class)
+    private static native void fillImpl(int[] a, int fromIndex, int toIndex, int val);
+
+    @GeneratedBy(ArraysNativeGenerator.class)
+    private static native void fillImpl(short[] a, int fromIndex, int toIndex, short val);
+
+    @GeneratedBy(ArraysNativeGenerator.class)
+    private static native void fillImpl(char[] a, int fromIndex, int toIndex, char val);
+
+    @GeneratedBy(ArraysNativeGenerator.class)
+    private static native void fillImpl(byte[] a, int fromIndex, int toIndex, byte val);
+
+    @GeneratedBy(ArraysNativeGenerator.class)
+    private static native void fillImpl(boolean[] a, int fromIndex, int toIndex, boolean val);
+
+    @GeneratedBy(ArraysNativeGenerator.class)
+    private static native void fillImpl(float[] a, int fromIndex, int toIndex, float val);
+
+    @GeneratedBy(ArraysNativeGenerator.class)
+    private static native void fillImpl(double[] a, int fromIndex, int toIndex, double val);
+
     public static void fill(TObject[] a, int fromIndex, int toIndex, TObject val) {
         if (fromIndex > toIndex) {
             throw new TIllegalArgumentException();
@@ -0,0 +1,377 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TIllegalStateException;
+import org.teavm.classlib.java.lang.ref.TReferenceQueue;
+import org.teavm.classlib.java.lang.ref.TWeakReference;
+
+/**
+ * <p>Hash map with weakly referenced keys. Every mapping is a {@link TWeakReference} to its key registered
+ * with the queue of the map. When a key is reclaimed, its mapping is found in the queue and removed from
+ * the table by the next operation on the map.</p>
+ *
+ * <p>Where JavaScript <code>WeakRef</code> is not available, keys are held strongly, and the map behaves
+ * like an ordinary hash map.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class TWeakHashMap<K, V> extends TAbstractMap<K, V> implements TMap<K, V> {
+    private static final int DEFAULT_SIZE = 16;
+    private static final int MAX_SIZE = 1 << 30;
+    private static final Object NULL_KEY = new Object();
+    private final TReferenceQueue<Object> queue = new TReferenceQueue<>();
+    private final float loadFactor;
+    private WeakEntry<K, V>[] table;
+    private int threshold;
+    private int elementCount;
+    private int modCount;
+    private TSet<TMap.Entry<K, V>> cachedEntrySet;
+
+    public TWeakHashMap() {
+        this(DEFAULT_SIZE);
+    }
+
+    public TWeakHashMap(int capacity) {
+        this(capacity, 0.75f);
+    }
+
+    public TWeakHashMap(int capacity, float loadFactor) {
+        if (capacity < 0 || !(loadFactor > 0)) {
+            throw new TIllegalArgumentException();
+        }
+        this.loadFactor = loadFactor;
+        int tableLength = 1;
+        while (tableLength < capacity && tableLength < MAX_SIZE) {
+            tableLength <<= 1;
+        }
+        allocate(tableLength);
+    }
+
+    public TWeakHashMap(TMap<? extends K, ? extends V> map) {
+        this(Math.max(DEFAULT_SIZE, (int) (map.size() / 0.75f) + 1));
+        putAll(map);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int tableLength) {
+        table = new WeakEntry[tableLength];
+        threshold = tableLength < MAX_SIZE ? (int) (tableLength * loadFactor) : Integer.MAX_VALUE;
+    }
+
+    private static Object maskNull(Object key) {
+        return key != null ? key : NULL_KEY;
+    }
+
+    private static Object unmaskNull(Object key) {
+        return key != NULL_KEY ? key : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expungeStaleEntries() {
+        while (true) {
+            WeakEntry<K, V> entry = (WeakEntry<K, V>) queue.poll();
+            if (entry == null) {
+                break;
+            }
+            int index = entry.hash & (table.length - 1);
+            WeakEntry<K, V> previous = null;
+            for (WeakEntry<K, V> e = table[index]; e != null; e = e.next) {
+                if (e == entry) {
+                    if (previous == null) {
+                        table[index] = e.next;
+                    } else {
+                        previous.next = e.next;
+                    }
+                    e.value = null;
+                    --elementCount;
+                    break;
+                }
+                previous = e;
+            }
+        }
+    }
+
+    private WeakEntry<K, V> findEntry(Object key) {
+        Object k = maskNull(key);
+        int hash = THashMap.computeHashCode(k);
+        for (WeakEntry<K, V> e = table[hash & (table.length - 1)]; e != null; e = e.next) {
+            if (e.hash == hash && THashMap.areEqualKeys(k, e.get())) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        expungeStaleEntries();
+        return elementCount;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        expungeStaleEntries();
+        WeakEntry<K, V> entry = findEntry(key);
+        return entry != null ? entry.value : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        expungeStaleEntries();
+        return findEntry(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        expungeStaleEntries();
+        for (WeakEntry<K, V> bucket : table) {
+            for (WeakEntry<K, V> e = bucket; e != null; e = e.next) {
+                if (e.get() != null && (value == null ? e.value == null : THashMap.areEqualValues(value, e.value))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        expungeStaleEntries();
+        WeakEntry<K, V> entry = findEntry(key);
+        if (entry != null) {
+            V result = entry.value;
+            entry.value = value;
+            return result;
+        }
+        Object k = maskNull(key);
+        int hash = THashMap.computeHashCode(k);
+        int index = hash & (table.length - 1);
+        table[index] = new WeakEntry<>(k, value, queue, hash, table[index]);
+        ++modCount;
+        if (++elementCount > threshold) {
+            rehash(table.length * 2);
+        }
+        return null;
+    }
+
+    private void rehash(int tableLength) {
+        WeakEntry<K, V>[] oldTable = table;
+        allocate(tableLength);
+        for (WeakEntry<K, V> bucket : oldTable) {
+            WeakEntry<K, V> e = bucket;
+            while (e != null) {
+                WeakEntry<K, V> next = e.next;
+                if (e.get() == null) {
+                    // Reclaimed key, its reference is still in the queue, but won't be found in the table anymore
+                    e.value = null;
+                    e.next = null;
+                    --elementCount;
+                } else {
+                    int index = e.hash & (tableLength - 1);
+                    e.next = table[index];
+                    table[index] = e;
+                }
+                e = next;
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        expungeStaleEntries();
+        Object k = maskNull(key);
+        int hash = THashMap.computeHashCode(k);
+        int index = hash & (table.length - 1);
+        WeakEntry<K, V> previous = null;
+        for (WeakEntry<K, V> e = table[index]; e != null; e = e.next) {
+            if (e.hash == hash && THashMap.areEqualKeys(k, e.get())) {
+                if (previous == null) {
+                    table[index] = e.next;
+                } else {
+                    previous.next = e.next;
+                }
+                ++modCount;
+                --elementCount;
+                V result = e.value;
+                release(e);
+                return result;
+            }
+            previous = e;
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        for (WeakEntry<K, V> bucket : table) {
+            for (WeakEntry<K, V> e = bucket; e != null; e = e.next) {
+                release(e);
+            }
+        }
+        while (queue.poll() != null) {
+            // Stale references are dropped along with the table
+        }
+        allocate(table.length);
+        elementCount = 0;
+        ++modCount;
+    }
+
+    private static void release(WeakEntry<?, ?> entry) {
+        // An entry is held by FinalizationRegistry until its key is reclaimed, so it should not keep the value
+        // alive after being removed from the map
+        entry.clear();
+        entry.value = null;
+    }
+
+    @Override
+    public TSet<TMap.Entry<K, V>> entrySet() {
+        if (cachedEntrySet == null) {
+            cachedEntrySet = new TAbstractSet<TMap.Entry<K, V>>() {
+                @Override
+                public int size() {
+                    return TWeakHashMap.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    TWeakHashMap.this.clear();
+                }
+
+                @Override
+                public TIterator<TMap.Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+            };
+        }
+        return cachedEntrySet;
+    }
+
+    private class EntryIterator implements TIterator<TMap.Entry<K, V>> {
+        private WeakEntry<K, V>[] iteratedTable = table;
+        private int index = table.length;
+        private WeakEntry<K, V> entry;
+        private WeakEntry<K, V> lastReturned;
+        private int expectedModCount = modCount;
+        // Strong references to keys prevent them from being reclaimed between hasNext() and next()
+        private Object nextKey;
+        private Object currentKey;
+
+        @Override
+        public boolean hasNext() {
+            while (nextKey == null) {
+                WeakEntry<K, V> e = entry;
+                while (e == null && index > 0) {
+                    e = iteratedTable[--index];
+                }
+                entry = e;
+                if (e == null) {
+                    return false;
+                }
+                nextKey = e.get();
+                if (nextKey == null) {
+                    entry = e.next;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public TMap.Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new TConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new TNoSuchElementException();
+            }
+            lastReturned = entry;
+            entry = entry.next;
+            currentKey = nextKey;
+            nextKey = null;
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new TIllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new TConcurrentModificationException();
+            }
+            TWeakHashMap.this.remove(unmaskNull(currentKey));
+            expectedModCount = modCount;
+            lastReturned = null;
+            currentKey = null;
+        }
+    }
+
+    private static class WeakEntry<K, V> extends TWeakReference<Object> implements TMap.Entry<K, V> {
+        final int hash;
+        V value;
+        WeakEntry<K, V> next;
+
+        WeakEntry(Object key, V value, TReferenceQueue<Object> queue, int hash, WeakEntry<K, V> next) {
+            super(key, queue);
+            this.value = value;
+            this.hash = hash;
+            this.next = next;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K getKey() {
+            return (K) unmaskNull(get());
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V result = this.value;
+            this.value = value;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TMap.Entry)) {
+                return false;
+            }
+            TMap.Entry<?, ?> entry = (TMap.Entry<?, ?>) obj;
+            return TObjects.equals(getKey(), entry.getKey()) && TObjects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return TObjects.hashCode(getKey()) ^ TObjects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + value;
+        }
+    }
+}
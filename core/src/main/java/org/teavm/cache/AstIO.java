@@ -455,6 +455,7 @@ public class AstIO {
         public void visit(SubscriptExpr expr) {
             try {
                 output.writeByte(11);
+                output.writeByte(expr.getType() != null ? expr.getType().ordinal() : -1);
                 writeExpr(expr.getArray());
                 writeExpr(expr.getIndex());
             } catch (IOException e) {
@@ -818,6 +819,8 @@ public class AstIO {
             }
             case 11: {
                 SubscriptExpr expr = new SubscriptExpr();
+                byte elementType = input.readByte();
+                expr.setType(elementType >= 0 ? arrayElementTypes[elementType] : null);
                 expr.setArray(readExpr(input));
                 expr.setIndex(readExpr(input));
                 return expr;
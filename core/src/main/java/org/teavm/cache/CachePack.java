@@ -0,0 +1,203 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Stores all cache entries in a single file instead of a file per class or method.
+ * The file stays open from {@link #open()} until the next {@link #flush()}, and entries are read from it
+ * by position, so reading an entry does not cost a file open.</p>
+ *
+ * <p>The file consists of entry data followed by an index, which contains key, offset and length of each
+ * entry. The last eight bytes of the file hold offset of the index. Offsets are 64-bit, while a single entry,
+ * as well as the index, is limited to 2 GB. New entries are kept in memory until
+ * {@link #flush()}, which writes a new file and replaces the old one. Only entries that were read or written
+ * since {@link #open()} get to the new file, so entries of classes and methods that are no longer used
+ * are dropped.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class CachePack {
+    private static final int MAGIC = 0x54564D50;
+    private static final int VERSION = 3;
+    private File file;
+    private FileChannel channel;
+    private Map<String, Entry> entries = new LinkedHashMap<>();
+    private Map<String, byte[]> newEntries = new LinkedHashMap<>();
+    private Set<String> usedKeys = new HashSet<>();
+
+    public CachePack(File file) {
+        this.file = file;
+    }
+
+    public synchronized void open() throws IOException {
+        usedKeys.clear();
+        reopen();
+    }
+
+    private void reopen() throws IOException {
+        close();
+        entries.clear();
+        newEntries.clear();
+        if (!file.exists()) {
+            return;
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            readIndex();
+        } catch (IOException | RuntimeException e) {
+            entries.clear();
+            close();
+            throw new IOException("Cache file " + file + " is corrupted", e);
+        }
+    }
+
+    /**
+     * <p>Closes the underlying file. Entries that are not flushed yet remain available.</p>
+     */
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        entries.clear();
+    }
+
+    private void readIndex() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = read(0, 8);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Wrong header");
+        }
+        long indexOffset = read(size - 8, 8).getLong(0);
+        long indexLength = size - 8 - indexOffset;
+        if (indexOffset < 8 || indexLength < 0 || indexLength > Integer.MAX_VALUE) {
+            throw new IOException("Wrong index offset: " + indexOffset);
+        }
+        byte[] index = read(indexOffset, (int) indexLength).array();
+        DataInput input = new DataInputStream(new ByteArrayInputStream(index));
+        int count = input.readInt();
+        for (int i = 0; i < count; ++i) {
+            String key = input.readUTF();
+            Entry entry = new Entry();
+            entry.offset = input.readLong();
+            entry.length = input.readInt();
+            entries.put(key, entry);
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Gets stream that reads entry data.
+     *
+     * @param key entry key.
+     * @return stream or <code>null</code>, if there is no entry with the given key.
+     */
+    public synchronized InputStream get(String key) {
+        byte[] data = newEntries.get(key);
+        if (data != null) {
+            return new ByteArrayInputStream(data);
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            data = read(entry.offset, entry.length).array();
+        } catch (IOException e) {
+            return null;
+        }
+        usedKeys.add(key);
+        return new ByteArrayInputStream(data);
+    }
+
+    public synchronized void put(String key, byte[] data) {
+        newEntries.put(key, data);
+    }
+
+    public synchronized void flush() throws IOException {
+        if (newEntries.isEmpty() && usedKeys.containsAll(entries.keySet())) {
+            return;
+        }
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        File tempFile = new File(file.getPath() + ".tmp");
+        Map<String, Entry> writtenEntries = new LinkedHashMap<>();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile), 65536))) {
+            // DataOutputStream.size() stops at Integer.MAX_VALUE, so position is tracked separately
+            long position = 0;
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            position += 8;
+            for (Map.Entry<String, Entry> existing : entries.entrySet()) {
+                if (newEntries.containsKey(existing.getKey()) || !usedKeys.contains(existing.getKey())) {
+                    continue;
+                }
+                Entry entry = new Entry();
+                entry.offset = position;
+                entry.length = existing.getValue().length;
+                output.write(read(existing.getValue().offset, entry.length).array());
+                position += entry.length;
+                writtenEntries.put(existing.getKey(), entry);
+            }
+            for (Map.Entry<String, byte[]> newEntry : newEntries.entrySet()) {
+                Entry entry = new Entry();
+                entry.offset = position;
+                entry.length = newEntry.getValue().length;
+                output.write(newEntry.getValue());
+                position += entry.length;
+                writtenEntries.put(newEntry.getKey(), entry);
+            }
+            long indexOffset = position;
+            output.writeInt(writtenEntries.size());
+            for (Map.Entry<String, Entry> entry : writtenEntries.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue().offset);
+                output.writeInt(entry.getValue().length);
+            }
+            output.writeLong(indexOffset);
+        }
+        // Windows does not allow to replace a file that is still open
+        close();
+        usedKeys.addAll(newEntries.keySet());
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        reopen();
+    }
+
+    static class Entry {
+        long offset;
+        int length;
+    }
+}
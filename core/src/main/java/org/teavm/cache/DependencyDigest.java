@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.teavm.parsing.ClassDigestProvider;
+
+/**
+ * <p>Combines digests of all classes a cache entry depends on. Cache entries start with the list of
+ * dependencies followed by their combined digest, so the entry is considered stale as soon as any of
+ * dependencies changes its content.</p>
+ *
+ * <p>Only classes that the cached class or method refers to directly are taken into account, not classes
+ * they refer to in their turn. Cached entries hold code of a single class or method, which does not change
+ * when a class further down the graph changes.</p>
+ *
+ * @author Alexey Andreev
+ */
+final class DependencyDigest {
+    private DependencyDigest() {
+    }
+
+    static byte[] compute(Collection<String> classNames, ClassDigestProvider digestProvider) {
+        List<String> sortedClassNames = new ArrayList<>(classNames);
+        Collections.sort(sortedClassNames);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-1 is expected to be supported", e);
+        }
+        for (String className : sortedClassNames) {
+            byte[] classDigest = digestProvider.getDigest(className);
+            if (classDigest == null) {
+                return null;
+            }
+            digest.update(className.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(classDigest);
+        }
+        return digest.digest();
+    }
+
+    static void write(DataOutput output, Collection<String> classNames, ClassDigestProvider digestProvider)
+            throws IOException {
+        byte[] digest = compute(classNames, digestProvider);
+        output.writeInt(classNames.size());
+        for (String className : classNames) {
+            output.writeUTF(className);
+        }
+        output.writeByte(digest != null ? digest.length : 0);
+        if (digest != null) {
+            output.write(digest);
+        }
+    }
+
+    static boolean check(DataInput input, ClassDigestProvider digestProvider) throws IOException {
+        int count = input.readInt();
+        List<String> classNames = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            classNames.add(input.readUTF());
+        }
+        byte[] storedDigest = new byte[input.readByte()];
+        input.readFully(storedDigest);
+        byte[] actualDigest = compute(classNames, digestProvider);
+        return actualDigest != null && Arrays.equals(storedDigest, actualDigest);
+    }
+}
@@ -18,7 +18,7 @@ package org.teavm.cache;
 import java.io.*;
 import java.util.*;
 import org.teavm.model.*;
-import org.teavm.parsing.ClassDateProvider;
+import org.teavm.parsing.ClassDigestProvider;
 
 /**
  *
@@ -27,20 +27,20 @@ import org.teavm.parsing.ClassDateProvider;
 public class DiskCachedClassHolderSource implements ClassHolderSource {
     private static AccessLevel[] accessLevels = AccessLevel.values();
     private static ElementModifier[] elementModifiers = ElementModifier.values();
-    private File directory;
+    private CachePack pack;
     private SymbolTable symbolTable;
     private ClassHolderSource innerSource;
-    private ClassDateProvider classDateProvider;
+    private ClassDigestProvider digestProvider;
     private Map<String, Item> cache = new HashMap<>();
     private Set<String> newClasses = new HashSet<>();
     private ProgramIO programIO;
 
-    public DiskCachedClassHolderSource(File directory, SymbolTable symbolTable, SymbolTable fileTable,
-            ClassHolderSource innerSource, ClassDateProvider classDateProvider) {
-        this.directory = directory;
+    public DiskCachedClassHolderSource(CachePack pack, SymbolTable symbolTable, SymbolTable fileTable,
+            ClassHolderSource innerSource, ClassDigestProvider digestProvider) {
+        this.pack = pack;
         this.symbolTable = symbolTable;
         this.innerSource = innerSource;
-        this.classDateProvider = classDateProvider;
+        this.digestProvider = digestProvider;
         programIO = new ProgramIO(symbolTable, fileTable);
     }
 
@@ -50,16 +50,15 @@ public class DiskCachedClassHolderSource implements ClassHolderSource {
         if (item == null) {
             item = new Item();
             cache.put(name, item);
-            File classFile = new File(directory, name.replace('.', '/') + ".teavm-cls");
-            if (classFile.exists()) {
-                Date classDate = classDateProvider.getModificationDate(name);
-                if (classDate != null && classDate.before(new Date(classFile.lastModified()))) {
-                    try (InputStream input = new BufferedInputStream(new FileInputStream(classFile))) {
+            InputStream input = pack.get(getKey(name));
+            if (input != null) {
+                try {
+                    if (DependencyDigest.check(new DataInputStream(input), digestProvider)) {
                         item.cls = readClass(input, name);
-                    } catch (IOException e) {
-                        // We could not access cache file, so let's parse class file
-                        item.cls = null;
                     }
+                } catch (IOException e) {
+                    // We could not access cache entry, so let's parse class file
+                    item.cls = null;
                 }
             }
             if (item.cls == null) {
@@ -74,17 +73,27 @@ public class DiskCachedClassHolderSource implements ClassHolderSource {
         ClassHolder cls;
     }
 
+    public void invalidate(String name) {
+        cache.remove(name);
+        newClasses.remove(name);
+    }
+
     public void flush() throws IOException {
         for (String className : newClasses) {
             Item item = cache.get(className);
             if (item.cls != null) {
-                File classFile = new File(directory, className.replace('.', '/') + ".teavm-cls");
-                classFile.getParentFile().mkdirs();
-                try (OutputStream output = new BufferedOutputStream(new FileOutputStream(classFile))) {
-                    writeClass(output, item.cls);
-                }
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                DependencyDigest.write(new DataOutputStream(output), Collections.singleton(className),
+                        digestProvider);
+                writeClass(output, item.cls);
+                pack.put(getKey(className), output.toByteArray());
             }
         }
+        newClasses.clear();
+    }
+
+    private static String getKey(String className) {
+        return "cls:" + className;
     }
 
     private void writeClass(OutputStream stream, ClassHolder cls) throws IOException {
@@ -19,24 +19,24 @@ import java.io.*;
 import java.util.*;
 import org.teavm.model.*;
 import org.teavm.model.instructions.*;
-import org.teavm.parsing.ClassDateProvider;
+import org.teavm.parsing.ClassDigestProvider;
 
 /**
  *
  * @author Alexey Andreev
  */
 public class DiskProgramCache implements ProgramCache {
-    private File directory;
+    private CachePack pack;
     private ProgramIO programIO;
     private Map<MethodReference, Item> cache = new HashMap<>();
     private Set<MethodReference> newMethods = new HashSet<>();
-    private ClassDateProvider classDateProvider;
+    private ClassDigestProvider digestProvider;
 
-    public DiskProgramCache(File directory, SymbolTable symbolTable, SymbolTable fileTable,
-            ClassDateProvider classDateProvider) {
-        this.directory = directory;
+    public DiskProgramCache(CachePack pack, SymbolTable symbolTable, SymbolTable fileTable,
+            ClassDigestProvider digestProvider) {
+        this.pack = pack;
         programIO = new ProgramIO(symbolTable, fileTable);
-        this.classDateProvider = classDateProvider;
+        this.digestProvider = digestProvider;
     }
 
     @Override
@@ -45,21 +45,10 @@ public class DiskProgramCache implements ProgramCache {
         if (item == null) {
             item = new Item();
             cache.put(method, item);
-            File file = getMethodFile(method);
-            if (file.exists()) {
-                try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
-                    DataInput input = new DataInputStream(stream);
-                    int depCount = input.readShort();
-                    boolean dependenciesChanged = false;
-                    for (int i = 0; i < depCount; ++i) {
-                        String depClass = input.readUTF();
-                        Date depDate = classDateProvider.getModificationDate(depClass);
-                        if (depDate == null || depDate.after(new Date(file.lastModified()))) {
-                            dependenciesChanged = true;
-                            break;
-                        }
-                    }
-                    if (!dependenciesChanged) {
+            InputStream stream = pack.get(getKey(method));
+            if (stream != null) {
+                try {
+                    if (DependencyDigest.check(new DataInputStream(stream), digestProvider)) {
                         item.program = programIO.read(stream);
                     }
                 } catch (IOException e) {
@@ -78,9 +67,17 @@ public class DiskProgramCache implements ProgramCache {
         newMethods.add(method);
     }
 
+    /**
+     * <p>Drops all programs kept in memory. Programs returned by this cache are modified during the build,
+     * so they can't be shared between builds. Next build reads them from the pack again.</p>
+     */
+    public void invalidate() {
+        cache.clear();
+        newMethods.clear();
+    }
+
     public void flush() throws IOException {
         for (MethodReference method : newMethods) {
-            File file = getMethodFile(method);
             ProgramDependencyAnalyzer analyzer = new ProgramDependencyAnalyzer();
             analyzer.dependencies.add(method.getClassName());
             Program program = cache.get(method).program;
@@ -90,21 +87,16 @@ public class DiskProgramCache implements ProgramCache {
                     insn.acceptVisitor(analyzer);
                 }
             }
-            file.getParentFile().mkdirs();
-            try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
-                DataOutput output = new DataOutputStream(stream);
-                output.writeShort(analyzer.dependencies.size());
-                for (String dep : analyzer.dependencies) {
-                    output.writeUTF(dep);
-                }
-                programIO.write(program, stream);
-            }
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            DependencyDigest.write(new DataOutputStream(stream), analyzer.dependencies, digestProvider);
+            programIO.write(program, stream);
+            pack.put(getKey(method), stream.toByteArray());
         }
+        newMethods.clear();
     }
 
-    private File getMethodFile(MethodReference method) {
-        File dir = new File(directory, method.getClassName().replace('.', '/'));
-        return new File(dir, FileNameEncoder.encodeFileName(method.getDescriptor().toString()) + ".teavm-opt");
+    private static String getKey(MethodReference method) {
+        return "opt:" + method;
     }
 
     static class Item {
@@ -20,22 +20,22 @@ import java.util.*;
 import org.teavm.javascript.MethodNodeCache;
 import org.teavm.javascript.ast.*;
 import org.teavm.model.MethodReference;
-import org.teavm.parsing.ClassDateProvider;
+import org.teavm.parsing.ClassDigestProvider;
 
 public class DiskRegularMethodNodeCache implements MethodNodeCache {
-    private final File directory;
+    private final CachePack pack;
     private final AstIO astIO;
-    private final ClassDateProvider classDateProvider;
+    private final ClassDigestProvider digestProvider;
     private final Map<MethodReference, Item> cache = new HashMap<>();
     private final Map<MethodReference, AsyncItem> asyncCache = new HashMap<>();
     private final Set<MethodReference> newMethods = new HashSet<>();
     private final Set<MethodReference> newAsyncMethods = new HashSet<>();
 
-    public DiskRegularMethodNodeCache(File directory, SymbolTable symbolTable, SymbolTable fileTable,
-            ClassDateProvider classDateProvider) {
-        this.directory = directory;
+    public DiskRegularMethodNodeCache(CachePack pack, SymbolTable symbolTable, SymbolTable fileTable,
+            ClassDigestProvider digestProvider) {
+        this.pack = pack;
         astIO = new AstIO(symbolTable, fileTable);
-        this.classDateProvider = classDateProvider;
+        this.digestProvider = digestProvider;
     }
 
     @Override
@@ -44,11 +44,11 @@ public class DiskRegularMethodNodeCache implements MethodNodeCache {
         if (item == null) {
             item = new Item();
             cache.put(methodReference, item);
-            File file = getMethodFile(methodReference, false);
-            if (file.exists()) {
-                try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            InputStream stream = pack.get(getKey(methodReference, false));
+            if (stream != null) {
+                try {
                     DataInput input = new DataInputStream(stream);
-                    if (!checkIfDependenciesChanged(input, file)) {
+                    if (DependencyDigest.check(input, digestProvider)) {
                         item.node = astIO.read(input, methodReference);
                     }
                 } catch (IOException e) {
@@ -73,11 +73,11 @@ public class DiskRegularMethodNodeCache implements MethodNodeCache {
         if (item == null) {
             item = new AsyncItem();
             asyncCache.put(methodReference, item);
-            File file = getMethodFile(methodReference, true);
-            if (file.exists()) {
-                try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            InputStream stream = pack.get(getKey(methodReference, true));
+            if (stream != null) {
+                try {
                     DataInput input = new DataInputStream(stream);
-                    if (!checkIfDependenciesChanged(input, file)) {
+                    if (DependencyDigest.check(input, digestProvider)) {
                         item.node = astIO.readAsync(input, methodReference);
                     }
                 } catch (IOException e) {
@@ -88,18 +88,6 @@ public class DiskRegularMethodNodeCache implements MethodNodeCache {
         return item.node;
     }
 
-    private boolean checkIfDependenciesChanged(DataInput input, File file) throws IOException {
-        int depCount = input.readShort();
-        for (int i = 0; i < depCount; ++i) {
-            String depClass = input.readUTF();
-            Date depDate = classDateProvider.getModificationDate(depClass);
-            if (depDate == null || depDate.after(new Date(file.lastModified()))) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     @Override
     public void storeAsync(MethodReference methodReference, AsyncMethodNode node) {
         AsyncItem item = new AsyncItem();
@@ -108,43 +96,47 @@ public class DiskRegularMethodNodeCache implements MethodNodeCache {
         newAsyncMethods.add(methodReference);
     }
 
+    /**
+     * <p>Drops all method nodes kept in memory, so that next build reads them from the pack again.</p>
+     */
+    public void invalidate() {
+        cache.clear();
+        asyncCache.clear();
+        newMethods.clear();
+        newAsyncMethods.clear();
+    }
+
     public void flush() throws IOException {
         for (MethodReference method : newMethods) {
-            File file = getMethodFile(method, true);
             AstDependencyAnalyzer analyzer = new AstDependencyAnalyzer();
             RegularMethodNode node = cache.get(method).node;
             node.getBody().acceptVisitor(analyzer);
             analyzer.dependencies.add(method.getClassName());
-            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
-                output.writeShort(analyzer.dependencies.size());
-                for (String dependency : analyzer.dependencies) {
-                    output.writeUTF(dependency);
-                }
-                astIO.write(output, node);
-            }
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(stream);
+            DependencyDigest.write(output, analyzer.dependencies, digestProvider);
+            astIO.write(output, node);
+            pack.put(getKey(method, false), stream.toByteArray());
         }
         for (MethodReference method : newAsyncMethods) {
-            File file = getMethodFile(method, true);
             AstDependencyAnalyzer analyzer = new AstDependencyAnalyzer();
             AsyncMethodNode node = asyncCache.get(method).node;
             for (AsyncMethodPart part : node.getBody()) {
                 part.getStatement().acceptVisitor(analyzer);
             }
             analyzer.dependencies.add(method.getClassName());
-            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
-                output.writeShort(analyzer.dependencies.size());
-                for (String dependency : analyzer.dependencies) {
-                    output.writeUTF(dependency);
-                }
-                astIO.writeAsync(output, node);
-            }
-        }
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(stream);
+            DependencyDigest.write(output, analyzer.dependencies, digestProvider);
+            astIO.writeAsync(output, node);
+            pack.put(getKey(method, true), stream.toByteArray());
+        }
+        newMethods.clear();
+        newAsyncMethods.clear();
     }
 
-    private File getMethodFile(MethodReference method, boolean async) {
-        File dir = new File(directory, method.getClassName().replace('.', '/'));
-        return new File(dir, FileNameEncoder.encodeFileName(method.getDescriptor().toString()) + ".teavm-ast"
-                + (async ? "-async" : ""));
+    private static String getKey(MethodReference method, boolean async) {
+        return (async ? "ast-async:" : "ast:") + method;
     }
 
     private static class AstDependencyAnalyzer implements StatementVisitor, ExprVisitor {
@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.codegen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Writes generated code to a channel in chunks. Text is collected in a reusable buffer, which is encoded
+ * and written to the channel as soon as it exceeds chunk size, so memory consumption does not depend on the size
+ * of generated code.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class ChunkedOutput implements Appendable, Closeable {
+    public static final int DEFAULT_CHUNK_SIZE = 65536;
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final int chunkSize;
+    private final StringBuilder chunk;
+    private char[] chars;
+    private final ByteBuffer bytes;
+    private long writtenBytes;
+
+    public ChunkedOutput(WritableByteChannel channel) {
+        this(channel, StandardCharsets.UTF_8, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedOutput(WritableByteChannel channel, Charset charset, int chunkSize) {
+        this.channel = channel;
+        this.encoder = charset.newEncoder();
+        this.chunkSize = chunkSize;
+        chunk = new StringBuilder(chunkSize + chunkSize / 4);
+        chars = new char[chunkSize + chunkSize / 4];
+        bytes = ByteBuffer.allocateDirect((int) (chunkSize * encoder.maxBytesPerChar()));
+    }
+
+    @Override
+    public ChunkedOutput append(CharSequence csq) throws IOException {
+        chunk.append(csq);
+        flushIfNecessary();
+        return this;
+    }
+
+    @Override
+    public ChunkedOutput append(CharSequence csq, int start, int end) throws IOException {
+        chunk.append(csq, start, end);
+        flushIfNecessary();
+        return this;
+    }
+
+    @Override
+    public ChunkedOutput append(char c) throws IOException {
+        chunk.append(c);
+        flushIfNecessary();
+        return this;
+    }
+
+    private void flushIfNecessary() throws IOException {
+        if (chunk.length() >= chunkSize) {
+            flushChunk();
+        }
+    }
+
+    /**
+     * <p>Writes all collected text to the channel.</p>
+     *
+     * @throws IOException if channel reports an error.
+     */
+    public void flushChunk() throws IOException {
+        encode(false);
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        int length = chunk.length();
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        chunk.getChars(0, length, chars, 0);
+        CharBuffer input = CharBuffer.wrap(chars, 0, length);
+        while (true) {
+            CoderResult result = encoder.encode(input, bytes, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            writeBytes();
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+            writeBytes();
+        }
+
+        // A high surrogate at the end of the chunk is not consumed by the encoder until the low one arrives
+        chunk.delete(0, input.position());
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            writtenBytes += channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            encode(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
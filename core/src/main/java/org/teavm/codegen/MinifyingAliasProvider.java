@@ -25,6 +25,12 @@ import org.teavm.model.MethodReference;
 public class MinifyingAliasProvider implements AliasProvider {
     private static final Set<String> keywords = new HashSet<>(Arrays.asList("do", "if", "else", "for", "case",
             "goto", "in", "let", "new", "this", "try", "var", "void", "with"));
+    // Members of java.lang.Object are copied to prototypes of typed arrays, so they must not hide members
+    // of typed arrays and of arrays of longs
+    private static final Set<String> reservedMembers = new HashSet<>(Arrays.asList("at", "lo", "hi", "map", "set",
+            "fill", "find", "join", "keys", "some", "sort", "data", "every", "slice", "buffer", "filter", "length",
+            "reduce", "values", "entries", "forEach", "indexOf", "reverse", "subarray", "includes", "findIndex",
+            "byteLength", "byteOffset", "copyWithin", "constructor", "lastIndexOf", "reduceRight"));
     private static final String startLetters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
     private static final String letters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
     private static final String startVirtualLetters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
@@ -37,7 +43,7 @@ public class MinifyingAliasProvider implements AliasProvider {
         String result;
         do {
             result = getNewAlias(lastVirtual++, startVirtualLetters);
-        } while (!usedAliases.add(result) || keywords.contains(result));
+        } while (!usedAliases.add(result) || keywords.contains(result) || reservedMembers.contains(result));
         return result;
     }
 
@@ -60,7 +66,7 @@ public class MinifyingAliasProvider implements AliasProvider {
         String result;
         do {
             result = getNewAlias(lastVirtual++, startVirtualLetters);
-        } while (!usedAliases.add(result) || keywords.contains(result));
+        } while (!usedAliases.add(result) || keywords.contains(result) || reservedMembers.contains(result));
         return result;
     }
 
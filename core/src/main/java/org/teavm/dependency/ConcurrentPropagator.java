@@ -0,0 +1,145 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.dependency;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * <p>Propagates types along node-to-node transitions in several threads.</p>
+ *
+ * <p>Propagation is performed in rounds. Each round takes the current frontier of pending
+ * (transition, type) pairs and adds types to destination nodes concurrently, locking each node separately.
+ * Transitions that have side effects (filtered transitions, array and class types) are not touched by
+ * worker threads and are passed back to the {@link DependencyChecker}'s sequential queue. After all workers
+ * finish, the round is merged in frontier order, so the next frontier and the sequential queue
+ * do not depend on thread scheduling.</p>
+ *
+ * @author Alexey Andreev
+ */
+class ConcurrentPropagator {
+    private static final int CHUNK_SIZE = 256;
+    private static final byte ADDED = 1;
+    private static final byte DEFERRED = 2;
+    private DependencyChecker dependencyChecker;
+    private int threadCount;
+    private List<DependencyNodeToNodeTransition> transitions = new ArrayList<>();
+    private List<DependencyType> types = new ArrayList<>();
+
+    ConcurrentPropagator(DependencyChecker dependencyChecker, int threadCount) {
+        this.dependencyChecker = dependencyChecker;
+        this.threadCount = threadCount;
+    }
+
+    int getThreadCount() {
+        return threadCount;
+    }
+
+    void schedule(DependencyNodeToNodeTransition transition, DependencyType type) {
+        transitions.add(transition);
+        types.add(type);
+    }
+
+    boolean hasPendingWork() {
+        return !transitions.isEmpty();
+    }
+
+    boolean propagate(DependencyCheckerInterruptor interruptor) {
+        ForkJoinPool pool = null;
+        try {
+            while (!transitions.isEmpty()) {
+                List<DependencyNodeToNodeTransition> roundTransitions = transitions;
+                List<DependencyType> roundTypes = types;
+                transitions = new ArrayList<>();
+                types = new ArrayList<>();
+
+                byte[] results = new byte[roundTransitions.size()];
+                if (results.length <= CHUNK_SIZE) {
+                    processChunk(roundTransitions, roundTypes, results, 0, results.length);
+                } else {
+                    if (pool == null) {
+                        pool = new ForkJoinPool(threadCount);
+                    }
+                    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                    for (int i = 0; i < results.length; i += CHUNK_SIZE) {
+                        int start = i;
+                        int end = Math.min(results.length, i + CHUNK_SIZE);
+                        tasks.add(pool.submit(() -> processChunk(roundTransitions, roundTypes, results,
+                                start, end)));
+                    }
+                    for (ForkJoinTask<?> task : tasks) {
+                        task.join();
+                    }
+                }
+
+                merge(roundTransitions, roundTypes, results);
+                if (interruptor != null && !interruptor.shouldContinue()) {
+                    return false;
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return true;
+    }
+
+    private void processChunk(List<DependencyNodeToNodeTransition> roundTransitions,
+            List<DependencyType> roundTypes, byte[] results, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            DependencyNodeToNodeTransition transition = roundTransitions.get(i);
+            DependencyType type = roundTypes.get(i);
+            if (!transition.isPure(type)) {
+                results[i] = DEFERRED;
+            } else if (transition.destination.addTypeConcurrently(type)) {
+                results[i] = ADDED;
+            }
+        }
+    }
+
+    private void merge(List<DependencyNodeToNodeTransition> roundTransitions, List<DependencyType> roundTypes,
+            byte[] results) {
+        Map<DependencyNode, BitSet> added = new IdentityHashMap<>();
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] == ADDED) {
+                added.computeIfAbsent(roundTransitions.get(i).destination, node -> new BitSet())
+                        .set(roundTypes.get(i).index);
+            }
+        }
+
+        // Several transitions might deliver the same type to a node within one round. Followers are notified
+        // at the first of these transitions, no matter which thread actually added the type.
+        for (int i = 0; i < results.length; ++i) {
+            DependencyNodeToNodeTransition transition = roundTransitions.get(i);
+            DependencyType type = roundTypes.get(i);
+            if (results[i] == DEFERRED) {
+                dependencyChecker.scheduleSequentially(() -> transition.consume(type));
+                continue;
+            }
+            BitSet addedTypes = added.get(transition.destination);
+            if (addedTypes != null && addedTypes.get(type.index)) {
+                addedTypes.clear(type.index);
+                transition.destination.notifyFollowers(type);
+            }
+        }
+    }
+}
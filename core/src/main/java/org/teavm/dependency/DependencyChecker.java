@@ -17,9 +17,12 @@ package org.teavm.dependency;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -77,6 +80,11 @@ public class DependencyChecker implements DependencyInfo {
     List<DependencyNode> nodes = new ArrayList<>();
     Map<MethodReference, BootstrapMethodSubstitutor> bootstrapMethodSubstitutors = new HashMap<>();
     private boolean completing;
+    private ConcurrentPropagator concurrentPropagator;
+    private boolean batchedPropagation;
+    private Map<DependencyConsumer, BitSet> pendingTypes = new IdentityHashMap<>();
+    private long propagationTaskCount;
+    private long propagatedTypeCount;
 
     public DependencyChecker(ClassReaderSource classSource, ClassLoader classLoader, ServiceRepository services,
             Diagnostics diagnostics) {
@@ -122,6 +130,55 @@ public class DependencyChecker implements DependencyInfo {
         return interrupted;
     }
 
+    public int getPropagationThreadCount() {
+        return concurrentPropagator != null ? concurrentPropagator.getThreadCount() : 1;
+    }
+
+    /**
+     * <p>Specifies how many threads are used to propagate types along the dependency graph.
+     * When set to {@code 1} (the default), all propagation happens in the sequential queue.
+     * Otherwise, type sets are propagated along plain node-to-node edges concurrently, while everything
+     * else (linking, plugins, filtered edges) still runs sequentially. Both engines reach the same fixpoint.</p>
+     *
+     * @param threadCount number of propagation threads, must be positive.
+     */
+    public void setPropagationThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        concurrentPropagator = threadCount > 1 ? new ConcurrentPropagator(this, threadCount) : null;
+    }
+
+    public boolean isBatchedPropagation() {
+        return batchedPropagation;
+    }
+
+    /**
+     * <p>Specifies whether types sent to a consumer are coalesced. In batched mode a consumer gets at most one
+     * pending task in the queue. All types that arrive before this task runs are accumulated in a bit set
+     * and delivered together, each type at most once.</p>
+     *
+     * @param batchedPropagation whether to coalesce propagation tasks.
+     */
+    public void setBatchedPropagation(boolean batchedPropagation) {
+        this.batchedPropagation = batchedPropagation;
+    }
+
+    /**
+     * Reports how many propagation tasks were put in the sequential queue. Together with
+     * {@link #getPropagatedTypeCount()} it shows how well propagation is batched.
+     */
+    public long getPropagationTaskCount() {
+        return propagationTaskCount;
+    }
+
+    /**
+     * Reports how many types were delivered to consumers by tasks of the sequential queue.
+     */
+    public long getPropagatedTypeCount() {
+        return propagatedTypeCount;
+    }
+
     public DependencyType getType(String name) {
         DependencyType type = typeMap.get(name);
         if (type == null) {
@@ -235,17 +292,67 @@ public class DependencyChecker implements DependencyInfo {
     }
 
     void schedulePropagation(DependencyConsumer consumer, DependencyType type) {
-        tasks.add(() -> consumer.consume(type));
+        if (concurrentPropagator != null && consumer instanceof DependencyNodeToNodeTransition) {
+            concurrentPropagator.schedule((DependencyNodeToNodeTransition) consumer, type);
+            return;
+        }
+        if (batchedPropagation) {
+            getPendingTypes(consumer).set(type.index);
+            return;
+        }
+        ++propagationTaskCount;
+        tasks.add(() -> {
+            ++propagatedTypeCount;
+            consumer.consume(type);
+        });
     }
 
     void schedulePropagation(DependencyConsumer consumer, DependencyType[] types) {
+        if (concurrentPropagator != null && consumer instanceof DependencyNodeToNodeTransition) {
+            for (DependencyType type : types) {
+                concurrentPropagator.schedule((DependencyNodeToNodeTransition) consumer, type);
+            }
+            return;
+        }
+        if (batchedPropagation) {
+            BitSet pending = getPendingTypes(consumer);
+            for (DependencyType type : types) {
+                pending.set(type.index);
+            }
+            return;
+        }
+        ++propagationTaskCount;
         tasks.add(() -> {
+            propagatedTypeCount += types.length;
             for (DependencyType type : types) {
                 consumer.consume(type);
             }
         });
     }
 
+    private BitSet getPendingTypes(DependencyConsumer consumer) {
+        BitSet pending = pendingTypes.get(consumer);
+        if (pending == null) {
+            pending = new BitSet();
+            pendingTypes.put(consumer, pending);
+            ++propagationTaskCount;
+            tasks.add(() -> deliverPendingTypes(consumer));
+        }
+        return pending;
+    }
+
+    private void deliverPendingTypes(DependencyConsumer consumer) {
+        BitSet pending = pendingTypes.remove(consumer);
+        for (int index = pending.nextSetBit(0); index >= 0; index = pending.nextSetBit(index + 1)) {
+            ++propagatedTypeCount;
+            consumer.consume(types.get(index));
+        }
+    }
+
+    void scheduleSequentially(Runnable task) {
+        tasks.add(task);
+    }
+
     private Set<String> classesAddedByRoot = new HashSet<>();
 
     public ClassDependency linkClass(String className, CallLocation callLocation) {
@@ -494,14 +601,23 @@ public class DependencyChecker implements DependencyInfo {
             return;
         }
         int index = 0;
-        while (!tasks.isEmpty()) {
-            tasks.poll().run();
-            if (++index == 100) {
-                if (interruptor != null && !interruptor.shouldContinue()) {
-                    interrupted = true;
-                    break;
+        while (true) {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+                if (++index == 100) {
+                    if (interruptor != null && !interruptor.shouldContinue()) {
+                        interrupted = true;
+                        return;
+                    }
+                    index = 0;
                 }
-                index = 0;
+            }
+            if (concurrentPropagator == null || !concurrentPropagator.hasPendingWork()) {
+                break;
+            }
+            if (!concurrentPropagator.propagate(interruptor)) {
+                interrupted = true;
+                return;
             }
         }
     }
@@ -512,12 +628,32 @@ public class DependencyChecker implements DependencyInfo {
         if (!interrupted) {
             completing = true;
             lock();
+            compactNodes();
             for (DependencyListener listener : listeners) {
                 listener.completing(agent);
             }
         }
     }
 
+    private void compactNodes() {
+        DependencyTypeSetPool pool = new DependencyTypeSetPool();
+        for (DependencyNode node : nodes) {
+            node.compact(pool);
+        }
+    }
+
+    /**
+     * Estimates memory occupied by the dependency graph. Typically called after
+     * {@link #processDependencies()}, when type sets are already compacted.
+     */
+    public DependencyHeapReport getHeapReport() {
+        DependencyHeapReport report = new DependencyHeapReport();
+        for (DependencyNode node : nodes) {
+            node.collectStatistics(report);
+        }
+        return report;
+    }
+
     private void lock() {
         for (MethodReference method : getReachableMethods()) {
             lock(getMethod(method), true);
@@ -558,6 +694,26 @@ public class DependencyChecker implements DependencyInfo {
         return callGraph;
     }
 
+    /**
+     * <p>Gets methods that were linked outside of any method, i.e. by the host or by plugins.
+     * References to these methods are not represented in the call graph.</p>
+     *
+     * @return methods linked without call location.
+     */
+    public Set<MethodReference> getRootMethods() {
+        return Collections.unmodifiableSet(methodsAddedByRoot);
+    }
+
+    /**
+     * <p>Gets classes that were linked outside of any method, i.e. by the host, by plugins, or as
+     * superclasses and interfaces of other classes.</p>
+     *
+     * @return classes linked without call location.
+     */
+    public Set<String> getRootClasses() {
+        return Collections.unmodifiableSet(classesAddedByRoot);
+    }
+
     public void addBootstrapMethodSubstitutor(MethodReference method, BootstrapMethodSubstitutor substitutor) {
         bootstrapMethodSubstitutors.put(method, substitutor);
     }
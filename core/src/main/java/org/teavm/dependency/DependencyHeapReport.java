@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.dependency;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * <p>Estimates how much heap is occupied by nodes of a dependency graph. Sizes are approximate and assume
+ * a 64-bit JVM with compressed references.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class DependencyHeapReport {
+    private static final int NODE_BYTES = 64;
+    private Set<Object> seenTypeStorage = Collections.newSetFromMap(new IdentityHashMap<>());
+    int nodeCount;
+    int smallTypeSetCount;
+    int bitTypeSetCount;
+    int distinctTypeSetCount;
+    long typeSetBytes;
+    long followerCount;
+    long followerBytes;
+
+    DependencyHeapReport() {
+    }
+
+    static long arrayBytes(int length, int elementSize) {
+        return (16 + (long) length * elementSize + 7) & ~7L;
+    }
+
+    void addTypeStorage(Object storage, long bytes) {
+        if (seenTypeStorage.add(storage)) {
+            distinctTypeSetCount++;
+            typeSetBytes += bytes;
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getSmallTypeSetCount() {
+        return smallTypeSetCount;
+    }
+
+    public int getBitTypeSetCount() {
+        return bitTypeSetCount;
+    }
+
+    public int getDistinctTypeSetCount() {
+        return distinctTypeSetCount;
+    }
+
+    public long getTypeSetBytes() {
+        return typeSetBytes;
+    }
+
+    public long getFollowerCount() {
+        return followerCount;
+    }
+
+    public long getFollowerBytes() {
+        return followerBytes;
+    }
+
+    public long getTotalBytes() {
+        return (long) nodeCount * NODE_BYTES + typeSetBytes + followerBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Dependency graph: " + nodeCount + " nodes, "
+                + (smallTypeSetCount + bitTypeSetCount) + " type sets (" + smallTypeSetCount + " arrays, "
+                + bitTypeSetCount + " bit sets, " + distinctTypeSetCount + " distinct) taking "
+                + typeSetBytes / 1024 + " KB, " + followerCount + " edges taking " + followerBytes / 1024
+                + " KB, about " + getTotalBytes() / 1024 + " KB in total";
+    }
+}
@@ -19,11 +19,14 @@ import java.util.*;
 import org.teavm.model.MethodReference;
 
 public class DependencyNode implements ValueDependencyInfo {
+    private static final int MAX_SMALL_TYPES = 256;
     private DependencyChecker dependencyChecker;
-    private List<DependencyConsumer> followers;
+    private DependencyConsumer[] followers;
+    private int followerCount;
     private int[] smallTypes;
+    private int smallTypeCount;
     private BitSet types;
-    private List<DependencyNodeToNodeTransition> transitions;
+    private boolean typesShared;
     private volatile String tag;
     private DependencyNode arrayItemNode;
     private DependencyNode classValueNode;
@@ -41,46 +44,61 @@ public class DependencyNode implements ValueDependencyInfo {
     }
 
     private boolean addType(DependencyType type) {
-        if (types == null) {
-            if (smallTypes == null) {
-                if (locked) {
-                    throw new IllegalStateException("Error propagating type " + type.getName()
-                            + " to node in " + method);
-                }
-                smallTypes = new int[] { type.index };
-                return true;
-            }
-        }
-        if (smallTypes != null) {
-            for (int i = 0; i < smallTypes.length; ++i) {
-                if (smallTypes[i] == type.index) {
-                    return false;
-                }
+        if (types != null) {
+            if (types.get(type.index)) {
+                return false;
             }
-            if (smallTypes.length == 5) {
-                types = new BitSet();
-                for (int existingType : smallTypes) {
-                    types.set(existingType);
-                }
-                smallTypes = null;
-            } else {
-                if (locked) {
-                    throw new IllegalStateException("Error propagating type " + type.getName() + " to node in method "
-                            + method);
-                }
-                smallTypes = Arrays.copyOf(smallTypes, smallTypes.length + 1);
-                smallTypes[smallTypes.length - 1] = type.index;
-                return true;
+            checkUnlocked(type);
+            if (typesShared) {
+                types = (BitSet) types.clone();
+                typesShared = false;
             }
+            types.set(type.index);
+            return true;
+        }
+
+        int position = smallTypes != null ? Arrays.binarySearch(smallTypes, 0, smallTypeCount, type.index) : -1;
+        if (position >= 0) {
+            return false;
+        }
+        checkUnlocked(type);
+        position = -position - 1;
+        if (smallTypes == null) {
+            smallTypes = new int[] { type.index };
+            smallTypeCount = 1;
+            return true;
         }
-        if (!types.get(type.index)) {
-            if (locked) {
-                throw new IllegalStateException("Error propagating type " + type.getName() + " to node " + tag);
+
+        // The same rule as in roaring bitmaps: keep sorted array until it becomes larger than a bitmap
+        int maxIndex = Math.max(smallTypes[smallTypeCount - 1], type.index);
+        int bitSetWords = (maxIndex >> 6) + 1;
+        if (smallTypeCount == MAX_SMALL_TYPES || smallTypeCount + 1 > bitSetWords * 2) {
+            types = new BitSet(maxIndex + 1);
+            for (int i = 0; i < smallTypeCount; ++i) {
+                types.set(smallTypes[i]);
             }
             types.set(type.index);
+            smallTypes = null;
+            smallTypeCount = 0;
+            typesShared = false;
             return true;
         }
-        return false;
+
+        if (typesShared || smallTypeCount == smallTypes.length) {
+            smallTypes = Arrays.copyOf(smallTypes, Math.min(MAX_SMALL_TYPES, smallTypeCount * 2));
+            typesShared = false;
+        }
+        System.arraycopy(smallTypes, position, smallTypes, position + 1, smallTypeCount - position);
+        smallTypes[position] = type.index;
+        ++smallTypeCount;
+        return true;
+    }
+
+    private void checkUnlocked(DependencyType type) {
+        if (locked) {
+            throw new IllegalStateException("Error propagating type " + type.getName() + " to node "
+                    + (tag != null ? tag : "in method " + method));
+        }
     }
 
     public void propagate(DependencyType type) {
@@ -91,14 +109,29 @@ public class DependencyNode implements ValueDependencyInfo {
             return;
         }
         if (addType(type)) {
-            if (DependencyChecker.shouldLog) {
-                System.out.println(tag + " -> " + type.getName());
-            }
-            if (followers != null) {
-                for (DependencyConsumer consumer : followers.toArray(new DependencyConsumer[followers.size()])) {
-                    dependencyChecker.schedulePropagation(consumer, type);
-                }
-            }
+            notifyFollowers(type);
+        }
+    }
+
+    boolean addTypeConcurrently(DependencyType type) {
+        if (degree > 2) {
+            return false;
+        }
+        synchronized (this) {
+            return addType(type);
+        }
+    }
+
+    void notifyFollowers(DependencyType type) {
+        if (DependencyChecker.shouldLog) {
+            System.out.println(tag + " -> " + type.getName());
+        }
+
+        // Followers are only appended, and the array is replaced on growth, so this is a consistent snapshot
+        DependencyConsumer[] followers = this.followers;
+        int followerCount = this.followerCount;
+        for (int i = 0; i < followerCount; ++i) {
+            dependencyChecker.schedulePropagation(followers[i], type);
         }
     }
 
@@ -122,22 +155,29 @@ public class DependencyNode implements ValueDependencyInfo {
                 System.out.println(tag + " -> " + types[i].getName());
             }
         }
-        if (followers != null) {
+        if (followerCount > 0) {
             types = Arrays.copyOf(types, j);
-            for (DependencyConsumer consumer : followers.toArray(new DependencyConsumer[followers.size()])) {
-                dependencyChecker.schedulePropagation(consumer, types);
+            DependencyConsumer[] followers = this.followers;
+            int followerCount = this.followerCount;
+            for (int i = 0; i < followerCount; ++i) {
+                dependencyChecker.schedulePropagation(followers[i], types);
             }
         }
     }
 
     public void addConsumer(DependencyConsumer consumer) {
-        if (followers == null) {
-            followers = new ArrayList<>();
+        for (int i = 0; i < followerCount; ++i) {
+            if (followers[i].equals(consumer)) {
+                return;
+            }
         }
-        if (followers.contains(consumer)) {
-            return;
+        if (followers == null) {
+            followers = new DependencyConsumer[2];
+        } else if (followerCount == followers.length) {
+            followers = Arrays.copyOf(followers, followerCount * 2);
         }
-        followers.add(consumer);
+        followers[followerCount++] = consumer;
+
         if (this.types != null) {
             List<DependencyType> types = new ArrayList<>();
             for (int index = this.types.nextSetBit(0); index >= 0; index = this.types.nextSetBit(index + 1)) {
@@ -145,7 +185,7 @@ public class DependencyNode implements ValueDependencyInfo {
             }
             dependencyChecker.schedulePropagation(consumer, types.toArray(new DependencyType[types.size()]));
         } else if (this.smallTypes != null) {
-            DependencyType[] types = new DependencyType[smallTypes.length];
+            DependencyType[] types = new DependencyType[smallTypeCount];
             for (int i = 0; i < types.length; ++i) {
                 types[i] = dependencyChecker.types.get(smallTypes[i]);
             }
@@ -160,19 +200,14 @@ public class DependencyNode implements ValueDependencyInfo {
         if (node == null) {
             throw new IllegalArgumentException("Node must not be null");
         }
-        if (transitions != null) {
-            for (DependencyNodeToNodeTransition transition : transitions) {
-                if (transition.destination == node) {
-                    return;
-                }
+        for (int i = 0; i < followerCount; ++i) {
+            DependencyConsumer follower = followers[i];
+            if (follower instanceof DependencyNodeToNodeTransition
+                    && ((DependencyNodeToNodeTransition) follower).destination == node) {
+                return;
             }
         }
         DependencyNodeToNodeTransition transition = new DependencyNodeToNodeTransition(this, node, filter);
-        if (transitions == null) {
-            transitions = new ArrayList<>();
-        }
-
-        transitions.add(transition);
         if (DependencyChecker.shouldLog) {
             System.out.println("Connecting " + tag + " to " + node.tag);
         }
@@ -215,12 +250,7 @@ public class DependencyNode implements ValueDependencyInfo {
 
     public boolean hasType(DependencyType type) {
         if (smallTypes != null) {
-            for (int i = 0; i < smallTypes.length; ++i) {
-                if (smallTypes[i] == type.index) {
-                    return true;
-                }
-            }
-            return false;
+            return Arrays.binarySearch(smallTypes, 0, smallTypeCount, type.index) >= 0;
         }
         return types != null && type.getDependencyChecker() == dependencyChecker && types.get(type.index);
     }
@@ -233,7 +263,7 @@ public class DependencyNode implements ValueDependencyInfo {
     @Override
     public String[] getTypes() {
         if (smallTypes != null) {
-            String[] result = new String[smallTypes.length];
+            String[] result = new String[smallTypeCount];
             for (int i = 0; i < result.length; ++i) {
                 result[i] = dependencyChecker.types.get(smallTypes[i]).getName();
             }
@@ -249,6 +279,42 @@ public class DependencyNode implements ValueDependencyInfo {
         return result.toArray(new String[result.size()]);
     }
 
+    /**
+     * Releases unused capacity and replaces type set with an equal one from the given pool,
+     * so that nodes with equal type sets share the same storage. Shared storage is copied on the next
+     * modification of the node.
+     */
+    void compact(DependencyTypeSetPool pool) {
+        if (followers != null && followers.length > followerCount) {
+            followers = Arrays.copyOf(followers, followerCount);
+        }
+        if (smallTypes != null) {
+            if (!typesShared && smallTypes.length > smallTypeCount) {
+                smallTypes = Arrays.copyOf(smallTypes, smallTypeCount);
+            }
+            smallTypes = pool.share(smallTypes);
+            typesShared = true;
+        } else if (types != null) {
+            types = pool.share(types);
+            typesShared = true;
+        }
+    }
+
+    void collectStatistics(DependencyHeapReport report) {
+        report.nodeCount++;
+        report.followerCount += followerCount;
+        if (followers != null) {
+            report.followerBytes += DependencyHeapReport.arrayBytes(followers.length, 4);
+        }
+        if (smallTypes != null) {
+            report.smallTypeSetCount++;
+            report.addTypeStorage(smallTypes, DependencyHeapReport.arrayBytes(smallTypes.length, 4));
+        } else if (types != null) {
+            report.bitTypeSetCount++;
+            report.addTypeStorage(types, 16 + DependencyHeapReport.arrayBytes(types.size() / 64, 8));
+        }
+    }
+
     public String getTag() {
         return tag;
     }
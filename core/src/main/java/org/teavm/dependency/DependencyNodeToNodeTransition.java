@@ -43,4 +43,8 @@ class DependencyNodeToNodeTransition implements DependencyConsumer {
             destination.propagate(type);
         }
     }
+
+    boolean isPure(DependencyType type) {
+        return filter == null && !type.getName().startsWith("[") && !type.getName().equals("java.lang.Class");
+    }
 }
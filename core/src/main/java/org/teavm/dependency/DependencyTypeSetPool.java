@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.dependency;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Interns type sets of dependency nodes, so that nodes with equal type sets refer to the same storage.</p>
+ *
+ * @author Alexey Andreev
+ */
+class DependencyTypeSetPool {
+    private Map<BitSet, BitSet> bitSets = new HashMap<>();
+    private Map<SmallTypeSet, int[]> smallTypeSets = new HashMap<>();
+
+    BitSet share(BitSet types) {
+        BitSet existing = bitSets.putIfAbsent(types, types);
+        return existing != null ? existing : types;
+    }
+
+    int[] share(int[] types) {
+        int[] existing = smallTypeSets.putIfAbsent(new SmallTypeSet(types), types);
+        return existing != null ? existing : types;
+    }
+
+    private static class SmallTypeSet {
+        final int[] types;
+        final int hash;
+
+        SmallTypeSet(int[] types) {
+            this.types = types;
+            this.hash = Arrays.hashCode(types);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SmallTypeSet)) {
+                return false;
+            }
+            SmallTypeSet other = (SmallTypeSet) obj;
+            return hash == other.hash && Arrays.equals(types, other.types);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.javascript;
+
+/**
+ * <p>Describes how Java arrays of primitive types are represented in generated JavaScript.</p>
+ *
+ * @author Alexey Andreev
+ */
+public enum ArrayRepresentation {
+    /**
+     * <p>Each array is an object which keeps its elements in the <code>data</code> field. Numeric elements are
+     * stored in a typed array when the engine supports them.</p>
+     */
+    WRAPPED,
+
+    /**
+     * <p>Each array of a primitive type is a typed array itself, with class metadata available through its
+     * prototype, so that element access needs no indirection. Arrays of <code>long</code> are either
+     * <code>BigInt64Array</code>, when {@link LongRepresentation#BIG_INT} is used, or a pair of
+     * <code>Int32Array</code> with low and high halves. Arrays of objects are wrapped as before.
+     * Requires an engine that supports <code>Reflect.construct</code>.</p>
+     */
+    TYPED
+}
@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.javascript;
+
+/**
+ * <p>Describes how Java <code>long</code> values are represented in generated JavaScript.</p>
+ *
+ * @author Alexey Andreev
+ */
+public enum LongRepresentation {
+    /**
+     * <p>Each value is an immutable <code>Long</code> object with two 32-bit halves. Arithmetic is emulated
+     * by functions from <code>runtime.js</code>. Works in any JavaScript engine.</p>
+     */
+    OBJECT,
+
+    /**
+     * <p>Each value is a native <code>BigInt</code>, wrapped to 64 bits after every arithmetic operation.
+     * Requires an engine that supports <code>BigInt</code>.</p>
+     */
+    BIG_INT
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.javascript;
+
+import org.teavm.cache.NoCache;
+import org.teavm.diagnostics.Diagnostics;
+import org.teavm.model.AnnotationHolder;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderTransformer;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.FieldReference;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.emit.ProgramEmitter;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.optimization.UnreachableBasicBlockEliminator;
+
+/**
+ * <p>Chooses representation of <code>java.lang.String</code> at build time. The class library checks
+ * representation by calling <code>String.isNativeRepresentation()</code>. This transformer replaces every such
+ * call with a constant and removes branches of the representation that is not chosen, so that code and fields
+ * of the other representation never reach the dependency checker. This happens in both modes, so the default
+ * {@link StringRepresentation#CHAR_ARRAY} output pays nothing for the native one.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class NativeStringTransformer implements ClassHolderTransformer {
+    public static final MethodDescriptor IS_NATIVE_REPRESENTATION = new MethodDescriptor("isNativeRepresentation",
+            boolean.class);
+    public static final FieldReference NATIVE_STRING = new FieldReference(String.class.getName(), "nativeString");
+    private static final MethodReference IS_NATIVE_REPRESENTATION_REF = new MethodReference(
+            String.class.getName(), IS_NATIVE_REPRESENTATION);
+    private final boolean nativeStrings;
+
+    public NativeStringTransformer(boolean nativeStrings) {
+        this.nativeStrings = nativeStrings;
+    }
+
+    @Override
+    public void transformClass(ClassHolder cls, ClassReaderSource innerSource, Diagnostics diagnostics) {
+        for (MethodHolder method : cls.getMethods()) {
+            if (method.getProgram() == null) {
+                continue;
+            }
+            if (method.getReference().equals(IS_NATIVE_REPRESENTATION_REF)) {
+                ProgramEmitter pe = ProgramEmitter.create(method, innerSource);
+                pe.constant(nativeStrings ? 1 : 0).returnValue();
+            } else if (!foldRepresentationChecks(method.getProgram())) {
+                continue;
+            }
+            // Result depends on build options, so it must not be reused by another build
+            if (method.getAnnotations().get(NoCache.class.getName()) == null) {
+                method.getAnnotations().add(new AnnotationHolder(NoCache.class.getName()));
+            }
+        }
+    }
+
+    private boolean foldRepresentationChecks(Program program) {
+        boolean[] constants = new boolean[program.variableCount()];
+        boolean changed = false;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (int j = 0; j < block.getInstructions().size(); ++j) {
+                Instruction insn = block.getInstructions().get(j);
+                if (!(insn instanceof InvokeInstruction)
+                        || !((InvokeInstruction) insn).getMethod().equals(IS_NATIVE_REPRESENTATION_REF)) {
+                    continue;
+                }
+                Variable receiver = ((InvokeInstruction) insn).getReceiver();
+                Instruction replacement;
+                if (receiver != null) {
+                    IntegerConstantInstruction constant = new IntegerConstantInstruction();
+                    constant.setConstant(nativeStrings ? 1 : 0);
+                    constant.setReceiver(receiver);
+                    constants[receiver.getIndex()] = true;
+                    replacement = constant;
+                } else {
+                    replacement = new EmptyInstruction();
+                }
+                replacement.setLocation(insn.getLocation());
+                block.getInstructions().set(j, replacement);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return false;
+        }
+
+        boolean branchesFolded = false;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            Instruction last = block.getLastInstruction();
+            if (!(last instanceof BranchingInstruction)) {
+                continue;
+            }
+            BranchingInstruction branching = (BranchingInstruction) last;
+            if (!constants[branching.getOperand().getIndex()]) {
+                continue;
+            }
+            boolean taken;
+            switch (branching.getCondition()) {
+                case EQUAL:
+                    taken = !nativeStrings;
+                    break;
+                case NOT_EQUAL:
+                    taken = nativeStrings;
+                    break;
+                default:
+                    continue;
+            }
+            BasicBlock target = taken ? branching.getConsequent() : branching.getAlternative();
+            BasicBlock skipped = taken ? branching.getAlternative() : branching.getConsequent();
+            if (skipped != target) {
+                skipped.removeIncomingsFrom(block);
+            }
+            JumpInstruction jump = new JumpInstruction();
+            jump.setTarget(target);
+            jump.setLocation(branching.getLocation());
+            block.getInstructions().set(block.getInstructions().size() - 1, jump);
+            branchesFolded = true;
+        }
+        if (branchesFolded) {
+            new UnreachableBasicBlockEliminator().optimize(program);
+        }
+        return true;
+    }
+}
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import org.teavm.codegen.NamingException;
 import org.teavm.codegen.NamingOrderer;
 import org.teavm.codegen.NamingStrategy;
@@ -98,18 +99,27 @@ import org.teavm.model.MethodHolder;
 import org.teavm.model.MethodReader;
 import org.teavm.model.MethodReference;
 import org.teavm.model.ValueType;
+import org.teavm.model.instructions.ArrayElementType;
 
 public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext {
     private static final String variableNames = "abcdefghijkmnopqrstuvwxyz";
     private static final String variablePartNames = "abcdefghijkmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
     private final NamingStrategy naming;
-    private final SourceWriter writer;
+    private SourceWriter writer;
     private final ListableClassHolderSource classSource;
     private final ClassLoader classLoader;
     private boolean minifying;
+    private LongRepresentation longRepresentation = LongRepresentation.OBJECT;
+    private ArrayRepresentation arrayRepresentation = ArrayRepresentation.WRAPPED;
+    private StringRepresentation stringRepresentation = StringRepresentation.CHAR_ARRAY;
+    private boolean lazyStringPool;
+    private boolean lazyMetadata;
     private final Map<MethodReference, InjectorHolder> injectorMap = new HashMap<>();
     private final Map<String, Integer> stringPoolMap = new HashMap<>();
     private final List<String> stringPool = new ArrayList<>();
+    private int coreStringCount = -1;
+    private Set<Integer> chunkStrings;
+    private final Map<String, Integer> chunkTriggers = new HashMap<>();
     private final Properties properties = new Properties();
     private final ServiceRepository services;
     private DebugInformationEmitter debugEmitter = new DummyDebugInformationEmitter();
@@ -179,6 +189,60 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
         this.minifying = minifying;
     }
 
+    public LongRepresentation getLongRepresentation() {
+        return longRepresentation;
+    }
+
+    public void setLongRepresentation(LongRepresentation longRepresentation) {
+        this.longRepresentation = longRepresentation;
+    }
+
+    public ArrayRepresentation getArrayRepresentation() {
+        return arrayRepresentation;
+    }
+
+    public void setArrayRepresentation(ArrayRepresentation arrayRepresentation) {
+        this.arrayRepresentation = arrayRepresentation;
+    }
+
+    public StringRepresentation getStringRepresentation() {
+        return stringRepresentation;
+    }
+
+    public void setStringRepresentation(StringRepresentation stringRepresentation) {
+        this.stringRepresentation = stringRepresentation;
+    }
+
+    public boolean isLazyStringPool() {
+        return lazyStringPool;
+    }
+
+    /**
+     * <p>Specifies whether string constants are converted into Java strings on first access
+     * rather than all at once at startup.</p>
+     *
+     * @param lazyStringPool whether the string pool is lazy.
+     */
+    public void setLazyStringPool(boolean lazyStringPool) {
+        this.lazyStringPool = lazyStringPool;
+    }
+
+    public boolean isLazyMetadata() {
+        return lazyMetadata;
+    }
+
+    /**
+     * <p>Specifies whether class metadata is created on first access instead of at startup. In this mode
+     * prototype chains, virtual methods and class initialization stubs are rendered as plain statements,
+     * and <code>$rt_lazyMetadata</code> only records data which is needed to build <code>$meta</code>
+     * of a class.</p>
+     *
+     * @param lazyMetadata whether class metadata is lazy.
+     */
+    public void setLazyMetadata(boolean lazyMetadata) {
+        this.lazyMetadata = lazyMetadata;
+    }
+
     @Override
     public ListableClassHolderSource getClassSource() {
         return classSource;
@@ -209,12 +273,25 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
         this.properties.putAll(properties);
     }
 
+    /**
+     * <p>Makes initializer of the given class load a code chunk before running. The class should have
+     * a static initializer.</p>
+     *
+     * @param className class which triggers loading of the chunk.
+     * @param chunkIndex index of the chunk, as passed to <code>$rt_chunks</code>.
+     */
+    public void addChunkTrigger(String className, int chunkIndex) {
+        chunkTriggers.put(className, chunkIndex);
+    }
+
     public void renderStringPool() throws RenderingException {
-        if (stringPool.isEmpty()) {
+        coreStringCount = stringPool.size();
+        if (stringPool.isEmpty() && !lazyStringPool) {
             return;
         }
         try {
-            writer.append("$rt_stringPool([");
+            // Lazy pool is declared even when empty, since it makes chunks append their strings lazily as well
+            writer.append(lazyStringPool ? "$rt_lazyStringPool([" : "$rt_stringPool([");
             for (int i = 0; i < stringPool.size(); ++i) {
                 if (i > 0) {
                     writer.append(',').ws();
@@ -236,6 +313,13 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
             renderRuntimeNullCheck();
             renderRuntimeIntern();
             renderRuntimeThreads();
+            if (longRepresentation == LongRepresentation.BIG_INT) {
+                renderRuntimeBigIntLongs();
+            }
+            if (arrayRepresentation == ArrayRepresentation.TYPED) {
+                writer.append("$rt_useTypedArrays(").append(longRepresentation == LongRepresentation.BIG_INT
+                        ? "true" : "false").append(");").newLine();
+            }
         } catch (NamingException e) {
             throw new RenderingException("Error rendering runtime methods. See a cause for details", e);
         } catch (IOException e) {
@@ -253,33 +337,90 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
     }
 
     private void renderRuntimeString() throws IOException {
-        MethodReference stringCons = new MethodReference(String.class, "<init>", char[].class, void.class);
         writer.append("function $rt_str(str) {").indent().softNewLine();
         writer.append("if (str===null){").indent().softNewLine();
         writer.append("return null;").softNewLine();
         writer.outdent().append("}").softNewLine();
-        writer.append("var characters = $rt_createCharArray(str.length);").softNewLine();
-        writer.append("var charsBuffer = characters.data;").softNewLine();
-        writer.append("for (var i = 0; i < str.length; i = (i + 1) | 0) {").indent().softNewLine();
-        writer.append("charsBuffer[i] = str.charCodeAt(i) & 0xFFFF;").softNewLine();
-        writer.outdent().append("}").softNewLine();
-        writer.append("return ").append(naming.getNameForInit(stringCons)).append("(characters);").softNewLine();
+        if (stringRepresentation == StringRepresentation.NATIVE) {
+            writer.append("var result = new ").appendClass("java.lang.String").append("();").softNewLine();
+            writer.append("result.").appendField(NativeStringTransformer.NATIVE_STRING).append(" = str;")
+                    .softNewLine();
+            writer.append("return result;").softNewLine();
+        } else {
+            MethodReference stringCons = new MethodReference(String.class, "<init>", char[].class, void.class);
+            writer.append("var characters = $rt_createCharArray(str.length);").softNewLine();
+            writer.append("var charsBuffer = characters.data;").softNewLine();
+            writer.append("for (var i = 0; i < str.length; i = (i + 1) | 0) {").indent().softNewLine();
+            writer.append("charsBuffer[i] = str.charCodeAt(i) & 0xFFFF;").softNewLine();
+            writer.outdent().append("}").softNewLine();
+            writer.append("return ").append(naming.getNameForInit(stringCons)).append("(characters);")
+                    .softNewLine();
+        }
         writer.outdent().append("}").newLine();
     }
 
+    private void renderRuntimeBigIntLongs() throws IOException {
+        // Replaces functions of Long emulation from runtime.js, so that generators and runtime
+        // functions that work with long values don't depend on representation
+        writer.append("Long_ZERO").ws().append('=').ws().append("0n;").softNewLine();
+        renderBigIntFunction("Long_fromInt", "a", "BigInt(a)");
+        renderBigIntFunction("Long_fromNumber", "a", "a !== a ? 0n : a >= 9223372036854775807 "
+                + "? 9223372036854775807n : a <= -9223372036854775808 ? -9223372036854775808n "
+                + ": BigInt(Math.trunc(a))");
+        renderBigIntFunction("Long_toNumber", "a", "Number(a)");
+        renderBigIntFunction("Long_add", "a, b", "BigInt.asIntN(64, a + b)");
+        renderBigIntFunction("Long_sub", "a, b", "BigInt.asIntN(64, a - b)");
+        renderBigIntFunction("Long_mul", "a, b", "BigInt.asIntN(64, a * b)");
+        renderBigIntDivision("Long_div", "BigInt.asIntN(64, a / b)");
+        renderBigIntDivision("Long_rem", "a % b");
+        renderBigIntFunction("Long_inc", "a", "BigInt.asIntN(64, a + 1n)");
+        renderBigIntFunction("Long_dec", "a", "BigInt.asIntN(64, a - 1n)");
+        renderBigIntFunction("Long_neg", "a", "BigInt.asIntN(64, -a)");
+        renderBigIntFunction("Long_not", "a", "~a");
+        renderBigIntFunction("Long_and", "a, b", "a & b");
+        renderBigIntFunction("Long_or", "a, b", "a | b");
+        renderBigIntFunction("Long_xor", "a, b", "a ^ b");
+        renderBigIntFunction("Long_shl", "a, b", "BigInt.asIntN(64, a << BigInt(b & 63))");
+        renderBigIntFunction("Long_shr", "a, b", "a >> BigInt(b & 63)");
+        renderBigIntFunction("Long_shru", "a, b", "BigInt.asIntN(64, BigInt.asUintN(64, a) >> BigInt(b & 63))");
+        renderBigIntFunction("Long_compare", "a, b", "a < b ? -1 : a > b ? 1 : 0");
+        renderBigIntFunction("Long_isPositive", "a", "a >= 0n");
+        renderBigIntFunction("Long_isNegative", "a", "a < 0n");
+        renderBigIntFunction("Long_hashCode", "a", "Number(BigInt.asIntN(32, a ^ (a >> 32n)))");
+    }
+
+    private void renderBigIntFunction(String name, String parameters, String body) throws IOException {
+        writer.append(name).ws().append('=').ws().append("function(").append(parameters).append(")").ws()
+                .append("{").indent().softNewLine();
+        writer.append("return ").append(body).append(";").softNewLine();
+        writer.outdent().append("};").newLine();
+    }
+
+    private void renderBigIntDivision(String name, String body) throws IOException {
+        // BigInt division by zero throws RangeError, Java code expects ArithmeticException instead
+        writer.append(name).ws().append('=').ws().append("function(a, b)").ws().append("{").indent().softNewLine();
+        writer.append("if (b === 0n) {").indent().softNewLine();
+        writer.append("$rt_throw(").append(naming.getNameForInit(new MethodReference(ArithmeticException.class,
+                "<init>", void.class))).append("());").softNewLine();
+        writer.outdent().append("}").softNewLine();
+        writer.append("return ").append(body).append(";").softNewLine();
+        writer.outdent().append("};").newLine();
+    }
+
     private void renderRuntimeUnwrapString() throws IOException {
-        MethodReference stringLen = new MethodReference(String.class, "length", int.class);
-        MethodReference getChars = new MethodReference(String.class, "getChars", int.class, int.class,
-                char[].class, int.class, void.class);
         writer.append("function $rt_ustr(str) {").indent().softNewLine();
-        writer.append("var result = \"\";").softNewLine();
-        writer.append("var sz = ").appendMethodBody(stringLen).append("(str);").softNewLine();
-        writer.append("var array = $rt_createCharArray(sz);").softNewLine();
-        writer.appendMethodBody(getChars).append("(str, 0, sz, array, 0);").softNewLine();
-        writer.append("for (var i = 0; i < sz; i = (i + 1) | 0) {").indent().softNewLine();
-        writer.append("result += String.fromCharCode(array.data[i]);").softNewLine();
-        writer.outdent().append("}").softNewLine();
-        writer.append("return result;").softNewLine();
+        if (stringRepresentation == StringRepresentation.NATIVE) {
+            writer.append("return str !== null ? str.").appendField(NativeStringTransformer.NATIVE_STRING)
+                    .append(" : null;").softNewLine();
+        } else {
+            MethodReference stringLen = new MethodReference(String.class, "length", int.class);
+            MethodReference getChars = new MethodReference(String.class, "getChars", int.class, int.class,
+                    char[].class, int.class, void.class);
+            writer.append("var sz = ").appendMethodBody(stringLen).append("(str);").softNewLine();
+            writer.append("var array = $rt_createCharArray(sz);").softNewLine();
+            writer.appendMethodBody(getChars).append("(str, 0, sz, array, 0);").softNewLine();
+            writer.append("return $rt_charsToString(array.data, 0, sz);").softNewLine();
+        }
         writer.outdent().append("}").newLine();
     }
 
@@ -295,7 +436,7 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
 
     private void renderRuntimeIntern() throws IOException {
         writer.append("function $rt_intern(str) {").indent().softNewLine();
-        writer.append("return ").appendMethodBody(new MethodReference(String.class, "intern", String.class))
+        writer.append("return ").appendMethodBody(new MethodReference(String.class, "internLiteral", String.class))
             .append("(str);").softNewLine();
         writer.outdent().append("}").newLine();
     }
@@ -357,6 +498,51 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
         renderClassMetadata(classes);
     }
 
+    /**
+     * <p>Renders classes into a separate code chunk. Chunk declares its own classes and the strings they use
+     * and expects the main script with the remaining classes to be loaded already. Should be called after
+     * {@link #renderStringPool()}. Debug information is not produced for chunks.</p>
+     *
+     * @param chunkWriter where to render the chunk.
+     * @param classes classes to put into the chunk.
+     * @throws RenderingException when something went wrong during rendering.
+     */
+    public void renderChunk(SourceWriter chunkWriter, List<ClassNode> classes) throws RenderingException {
+        SourceWriter mainWriter = writer;
+        DebugInformationEmitter mainDebugEmitter = debugEmitter;
+        writer = chunkWriter;
+        debugEmitter = new DummyDebugInformationEmitter();
+        chunkStrings = new TreeSet<>();
+        try {
+            for (ClassNode cls : classes) {
+                renderDeclaration(cls);
+            }
+            for (ClassNode cls : classes) {
+                renderMethodBodies(cls);
+            }
+            renderClassMetadata(classes);
+            if (!chunkStrings.isEmpty()) {
+                writer.append("$rt_stringPoolAppend([");
+                boolean first = true;
+                for (int index : chunkStrings) {
+                    if (!first) {
+                        writer.append(',').ws();
+                    }
+                    first = false;
+                    writer.append(index).append(',').ws()
+                            .append('"').append(escapeString(stringPool.get(index))).append('"');
+                }
+                writer.append("]);").newLine();
+            }
+        } catch (IOException e) {
+            throw new RenderingException("IO error occured", e);
+        } finally {
+            writer = mainWriter;
+            debugEmitter = mainDebugEmitter;
+            chunkStrings = null;
+        }
+    }
+
     private void renderDeclaration(ClassNode cls) throws RenderingException {
         debugEmitter.addClass(cls.getName(), cls.getParentName());
         try {
@@ -430,11 +616,20 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
                 }
             }
 
+            if (needsClinit && lazyMetadata) {
+                for (MethodNode method : clinitMethods) {
+                    renderClinitStub(cls.getName(), naming.getFullNameFor(method.getReference()));
+                }
+            }
             if (needsClinit) {
                 writer.append("function ").appendClass(cls.getName()).append("_$callClinit()").ws()
                         .append("{").softNewLine().indent();
                 writer.appendClass(cls.getName()).append("_$callClinit").ws().append("=").ws()
                         .append("function(){};").newLine();
+                Integer chunkIndex = chunkTriggers.get(cls.getName());
+                if (chunkIndex != null) {
+                    writer.append("$rt_loadChunk(").append(chunkIndex).append(");").softNewLine();
+                }
                 for (MethodNode method : clinitMethods) {
                     renderBody(method, true);
                 }
@@ -464,7 +659,18 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
         debugEmitter.emitClass(null);
     }
 
+    private void renderClinitStub(String className, String name) throws IOException {
+        writer.append("function ").append(name).append("()").ws().append("{").softNewLine().indent();
+        writer.appendClass(className).append("_$callClinit();").softNewLine();
+        writer.append("return ").append(name).append(".apply(this,").ws().append("arguments);").softNewLine();
+        writer.outdent().append("}").newLine();
+    }
+
     private void renderClassMetadata(List<ClassNode> classes) {
+        if (lazyMetadata) {
+            renderLazyClassMetadata(classes);
+            return;
+        }
         try {
             writer.append("$rt_metadata([");
             boolean first = true;
@@ -539,6 +745,72 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
         }
     }
 
+    private void renderLazyClassMetadata(List<ClassNode> classes) {
+        try {
+            for (ClassNode cls : classes) {
+                writer.appendClass(cls.getName()).append(".prototype").ws().append("=").ws();
+                if (cls.getParentName() != null) {
+                    writer.append("Object.create(").appendClass(cls.getParentName()).append(".prototype);");
+                } else {
+                    writer.append("{};");
+                }
+                writer.softNewLine();
+                writer.appendClass(cls.getName()).append(".prototype.constructor").ws().append("=").ws()
+                        .appendClass(cls.getName()).append(";").softNewLine();
+                for (MethodNode method : cls.getMethods()) {
+                    if (method.getModifiers().contains(NodeModifier.STATIC)) {
+                        continue;
+                    }
+                    MethodReference ref = method.getReference();
+                    debugEmitter.emitMethod(ref.getDescriptor());
+                    writer.appendClass(cls.getName()).append(".prototype.").append(naming.getNameFor(
+                            ref.getDescriptor())).ws().append("=").ws();
+                    emitVirtualFunction(ref);
+                    writer.append(";").softNewLine();
+                    debugEmitter.emitMethod(null);
+                }
+            }
+
+            writer.append("$rt_lazyMetadata([");
+            boolean first = true;
+            for (ClassNode cls : classes) {
+                if (!first) {
+                    writer.append(',').softNewLine();
+                }
+                first = false;
+                writer.appendClass(cls.getName()).append(",").ws();
+                writer.append("\"").append(escapeString(cls.getName())).append("\",").ws();
+                if (cls.getParentName() != null) {
+                    writer.appendClass(cls.getParentName());
+                } else {
+                    writer.append("0");
+                }
+                writer.append(',').ws();
+                writer.append("[");
+                for (int i = 0; i < cls.getInterfaces().size(); ++i) {
+                    if (i > 0) {
+                        writer.append(",").ws();
+                    }
+                    writer.appendClass(cls.getInterfaces().get(i));
+                }
+                writer.append("],").ws();
+                writer.append(cls.getModifiers().contains(NodeModifier.ENUM) ? 1 : 0).append(',').ws();
+                MethodHolder clinit = classSource.get(cls.getName()).getMethod(
+                        new MethodDescriptor("<clinit>", ValueType.VOID));
+                if (clinit != null) {
+                    writer.appendClass(cls.getName()).append("_$callClinit");
+                } else {
+                    writer.append('0');
+                }
+            }
+            writer.append("]);").newLine();
+        } catch (NamingException e) {
+            throw new RenderingException("Error rendering class metadata. See a cause for details", e);
+        } catch (IOException e) {
+            throw new RenderingException("IO error occured", e);
+        }
+    }
+
     private static Object getDefaultValue(ValueType type) {
         if (type instanceof ValueType.Primitive) {
             ValueType.Primitive primitive = (ValueType.Primitive) type;
@@ -607,7 +879,12 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
     private void emitVirtualDeclaration(MethodReference ref) throws IOException {
         String methodName = naming.getNameFor(ref.getDescriptor());
         writer.append("\"").append(methodName).append("\"");
-        writer.append(",").ws().append("function(");
+        writer.append(",").ws();
+        emitVirtualFunction(ref);
+    }
+
+    private void emitVirtualFunction(MethodReference ref) throws IOException {
+        writer.append("function(");
         List<String> args = new ArrayList<>();
         for (int i = 1; i <= ref.parameterCount(); ++i) {
             args.add(variableName(i));
@@ -922,25 +1199,29 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
                 pushLocation(statement.getLocation());
             }
             prevCallSite = debugEmitter.emitCallSite();
-            if (statement.getLeftValue() != null) {
-                if (statement.isAsync()) {
-                    writer.append(tempVarName());
-                } else {
-                    precedence = Precedence.COMMA;
-                    statement.getLeftValue().acceptVisitor(this);
-                }
-                writer.ws().append("=").ws();
-            }
-            precedence = Precedence.COMMA;
-            statement.getRightValue().acceptVisitor(this);
-            debugEmitter.emitCallSite();
-            writer.append(";").softNewLine();
-            if (statement.isAsync()) {
-                emitSuspendChecker();
+            if (isPairedLongElement(statement.getLeftValue())) {
+                renderPairedLongElementAssignment(statement);
+            } else {
                 if (statement.getLeftValue() != null) {
-                    precedence = Precedence.COMMA;
-                    statement.getLeftValue().acceptVisitor(this);
-                    writer.ws().append("=").ws().append(tempVarName()).append(";").softNewLine();
+                    if (statement.isAsync()) {
+                        writer.append(tempVarName());
+                    } else {
+                        precedence = Precedence.COMMA;
+                        statement.getLeftValue().acceptVisitor(this);
+                    }
+                    writer.ws().append("=").ws();
+                }
+                precedence = Precedence.COMMA;
+                statement.getRightValue().acceptVisitor(this);
+                debugEmitter.emitCallSite();
+                writer.append(";").softNewLine();
+                if (statement.isAsync()) {
+                    emitSuspendChecker();
+                    if (statement.getLeftValue() != null) {
+                        precedence = Precedence.COMMA;
+                        statement.getLeftValue().acceptVisitor(this);
+                        writer.ws().append("=").ws().append(tempVarName()).append(";").softNewLine();
+                    }
                 }
             }
             if (statement.getLocation() != null) {
@@ -956,6 +1237,63 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
         }
     }
 
+    private boolean isPairedLongElement(Expr expr) {
+        return arrayRepresentation == ArrayRepresentation.TYPED && longRepresentation == LongRepresentation.OBJECT
+                && expr instanceof SubscriptExpr && ((SubscriptExpr) expr).getType() == ArrayElementType.LONG;
+    }
+
+    private static boolean isSimple(Expr expr) {
+        return expr instanceof VariableExpr || expr instanceof ConstantExpr;
+    }
+
+    private void renderPairedLongElementAssignment(AssignmentStatement statement) throws IOException {
+        SubscriptExpr target = (SubscriptExpr) statement.getLeftValue();
+        Expr value = statement.getRightValue();
+        if (statement.isAsync()) {
+            writer.append(tempVarName()).ws().append("=").ws();
+            precedence = Precedence.COMMA;
+            value.acceptVisitor(this);
+            debugEmitter.emitCallSite();
+            writer.append(";").softNewLine();
+            emitSuspendChecker();
+            writer.append("$rt_longArraySet(");
+            renderSubscriptOperands(target);
+            writer.append(",").ws().append(tempVarName()).append(");").softNewLine();
+        } else if (isSimple(target.getArray()) && isSimple(target.getIndex()) && value instanceof VariableExpr) {
+            renderPairedLongHalf(target, "lo");
+            writer.ws().append("=").ws().append(variableName(((VariableExpr) value).getIndex())).append(".lo;")
+                    .softNewLine();
+            renderPairedLongHalf(target, "hi");
+            writer.ws().append("=").ws().append(variableName(((VariableExpr) value).getIndex())).append(".hi;")
+                    .softNewLine();
+        } else {
+            writer.append("$rt_longArraySet(");
+            renderSubscriptOperands(target);
+            writer.append(",").ws();
+            precedence = Precedence.min();
+            value.acceptVisitor(this);
+            debugEmitter.emitCallSite();
+            writer.append(");").softNewLine();
+        }
+    }
+
+    private void renderPairedLongHalf(SubscriptExpr expr, String half) throws IOException {
+        precedence = Precedence.MEMBER_ACCESS;
+        expr.getArray().acceptVisitor(this);
+        writer.append('.').append(half).append('[');
+        precedence = Precedence.min();
+        expr.getIndex().acceptVisitor(this);
+        writer.append(']');
+    }
+
+    private void renderSubscriptOperands(SubscriptExpr expr) throws IOException {
+        precedence = Precedence.min();
+        expr.getArray().acceptVisitor(this);
+        writer.append(",").ws();
+        precedence = Precedence.min();
+        expr.getIndex().acceptVisitor(this);
+    }
+
     @Override
     public void visit(SequentialStatement statement) {
         visitStatements(statement.getSequence());
@@ -1403,6 +1741,74 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
         }
     }
 
+    private void visitLongBinary(BinaryExpr expr, String function, boolean wrap, String op,
+            Precedence operandPrecedence) {
+        if (longRepresentation != LongRepresentation.BIG_INT) {
+            visitBinaryFunction(expr, function);
+            return;
+        }
+        try {
+            if (expr.getLocation() != null) {
+                pushLocation(expr.getLocation());
+            }
+            if (wrap) {
+                writer.append("BigInt.asIntN(64,").ws();
+            } else {
+                writer.append('(');
+            }
+            precedence = operandPrecedence;
+            expr.getFirstOperand().acceptVisitor(this);
+            writer.ws().append(op).ws();
+            precedence = operandPrecedence.next();
+            expr.getSecondOperand().acceptVisitor(this);
+            writer.append(')');
+            if (expr.getLocation() != null) {
+                popLocation();
+            }
+        } catch (IOException e) {
+            throw new RenderingException("IO error occured", e);
+        }
+    }
+
+    private void visitLongShift(BinaryExpr expr, String function) {
+        if (longRepresentation != LongRepresentation.BIG_INT) {
+            visitBinaryFunction(expr, function);
+            return;
+        }
+        try {
+            if (expr.getLocation() != null) {
+                pushLocation(expr.getLocation());
+            }
+            switch (expr.getOperation()) {
+                case LEFT_SHIFT_LONG:
+                    writer.append("BigInt.asIntN(64,").ws();
+                    break;
+                case RIGHT_SHIFT_LONG:
+                    writer.append("(");
+                    break;
+                default:
+                    writer.append("BigInt.asIntN(64,").ws().append("BigInt.asUintN(64,").ws();
+                    break;
+            }
+            precedence = expr.getOperation() == BinaryOperation.UNSIGNED_RIGHT_SHIFT_LONG
+                    ? Precedence.min() : Precedence.BITWISE_SHIFT;
+            expr.getFirstOperand().acceptVisitor(this);
+            if (expr.getOperation() == BinaryOperation.UNSIGNED_RIGHT_SHIFT_LONG) {
+                writer.append(")");
+            }
+            writer.ws().append(expr.getOperation() == BinaryOperation.LEFT_SHIFT_LONG ? "<<" : ">>").ws()
+                    .append("BigInt(");
+            precedence = Precedence.BITWISE_AND.next();
+            expr.getSecondOperand().acceptVisitor(this);
+            writer.ws().append('&').ws().append("63))");
+            if (expr.getLocation() != null) {
+                popLocation();
+            }
+        } catch (IOException e) {
+            throw new RenderingException("IO error occured", e);
+        }
+    }
+
     @Override
     public void visit(BinaryExpr expr) {
         switch (expr.getOperation()) {
@@ -1410,19 +1816,19 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
                 visitBinary(expr, "+");
                 break;
             case ADD_LONG:
-                visitBinaryFunction(expr, "Long_add");
+                visitLongBinary(expr, "Long_add", true, "+", Precedence.ADDITION);
                 break;
             case SUBTRACT:
                 visitBinary(expr, "-");
                 break;
             case SUBTRACT_LONG:
-                visitBinaryFunction(expr, "Long_sub");
+                visitLongBinary(expr, "Long_sub", true, "-", Precedence.ADDITION);
                 break;
             case MULTIPLY:
                 visitBinary(expr, "*");
                 break;
             case MULTIPLY_LONG:
-                visitBinaryFunction(expr, "Long_mul");
+                visitLongBinary(expr, "Long_mul", true, "*", Precedence.MULTIPLICATION);
                 break;
             case DIVIDE:
                 visitBinary(expr, "/");
@@ -1476,37 +1882,37 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
                 visitBinary(expr, "|");
                 break;
             case BITWISE_OR_LONG:
-                visitBinaryFunction(expr, "Long_or");
+                visitLongBinary(expr, "Long_or", false, "|", Precedence.BITWISE_OR);
                 break;
             case BITWISE_AND:
                 visitBinary(expr, "&");
                 break;
             case BITWISE_AND_LONG:
-                visitBinaryFunction(expr, "Long_and");
+                visitLongBinary(expr, "Long_and", false, "&", Precedence.BITWISE_AND);
                 break;
             case BITWISE_XOR:
                 visitBinary(expr, "^");
                 break;
             case BITWISE_XOR_LONG:
-                visitBinaryFunction(expr, "Long_xor");
+                visitLongBinary(expr, "Long_xor", false, "^", Precedence.BITWISE_XOR);
                 break;
             case LEFT_SHIFT:
                 visitBinary(expr, "<<");
                 break;
             case LEFT_SHIFT_LONG:
-                visitBinaryFunction(expr, "Long_shl");
+                visitLongShift(expr, "Long_shl");
                 break;
             case RIGHT_SHIFT:
                 visitBinary(expr, ">>");
                 break;
             case RIGHT_SHIFT_LONG:
-                visitBinaryFunction(expr, "Long_shr");
+                visitLongShift(expr, "Long_shr");
                 break;
             case UNSIGNED_RIGHT_SHIFT:
                 visitBinary(expr, ">>>");
                 break;
             case UNSIGNED_RIGHT_SHIFT_LONG:
-                visitBinaryFunction(expr, "Long_shru");
+                visitLongShift(expr, "Long_shru");
                 break;
         }
     }
@@ -1518,6 +1924,7 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
                 pushLocation(expr.getLocation());
             }
             Precedence outerPrecedence = precedence;
+            boolean bigIntLongs = longRepresentation == LongRepresentation.BIG_INT;
             switch (expr.getOperation()) {
                 case NOT: {
                     if (outerPrecedence.ordinal() > Precedence.UNARY.ordinal()) {
@@ -1548,7 +1955,7 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
                     writer.append(".length");
                     break;
                 case INT_TO_LONG:
-                    writer.append("Long_fromInt(");
+                    writer.append(bigIntLongs ? "BigInt(" : "Long_fromInt(");
                     precedence = Precedence.min();
                     expr.getOperand().acceptVisitor(this);
                     writer.append(')');
@@ -1560,25 +1967,32 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
                     writer.append(')');
                     break;
                 case LONG_TO_NUM:
-                    writer.append("Long_toNumber(");
+                    writer.append(bigIntLongs ? "Number(" : "Long_toNumber(");
                     precedence = Precedence.min();
                     expr.getOperand().acceptVisitor(this);
                     writer.append(')');
                     break;
                 case LONG_TO_INT:
-                    precedence = Precedence.MEMBER_ACCESS;
-                    expr.getOperand().acceptVisitor(this);
-                    writer.append(".lo");
+                    if (bigIntLongs) {
+                        writer.append("Number(BigInt.asIntN(32,").ws();
+                        precedence = Precedence.min();
+                        expr.getOperand().acceptVisitor(this);
+                        writer.append("))");
+                    } else {
+                        precedence = Precedence.MEMBER_ACCESS;
+                        expr.getOperand().acceptVisitor(this);
+                        writer.append(".lo");
+                    }
                     break;
                 case NEGATE_LONG:
-                    writer.append("Long_neg(");
-                    precedence = Precedence.min();
+                    writer.append(bigIntLongs ? "BigInt.asIntN(64,-" : "Long_neg(");
+                    precedence = bigIntLongs ? Precedence.UNARY : Precedence.min();
                     expr.getOperand().acceptVisitor(this);
                     writer.append(')');
                     break;
                 case NOT_LONG:
-                    writer.append("Long_not(");
-                    precedence = Precedence.min();
+                    writer.append(bigIntLongs ? "(~" : "Long_not(");
+                    precedence = bigIntLongs ? Precedence.UNARY : Precedence.min();
                     expr.getOperand().acceptVisitor(this);
                     writer.append(')');
                     break;
@@ -1697,11 +2111,16 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
                 stringPool.add(string);
                 stringPoolMap.put(string, index);
             }
+            if (chunkStrings != null && index >= coreStringCount) {
+                chunkStrings.add(index);
+            }
             return "$rt_s(" + index + ")";
         } else if (cst instanceof Long) {
             long value = (Long) cst;
             if (value == 0) {
                 return "Long_ZERO";
+            } else if (longRepresentation == LongRepresentation.BIG_INT) {
+                return value + "n";
             } else if ((int) value == value) {
                 return "Long_fromInt(" + value + ")";
             } else {
@@ -1829,12 +2248,25 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
             if (expr.getLocation() != null) {
                 pushLocation(expr.getLocation());
             }
-            precedence = Precedence.MEMBER_ACCESS;
-            expr.getArray().acceptVisitor(this);
-            writer.append('[');
-            precedence = Precedence.min();
-            expr.getIndex().acceptVisitor(this);
-            writer.append(']');
+            if (isPairedLongElement(expr)) {
+                if (isSimple(expr.getArray()) && isSimple(expr.getIndex())) {
+                    writer.append("new Long(");
+                    renderPairedLongHalf(expr, "lo");
+                    writer.append(",").ws();
+                    renderPairedLongHalf(expr, "hi");
+                } else {
+                    writer.append("$rt_longArrayGet(");
+                    renderSubscriptOperands(expr);
+                }
+                writer.append(')');
+            } else {
+                precedence = Precedence.MEMBER_ACCESS;
+                expr.getArray().acceptVisitor(this);
+                writer.append('[');
+                precedence = Precedence.min();
+                expr.getIndex().acceptVisitor(this);
+                writer.append(']');
+            }
             if (expr.getLocation() != null) {
                 popLocation();
             }
@@ -1849,9 +2281,14 @@ public class Renderer implements ExprVisitor, StatementVisitor, RenderingContext
             if (expr.getLocation() != null) {
                 pushLocation(expr.getLocation());
             }
-            precedence = Precedence.MEMBER_ACCESS;
-            expr.getArray().acceptVisitor(this);
-            writer.append(".data");
+            if (arrayRepresentation == ArrayRepresentation.TYPED && expr.getElementType() != ArrayElementType.OBJECT) {
+                // Arrays of primitives are typed arrays themselves
+                expr.getArray().acceptVisitor(this);
+            } else {
+                precedence = Precedence.MEMBER_ACCESS;
+                expr.getArray().acceptVisitor(this);
+                writer.append(".data");
+            }
             if (expr.getLocation() != null) {
                 popLocation();
             }
@@ -33,6 +33,7 @@ class StatementGenerator implements InstructionVisitor {
     Program program;
     ClassHolderSource classSource;
     private NodeLocation currentLocation;
+    private ArrayElementType[] arrayElementTypes;
     boolean async;
 
     void setCurrentLocation(NodeLocation currentLocation) {
@@ -516,18 +517,60 @@ class StatementGenerator implements InstructionVisitor {
 
     @Override
     public void visit(GetElementInstruction insn) {
-        assign(Expr.subscript(Expr.var(insn.getArray().getIndex()), Expr.var(insn.getIndex().getIndex())),
-                insn.getReceiver());
+        assign(Expr.subscript(Expr.var(insn.getArray().getIndex()), Expr.var(insn.getIndex().getIndex()),
+                getArrayElementType(insn.getArray())), insn.getReceiver());
     }
 
     @Override
     public void visit(PutElementInstruction insn) {
         AssignmentStatement stmt = Statement.assign(Expr.subscript(Expr.var(insn.getArray().getIndex()),
-                Expr.var(insn.getIndex().getIndex())), Expr.var(insn.getValue().getIndex()));
+                Expr.var(insn.getIndex().getIndex()), getArrayElementType(insn.getArray())),
+                Expr.var(insn.getValue().getIndex()));
         stmt.setLocation(currentLocation);
         statements.add(stmt);
     }
 
+    private ArrayElementType getArrayElementType(Variable array) {
+        if (arrayElementTypes == null) {
+            arrayElementTypes = inferArrayElementTypes();
+        }
+        return arrayElementTypes[array.getIndex()];
+    }
+
+    private ArrayElementType[] inferArrayElementTypes() {
+        // Registers are already allocated at this point, so a variable may be assigned several times.
+        // Unwrapped long arrays are never mixed with other kinds, so LONG wins whenever it is seen.
+        ArrayElementType[] types = new ArrayElementType[program.variableCount()];
+        List<AssignInstruction> copies = new ArrayList<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof UnwrapArrayInstruction) {
+                    UnwrapArrayInstruction unwrap = (UnwrapArrayInstruction) insn;
+                    int receiver = unwrap.getReceiver().getIndex();
+                    if (types[receiver] != ArrayElementType.LONG) {
+                        types[receiver] = unwrap.getElementType();
+                    }
+                } else if (insn instanceof AssignInstruction) {
+                    copies.add((AssignInstruction) insn);
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (AssignInstruction copy : copies) {
+                ArrayElementType type = types[copy.getAssignee().getIndex()];
+                int receiver = copy.getReceiver().getIndex();
+                if (type != null && types[receiver] != type && (types[receiver] == null
+                        || type == ArrayElementType.LONG)) {
+                    types[receiver] = type;
+                    changed = true;
+                }
+            }
+        }
+        return types;
+    }
+
     @Override
     public void visit(InvokeInstruction insn) {
         Expr[] exprArgs = new Expr[insn.getMethod().getParameterTypes().length];
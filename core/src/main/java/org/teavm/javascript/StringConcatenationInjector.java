@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.javascript;
+
+import java.io.IOException;
+import java.util.List;
+import org.teavm.codegen.SourceWriter;
+import org.teavm.javascript.ast.ConstantExpr;
+import org.teavm.javascript.ast.Expr;
+import org.teavm.javascript.ast.InvocationExpr;
+import org.teavm.javascript.spi.Injector;
+import org.teavm.javascript.spi.InjectorContext;
+import org.teavm.model.MethodReference;
+import org.teavm.optimization.StringBuilderElimination;
+
+/**
+ * <p>Renders string concatenation and conversion of primitives to strings as JavaScript expressions,
+ * when strings are represented by native JavaScript strings. Nested calls of
+ * {@link StringBuilderElimination#CONCATENATE} are flattened to a single chain of <code>+</code>
+ * operators, and conversions of <code>int</code>, <code>char</code>, <code>boolean</code> and
+ * <code>double</code> values are inlined into the chain.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class StringConcatenationInjector implements Injector {
+    public static final MethodReference VALUE_OF_BOOLEAN = new MethodReference(String.class, "valueOf",
+            boolean.class, String.class);
+    public static final MethodReference VALUE_OF_CHAR = new MethodReference(String.class, "valueOf",
+            char.class, String.class);
+    public static final MethodReference VALUE_OF_INT = new MethodReference(String.class, "valueOf",
+            int.class, String.class);
+    public static final MethodReference VALUE_OF_DOUBLE = new MethodReference(String.class, "valueOf",
+            double.class, String.class);
+    public static final MethodReference DOUBLE_TO_STRING = new MethodReference(Double.class, "toString",
+            double.class, String.class);
+    public static final MethodReference[] METHODS = { StringBuilderElimination.CONCATENATE, VALUE_OF_BOOLEAN,
+            VALUE_OF_CHAR, VALUE_OF_INT, VALUE_OF_DOUBLE };
+
+    @Override
+    public void generate(InjectorContext context, MethodReference methodRef) throws IOException {
+        SourceWriter writer = context.getWriter();
+        writer.append("$rt_str(");
+        if (methodRef.equals(StringBuilderElimination.CONCATENATE)) {
+            boolean first = true;
+            for (int i = 0; i < context.argumentCount(); ++i) {
+                first = writeOperand(context, context.getArgument(i), first);
+            }
+        } else {
+            if (methodRef.equals(VALUE_OF_INT)) {
+                writer.append("\"\"").ws().append("+").ws();
+            }
+            writeConversion(context, methodRef, context.getArgument(0));
+        }
+        writer.append(")");
+    }
+
+    private boolean writeOperand(InjectorContext context, Expr expr, boolean first) throws IOException {
+        SourceWriter writer = context.getWriter();
+        if (expr instanceof InvocationExpr) {
+            InvocationExpr invocation = (InvocationExpr) expr;
+            MethodReference method = invocation.getMethod();
+            List<Expr> arguments = invocation.getArguments();
+            if (method.equals(StringBuilderElimination.CONCATENATE)) {
+                for (Expr argument : arguments) {
+                    first = writeOperand(context, argument, first);
+                }
+                return first;
+            }
+            if (isConversion(method)) {
+                writeSeparator(writer, first, method.equals(VALUE_OF_INT));
+                writeConversion(context, method, arguments.get(0));
+                return false;
+            }
+        } else if (expr instanceof ConstantExpr && ((ConstantExpr) expr).getValue() instanceof String) {
+            writeSeparator(writer, first, false);
+            writer.append('"').append(Renderer.escapeString((String) ((ConstantExpr) expr).getValue()))
+                    .append('"');
+            return false;
+        }
+        // A string may be null, so JavaScript concatenation should start from a string to produce "null"
+        writeSeparator(writer, first, true);
+        writer.append("$rt_ustr(");
+        context.writeExpr(expr, Precedence.min());
+        writer.append(")");
+        return false;
+    }
+
+    private static void writeSeparator(SourceWriter writer, boolean first, boolean needsString)
+            throws IOException {
+        if (!first) {
+            writer.ws().append("+").ws();
+        } else if (needsString) {
+            writer.append("\"\"").ws().append("+").ws();
+        }
+    }
+
+    private static boolean isConversion(MethodReference method) {
+        return method.equals(VALUE_OF_BOOLEAN) || method.equals(VALUE_OF_CHAR) || method.equals(VALUE_OF_INT)
+                || method.equals(VALUE_OF_DOUBLE);
+    }
+
+    private static void writeConversion(InjectorContext context, MethodReference method, Expr value)
+            throws IOException {
+        SourceWriter writer = context.getWriter();
+        switch (method.parameterType(0).toString()) {
+            case "Z":
+                writer.append("(");
+                context.writeExpr(value, Precedence.CONDITIONAL.next());
+                writer.ws().append("?").ws().append("\"true\"").ws().append(":").ws().append("\"false\")");
+                break;
+            case "C":
+                writer.append("String.fromCharCode(");
+                context.writeExpr(value, Precedence.min());
+                writer.append(")");
+                break;
+            case "I":
+                context.writeExpr(value, Precedence.MULTIPLICATION);
+                break;
+            case "D":
+                writer.append("$rt_doubleToString(");
+                context.writeExpr(value, Precedence.COMMA.next());
+                writer.append(",").ws().appendMethodBody(DOUBLE_TO_STRING).append(")");
+                break;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.javascript;
+
+/**
+ * <p>Describes how instances of <code>java.lang.String</code> keep their characters in generated JavaScript.</p>
+ *
+ * @author Alexey Andreev
+ */
+public enum StringRepresentation {
+    /**
+     * <p>Each string keeps its characters in a <code>char[]</code> array. Strings are converted character
+     * by character whenever they cross the boundary between Java and JavaScript.</p>
+     */
+    CHAR_ARRAY,
+
+    /**
+     * <p>Each string wraps a native JavaScript string. Strings cross the boundary between Java and JavaScript
+     * without copying, and most methods of <code>String</code> are delegated to the corresponding methods
+     * of JavaScript strings. <code>StringBuilder</code> accumulates appended strings by native concatenation
+     * and falls back to a character buffer for other modifications.</p>
+     */
+    NATIVE
+}
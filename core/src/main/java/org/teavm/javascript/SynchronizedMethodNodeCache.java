@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.javascript;
+
+import org.teavm.javascript.ast.AsyncMethodNode;
+import org.teavm.javascript.ast.RegularMethodNode;
+import org.teavm.model.MethodReference;
+
+/**
+ * <p>Wraps a {@link MethodNodeCache} so that it can be shared by several decompilers running
+ * in different threads.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class SynchronizedMethodNodeCache implements MethodNodeCache {
+    private final MethodNodeCache innerCache;
+
+    public SynchronizedMethodNodeCache(MethodNodeCache innerCache) {
+        this.innerCache = innerCache;
+    }
+
+    @Override
+    public synchronized RegularMethodNode get(MethodReference methodReference) {
+        return innerCache.get(methodReference);
+    }
+
+    @Override
+    public synchronized void store(MethodReference methodReference, RegularMethodNode node) {
+        innerCache.store(methodReference, node);
+    }
+
+    @Override
+    public synchronized AsyncMethodNode getAsync(MethodReference methodReference) {
+        return innerCache.getAsync(methodReference);
+    }
+
+    @Override
+    public synchronized void storeAsync(MethodReference methodReference, AsyncMethodNode node) {
+        innerCache.storeAsync(methodReference, node);
+    }
+}
@@ -19,6 +19,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.teavm.model.*;
+import org.teavm.model.instructions.ArrayElementType;
 
 public abstract class Expr implements Cloneable {
     private NodeLocation location;
@@ -74,9 +75,14 @@ public abstract class Expr implements Cloneable {
     }
 
     public static Expr subscript(Expr array, Expr index) {
+        return subscript(array, index, null);
+    }
+
+    public static Expr subscript(Expr array, Expr index, ArrayElementType type) {
         SubscriptExpr expr = new SubscriptExpr();
         expr.setArray(array);
         expr.setIndex(index);
+        expr.setType(type);
         return expr;
     }
 
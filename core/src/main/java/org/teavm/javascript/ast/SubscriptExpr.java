@@ -16,6 +16,7 @@
 package org.teavm.javascript.ast;
 
 import java.util.Map;
+import org.teavm.model.instructions.ArrayElementType;
 
 /**
  *
@@ -24,6 +25,7 @@ import java.util.Map;
 public class SubscriptExpr extends Expr {
     private Expr array;
     private Expr index;
+    private ArrayElementType type;
 
     public Expr getArray() {
         return array;
@@ -41,6 +43,20 @@ public class SubscriptExpr extends Expr {
         this.index = index;
     }
 
+    /**
+     * <p>Gets type of elements of the array, as it is known from the unwrap instruction that produced the array.
+     * Can be <code>null</code> when the type is unknown.</p>
+     *
+     * @return type of array elements.
+     */
+    public ArrayElementType getType() {
+        return type;
+    }
+
+    public void setType(ArrayElementType type) {
+        this.type = type;
+    }
+
     @Override
     public void acceptVisitor(ExprVisitor visitor) {
         visitor.visit(this);
@@ -55,6 +71,7 @@ public class SubscriptExpr extends Expr {
         SubscriptExpr copy = new SubscriptExpr();
         copy.setArray(array != null ? array.clone(cache) : null);
         copy.setIndex(index != null ? index.clone(cache) : null);
+        copy.setType(type);
         return copy;
     }
 }
@@ -26,7 +26,7 @@ public class BasicBlockMapper implements InstructionVisitor {
         this.mapFunction = mapFunction;
     }
 
-    private BasicBlock map(BasicBlock block) {
+    protected BasicBlock map(BasicBlock block) {
         Program program = block.getProgram();
         return program.basicBlockAt(mapFunction.applyAsInt(block.getIndex()));
     }
@@ -0,0 +1,312 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.FieldHolder;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.ListableClassHolderSource;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.CastIntegerInstruction;
+import org.teavm.model.instructions.CastNumberInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.ExitInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.InitClassInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.LongConstantInstruction;
+import org.teavm.model.instructions.NegateInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.instructions.SwitchInstruction;
+import org.teavm.model.instructions.SwitchTableEntry;
+
+/**
+ * <p>Evaluates static initializers at compile time. A static initializer can be evaluated when it only computes
+ * primitive values and stores them into static fields of its own class. Such initializer is removed from
+ * the class, and the computed values become initial values of the fields, so that the class needs no
+ * initialization at run time.</p>
+ *
+ * <p>Initializer is not evaluated when a superclass still has an initializer, since initialization of
+ * a class should trigger initialization of its superclass.</p>
+ *
+ * <p>Initializers that create strings, arrays or objects are not evaluated, so constant tables and arrays
+ * of enum values are still filled at run time. Static fields are declared before the string pool and class
+ * metadata are set up, so only primitive literals can be placed there.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class ClassInitializerElimination {
+    private static final MethodDescriptor CLINIT = new MethodDescriptor("<clinit>", void.class);
+    private static final int MAX_STEPS = 10000;
+    private ListableClassHolderSource classes;
+    private Map<String, Boolean> initialized = new HashMap<>();
+
+    public ClassInitializerElimination(ListableClassHolderSource classes) {
+        this.classes = classes;
+    }
+
+    public void apply() {
+        for (String className : classes.getClassNames()) {
+            isInitializedStatically(className);
+        }
+    }
+
+    private boolean isInitializedStatically(String className) {
+        Boolean result = initialized.get(className);
+        if (result == null) {
+            initialized.put(className, false);
+            result = tryEvaluate(className);
+            initialized.put(className, result);
+        }
+        return result;
+    }
+
+    private boolean tryEvaluate(String className) {
+        ClassHolder cls = classes.get(className);
+        if (cls == null) {
+            return false;
+        }
+        if (cls.getParent() != null && !cls.getParent().equals(className)
+                && !isInitializedStatically(cls.getParent())) {
+            return false;
+        }
+        MethodHolder clinit = cls.getMethod(CLINIT);
+        if (clinit == null) {
+            return true;
+        }
+        if (clinit.getProgram() == null || clinit.getProgram().basicBlockCount() == 0) {
+            return false;
+        }
+
+        Map<String, Object> fieldValues = new HashMap<>();
+        if (!new Interpreter(cls, fieldValues).run(clinit.getProgram())) {
+            return false;
+        }
+        for (Map.Entry<String, Object> entry : fieldValues.entrySet()) {
+            FieldHolder field = cls.getField(entry.getKey());
+            Object value = entry.getValue();
+            field.setInitialValue(value != ConstantFolding.NULL ? value : null);
+        }
+        cls.removeMethod(clinit);
+        return true;
+    }
+
+    private static class Interpreter {
+        private ClassHolder cls;
+        private Map<String, Object> fieldValues;
+        private Object[] variables;
+        private BasicBlock next;
+        private boolean done;
+
+        Interpreter(ClassHolder cls, Map<String, Object> fieldValues) {
+            this.cls = cls;
+            this.fieldValues = fieldValues;
+        }
+
+        boolean run(Program program) {
+            variables = new Object[program.variableCount()];
+            BasicBlock block = program.basicBlockAt(0);
+            BasicBlock previous = null;
+            int steps = 0;
+            while (true) {
+                if (!block.getTryCatchBlocks().isEmpty()) {
+                    return false;
+                }
+                if (previous != null) {
+                    Object[] phiValues = new Object[block.getPhis().size()];
+                    for (int i = 0; i < phiValues.length; ++i) {
+                        for (Incoming incoming : block.getPhis().get(i).getIncomings()) {
+                            if (incoming.getSource() == previous) {
+                                phiValues[i] = variables[incoming.getValue().getIndex()];
+                            }
+                        }
+                        if (phiValues[i] == null) {
+                            return false;
+                        }
+                    }
+                    for (int i = 0; i < phiValues.length; ++i) {
+                        Phi phi = block.getPhis().get(i);
+                        variables[phi.getReceiver().getIndex()] = phiValues[i];
+                    }
+                }
+                next = null;
+                for (Instruction insn : block.getInstructions()) {
+                    if (++steps > MAX_STEPS || !execute(insn)) {
+                        return false;
+                    }
+                }
+                if (done) {
+                    return true;
+                }
+                if (next == null) {
+                    return false;
+                }
+                previous = block;
+                block = next;
+            }
+        }
+
+        private boolean execute(Instruction insn) {
+            if (insn instanceof EmptyInstruction) {
+                return true;
+            } else if (insn instanceof IntegerConstantInstruction) {
+                IntegerConstantInstruction constant = (IntegerConstantInstruction) insn;
+                return set(constant.getReceiver().getIndex(), constant.getConstant());
+            } else if (insn instanceof LongConstantInstruction) {
+                LongConstantInstruction constant = (LongConstantInstruction) insn;
+                return set(constant.getReceiver().getIndex(), constant.getConstant());
+            } else if (insn instanceof FloatConstantInstruction) {
+                FloatConstantInstruction constant = (FloatConstantInstruction) insn;
+                return set(constant.getReceiver().getIndex(), constant.getConstant());
+            } else if (insn instanceof DoubleConstantInstruction) {
+                DoubleConstantInstruction constant = (DoubleConstantInstruction) insn;
+                return set(constant.getReceiver().getIndex(), constant.getConstant());
+            } else if (insn instanceof NullConstantInstruction) {
+                return set(((NullConstantInstruction) insn).getReceiver().getIndex(), ConstantFolding.NULL);
+            } else if (insn instanceof AssignInstruction) {
+                AssignInstruction assign = (AssignInstruction) insn;
+                return set(assign.getReceiver().getIndex(), variables[assign.getAssignee().getIndex()]);
+            } else if (insn instanceof BinaryInstruction) {
+                BinaryInstruction binary = (BinaryInstruction) insn;
+                return set(binary.getReceiver().getIndex(), ConstantFolding.binary(binary.getOperation(),
+                        binary.getOperandType(), variables[binary.getFirstOperand().getIndex()],
+                        variables[binary.getSecondOperand().getIndex()]));
+            } else if (insn instanceof NegateInstruction) {
+                NegateInstruction negate = (NegateInstruction) insn;
+                return set(negate.getReceiver().getIndex(), ConstantFolding.negate(negate.getOperandType(),
+                        variables[negate.getOperand().getIndex()]));
+            } else if (insn instanceof CastNumberInstruction) {
+                CastNumberInstruction cast = (CastNumberInstruction) insn;
+                return set(cast.getReceiver().getIndex(), ConstantFolding.castNumber(cast.getSourceType(),
+                        cast.getTargetType(), variables[cast.getValue().getIndex()]));
+            } else if (insn instanceof CastIntegerInstruction) {
+                CastIntegerInstruction cast = (CastIntegerInstruction) insn;
+                return set(cast.getReceiver().getIndex(), ConstantFolding.castInteger(cast.getTargetType(),
+                        cast.getDirection(), variables[cast.getValue().getIndex()]));
+            } else if (insn instanceof GetFieldInstruction) {
+                GetFieldInstruction getField = (GetFieldInstruction) insn;
+                if (getField.getInstance() != null || !getField.getField().getClassName().equals(cls.getName())) {
+                    return false;
+                }
+                return set(getField.getReceiver().getIndex(), getFieldValue(getField.getField().getFieldName()));
+            } else if (insn instanceof PutFieldInstruction) {
+                PutFieldInstruction putField = (PutFieldInstruction) insn;
+                if (putField.getInstance() != null || !putField.getField().getClassName().equals(cls.getName())) {
+                    return false;
+                }
+                // Parser does not set field type of static field stores, so take it from the field itself
+                FieldHolder field = cls.getField(putField.getField().getFieldName());
+                Object value = variables[putField.getValue().getIndex()];
+                if (value == null || field == null || !(field.getType() instanceof ValueType.Primitive)) {
+                    return false;
+                }
+                fieldValues.put(putField.getField().getFieldName(), value);
+                return true;
+            } else if (insn instanceof InitClassInstruction) {
+                return ((InitClassInstruction) insn).getClassName().equals(cls.getName());
+            } else if (insn instanceof JumpInstruction) {
+                next = ((JumpInstruction) insn).getTarget();
+                return true;
+            } else if (insn instanceof BranchingInstruction) {
+                BranchingInstruction branching = (BranchingInstruction) insn;
+                Boolean condition = ConstantFolding.branch(branching.getCondition(),
+                        variables[branching.getOperand().getIndex()]);
+                if (condition == null) {
+                    return false;
+                }
+                next = condition ? branching.getConsequent() : branching.getAlternative();
+                return true;
+            } else if (insn instanceof BinaryBranchingInstruction) {
+                BinaryBranchingInstruction branching = (BinaryBranchingInstruction) insn;
+                Boolean condition = ConstantFolding.binaryBranch(branching.getCondition(),
+                        variables[branching.getFirstOperand().getIndex()],
+                        variables[branching.getSecondOperand().getIndex()]);
+                if (condition == null) {
+                    return false;
+                }
+                next = condition ? branching.getConsequent() : branching.getAlternative();
+                return true;
+            } else if (insn instanceof SwitchInstruction) {
+                SwitchInstruction switchInsn = (SwitchInstruction) insn;
+                Object value = variables[switchInsn.getCondition().getIndex()];
+                if (!(value instanceof Integer)) {
+                    return false;
+                }
+                next = switchInsn.getDefaultTarget();
+                for (SwitchTableEntry entry : switchInsn.getEntries()) {
+                    if (entry.getCondition() == (Integer) value) {
+                        next = entry.getTarget();
+                        break;
+                    }
+                }
+                return true;
+            } else if (insn instanceof ExitInstruction) {
+                done = true;
+                return true;
+            }
+            return false;
+        }
+
+        private Object getFieldValue(String name) {
+            Object value = fieldValues.get(name);
+            if (value != null) {
+                return value;
+            }
+            FieldHolder field = cls.getField(name);
+            if (field == null || !(field.getType() instanceof ValueType.Primitive)) {
+                return null;
+            }
+            value = field.getInitialValue();
+            if (value == null) {
+                switch (((ValueType.Primitive) field.getType()).getKind()) {
+                    case LONG:
+                        return 0L;
+                    case FLOAT:
+                        return 0F;
+                    case DOUBLE:
+                        return 0.0;
+                    default:
+                        return 0;
+                }
+            }
+            return value instanceof Number ? value : null;
+        }
+
+        private boolean set(int variable, Object value) {
+            if (value == null) {
+                return false;
+            }
+            variables[variable] = value;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+import org.teavm.model.instructions.BinaryBranchingCondition;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.CastIntegerDirection;
+import org.teavm.model.instructions.IntegerSubtype;
+import org.teavm.model.instructions.NumericOperandType;
+
+/**
+ * <p>Evaluates instructions over constant operands at compile time. Values are represented by {@link Integer}
+ * (for <code>int</code> and all narrower types), {@link Long}, {@link Float}, {@link Double}, {@link String}
+ * for string constants and {@link #NULL} for null reference.</p>
+ *
+ * <p>Results must be exactly the same as results of generated code. Operations on <code>float</code> values
+ * are performed by JavaScript in double precision, so they are never evaluated, as well as operations whose
+ * result in generated code is different from Java (like division by zero or conversion of too big
+ * <code>double</code> to <code>int</code>). All methods return <code>null</code> when they can't evaluate
+ * an instruction.</p>
+ *
+ * @author Alexey Andreev
+ */
+final class ConstantFolding {
+    static final Object NULL = new Object() {
+        @Override
+        public String toString() {
+            return "null";
+        }
+    };
+    private static final double MAX_SAFE_INTEGER = 9007199254740991.0;
+
+    private ConstantFolding() {
+    }
+
+    static Object binary(BinaryOperation operation, NumericOperandType type, Object first, Object second) {
+        switch (type) {
+            case INT:
+                if (first instanceof Integer && second instanceof Integer) {
+                    return binary(operation, (Integer) first, (Integer) second);
+                }
+                break;
+            case LONG:
+                if (first instanceof Long && operation == BinaryOperation.COMPARE && second instanceof Long) {
+                    return Long.compare((Long) first, (Long) second);
+                }
+                if (first instanceof Long && (second instanceof Long || second instanceof Integer)) {
+                    return binary(operation, (Long) first, ((Number) second).longValue());
+                }
+                break;
+            case DOUBLE:
+                if (first instanceof Double && second instanceof Double) {
+                    return binary(operation, (Double) first, (Double) second);
+                }
+                break;
+            default:
+                break;
+        }
+        return null;
+    }
+
+    private static Object binary(BinaryOperation operation, int a, int b) {
+        switch (operation) {
+            case ADD:
+                return a + b;
+            case SUBTRACT:
+                return a - b;
+            case MULTIPLY:
+                return a * b;
+            case DIVIDE:
+                return b != 0 ? a / b : null;
+            case MODULO:
+                return b != 0 ? a % b : null;
+            case COMPARE:
+                return Integer.compare(a, b);
+            case AND:
+                return a & b;
+            case OR:
+                return a | b;
+            case XOR:
+                return a ^ b;
+            case SHIFT_LEFT:
+                return a << b;
+            case SHIFT_RIGHT:
+                return a >> b;
+            case SHIFT_RIGHT_UNSIGNED:
+                return a >>> b;
+        }
+        return null;
+    }
+
+    private static Object binary(BinaryOperation operation, long a, long b) {
+        switch (operation) {
+            case ADD:
+                return a + b;
+            case SUBTRACT:
+                return a - b;
+            case MULTIPLY:
+                return a * b;
+            case DIVIDE:
+                return b != 0 ? a / b : null;
+            case MODULO:
+                return b != 0 ? a % b : null;
+            case AND:
+                return a & b;
+            case OR:
+                return a | b;
+            case XOR:
+                return a ^ b;
+            case SHIFT_LEFT:
+                return a << b;
+            case SHIFT_RIGHT:
+                return a >> b;
+            case SHIFT_RIGHT_UNSIGNED:
+                return a >>> b;
+            default:
+                return null;
+        }
+    }
+
+    private static Object binary(BinaryOperation operation, double a, double b) {
+        switch (operation) {
+            case ADD:
+                return a + b;
+            case SUBTRACT:
+                return a - b;
+            case MULTIPLY:
+                return a * b;
+            case DIVIDE:
+                return a / b;
+            case MODULO:
+                return a % b;
+            case COMPARE:
+                return Double.isNaN(a) || Double.isNaN(b) ? null : (Object) Integer.valueOf(a > b ? 1 : a < b ? -1 : 0);
+            default:
+                return null;
+        }
+    }
+
+    static Object negate(NumericOperandType type, Object value) {
+        switch (type) {
+            case INT:
+                return value instanceof Integer ? (Object) (-(Integer) value) : null;
+            case LONG:
+                return value instanceof Long ? (Object) (-(Long) value) : null;
+            case DOUBLE:
+                return value instanceof Double ? (Object) (-(Double) value) : null;
+            default:
+                return null;
+        }
+    }
+
+    static Object castNumber(NumericOperandType source, NumericOperandType target, Object value) {
+        if (!(value instanceof Number) || source == NumericOperandType.FLOAT || target == NumericOperandType.FLOAT) {
+            return null;
+        }
+        Number number = (Number) value;
+        switch (target) {
+            case INT:
+                if (source == NumericOperandType.DOUBLE) {
+                    double d = number.doubleValue();
+                    if (!Double.isNaN(d) && (d < Integer.MIN_VALUE || d > Integer.MAX_VALUE)) {
+                        return null;
+                    }
+                }
+                return number.intValue();
+            case LONG:
+                if (source == NumericOperandType.DOUBLE) {
+                    double d = number.doubleValue();
+                    if (Double.isNaN(d) || Math.abs(d) > MAX_SAFE_INTEGER) {
+                        return null;
+                    }
+                }
+                return number.longValue();
+            case DOUBLE:
+                return number.doubleValue();
+            default:
+                return null;
+        }
+    }
+
+    static Object castInteger(IntegerSubtype subtype, CastIntegerDirection direction, Object value) {
+        if (!(value instanceof Integer)) {
+            return null;
+        }
+        int n = (Integer) value;
+        if (direction == CastIntegerDirection.TO_INTEGER) {
+            return n;
+        }
+        switch (subtype) {
+            case BYTE:
+                return (int) (byte) n;
+            case SHORT:
+                return (int) (short) n;
+            case CHARACTER:
+                return (int) (char) n;
+        }
+        return null;
+    }
+
+    static Boolean branch(BranchingCondition condition, Object value) {
+        switch (condition) {
+            case NULL:
+                return value == NULL ? Boolean.TRUE : value instanceof String ? Boolean.FALSE : null;
+            case NOT_NULL:
+                return value == NULL ? Boolean.FALSE : value instanceof String ? Boolean.TRUE : null;
+            default:
+                break;
+        }
+        if (!(value instanceof Integer)) {
+            return null;
+        }
+        int n = (Integer) value;
+        switch (condition) {
+            case EQUAL:
+                return n == 0;
+            case NOT_EQUAL:
+                return n != 0;
+            case LESS:
+                return n < 0;
+            case LESS_OR_EQUAL:
+                return n <= 0;
+            case GREATER:
+                return n > 0;
+            case GREATER_OR_EQUAL:
+                return n >= 0;
+            default:
+                return null;
+        }
+    }
+
+    static Boolean binaryBranch(BinaryBranchingCondition condition, Object first, Object second) {
+        switch (condition) {
+            case EQUAL:
+            case NOT_EQUAL:
+                if (first instanceof Integer && second instanceof Integer) {
+                    boolean equal = first.equals(second);
+                    return condition == BinaryBranchingCondition.EQUAL ? equal : !equal;
+                }
+                return null;
+            case REFERENCE_EQUAL:
+            case REFERENCE_NOT_EQUAL:
+                if ((first == NULL && (second == NULL || second instanceof String))
+                        || (second == NULL && first instanceof String)) {
+                    boolean equal = first == second;
+                    return condition == BinaryBranchingCondition.REFERENCE_EQUAL ? equal : !equal;
+                }
+                return null;
+        }
+        return null;
+    }
+}
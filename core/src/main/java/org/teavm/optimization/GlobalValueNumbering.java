@@ -25,24 +25,31 @@ import org.teavm.model.instructions.*;
 import org.teavm.model.util.ProgramUtils;
 
 public class GlobalValueNumbering implements MethodOptimization {
-    private Map<String, KnownValue> knownValues = new HashMap<>();
+    private static final int BINARY = 0;
+    private static final int NEGATE = BINARY + BinaryOperation.values().length;
+    private static final int CAST = NEGATE + 1;
+    private static final int CAST_NUMBER = CAST + 1;
+    private static final int CAST_INTEGER = CAST_NUMBER + 1;
+    private static final int ARRAY_LENGTH = CAST_INTEGER + 1;
+    private static final int UNWRAP_ARRAY = ARRAY_LENGTH + 1;
+    private static final int IS_INSTANCE = UNWRAP_ARRAY + 1;
+    private static final int NULL_CHECK = IS_INSTANCE + 1;
+    private static final int FIELD_LOAD = NULL_CHECK + 1;
+    private ExpressionTable knownValues = new ExpressionTable();
+    private Map<Object, Integer> symbols = new HashMap<>();
     private boolean eliminate;
     private int[] map;
     private Program program;
-    private int currentBlockIndex;
-    private DominatorTree domTree;
-
-    private static class KnownValue {
-        int value;
-        int location;
-    }
+    private int memoryVersion;
+    private int lastMemoryVersion;
 
     @Override
     public void optimize(MethodReader method, Program program) {
         this.program = program;
         knownValues.clear();
+        symbols.clear();
         Graph cfg = ProgramUtils.buildControlFlowGraph(program);
-        domTree = GraphUtils.buildDominatorTree(cfg);
+        DominatorTree domTree = GraphUtils.buildDominatorTree(cfg);
         Graph dom = GraphUtils.buildDominatorGraph(domTree, cfg.size());
         map = new int[program.variableCount()];
         for (int i = 0; i < map.length; ++i) {
@@ -51,6 +58,21 @@ public class GlobalValueNumbering implements MethodOptimization {
         List<List<Incoming>> outgoings = ProgramUtils.getPhiOutputs(program);
         List<List<TryCatchJoint>> outputJoints = ProgramUtils.getOutputJoints(program);
 
+        // Loaded values of fields are only reused along paths without branching, stores and calls.
+        // Each such path gets its own memory version, so that a known load is valid only
+        // when it was recorded under current version.
+        boolean[] handlers = new boolean[cfg.size()];
+        for (int i = 0; i < cfg.size(); ++i) {
+            for (TryCatchBlock tryCatch : program.basicBlockAt(i).getTryCatchBlocks()) {
+                handlers[tryCatch.getHandler().getIndex()] = true;
+            }
+        }
+        int[] exitMemoryVersions = new int[cfg.size()];
+        lastMemoryVersion = 0;
+
+        // Blocks are visited in dominator tree order. Values computed in a block are forgotten
+        // after its subtree has been visited, so only values from dominating blocks are reused.
+        int[] marks = new int[cfg.size()];
         int[] stack = new int[cfg.size() * 2];
         int top = 0;
         for (int i = 0; i < cfg.size(); ++i) {
@@ -60,30 +82,18 @@ public class GlobalValueNumbering implements MethodOptimization {
         }
         while (top > 0) {
             int v = stack[--top];
-            currentBlockIndex = v;
+            if (v < 0) {
+                knownValues.rollback(marks[-v - 1]);
+                continue;
+            }
+            marks[v] = knownValues.mark();
+            stack[top++] = -v - 1;
             BasicBlock block = program.basicBlockAt(v);
-            /*for (int i = 0; i < block.getPhis().size(); ++i) {
-                Phi phi = block.getPhis().get(i);
-                int sharedValue = -2;
-                for (Incoming incoming : phi.getIncomings()) {
-                    int value = map[incoming.getValue().getIndex()];
-                    incoming.setValue(program.variableAt(value));
-                    if (sharedValue != -2 && sharedValue != incoming.getValue().getIndex()) {
-                        sharedValue = -1;
-                    } else {
-                        sharedValue = incoming.getValue().getIndex();
-                    }
-                }
-                if (sharedValue != -1) {
-                    if (sharedValue != -2) {
-                        AssignInstruction assignInsn = new AssignInstruction();
-                        assignInsn.setReceiver(phi.getReceiver());
-                        assignInsn.setAssignee(program.variableAt(sharedValue));
-                        block.getInstructions().add(0, assignInsn);
-                    }
-                    block.getPhis().remove(i--);
-                }
-            }*/
+            if (cfg.incomingEdgesCount(v) == 1 && !handlers[v]) {
+                memoryVersion = exitMemoryVersions[cfg.incomingEdges(v)[0]];
+            } else {
+                invalidateMemory();
+            }
             for (int i = 0; i < block.getInstructions().size(); ++i) {
                 Instruction currentInsn = block.getInstructions().get(i);
                 currentInsn.acceptVisitor(optimizer);
@@ -92,6 +102,7 @@ public class GlobalValueNumbering implements MethodOptimization {
                     eliminate = false;
                 }
             }
+            exitMemoryVersions[v] = memoryVersion;
             for (TryCatchJoint joint : outputJoints.get(v)) {
                 for (int i = 0; i < joint.getSourceVariables().size(); ++i) {
                     int sourceVar = map[joint.getSourceVariables().get(i).getIndex()];
@@ -126,16 +137,161 @@ public class GlobalValueNumbering implements MethodOptimization {
         this.program = null;
     }
 
-    private void bind(int var, String value) {
-        KnownValue known = knownValues.get(value);
-        if (known != null && domTree.dominates(known.location, currentBlockIndex) && known.value != var) {
+    private void bind(int var, int operation, int first, int second) {
+        int slot = knownValues.lookup(operation, first, second);
+        if (knownValues.isOccupied(slot) && knownValues.values[slot] != var) {
+            eliminate = true;
+            map[var] = knownValues.values[slot];
+        } else {
+            knownValues.put(slot, operation, first, second, var, 0);
+        }
+    }
+
+    private void bindLoad(int var, int instance, int field) {
+        int slot = knownValues.lookup(FIELD_LOAD, instance, field);
+        if (knownValues.isOccupied(slot) && knownValues.memoryVersions[slot] == memoryVersion
+                && knownValues.values[slot] != var) {
             eliminate = true;
-            map[var] = known.value;
+            map[var] = knownValues.values[slot];
         } else {
-            known = new KnownValue();
-            known.location = currentBlockIndex;
-            known.value = var;
-            knownValues.put(value, known);
+            knownValues.put(slot, FIELD_LOAD, instance, field, var, memoryVersion);
+        }
+    }
+
+    private void invalidateMemory() {
+        memoryVersion = ++lastMemoryVersion;
+    }
+
+    private int symbol(Object value) {
+        return symbols.computeIfAbsent(value, key -> symbols.size());
+    }
+
+    /**
+     * <p>Open addressing hash table of expressions that were computed so far. Each expression is an operation
+     * code and two integer operands, that are either indexes of variables or indexes of symbols (like types
+     * and fields).</p>
+     *
+     * <p>Every change is written to the undo log, so that the table can be rolled back to a previously taken
+     * mark.</p>
+     */
+    static class ExpressionTable {
+        private static final int EMPTY = -1;
+        private static final int REMOVED = -2;
+        private static final int UNDO_RECORD_SIZE = 6;
+        int used;
+        int[] operations;
+        int[] firstOperands;
+        int[] secondOperands;
+        int[] values;
+        int[] memoryVersions;
+        private int[] undoLog = new int[UNDO_RECORD_SIZE * 16];
+        private int undoSize;
+
+        ExpressionTable() {
+            allocate(64);
+        }
+
+        private void allocate(int capacity) {
+            operations = new int[capacity];
+            Arrays.fill(operations, EMPTY);
+            firstOperands = new int[capacity];
+            secondOperands = new int[capacity];
+            values = new int[capacity];
+            memoryVersions = new int[capacity];
+        }
+
+        void clear() {
+            Arrays.fill(operations, EMPTY);
+            used = 0;
+            undoSize = 0;
+        }
+
+        int lookup(int operation, int first, int second) {
+            int mask = operations.length - 1;
+            int slot = hash(operation, first, second) & mask;
+            while (operations[slot] != EMPTY) {
+                if (operations[slot] == operation && firstOperands[slot] == first && secondOperands[slot] == second) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        boolean isOccupied(int slot) {
+            return operations[slot] >= 0;
+        }
+
+        void put(int slot, int operation, int first, int second, int value, int memoryVersion) {
+            boolean present = isOccupied(slot);
+            log(operation, first, second, present ? 1 : 0, values[slot], memoryVersions[slot]);
+            if (!present) {
+                if ((used + 1) * 2 > operations.length) {
+                    rehash();
+                    slot = lookup(operation, first, second);
+                }
+                ++used;
+            }
+            operations[slot] = operation;
+            firstOperands[slot] = first;
+            secondOperands[slot] = second;
+            values[slot] = value;
+            memoryVersions[slot] = memoryVersion;
+        }
+
+        int mark() {
+            return undoSize;
+        }
+
+        void rollback(int mark) {
+            while (undoSize > mark) {
+                undoSize -= UNDO_RECORD_SIZE;
+                int slot = lookup(undoLog[undoSize], undoLog[undoSize + 1], undoLog[undoSize + 2]);
+                if (undoLog[undoSize + 3] != 0) {
+                    values[slot] = undoLog[undoSize + 4];
+                    memoryVersions[slot] = undoLog[undoSize + 5];
+                } else {
+                    operations[slot] = REMOVED;
+                }
+            }
+        }
+
+        private void log(int operation, int first, int second, int present, int value, int memoryVersion) {
+            if (undoSize + UNDO_RECORD_SIZE > undoLog.length) {
+                undoLog = Arrays.copyOf(undoLog, undoLog.length * 2);
+            }
+            undoLog[undoSize++] = operation;
+            undoLog[undoSize++] = first;
+            undoLog[undoSize++] = second;
+            undoLog[undoSize++] = present;
+            undoLog[undoSize++] = value;
+            undoLog[undoSize++] = memoryVersion;
+        }
+
+        private void rehash() {
+            int[] oldOperations = operations;
+            int[] oldFirstOperands = firstOperands;
+            int[] oldSecondOperands = secondOperands;
+            int[] oldValues = values;
+            int[] oldMemoryVersions = memoryVersions;
+            allocate(oldOperations.length * 2);
+            used = 0;
+            for (int i = 0; i < oldOperations.length; ++i) {
+                if (oldOperations[i] >= 0) {
+                    int slot = lookup(oldOperations[i], oldFirstOperands[i], oldSecondOperands[i]);
+                    operations[slot] = oldOperations[i];
+                    firstOperands[slot] = oldFirstOperands[i];
+                    secondOperands[slot] = oldSecondOperands[i];
+                    values[slot] = oldValues[i];
+                    memoryVersions[slot] = oldMemoryVersions[i];
+                    ++used;
+                }
+            }
+        }
+
+        private static int hash(int operation, int first, int second) {
+            int hash = (operation * 31 + first) * 31 + second;
+            return hash ^ (hash >>> 16);
         }
     }
 
@@ -178,56 +334,18 @@ public class GlobalValueNumbering implements MethodOptimization {
             int b = map[insn.getSecondOperand().getIndex()];
             insn.setFirstOperand(program.variableAt(a));
             insn.setSecondOperand(program.variableAt(b));
-            boolean commutative = false;
-            String value;
             switch (insn.getOperation()) {
                 case ADD:
-                    value = "+";
-                    commutative = true;
-                    break;
-                case SUBTRACT:
-                    value = "-";
-                    break;
                 case MULTIPLY:
-                    value = "*";
-                    commutative = true;
-                    break;
-                case DIVIDE:
-                    value = "/";
-                    break;
-                case MODULO:
-                    value = "%";
-                    break;
-                case COMPARE:
-                    value = "$";
-                    break;
                 case AND:
-                    value = "&";
-                    commutative = true;
-                    break;
                 case OR:
-                    value = "|";
-                    commutative = true;
-                    break;
                 case XOR:
-                    value = "^";
-                    commutative = true;
-                    break;
-                case SHIFT_LEFT:
-                    value = "<<";
-                    break;
-                case SHIFT_RIGHT:
-                    value = ">>";
-                    break;
-                case SHIFT_RIGHT_UNSIGNED:
-                    value = ">>>";
+                    bind(insn.getReceiver().getIndex(), BINARY + insn.getOperation().ordinal(), Math.min(a, b),
+                            Math.max(a, b));
                     break;
                 default:
-                    return;
-            }
-            bind(insn.getReceiver().getIndex(), "@" + a + value + "@" + b);
-            if (commutative) {
-                bind(insn.getReceiver().getIndex(), "@" + b + value + "@" + a);
+                    bind(insn.getReceiver().getIndex(), BINARY + insn.getOperation().ordinal(), a, b);
+                    break;
             }
         }
 
@@ -235,7 +353,7 @@ public class GlobalValueNumbering implements MethodOptimization {
         public void visit(NegateInstruction insn) {
             int a = map[insn.getOperand().getIndex()];
             insn.setOperand(program.variableAt(a));
-            bind(insn.getReceiver().getIndex(), "-@" + a);
+            bind(insn.getReceiver().getIndex(), NEGATE, a, 0);
         }
 
         @Override
@@ -248,21 +366,22 @@ public class GlobalValueNumbering implements MethodOptimization {
         public void visit(CastInstruction insn) {
             int a = map[insn.getValue().getIndex()];
             insn.setValue(program.variableAt(a));
-            bind(insn.getReceiver().getIndex(), "@" + a + "::" + insn.getTargetType());
+            bind(insn.getReceiver().getIndex(), CAST, a, symbol(insn.getTargetType()));
         }
 
         @Override
         public void visit(CastNumberInstruction insn) {
             int a = map[insn.getValue().getIndex()];
             insn.setValue(program.variableAt(a));
-            bind(insn.getReceiver().getIndex(), "@" + a + "::" + insn.getTargetType());
+            bind(insn.getReceiver().getIndex(), CAST_NUMBER, a, symbol(insn.getTargetType()));
         }
 
         @Override
         public void visit(CastIntegerInstruction insn) {
             int a = map[insn.getValue().getIndex()];
             insn.setValue(program.variableAt(a));
-            bind(insn.getReceiver().getIndex(), "@" + a + "::" + insn.getTargetType() + " " + insn.getDirection());
+            bind(insn.getReceiver().getIndex(), CAST_INTEGER, a,
+                    insn.getTargetType().ordinal() * 2 + insn.getDirection().ordinal());
         }
 
         @Override
@@ -323,27 +442,36 @@ public class GlobalValueNumbering implements MethodOptimization {
 
         @Override
         public void visit(GetFieldInstruction insn) {
+            int instance = -1;
             if (insn.getInstance() != null) {
-                int instance = map[insn.getInstance().getIndex()];
+                instance = map[insn.getInstance().getIndex()];
                 insn.setInstance(program.variableAt(instance));
             }
+            bindLoad(insn.getReceiver().getIndex(), instance, symbol(insn.getField()));
         }
 
         @Override
         public void visit(PutFieldInstruction insn) {
+            int instance = -1;
             if (insn.getInstance() != null) {
-                int instance = map[insn.getInstance().getIndex()];
+                instance = map[insn.getInstance().getIndex()];
                 insn.setInstance(program.variableAt(instance));
             }
             int val = map[insn.getValue().getIndex()];
             insn.setValue(program.variableAt(val));
+
+            // Other instances may be aliases of this one, so they are forgotten. Stored value is known though.
+            invalidateMemory();
+            int field = symbol(insn.getField());
+            knownValues.put(knownValues.lookup(FIELD_LOAD, instance, field), FIELD_LOAD, instance, field, val,
+                    memoryVersion);
         }
 
         @Override
         public void visit(ArrayLengthInstruction insn) {
             int a = map[insn.getArray().getIndex()];
             insn.setArray(program.variableAt(a));
-            bind(insn.getReceiver().getIndex(), "@" + a + ".length");
+            bind(insn.getReceiver().getIndex(), ARRAY_LENGTH, a, 0);
         }
 
         @Override
@@ -356,7 +484,8 @@ public class GlobalValueNumbering implements MethodOptimization {
         public void visit(UnwrapArrayInstruction insn) {
             int a = map[insn.getArray().getIndex()];
             insn.setArray(program.variableAt(a));
-            bind(insn.getReceiver().getIndex(), "@" + a + ".data");
+            // Element type is a part of the key: unwrapped long arrays may be represented differently
+            bind(insn.getReceiver().getIndex(), UNWRAP_ARRAY, a, insn.getElementType().ordinal());
         }
 
         @Override
@@ -384,12 +513,14 @@ public class GlobalValueNumbering implements MethodOptimization {
                 insn.setInstance(program.variableAt(instance));
             }
             insn.getArguments().replaceAll(mapper);
+            invalidateMemory();
         }
 
         @Override
         public void visit(InvokeDynamicInstruction insn) {
             Optional.ofNullable(insn.getInstance()).map(mapper).ifPresent(insn::setInstance);
             insn.getArguments().replaceAll(mapper);
+            invalidateMemory();
         }
 
         private UnaryOperator<Variable> mapper = var -> program.variableAt(map[var.getIndex()]);
@@ -398,30 +529,33 @@ public class GlobalValueNumbering implements MethodOptimization {
         public void visit(IsInstanceInstruction insn) {
             int val = map[insn.getValue().getIndex()];
             insn.setValue(program.variableAt(val));
-            bind(insn.getReceiver().getIndex(), "@" + val + " :? " + insn.getType());
+            bind(insn.getReceiver().getIndex(), IS_INSTANCE, val, symbol(insn.getType()));
         }
 
         @Override
         public void visit(InitClassInstruction insn) {
+            invalidateMemory();
         }
 
         @Override
         public void visit(NullCheckInstruction insn) {
             int val = map[insn.getValue().getIndex()];
             insn.setValue(program.variableAt(val));
-            bind(insn.getReceiver().getIndex(), "nullCheck @" + val);
+            bind(insn.getReceiver().getIndex(), NULL_CHECK, val, 0);
         }
 
         @Override
         public void visit(MonitorEnterInstruction insn) {
             int val = map[insn.getObjectRef().getIndex()];
             insn.setObjectRef(program.variableAt(val));
+            invalidateMemory();
         }
 
         @Override
         public void visit(MonitorExitInstruction insn) {
             int val = map[insn.getObjectRef().getIndex()];
             insn.setObjectRef(program.variableAt(val));
+            invalidateMemory();
         }
     };
 }
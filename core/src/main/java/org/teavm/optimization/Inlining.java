@@ -0,0 +1,427 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.teavm.callgraph.CallGraphNode;
+import org.teavm.callgraph.CallSite;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.dependency.MethodDependencyInfo;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.BasicBlockReader;
+import org.teavm.model.ClassReader;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.ListableClassReaderSource;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.ProgramReader;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.ExitInstruction;
+import org.teavm.model.instructions.InitClassInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.util.BasicBlockMapper;
+import org.teavm.model.util.InstructionTransitionExtractor;
+import org.teavm.model.util.InstructionVariableMapper;
+import org.teavm.model.util.ProgramUtils;
+
+/**
+ * <p>Replaces calls to small methods that are known at compile time (static and private methods, constructors,
+ * as well as virtual methods turned into direct calls by {@link Devirtualization}) with bodies of these
+ * methods.</p>
+ *
+ * <p>Candidates are collected by {@link #collectCallees(ListableClassReaderSource, DependencyInfo, Predicate)}
+ * before methods get optimized, so that callee bodies are taken from an immutable snapshot, no matter
+ * in which order (or in how many threads) callers are processed. Inlined instructions keep their original
+ * locations, so debug information and source maps still point to the callee's source.</p>
+ *
+ * <p>Body of an instance method is preceded by {@link NullCheckInstruction} on the receiver, so
+ * <code>NullPointerException</code> is thrown where the invocation would throw it. The check is omitted
+ * when the receiver is <code>this</code>, a newly constructed object or an already checked value.
+ * The constructor of <code>NullPointerException</code> should be linked before dependency analysis.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class Inlining implements MethodOptimization {
+    public static final int DEFAULT_MAX_CALLEE_SIZE = 20;
+    public static final int DEFAULT_MAX_DEPTH = 3;
+    public static final int DEFAULT_MAX_GROWTH = 300;
+    private static final MethodDescriptor CLINIT = new MethodDescriptor("<clinit>", void.class);
+    private ListableClassReaderSource classSource;
+    private Map<MethodReference, Program> callees = new HashMap<>();
+    private int maxCalleeSize = DEFAULT_MAX_CALLEE_SIZE;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private int maxGrowth = DEFAULT_MAX_GROWTH;
+
+    public int getMaxCalleeSize() {
+        return maxCalleeSize;
+    }
+
+    /**
+     * <p>Sets maximum number of instructions in a method that can be inlined.
+     * Should be set before {@link #collectCallees(ListableClassReaderSource, DependencyInfo, Predicate)}.</p>
+     *
+     * @param maxCalleeSize maximum size of callee.
+     */
+    public void setMaxCalleeSize(int maxCalleeSize) {
+        this.maxCalleeSize = maxCalleeSize;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * <p>Sets how deep bodies of inlined methods are inlined in their turn.</p>
+     *
+     * @param maxDepth maximum depth of inlining, 1 means that only calls that are present in the caller
+     * are inlined.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public int getMaxGrowth() {
+        return maxGrowth;
+    }
+
+    /**
+     * <p>Sets maximum number of instructions that inlining is allowed to add to a single method.</p>
+     *
+     * @param maxGrowth maximum number of added instructions.
+     */
+    public void setMaxGrowth(int maxGrowth) {
+        this.maxGrowth = maxGrowth;
+    }
+
+    /**
+     * <p>Takes snapshot of bodies of methods that can be inlined.</p>
+     *
+     * @param classes classes that are going to be optimized.
+     * @param dependency results of dependency analysis, only reachable methods are inlined, and methods that call
+     * themselves are not.
+     * @param excluded methods that should never be inlined, for example, methods that are generated
+     * by the host or methods that have to be split by async transformation.
+     */
+    public void collectCallees(ListableClassReaderSource classes, DependencyInfo dependency,
+            Predicate<MethodReference> excluded) {
+        classSource = classes;
+        for (String className : classes.getClassNames()) {
+            ClassReader cls = classes.get(className);
+            for (MethodReader method : cls.getMethods()) {
+                if (isCallee(method, dependency, excluded)) {
+                    Program program = ProgramUtils.copy(method.getProgram());
+                    if (hasExit(program)) {
+                        callees.put(method.getReference(), program);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isCallee(MethodReader method, DependencyInfo dependency, Predicate<MethodReference> excluded) {
+        ProgramReader program = method.getProgram();
+        if (program == null || program.basicBlockCount() == 0
+                || method.getName().equals("<clinit>") || method.hasModifier(ElementModifier.NATIVE)
+                || method.hasModifier(ElementModifier.SYNCHRONIZED) || excluded.test(method.getReference())) {
+            return false;
+        }
+        MethodDependencyInfo methodDep = dependency.getMethod(method.getReference());
+        if (methodDep == null || !methodDep.isUsed()) {
+            return false;
+        }
+        CallGraphNode node = dependency.getCallGraph().getNode(method.getReference());
+        if (node != null) {
+            for (CallSite callSite : node.getCallSites()) {
+                if (callSite.getCallee().getMethod().equals(method.getReference())) {
+                    return false;
+                }
+            }
+        }
+
+        if (program.basicBlockAt(0).readPhis().iterator().hasNext()) {
+            return false;
+        }
+        int size = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlockReader block = program.basicBlockAt(i);
+            if (block.readTryCatchBlocks().iterator().hasNext()) {
+                return false;
+            }
+            size += block.instructionCount();
+            if (size > maxCalleeSize) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasExit(Program program) {
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            if (program.basicBlockAt(i).getLastInstruction() instanceof ExitInstruction) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void optimize(MethodReader method, Program program) {
+        if (callees.isEmpty()) {
+            return;
+        }
+        // For each block, a chain of methods whose bodies it was inlined from
+        List<InlineChain> chains = new ArrayList<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            chains.add(null);
+        }
+        // Variables that hold objects which are known to be not null, so calls on them need no null check
+        Set<Variable> nonNullVariables = new HashSet<>();
+        if (!method.hasModifier(ElementModifier.STATIC) && program.variableCount() > 0) {
+            nonNullVariables.add(program.variableAt(0));
+        }
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            findNonNullVariables(program.basicBlockAt(i), nonNullVariables);
+        }
+        int growth = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            InlineChain chain = chains.get(i);
+            int depth = chain != null ? chain.depth : 0;
+            if (depth >= maxDepth || !block.getTryCatchBlocks().isEmpty()) {
+                continue;
+            }
+            for (int j = 0; j < block.getInstructions().size(); ++j) {
+                Instruction insn = block.getInstructions().get(j);
+                if (!(insn instanceof InvokeInstruction)) {
+                    continue;
+                }
+                InvokeInstruction invoke = (InvokeInstruction) insn;
+                if (invoke.getType() != InvocationType.SPECIAL) {
+                    continue;
+                }
+                MethodReader callee = classSource.resolve(invoke.getMethod());
+                if (callee == null) {
+                    continue;
+                }
+                Program calleeProgram = callees.get(callee.getReference());
+                if (calleeProgram == null || callee.getReference().equals(method.getReference())
+                        || (chain != null && chain.contains(callee.getReference()))) {
+                    continue;
+                }
+                int calleeSize = countInstructions(calleeProgram);
+                if (growth + calleeSize > maxGrowth) {
+                    continue;
+                }
+
+                growth += calleeSize;
+                inline(method, program, block, j, callee, calleeProgram, nonNullVariables);
+
+                // The rest of the block goes to the continuation block, which is created first
+                chains.add(chain);
+                InlineChain calleeChain = new InlineChain(callee.getReference(), chain);
+                while (chains.size() < program.basicBlockCount()) {
+                    chains.add(calleeChain);
+                }
+                break;
+            }
+        }
+    }
+
+    private static void findNonNullVariables(BasicBlock block, Set<Variable> nonNullVariables) {
+        for (Instruction insn : block.getInstructions()) {
+            if (insn instanceof ConstructInstruction) {
+                nonNullVariables.add(((ConstructInstruction) insn).getReceiver());
+            } else if (insn instanceof NullCheckInstruction) {
+                nonNullVariables.add(((NullCheckInstruction) insn).getReceiver());
+            }
+        }
+    }
+
+    private static int countInstructions(ProgramReader program) {
+        int count = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            count += program.basicBlockAt(i).instructionCount();
+        }
+        return count;
+    }
+
+    private void inline(MethodReader caller, Program program, BasicBlock block, int index, MethodReader callee,
+            Program calleeProgram, Set<Variable> nonNullVariables) {
+        InvokeInstruction invoke = (InvokeInstruction) block.getInstructions().get(index);
+
+        // Split the block after the invocation
+        BasicBlock continuation = program.createBasicBlock();
+        List<Instruction> rest = new ArrayList<>(block.getInstructions().subList(index + 1,
+                block.getInstructions().size()));
+        block.getInstructions().subList(index, block.getInstructions().size()).clear();
+        continuation.getInstructions().addAll(rest);
+        InstructionTransitionExtractor transitionExtractor = new InstructionTransitionExtractor();
+        continuation.getLastInstruction().acceptVisitor(transitionExtractor);
+        if (transitionExtractor.getTargets() != null) {
+            for (BasicBlock successor : transitionExtractor.getTargets()) {
+                for (Phi phi : successor.getPhis()) {
+                    for (Incoming incoming : phi.getIncomings()) {
+                        if (incoming.getSource() == block) {
+                            incoming.setSource(continuation);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Invocation of an instance method throws NullPointerException on null receiver, so inlined body
+        // should do the same. Receivers of constructors are never null.
+        Variable instance = invoke.getInstance();
+        if (instance != null && !callee.getName().equals("<init>") && !nonNullVariables.contains(instance)) {
+            NullCheckInstruction nullCheck = new NullCheckInstruction();
+            nullCheck.setValue(instance);
+            instance = program.createVariable();
+            nullCheck.setReceiver(instance);
+            nullCheck.setLocation(invoke.getLocation());
+            block.getInstructions().add(nullCheck);
+            nonNullVariables.add(instance);
+        }
+
+        // Copy body of the callee, mapping its parameters to arguments of the invocation
+        Program calleeCopy = ProgramUtils.copy(calleeProgram);
+        Variable[] variableMap = new Variable[calleeCopy.variableCount()];
+        variableMap[0] = instance;
+        for (int i = 0; i < invoke.getArguments().size(); ++i) {
+            variableMap[i + 1] = invoke.getArguments().get(i);
+        }
+        for (int i = 0; i < variableMap.length; ++i) {
+            if (variableMap[i] == null) {
+                variableMap[i] = program.createVariable();
+            }
+        }
+        BasicBlock[] blockMap = new BasicBlock[calleeCopy.basicBlockCount()];
+        for (int i = 0; i < blockMap.length; ++i) {
+            blockMap[i] = program.createBasicBlock();
+        }
+
+        InstructionVariableMapper variableMapper = new InstructionVariableMapper(
+                var -> variableMap[var.getIndex()]);
+        BasicBlockMapper blockMapper = new BasicBlockMapper(i -> i) {
+            @Override
+            protected BasicBlock map(BasicBlock block) {
+                return blockMap[block.getIndex()];
+            }
+        };
+        List<BasicBlock> exits = new ArrayList<>();
+        List<Variable> exitValues = new ArrayList<>();
+        for (int i = 0; i < blockMap.length; ++i) {
+            BasicBlock source = calleeCopy.basicBlockAt(i);
+            BasicBlock target = blockMap[i];
+            List<Instruction> instructions = new ArrayList<>(source.getInstructions());
+            source.getInstructions().clear();
+            target.getInstructions().addAll(instructions);
+            List<Phi> phis = new ArrayList<>(source.getPhis());
+            source.getPhis().clear();
+            target.getPhis().addAll(phis);
+            blockMapper.transform(target);
+            variableMapper.apply(target);
+            findNonNullVariables(target, nonNullVariables);
+
+            Instruction last = target.getLastInstruction();
+            if (last instanceof ExitInstruction) {
+                ExitInstruction exit = (ExitInstruction) last;
+                JumpInstruction jump = new JumpInstruction();
+                jump.setTarget(continuation);
+                jump.setLocation(exit.getLocation());
+                target.getInstructions().set(target.getInstructions().size() - 1, jump);
+                exits.add(target);
+                exitValues.add(exit.getValueToReturn());
+            }
+        }
+
+        // Pass the result to the continuation
+        if (invoke.getReceiver() != null) {
+            if (exits.size() == 1) {
+                AssignInstruction assign = new AssignInstruction();
+                assign.setAssignee(exitValues.get(0));
+                assign.setReceiver(invoke.getReceiver());
+                assign.setLocation(invoke.getLocation());
+                BasicBlock exit = exits.get(0);
+                exit.getInstructions().add(exit.getInstructions().size() - 1, assign);
+            } else {
+                Phi phi = new Phi();
+                phi.setReceiver(invoke.getReceiver());
+                for (int i = 0; i < exits.size(); ++i) {
+                    Incoming incoming = new Incoming();
+                    incoming.setSource(exits.get(i));
+                    incoming.setValue(exitValues.get(i));
+                    phi.getIncomings().add(incoming);
+                }
+                continuation.getPhis().add(phi);
+            }
+        }
+
+        // Static methods and constructors initialize their class, so inlined body should do the same
+        String calleeClass = callee.getOwnerName();
+        boolean initializesClass = callee.hasModifier(ElementModifier.STATIC) || callee.getName().equals("<init>");
+        if (initializesClass && !calleeClass.equals(caller.getOwnerName())) {
+            ClassReader cls = classSource.get(calleeClass);
+            if (cls != null && cls.getMethod(CLINIT) != null) {
+                InitClassInstruction initClass = new InitClassInstruction();
+                initClass.setClassName(calleeClass);
+                initClass.setLocation(invoke.getLocation());
+                block.getInstructions().add(initClass);
+            }
+        }
+
+        JumpInstruction jumpToCallee = new JumpInstruction();
+        jumpToCallee.setTarget(blockMap[0]);
+        jumpToCallee.setLocation(invoke.getLocation());
+        block.getInstructions().add(jumpToCallee);
+    }
+
+    static class InlineChain {
+        final MethodReference method;
+        final InlineChain parent;
+        final int depth;
+
+        InlineChain(MethodReference method, InlineChain parent) {
+            this.method = method;
+            this.parent = parent;
+            this.depth = parent != null ? parent.depth + 1 : 1;
+        }
+
+        boolean contains(MethodReference method) {
+            for (InlineChain chain = this; chain != null; chain = chain.parent) {
+                if (chain.method.equals(method)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
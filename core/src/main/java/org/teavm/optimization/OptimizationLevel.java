@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Predefined sets of optimization passes. Each level runs all passes of the level below it.</p>
+ *
+ * @author Alexey Andreev
+ */
+public enum OptimizationLevel {
+    /**
+     * <p>Methods are translated as is.</p>
+     */
+    NONE(1),
+
+    /**
+     * <p>Only cheap passes that don't analyze loops are run: global value numbering and unused variable
+     * elimination, each pass runs once.</p>
+     */
+    SIMPLE(1, OptimizationPass.GLOBAL_VALUE_NUMBERING, OptimizationPass.UNUSED_VARIABLE_ELIMINATION),
+
+    /**
+     * <p>Passes of {@link #SIMPLE} preceded by array unwrap motion and loop invariant motion, which is
+     * the original optimization pipeline. Each pass runs once. This is the default level.</p>
+     */
+    FULL(1, OptimizationPass.ARRAY_UNWRAP_MOTION, OptimizationPass.LOOP_INVARIANT_MOTION,
+            OptimizationPass.GLOBAL_VALUE_NUMBERING, OptimizationPass.UNUSED_VARIABLE_ELIMINATION),
+
+    /**
+     * <p>Passes of {@link #FULL} preceded by string builder elimination, inlining, scalar replacement
+     * and constant propagation, plus class initializer elimination over the whole program. The sequence is repeated while it keeps changing the size of a method,
+     * at most three times. Later rounds mostly clean up after scalar replacement and constant propagation,
+     * at the cost of longer compilation.</p>
+     */
+    AGGRESSIVE(3, OptimizationPass.STRING_BUILDER_ELIMINATION, OptimizationPass.INLINING,
+            OptimizationPass.SCALAR_REPLACEMENT, OptimizationPass.CONSTANT_PROPAGATION,
+            OptimizationPass.ARRAY_UNWRAP_MOTION, OptimizationPass.LOOP_INVARIANT_MOTION,
+            OptimizationPass.GLOBAL_VALUE_NUMBERING, OptimizationPass.UNUSED_VARIABLE_ELIMINATION,
+            OptimizationPass.CLASS_INITIALIZER_ELIMINATION);
+
+    private final int maxRounds;
+    private final List<OptimizationPass> passes;
+
+    OptimizationLevel(int maxRounds, OptimizationPass... passes) {
+        this.maxRounds = maxRounds;
+        this.passes = Collections.unmodifiableList(Arrays.asList(passes));
+    }
+
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    public List<OptimizationPass> getPasses() {
+        return passes;
+    }
+}
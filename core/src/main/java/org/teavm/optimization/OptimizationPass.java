@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+/**
+ * <p>Optimization passes that TeaVM can run over methods. Each pass has a short name which is used
+ * in build configuration and in optimization reports.</p>
+ *
+ * @author Alexey Andreev
+ */
+public enum OptimizationPass {
+    /**
+     * <p>Replacement of local <code>StringBuilder</code> chains by direct concatenation,
+     * see {@link StringBuilderElimination}. Should run before inlining.</p>
+     */
+    STRING_BUILDER_ELIMINATION("sb-elimination"),
+    /**
+     * <p>Method inlining, see {@link Inlining}. Only takes effect when inlining is enabled
+     * by {@link org.teavm.vm.TeaVM#setInlining(boolean)}.</p>
+     */
+    INLINING("inline"),
+    SCALAR_REPLACEMENT("scalar-replacement"),
+    CONSTANT_PROPAGATION("sccp"),
+    ARRAY_UNWRAP_MOTION("array-unwrap"),
+    LOOP_INVERSION("loop-inversion"),
+    LOOP_INVARIANT_MOTION("loop-invariant-motion"),
+    GLOBAL_VALUE_NUMBERING("gvn"),
+    UNUSED_VARIABLE_ELIMINATION("unused-variables"),
+    /**
+     * <p>Evaluation of static initializers at compile time, see {@link ClassInitializerElimination}.
+     * Unlike other passes, it runs once over the whole program after linking, and only in non-incremental
+     * builds. Only initializers that compute primitive values are evaluated, constant tables and arrays
+     * of enum values are still filled at run time.</p>
+     */
+    CLASS_INITIALIZER_ELIMINATION("clinit-elimination");
+
+    private final String name;
+
+    OptimizationPass(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static OptimizationPass byName(String name) {
+        for (OptimizationPass pass : values()) {
+            if (pass.name.equals(name)) {
+                return pass;
+            }
+        }
+        throw new IllegalArgumentException("Unknown optimization pass: " + name);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.MethodReader;
+import org.teavm.model.Program;
+
+/**
+ * <p>Runs a sequence of method optimizations and collects {@link PassStatistics} for each of them.</p>
+ *
+ * <p>Passes may enable each other (for example, inlining and constant propagation create redundancies
+ * for value numbering, and value numbering creates constants for propagation), so the sequence is repeated
+ * while it keeps changing the number of instructions or basic blocks, up to {@link #getMaxRounds()} times.
+ * Passes added by {@link #addOnce(String, Supplier)} only take part in the first round.</p>
+ *
+ * <p>Optimizations may keep state, so a new instance of each optimization is requested from its factory
+ * for every method. Pass manager itself can be used from several threads.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class PassManager {
+    private List<Pass> passes = new ArrayList<>();
+    private int maxRounds = 1;
+
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    public void setMaxRounds(int maxRounds) {
+        if (maxRounds < 1) {
+            throw new IllegalArgumentException("Number of rounds must be positive: " + maxRounds);
+        }
+        this.maxRounds = maxRounds;
+    }
+
+    public PassManager add(String name, Supplier<? extends MethodOptimization> factory) {
+        passes.add(new Pass(name, factory, true));
+        return this;
+    }
+
+    public PassManager addOnce(String name, Supplier<? extends MethodOptimization> factory) {
+        passes.add(new Pass(name, factory, false));
+        return this;
+    }
+
+    public List<PassStatistics> getStatistics() {
+        List<PassStatistics> statistics = new ArrayList<>();
+        for (Pass pass : passes) {
+            statistics.add(pass.statistics);
+        }
+        return statistics;
+    }
+
+    public void optimize(MethodReader method, Program program) {
+        for (int round = 0; round < maxRounds; ++round) {
+            boolean changed = false;
+            for (Pass pass : passes) {
+                if (round > 0 && !pass.repeatable) {
+                    continue;
+                }
+                int instructionsBefore = countInstructions(program);
+                int basicBlocksBefore = countBasicBlocks(program);
+                long start = System.nanoTime();
+                pass.factory.get().optimize(method, program);
+                long time = System.nanoTime() - start;
+                int instructionsAfter = countInstructions(program);
+                int basicBlocksAfter = countBasicBlocks(program);
+                pass.statistics.record(time, instructionsBefore, instructionsAfter, basicBlocksBefore,
+                        basicBlocksAfter);
+                if (instructionsBefore != instructionsAfter || basicBlocksBefore != basicBlocksAfter) {
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                break;
+            }
+        }
+    }
+
+    private static int countInstructions(Program program) {
+        int count = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            if (block != null) {
+                count += block.getPhis().size() + block.getInstructions().size();
+            }
+        }
+        return count;
+    }
+
+    private static int countBasicBlocks(Program program) {
+        int count = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            if (program.basicBlockAt(i) != null) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static class Pass {
+        final Supplier<? extends MethodOptimization> factory;
+        final boolean repeatable;
+        final PassStatistics statistics;
+
+        Pass(String name, Supplier<? extends MethodOptimization> factory, boolean repeatable) {
+            this.factory = factory;
+            this.repeatable = repeatable;
+            statistics = new PassStatistics(name);
+        }
+    }
+}
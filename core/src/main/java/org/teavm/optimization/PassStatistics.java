@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+/**
+ * <p>Accumulates cost and effect of an optimization pass over all methods it was applied to.
+ * Sizes are summed over all runs, so the difference between sizes before and after shows how much code
+ * the pass has removed (or added, in case of inlining).</p>
+ *
+ * @author Alexey Andreev
+ */
+public class PassStatistics {
+    private final String name;
+    private int runCount;
+    private long time;
+    private long instructionsBefore;
+    private long instructionsAfter;
+    private long basicBlocksBefore;
+    private long basicBlocksAfter;
+
+    public PassStatistics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * <p>Gets total wall time spent by the pass, in nanoseconds.</p>
+     */
+    public synchronized long getTime() {
+        return time;
+    }
+
+    public synchronized long getInstructionsBefore() {
+        return instructionsBefore;
+    }
+
+    public synchronized long getInstructionsAfter() {
+        return instructionsAfter;
+    }
+
+    public synchronized long getBasicBlocksBefore() {
+        return basicBlocksBefore;
+    }
+
+    public synchronized long getBasicBlocksAfter() {
+        return basicBlocksAfter;
+    }
+
+    synchronized void record(long time, int instructionsBefore, int instructionsAfter, int basicBlocksBefore,
+            int basicBlocksAfter) {
+        ++runCount;
+        this.time += time;
+        this.instructionsBefore += instructionsBefore;
+        this.instructionsAfter += instructionsAfter;
+        this.basicBlocksBefore += basicBlocksBefore;
+        this.basicBlocksAfter += basicBlocksAfter;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.FieldReference;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TryCatchJoint;
+import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.LongConstantInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.util.PhiUpdater;
+import org.teavm.model.util.UsageExtractor;
+
+/**
+ * <p>Replaces objects that never escape the method with a set of local variables, one per field. An object
+ * does not escape when it is created by {@link ConstructInstruction} and then is only used as an instance
+ * of {@link GetFieldInstruction} and {@link PutFieldInstruction}, or as an instance of <code>Object</code>'s
+ * constructor, which does nothing. Usually such objects appear after {@link Inlining} of constructors
+ * and small methods, like getters and setters.</p>
+ *
+ * <p>The analysis is intraprocedural: an object passed to any other method is considered escaping. So the pass
+ * does nothing useful unless inlining is enabled, and it should run after {@link Inlining}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class ScalarReplacement implements MethodOptimization {
+    private static final MethodReference OBJECT_INIT = new MethodReference(Object.class, "<init>", void.class);
+
+    @Override
+    public void optimize(MethodReader method, Program program) {
+        boolean[] replaceable = findNonEscapingObjects(program);
+        if (replaceable == null) {
+            return;
+        }
+
+        // Collect fields of each object and their types
+        @SuppressWarnings("unchecked")
+        Map<FieldReference, ValueType>[] fieldTypes = new Map[replaceable.length];
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof GetFieldInstruction) {
+                    GetFieldInstruction getField = (GetFieldInstruction) insn;
+                    Variable instance = getField.getInstance();
+                    if (instance != null && replaceable[instance.getIndex()]) {
+                        fields(fieldTypes, instance).put(getField.getField(), getField.getFieldType());
+                    }
+                } else if (insn instanceof PutFieldInstruction) {
+                    PutFieldInstruction putField = (PutFieldInstruction) insn;
+                    Variable instance = putField.getInstance();
+                    if (instance != null && replaceable[instance.getIndex()]) {
+                        fields(fieldTypes, instance).put(putField.getField(), putField.getFieldType());
+                    }
+                }
+            }
+        }
+
+        // Each field of each object becomes a variable that is assigned several times, so phis should be
+        // updated afterwards
+        @SuppressWarnings("unchecked")
+        Map<FieldReference, Variable>[] fieldVars = new Map[replaceable.length];
+        for (int i = 0; i < replaceable.length; ++i) {
+            if (fieldTypes[i] != null) {
+                fieldVars[i] = new LinkedHashMap<>();
+                for (FieldReference field : fieldTypes[i].keySet()) {
+                    fieldVars[i].put(field, program.createVariable());
+                }
+            }
+        }
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (int j = 0; j < block.getInstructions().size(); ++j) {
+                Instruction insn = block.getInstructions().get(j);
+                if (insn instanceof ConstructInstruction) {
+                    int receiver = ((ConstructInstruction) insn).getReceiver().getIndex();
+                    if (!replaceable[receiver]) {
+                        continue;
+                    }
+                    block.getInstructions().set(j, new EmptyInstruction());
+                    if (fieldTypes[receiver] != null) {
+                        for (Map.Entry<FieldReference, ValueType> entry : fieldTypes[receiver].entrySet()) {
+                            Instruction init = createDefaultValue(entry.getValue(),
+                                    fieldVars[receiver].get(entry.getKey()));
+                            init.setLocation(insn.getLocation());
+                            block.getInstructions().add(++j, init);
+                        }
+                    }
+                } else if (insn instanceof GetFieldInstruction) {
+                    GetFieldInstruction getField = (GetFieldInstruction) insn;
+                    Variable instance = getField.getInstance();
+                    if (instance != null && replaceable[instance.getIndex()]) {
+                        AssignInstruction assign = new AssignInstruction();
+                        assign.setAssignee(fieldVars[instance.getIndex()].get(getField.getField()));
+                        assign.setReceiver(getField.getReceiver());
+                        assign.setLocation(insn.getLocation());
+                        block.getInstructions().set(j, assign);
+                    }
+                } else if (insn instanceof PutFieldInstruction) {
+                    PutFieldInstruction putField = (PutFieldInstruction) insn;
+                    Variable instance = putField.getInstance();
+                    if (instance != null && replaceable[instance.getIndex()]) {
+                        AssignInstruction assign = new AssignInstruction();
+                        assign.setAssignee(putField.getValue());
+                        assign.setReceiver(fieldVars[instance.getIndex()].get(putField.getField()));
+                        assign.setLocation(insn.getLocation());
+                        block.getInstructions().set(j, assign);
+                    }
+                } else if (insn instanceof InvokeInstruction) {
+                    Variable instance = ((InvokeInstruction) insn).getInstance();
+                    if (instance != null && replaceable[instance.getIndex()]) {
+                        block.getInstructions().set(j, new EmptyInstruction());
+                    }
+                }
+            }
+        }
+
+        Variable[] arguments = new Variable[method.parameterCount() + 1];
+        for (int i = 0; i < arguments.length; ++i) {
+            arguments[i] = program.variableAt(i);
+        }
+        new PhiUpdater().updatePhis(program, arguments);
+    }
+
+    private static Map<FieldReference, ValueType> fields(Map<FieldReference, ValueType>[] fieldTypes,
+            Variable instance) {
+        Map<FieldReference, ValueType> fields = fieldTypes[instance.getIndex()];
+        if (fields == null) {
+            fields = new LinkedHashMap<>();
+            fieldTypes[instance.getIndex()] = fields;
+        }
+        return fields;
+    }
+
+    private static boolean[] findNonEscapingObjects(Program program) {
+        boolean[] replaceable = new boolean[program.variableCount()];
+        boolean found = false;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof ConstructInstruction) {
+                    replaceable[((ConstructInstruction) insn).getReceiver().getIndex()] = true;
+                    found = true;
+                }
+            }
+        }
+        if (!found) {
+            return null;
+        }
+
+        UsageExtractor usageExtractor = new UsageExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Phi phi : block.getPhis()) {
+                for (Incoming incoming : phi.getIncomings()) {
+                    replaceable[incoming.getValue().getIndex()] = false;
+                }
+            }
+            for (TryCatchJoint joint : block.getTryCatchJoints()) {
+                for (Variable var : joint.getSourceVariables()) {
+                    replaceable[var.getIndex()] = false;
+                }
+            }
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof GetFieldInstruction) {
+                    continue;
+                } else if (insn instanceof PutFieldInstruction) {
+                    replaceable[((PutFieldInstruction) insn).getValue().getIndex()] = false;
+                    continue;
+                } else if (insn instanceof InvokeInstruction) {
+                    InvokeInstruction invoke = (InvokeInstruction) insn;
+                    if (invoke.getMethod().equals(OBJECT_INIT) && invoke.getInstance() != null) {
+                        continue;
+                    }
+                }
+                insn.acceptVisitor(usageExtractor);
+                for (Variable var : usageExtractor.getUsedVariables()) {
+                    replaceable[var.getIndex()] = false;
+                }
+            }
+        }
+
+        for (boolean value : replaceable) {
+            if (value) {
+                return replaceable;
+            }
+        }
+        return null;
+    }
+
+    private static Instruction createDefaultValue(ValueType type, Variable receiver) {
+        if (type instanceof ValueType.Primitive) {
+            switch (((ValueType.Primitive) type).getKind()) {
+                case LONG: {
+                    LongConstantInstruction insn = new LongConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+                case FLOAT: {
+                    FloatConstantInstruction insn = new FloatConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+                case DOUBLE: {
+                    DoubleConstantInstruction insn = new DoubleConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+                default: {
+                    IntegerConstantInstruction insn = new IntegerConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+            }
+        }
+        NullConstantInstruction insn = new NullConstantInstruction();
+        insn.setReceiver(receiver);
+        return insn;
+    }
+}
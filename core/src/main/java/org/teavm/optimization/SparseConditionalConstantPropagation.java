@@ -0,0 +1,552 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+import org.teavm.common.IntegerStack;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TryCatchBlock;
+import org.teavm.model.TryCatchJoint;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.CastIntegerInstruction;
+import org.teavm.model.instructions.CastNumberInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.LongConstantInstruction;
+import org.teavm.model.instructions.NegateInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.StringConstantInstruction;
+import org.teavm.model.instructions.SwitchInstruction;
+import org.teavm.model.instructions.SwitchTableEntry;
+import org.teavm.model.util.DefinitionExtractor;
+import org.teavm.model.util.InstructionTransitionExtractor;
+import org.teavm.model.util.UsageExtractor;
+
+/**
+ * <p>Sparse conditional constant propagation, as described by Wegman and Zadeck. Constants are propagated
+ * through instructions and phis, considering only those control flow edges that may be actually taken.
+ * Then instructions with constant results are replaced by constants, conditional jumps with known outcome
+ * are replaced by unconditional ones, and blocks that can't be executed are removed.</p>
+ *
+ * <p>Calls to <code>System.getProperty</code> with constant key are replaced by values of properties passed to
+ * {@link org.teavm.vm.TeaVM#setProperties(Properties)}, so the code that depends on build properties is
+ * removed when it is not needed.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class SparseConditionalConstantPropagation implements MethodOptimization {
+    public static final MethodReference GET_PROPERTY = new MethodReference(System.class, "getProperty",
+            String.class, String.class);
+    public static final MethodReference GET_PROPERTY_WITH_DEFAULT = new MethodReference(System.class, "getProperty",
+            String.class, String.class, String.class);
+    private static final Object OVERDEFINED = new Object() {
+        @Override
+        public String toString() {
+            return "overdefined";
+        }
+    };
+    private Properties properties;
+    private Program program;
+    private Object[] values;
+    private boolean[] executable;
+    private BitSet[] executableEdges;
+    private List<List<Instruction>> instructionUses;
+    private List<List<Phi>> phiUses;
+    private IntegerStack blockStack;
+    private IntegerStack variableStack;
+    private InstructionTransitionExtractor transitionExtractor = new InstructionTransitionExtractor();
+    private DefinitionExtractor definitionExtractor = new DefinitionExtractor();
+
+    public SparseConditionalConstantPropagation() {
+        this(new Properties());
+    }
+
+    public SparseConditionalConstantPropagation(Properties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void optimize(MethodReader method, Program program) {
+        if (program.basicBlockCount() == 0) {
+            return;
+        }
+        this.program = program;
+        values = new Object[program.variableCount()];
+        executable = new boolean[program.basicBlockCount()];
+        executableEdges = new BitSet[program.basicBlockCount()];
+        for (int i = 0; i < executableEdges.length; ++i) {
+            executableEdges[i] = new BitSet();
+        }
+        blockStack = new IntegerStack(program.basicBlockCount());
+        variableStack = new IntegerStack(program.variableCount());
+        buildUses();
+
+        for (int i = 0; i <= method.parameterCount(); ++i) {
+            values[i] = OVERDEFINED;
+        }
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (TryCatchBlock tryCatch : block.getTryCatchBlocks()) {
+                if (tryCatch.getExceptionVariable() != null) {
+                    values[tryCatch.getExceptionVariable().getIndex()] = OVERDEFINED;
+                }
+            }
+            for (TryCatchJoint joint : block.getTryCatchJoints()) {
+                values[joint.getReceiver().getIndex()] = OVERDEFINED;
+            }
+        }
+
+        executable[0] = true;
+        blockStack.push(0);
+        propagate();
+        if (transform()) {
+            new UnreachableBasicBlockEliminator().optimize(program);
+        }
+
+        this.program = null;
+        values = null;
+        executable = null;
+        executableEdges = null;
+        instructionUses = null;
+        phiUses = null;
+    }
+
+    private void buildUses() {
+        instructionUses = new ArrayList<>();
+        phiUses = new ArrayList<>();
+        for (int i = 0; i < program.variableCount(); ++i) {
+            instructionUses.add(new ArrayList<>());
+            phiUses.add(new ArrayList<>());
+        }
+        UsageExtractor usageExtractor = new UsageExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Phi phi : block.getPhis()) {
+                for (Incoming incoming : phi.getIncomings()) {
+                    phiUses.get(incoming.getValue().getIndex()).add(phi);
+                }
+            }
+            for (Instruction insn : block.getInstructions()) {
+                insn.acceptVisitor(usageExtractor);
+                for (Variable var : usageExtractor.getUsedVariables()) {
+                    instructionUses.get(var.getIndex()).add(insn);
+                }
+            }
+        }
+    }
+
+    private void propagate() {
+        while (!blockStack.isEmpty() || !variableStack.isEmpty()) {
+            while (!variableStack.isEmpty()) {
+                int var = variableStack.pop();
+                for (Phi phi : phiUses.get(var)) {
+                    if (executable[phi.getBasicBlock().getIndex()]) {
+                        evaluate(phi);
+                    }
+                }
+                for (Instruction insn : instructionUses.get(var)) {
+                    if (executable[insn.getBasicBlock().getIndex()]) {
+                        evaluate(insn);
+                    }
+                }
+            }
+            if (!blockStack.isEmpty()) {
+                BasicBlock block = program.basicBlockAt(blockStack.pop());
+                for (Phi phi : block.getPhis()) {
+                    evaluate(phi);
+                }
+                for (Instruction insn : block.getInstructions()) {
+                    evaluate(insn);
+                }
+                for (TryCatchBlock tryCatch : block.getTryCatchBlocks()) {
+                    markEdge(block, tryCatch.getHandler());
+                }
+            }
+        }
+    }
+
+    private void markEdge(BasicBlock source, BasicBlock target) {
+        BitSet edges = executableEdges[target.getIndex()];
+        if (edges.get(source.getIndex())) {
+            return;
+        }
+        edges.set(source.getIndex());
+        if (!executable[target.getIndex()]) {
+            executable[target.getIndex()] = true;
+            blockStack.push(target.getIndex());
+        } else {
+            for (Phi phi : target.getPhis()) {
+                evaluate(phi);
+            }
+        }
+    }
+
+    private void evaluate(Phi phi) {
+        BitSet edges = executableEdges[phi.getBasicBlock().getIndex()];
+        Object result = null;
+        for (Incoming incoming : phi.getIncomings()) {
+            if (!edges.get(incoming.getSource().getIndex())) {
+                continue;
+            }
+            Object value = values[incoming.getValue().getIndex()];
+            if (value == null) {
+                continue;
+            }
+            if (result == null) {
+                result = value;
+            } else if (!result.equals(value)) {
+                result = OVERDEFINED;
+                break;
+            }
+        }
+        if (result != null) {
+            lower(phi.getReceiver(), result);
+        }
+    }
+
+    private void evaluate(Instruction insn) {
+        if (insn instanceof JumpInstruction) {
+            markEdge(insn.getBasicBlock(), ((JumpInstruction) insn).getTarget());
+        } else if (insn instanceof BranchingInstruction) {
+            BranchingInstruction branching = (BranchingInstruction) insn;
+            Object value = values[branching.getOperand().getIndex()];
+            if (value != null) {
+                Boolean condition = value != OVERDEFINED
+                        ? ConstantFolding.branch(branching.getCondition(), value)
+                        : null;
+                markBranch(insn.getBasicBlock(), condition, branching.getConsequent(), branching.getAlternative());
+            }
+        } else if (insn instanceof BinaryBranchingInstruction) {
+            BinaryBranchingInstruction branching = (BinaryBranchingInstruction) insn;
+            Object first = values[branching.getFirstOperand().getIndex()];
+            Object second = values[branching.getSecondOperand().getIndex()];
+            if (first != null && second != null) {
+                Boolean condition = first != OVERDEFINED && second != OVERDEFINED
+                        ? ConstantFolding.binaryBranch(branching.getCondition(), first, second)
+                        : null;
+                markBranch(insn.getBasicBlock(), condition, branching.getConsequent(), branching.getAlternative());
+            }
+        } else if (insn instanceof SwitchInstruction) {
+            SwitchInstruction switchInsn = (SwitchInstruction) insn;
+            Object value = values[switchInsn.getCondition().getIndex()];
+            if (value instanceof Integer) {
+                markEdge(insn.getBasicBlock(), getSwitchTarget(switchInsn, (Integer) value));
+            } else if (value != null) {
+                markAllTargets(insn);
+            }
+        } else {
+            Variable receiver = getFoldableReceiver(insn);
+            if (receiver != null) {
+                Object value = compute(insn);
+                if (value != null) {
+                    lower(receiver, value);
+                }
+            } else {
+                insn.acceptVisitor(definitionExtractor);
+                for (Variable var : definitionExtractor.getDefinedVariables()) {
+                    lower(var, OVERDEFINED);
+                }
+                markAllTargets(insn);
+            }
+        }
+    }
+
+    private void markBranch(BasicBlock block, Boolean condition, BasicBlock consequent, BasicBlock alternative) {
+        if (condition == null || condition) {
+            markEdge(block, consequent);
+        }
+        if (condition == null || !condition) {
+            markEdge(block, alternative);
+        }
+    }
+
+    private void markAllTargets(Instruction insn) {
+        insn.acceptVisitor(transitionExtractor);
+        if (transitionExtractor.getTargets() != null) {
+            for (BasicBlock target : transitionExtractor.getTargets()) {
+                markEdge(insn.getBasicBlock(), target);
+            }
+        }
+    }
+
+    private static BasicBlock getSwitchTarget(SwitchInstruction insn, int value) {
+        for (SwitchTableEntry entry : insn.getEntries()) {
+            if (entry.getCondition() == value) {
+                return entry.getTarget();
+            }
+        }
+        return insn.getDefaultTarget();
+    }
+
+    private Variable getFoldableReceiver(Instruction insn) {
+        if (insn instanceof IntegerConstantInstruction) {
+            return ((IntegerConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof LongConstantInstruction) {
+            return ((LongConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof FloatConstantInstruction) {
+            return ((FloatConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof DoubleConstantInstruction) {
+            return ((DoubleConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof StringConstantInstruction) {
+            return ((StringConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof NullConstantInstruction) {
+            return ((NullConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof AssignInstruction) {
+            return ((AssignInstruction) insn).getReceiver();
+        } else if (insn instanceof BinaryInstruction) {
+            return ((BinaryInstruction) insn).getReceiver();
+        } else if (insn instanceof NegateInstruction) {
+            return ((NegateInstruction) insn).getReceiver();
+        } else if (insn instanceof CastNumberInstruction) {
+            return ((CastNumberInstruction) insn).getReceiver();
+        } else if (insn instanceof CastIntegerInstruction) {
+            return ((CastIntegerInstruction) insn).getReceiver();
+        } else if (insn instanceof InvokeInstruction && isPropertyAccess((InvokeInstruction) insn)) {
+            return ((InvokeInstruction) insn).getReceiver();
+        }
+        return null;
+    }
+
+    private static boolean isPropertyAccess(InvokeInstruction insn) {
+        return insn.getType() == InvocationType.SPECIAL && insn.getInstance() == null && insn.getReceiver() != null
+                && (insn.getMethod().equals(GET_PROPERTY) || insn.getMethod().equals(GET_PROPERTY_WITH_DEFAULT));
+    }
+
+    private Object compute(Instruction insn) {
+        if (insn instanceof IntegerConstantInstruction) {
+            return ((IntegerConstantInstruction) insn).getConstant();
+        } else if (insn instanceof LongConstantInstruction) {
+            return ((LongConstantInstruction) insn).getConstant();
+        } else if (insn instanceof FloatConstantInstruction) {
+            return ((FloatConstantInstruction) insn).getConstant();
+        } else if (insn instanceof DoubleConstantInstruction) {
+            return ((DoubleConstantInstruction) insn).getConstant();
+        } else if (insn instanceof StringConstantInstruction) {
+            return ((StringConstantInstruction) insn).getConstant();
+        } else if (insn instanceof NullConstantInstruction) {
+            return ConstantFolding.NULL;
+        } else if (insn instanceof AssignInstruction) {
+            return values[((AssignInstruction) insn).getAssignee().getIndex()];
+        } else if (insn instanceof BinaryInstruction) {
+            BinaryInstruction binary = (BinaryInstruction) insn;
+            Object first = values[binary.getFirstOperand().getIndex()];
+            Object second = values[binary.getSecondOperand().getIndex()];
+            if (first == null || second == null) {
+                return null;
+            }
+            if (first == OVERDEFINED || second == OVERDEFINED) {
+                return OVERDEFINED;
+            }
+            return orOverdefined(ConstantFolding.binary(binary.getOperation(), binary.getOperandType(),
+                    first, second));
+        } else if (insn instanceof NegateInstruction) {
+            NegateInstruction negate = (NegateInstruction) insn;
+            Object value = values[negate.getOperand().getIndex()];
+            if (value == null || value == OVERDEFINED) {
+                return value;
+            }
+            return orOverdefined(ConstantFolding.negate(negate.getOperandType(), value));
+        } else if (insn instanceof CastNumberInstruction) {
+            CastNumberInstruction cast = (CastNumberInstruction) insn;
+            Object value = values[cast.getValue().getIndex()];
+            if (value == null || value == OVERDEFINED) {
+                return value;
+            }
+            return orOverdefined(ConstantFolding.castNumber(cast.getSourceType(), cast.getTargetType(), value));
+        } else if (insn instanceof CastIntegerInstruction) {
+            CastIntegerInstruction cast = (CastIntegerInstruction) insn;
+            Object value = values[cast.getValue().getIndex()];
+            if (value == null || value == OVERDEFINED) {
+                return value;
+            }
+            return orOverdefined(ConstantFolding.castInteger(cast.getTargetType(), cast.getDirection(), value));
+        } else if (insn instanceof InvokeInstruction) {
+            InvokeInstruction invoke = (InvokeInstruction) insn;
+            Object key = values[invoke.getArguments().get(0).getIndex()];
+            if (key == null) {
+                return null;
+            }
+            if (!(key instanceof String)) {
+                return OVERDEFINED;
+            }
+            String value = properties.getProperty((String) key);
+            if (value != null) {
+                return value;
+            }
+            return invoke.getArguments().size() > 1
+                    ? values[invoke.getArguments().get(1).getIndex()]
+                    : ConstantFolding.NULL;
+        }
+        return OVERDEFINED;
+    }
+
+    private static Object orOverdefined(Object value) {
+        return value != null ? value : OVERDEFINED;
+    }
+
+    private void lower(Variable var, Object value) {
+        Object oldValue = values[var.getIndex()];
+        if (oldValue == OVERDEFINED) {
+            return;
+        }
+        if (oldValue == null) {
+            values[var.getIndex()] = value;
+        } else if (!oldValue.equals(value)) {
+            values[var.getIndex()] = OVERDEFINED;
+        } else {
+            return;
+        }
+        variableStack.push(var.getIndex());
+    }
+
+    private boolean transform() {
+        boolean hasDeadBlocks = false;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            if (!executable[i]) {
+                hasDeadBlocks = true;
+                continue;
+            }
+
+            List<Instruction> phiConstants = new ArrayList<>();
+            for (int j = 0; j < block.getPhis().size(); ++j) {
+                Phi phi = block.getPhis().get(j);
+                Instruction constant = createConstant(phi.getReceiver());
+                if (constant != null) {
+                    phiConstants.add(constant);
+                    block.getPhis().remove(j--);
+                }
+            }
+
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction insn = instructions.get(j);
+                Instruction replacement;
+                if (insn instanceof BranchingInstruction || insn instanceof BinaryBranchingInstruction
+                        || insn instanceof SwitchInstruction) {
+                    replacement = foldJump(insn);
+                } else {
+                    replacement = foldInstruction(insn);
+                }
+                if (replacement != null) {
+                    replacement.setLocation(insn.getLocation());
+                    instructions.set(j, replacement);
+                }
+            }
+            instructions.addAll(0, phiConstants);
+        }
+        return hasDeadBlocks;
+    }
+
+    private Instruction foldInstruction(Instruction insn) {
+        Variable receiver = getFoldableReceiver(insn);
+        if (receiver == null || insn instanceof IntegerConstantInstruction || insn instanceof LongConstantInstruction
+                || insn instanceof FloatConstantInstruction || insn instanceof DoubleConstantInstruction
+                || insn instanceof StringConstantInstruction || insn instanceof NullConstantInstruction) {
+            return null;
+        }
+        Instruction constant = createConstant(receiver);
+        if (constant == null && insn instanceof InvokeInstruction) {
+            InvokeInstruction invoke = (InvokeInstruction) insn;
+            Object key = values[invoke.getArguments().get(0).getIndex()];
+            if (key instanceof String && invoke.getArguments().size() > 1
+                    && properties.getProperty((String) key) == null) {
+                AssignInstruction assign = new AssignInstruction();
+                assign.setAssignee(invoke.getArguments().get(1));
+                assign.setReceiver(receiver);
+                return assign;
+            }
+        }
+        return constant;
+    }
+
+    private Instruction foldJump(Instruction insn) {
+        BasicBlock block = insn.getBasicBlock();
+        insn.acceptVisitor(transitionExtractor);
+        BasicBlock target = null;
+        for (BasicBlock successor : transitionExtractor.getTargets()) {
+            if (executableEdges[successor.getIndex()].get(block.getIndex())) {
+                if (target != null && target != successor) {
+                    return null;
+                }
+                target = successor;
+            }
+        }
+        if (target == null) {
+            return null;
+        }
+        for (BasicBlock successor : transitionExtractor.getTargets()) {
+            if (successor != target) {
+                successor.removeIncomingsFrom(block);
+            }
+        }
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(target);
+        return jump;
+    }
+
+    private Instruction createConstant(Variable receiver) {
+        Object value = values[receiver.getIndex()];
+        if (value instanceof Integer) {
+            IntegerConstantInstruction insn = new IntegerConstantInstruction();
+            insn.setConstant((Integer) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value instanceof Long) {
+            LongConstantInstruction insn = new LongConstantInstruction();
+            insn.setConstant((Long) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value instanceof Float) {
+            FloatConstantInstruction insn = new FloatConstantInstruction();
+            insn.setConstant((Float) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value instanceof Double) {
+            DoubleConstantInstruction insn = new DoubleConstantInstruction();
+            insn.setConstant((Double) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value instanceof String) {
+            StringConstantInstruction insn = new StringConstantInstruction();
+            insn.setConstant((String) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value == ConstantFolding.NULL) {
+            NullConstantInstruction insn = new NullConstantInstruction();
+            insn.setReceiver(receiver);
+            return insn;
+        }
+        return null;
+    }
+}
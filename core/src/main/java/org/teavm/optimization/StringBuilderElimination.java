@@ -0,0 +1,440 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TryCatchJoint;
+import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.ArrayElementType;
+import org.teavm.model.instructions.ConstructArrayInstruction;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.PutElementInstruction;
+import org.teavm.model.instructions.StringConstantInstruction;
+import org.teavm.model.instructions.UnwrapArrayInstruction;
+import org.teavm.model.util.UsageExtractor;
+
+/**
+ * <p>Replaces <code>StringBuilder</code> chains produced by compilers for string concatenation (and by
+ * {@link org.teavm.model.emit.StringBuilderEmitter}) with direct concatenation of the appended values.
+ * A chain is a builder that is constructed, initialized, receives several <code>append</code> calls
+ * and is converted by <code>toString</code> within one basic block, and is not used in any other way.
+ * Appended values are converted to strings by <code>String.valueOf</code>; objects are converted in place of
+ * the original <code>append</code>, since their <code>toString</code> may have side effects.</p>
+ *
+ * <p>When strings are represented by native JavaScript strings, the converted values are joined by
+ * nested calls of <code>String.concatenate(String, String)</code>, which are rendered as JavaScript
+ * <code>+</code> operator. Otherwise they are put into an array and joined by
+ * <code>String.concatenate(String[])</code>, which allocates a buffer of the exact size.</p>
+ *
+ * <p>This pass should run before {@link Inlining}, which otherwise destroys the chains.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class StringBuilderElimination implements MethodOptimization {
+    public static final MethodReference CONCATENATE = new MethodReference(String.class, "concatenate",
+            String.class, String.class, String.class);
+    public static final MethodReference CONCATENATE_ARRAY = new MethodReference(String.class, "concatenate",
+            String[].class, String.class);
+    public static final MethodReference VALUE_OF_OBJECT = new MethodReference(String.class, "valueOf",
+            Object.class, String.class);
+    public static final MethodReference[] VALUE_OF_PRIMITIVE = {
+            new MethodReference(String.class, "valueOf", boolean.class, String.class),
+            new MethodReference(String.class, "valueOf", char.class, String.class),
+            new MethodReference(String.class, "valueOf", int.class, String.class),
+            new MethodReference(String.class, "valueOf", long.class, String.class),
+            new MethodReference(String.class, "valueOf", float.class, String.class),
+            new MethodReference(String.class, "valueOf", double.class, String.class) };
+    private static final String BUILDER = StringBuilder.class.getName();
+    private static final String STRING_CLASS = String.class.getName();
+    private static final MethodReference DOUBLE_TO_STRING = new MethodReference(Double.class, "toString",
+            double.class, String.class);
+    private static final ValueType STRING = ValueType.object(String.class.getName());
+    private final boolean nativeStrings;
+
+    public StringBuilderElimination(boolean nativeStrings) {
+        this.nativeStrings = nativeStrings;
+    }
+
+    @Override
+    public void optimize(MethodReader method, Program program) {
+        if (method.getOwnerName().equals(STRING_CLASS) || method.getReference().equals(DOUBLE_TO_STRING)) {
+            // String.valueOf and String.concatenate are the targets of this replacement, and native concatenation
+            // falls back to Double.toString(double) for doubles. Rewriting them would make them call themselves
+            return;
+        }
+        int[] useCounts = null;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            if (block == null) {
+                continue;
+            }
+            for (int j = 0; j < block.getInstructions().size(); ++j) {
+                Instruction insn = block.getInstructions().get(j);
+                if (insn instanceof ConstructInstruction && ((ConstructInstruction) insn).getType().equals(BUILDER)) {
+                    if (useCounts == null) {
+                        useCounts = countUses(program);
+                    }
+                    Chain chain = findChain(block, j, useCounts);
+                    if (chain != null) {
+                        replaceChain(program, block, chain);
+                    }
+                }
+            }
+        }
+    }
+
+    private Chain findChain(BasicBlock block, int start, int[] useCounts) {
+        List<Instruction> instructions = block.getInstructions();
+        Variable builder = ((ConstructInstruction) instructions.get(start)).getReceiver();
+        Map<Integer, Integer> aliasUses = new HashMap<>();
+        aliasUses.put(builder.getIndex(), 0);
+        Chain chain = new Chain(start);
+        UsageExtractor usageExtractor = new UsageExtractor();
+
+        for (int i = start + 1; i < instructions.size() && chain.end < 0; ++i) {
+            Instruction insn = instructions.get(i);
+            if (insn instanceof InvokeInstruction) {
+                InvokeInstruction invoke = (InvokeInstruction) insn;
+                Variable instance = invoke.getInstance();
+                if (instance != null && aliasUses.containsKey(instance.getIndex())) {
+                    aliasUses.put(instance.getIndex(), aliasUses.get(instance.getIndex()) + 1);
+                    if (!processChainCall(block, chain, i, invoke, aliasUses)) {
+                        return null;
+                    }
+                    continue;
+                }
+            }
+            insn.acceptVisitor(usageExtractor);
+            for (Variable var : usageExtractor.getUsedVariables()) {
+                if (aliasUses.containsKey(var.getIndex())) {
+                    return null;
+                }
+            }
+        }
+        if (chain.end < 0) {
+            return null;
+        }
+
+        for (Map.Entry<Integer, Integer> entry : aliasUses.entrySet()) {
+            if (useCounts[entry.getKey()] != entry.getValue()) {
+                return null;
+            }
+        }
+        return chain;
+    }
+
+    private boolean processChainCall(BasicBlock block, Chain chain, int index, InvokeInstruction invoke,
+            Map<Integer, Integer> aliasUses) {
+        MethodReference method = invoke.getMethod();
+        if (!method.getClassName().equals(BUILDER)) {
+            return false;
+        }
+        if (chain.init < 0) {
+            if (!method.getName().equals("<init>")) {
+                return false;
+            }
+            if (method.parameterCount() == 1) {
+                if (!method.parameterType(0).equals(STRING)) {
+                    return false;
+                }
+                String prefix = findStringConstant(block, index, invoke.getArguments().get(0));
+                if (prefix == null) {
+                    return false;
+                }
+                chain.prefix = invoke.getArguments().get(0);
+            } else if (method.parameterCount() != 0) {
+                return false;
+            }
+            chain.init = index;
+            return true;
+        }
+
+        switch (method.getName()) {
+            case "append": {
+                if (method.parameterCount() != 1 || !method.getReturnType().isObject(BUILDER)) {
+                    return false;
+                }
+                ValueType type = method.parameterType(0);
+                Variable value = invoke.getArguments().get(0);
+                if (!isSupported(type) || aliasUses.containsKey(value.getIndex())) {
+                    return false;
+                }
+                chain.pieces.put(index, new Piece(value, type));
+                if (invoke.getReceiver() != null) {
+                    aliasUses.put(invoke.getReceiver().getIndex(), 0);
+                }
+                return true;
+            }
+            case "toString":
+                if (method.parameterCount() != 0) {
+                    return false;
+                }
+                chain.end = index;
+                chain.result = invoke.getReceiver();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isSupported(ValueType type) {
+        if (type instanceof ValueType.Primitive) {
+            switch (((ValueType.Primitive) type).getKind()) {
+                case BOOLEAN:
+                case CHARACTER:
+                case INTEGER:
+                case LONG:
+                case FLOAT:
+                case DOUBLE:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return type.isObject(String.class) || type.isObject(Object.class) || type.isObject(CharSequence.class)
+                || type.isObject(StringBuffer.class);
+    }
+
+    private static String findStringConstant(BasicBlock block, int before, Variable var) {
+        for (int i = before - 1; i >= 0; --i) {
+            Instruction insn = block.getInstructions().get(i);
+            if (insn instanceof StringConstantInstruction) {
+                StringConstantInstruction constant = (StringConstantInstruction) insn;
+                if (constant.getReceiver() == var) {
+                    return constant.getConstant();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void replaceChain(Program program, BasicBlock block, Chain chain) {
+        List<Instruction> instructions = block.getInstructions();
+        List<Instruction> result = new ArrayList<>();
+        List<Piece> pieces = new ArrayList<>();
+        if (chain.prefix != null) {
+            pieces.add(new Piece(chain.prefix, STRING));
+        }
+        for (int i = 0; i < instructions.size(); ++i) {
+            Instruction insn = instructions.get(i);
+            if (i < chain.start || i > chain.end) {
+                result.add(insn);
+            } else if (i == chain.start || i == chain.init) {
+                continue;
+            } else if (chain.pieces.containsKey(i)) {
+                Piece piece = chain.pieces.get(i);
+                if (!(piece.type instanceof ValueType.Primitive) && !piece.type.equals(STRING)) {
+                    // Object's toString should be called at the same place where append called it
+                    Variable converted = program.createVariable();
+                    result.add(invokeStatic(VALUE_OF_OBJECT, converted, insn, piece.value));
+                    piece = new Piece(converted, STRING);
+                }
+                pieces.add(piece);
+            } else if (i == chain.end) {
+                Variable receiver = chain.result != null ? chain.result : program.createVariable();
+                if (nativeStrings) {
+                    emitNativeConcatenation(program, pieces, receiver, insn, result);
+                } else {
+                    emitConcatenation(program, pieces, receiver, insn, result);
+                }
+            } else {
+                result.add(insn);
+            }
+        }
+        instructions.clear();
+        instructions.addAll(result);
+    }
+
+    private void emitNativeConcatenation(Program program, List<Piece> pieces, Variable receiver,
+            Instruction location, List<Instruction> result) {
+        if (pieces.size() < 2) {
+            emitSinglePiece(program, pieces, receiver, location, result);
+            return;
+        }
+        // Instructions are emitted in order of evaluation of expression concatenate(concatenate(a, b), c),
+        // so that decompiler can restore the expression and the injector can render it as a + b + c
+        Variable accumulator = convert(program, pieces.get(0), location, result);
+        for (int i = 1; i < pieces.size(); ++i) {
+            Variable piece = convert(program, pieces.get(i), location, result);
+            Variable next = i == pieces.size() - 1 ? receiver : program.createVariable();
+            result.add(invokeStatic(CONCATENATE, next, location, accumulator, piece));
+            accumulator = next;
+        }
+    }
+
+    private void emitConcatenation(Program program, List<Piece> pieces, Variable receiver,
+            Instruction location, List<Instruction> result) {
+        if (pieces.size() < 2) {
+            emitSinglePiece(program, pieces, receiver, location, result);
+            return;
+        }
+        Variable size = program.createVariable();
+        IntegerConstantInstruction sizeInsn = new IntegerConstantInstruction();
+        sizeInsn.setConstant(pieces.size());
+        sizeInsn.setReceiver(size);
+        sizeInsn.setLocation(location.getLocation());
+        result.add(sizeInsn);
+
+        Variable array = program.createVariable();
+        ConstructArrayInstruction constructArray = new ConstructArrayInstruction();
+        constructArray.setItemType(STRING);
+        constructArray.setSize(size);
+        constructArray.setReceiver(array);
+        constructArray.setLocation(location.getLocation());
+        result.add(constructArray);
+
+        Variable data = program.createVariable();
+        UnwrapArrayInstruction unwrap = new UnwrapArrayInstruction(ArrayElementType.OBJECT);
+        unwrap.setArray(array);
+        unwrap.setReceiver(data);
+        unwrap.setLocation(location.getLocation());
+        result.add(unwrap);
+
+        for (int i = 0; i < pieces.size(); ++i) {
+            Variable value = convert(program, pieces.get(i), location, result);
+            Variable index = program.createVariable();
+            IntegerConstantInstruction indexInsn = new IntegerConstantInstruction();
+            indexInsn.setConstant(i);
+            indexInsn.setReceiver(index);
+            indexInsn.setLocation(location.getLocation());
+            result.add(indexInsn);
+
+            PutElementInstruction putElement = new PutElementInstruction();
+            putElement.setArray(data);
+            putElement.setIndex(index);
+            putElement.setValue(value);
+            putElement.setLocation(location.getLocation());
+            result.add(putElement);
+        }
+
+        result.add(invokeStatic(CONCATENATE_ARRAY, receiver, location, array));
+    }
+
+    private void emitSinglePiece(Program program, List<Piece> pieces, Variable receiver, Instruction location,
+            List<Instruction> result) {
+        if (pieces.isEmpty()) {
+            StringConstantInstruction empty = new StringConstantInstruction();
+            empty.setConstant("");
+            empty.setReceiver(receiver);
+            empty.setLocation(location.getLocation());
+            result.add(empty);
+            return;
+        }
+        Piece piece = pieces.get(0);
+        if (piece.type instanceof ValueType.Primitive) {
+            result.add(invokeStatic(valueOf(piece.type), receiver, location, piece.value));
+        } else {
+            // Strings should be converted as well, since a builder turns null into "null"
+            result.add(invokeStatic(VALUE_OF_OBJECT, receiver, location, piece.value));
+        }
+    }
+
+    private Variable convert(Program program, Piece piece, Instruction location, List<Instruction> result) {
+        if (!(piece.type instanceof ValueType.Primitive)) {
+            return piece.value;
+        }
+        Variable converted = program.createVariable();
+        result.add(invokeStatic(valueOf(piece.type), converted, location, piece.value));
+        return converted;
+    }
+
+    private static MethodReference valueOf(ValueType type) {
+        for (MethodReference method : VALUE_OF_PRIMITIVE) {
+            if (method.parameterType(0).equals(type)) {
+                return method;
+            }
+        }
+        throw new AssertionError("Unsupported type: " + type);
+    }
+
+    private static InvokeInstruction invokeStatic(MethodReference method, Variable receiver, Instruction location,
+            Variable... arguments) {
+        InvokeInstruction invoke = new InvokeInstruction();
+        invoke.setType(InvocationType.SPECIAL);
+        invoke.setMethod(method);
+        invoke.setReceiver(receiver);
+        for (Variable argument : arguments) {
+            invoke.getArguments().add(argument);
+        }
+        invoke.setLocation(location.getLocation());
+        return invoke;
+    }
+
+    private static int[] countUses(Program program) {
+        int[] counts = new int[program.variableCount()];
+        UsageExtractor usageExtractor = new UsageExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            if (block == null) {
+                continue;
+            }
+            for (Phi phi : block.getPhis()) {
+                for (Incoming incoming : phi.getIncomings()) {
+                    counts[incoming.getValue().getIndex()]++;
+                }
+            }
+            for (TryCatchJoint joint : block.getTryCatchJoints()) {
+                for (Variable var : joint.getSourceVariables()) {
+                    counts[var.getIndex()]++;
+                }
+            }
+            for (Instruction insn : block.getInstructions()) {
+                insn.acceptVisitor(usageExtractor);
+                for (Variable var : usageExtractor.getUsedVariables()) {
+                    counts[var.getIndex()]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    static class Chain {
+        final int start;
+        int init = -1;
+        int end = -1;
+        Variable prefix;
+        Variable result;
+        Map<Integer, Piece> pieces = new HashMap<>();
+
+        Chain(int start) {
+            this.start = start;
+        }
+    }
+
+    static class Piece {
+        final Variable value;
+        final ValueType type;
+
+        Piece(Variable value, ValueType type) {
+            this.value = value;
+            this.type = type;
+        }
+    }
+}
@@ -255,7 +255,7 @@ public class UnusedVariableElimination implements MethodOptimization {
 
         @Override
         public void visit(NullCheckInstruction insn) {
-            requestUsage(insn.getReceiver());
+            // Throws NullPointerException even if the checked value is not used afterwards
         }
 
         @Override
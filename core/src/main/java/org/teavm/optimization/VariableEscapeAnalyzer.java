@@ -210,6 +210,7 @@ public final class VariableEscapeAnalyzer {
 
         @Override
         public void visit(NullCheckInstruction insn) {
+            escaping[insn.getValue().getIndex()] = true;
         }
 
         @Override
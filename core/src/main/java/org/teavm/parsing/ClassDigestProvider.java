@@ -0,0 +1,32 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.parsing;
+
+/**
+ * <p>Provides digests of class files. Unlike {@link ClassDateProvider}, digests do not change when
+ * class files are rewritten with the same content, for example after a fresh checkout.</p>
+ *
+ * @author Alexey Andreev
+ */
+public interface ClassDigestProvider {
+    /**
+     * Computes digest of a class file.
+     *
+     * @param className name of the class.
+     * @return digest of the class file or <code>null</code>, if class was not found.
+     */
+    byte[] getDigest(String className);
+}
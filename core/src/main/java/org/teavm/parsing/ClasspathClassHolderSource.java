@@ -26,7 +26,7 @@ import org.teavm.resource.ResourceClassHolderMapper;
  *
  * @author Alexey Andreev
  */
-public class ClasspathClassHolderSource implements ClassHolderSource, ClassDateProvider {
+public class ClasspathClassHolderSource implements ClassHolderSource, ClassDateProvider, ClassDigestProvider {
     private MapperClassHolderSource innerClassSource;
     private ClasspathResourceMapper classPathMapper;
 
@@ -46,8 +46,26 @@ public class ClasspathClassHolderSource implements ClassHolderSource, ClassDateP
         return innerClassSource.get(name);
     }
 
+    /**
+     * <p>Makes this source parse the given class again next time it is requested.</p>
+     *
+     * @param className name of the class as it is stored in the class path.
+     * @return name of the class as it is seen by TeaVM.
+     */
+    public String invalidate(String className) {
+        String mappedName = classPathMapper.invalidate(className);
+        innerClassSource.invalidate(className);
+        innerClassSource.invalidate(mappedName);
+        return mappedName;
+    }
+
     @Override
     public Date getModificationDate(String className) {
         return classPathMapper.getModificationDate(className);
     }
+
+    @Override
+    public byte[] getDigest(String className) {
+        return classPathMapper.getDigest(className);
+    }
 }
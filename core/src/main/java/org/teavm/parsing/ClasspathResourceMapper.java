@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import org.teavm.common.CachedMapper;
 import org.teavm.common.Mapper;
@@ -29,7 +31,8 @@ import org.teavm.model.ClassHolder;
  *
  * @author Alexey Andreev
  */
-public class ClasspathResourceMapper implements Mapper<String, ClassHolder>, ClassDateProvider {
+public class ClasspathResourceMapper implements Mapper<String, ClassHolder>, ClassDateProvider,
+        ClassDigestProvider {
     private static final String PACKAGE_PREFIX = "packagePrefix.";
     private static final String CLASS_PREFIX = "classPrefix.";
     private Mapper<String, ClassHolder> innerMapper;
@@ -37,6 +40,7 @@ public class ClasspathResourceMapper implements Mapper<String, ClassHolder>, Cla
     private ClassRefsRenamer renamer;
     private ClassLoader classLoader;
     private Map<String, ModificationDate> modificationDates = new HashMap<>();
+    private Map<String, Digest> digests = new HashMap<>();
 
     private static class Transformation {
         String packageName;
@@ -184,7 +188,84 @@ public class ClasspathResourceMapper implements Mapper<String, ClassHolder>, Cla
         }
     }
 
+    @Override
+    public byte[] getDigest(String className) {
+        Digest digest = digests.get(className);
+        if (digest == null) {
+            digest = new Digest();
+            digests.put(className, digest);
+            digest.value = calculateDigest(className);
+        }
+        return digest.value;
+    }
+
+    /**
+     * <p>Forgets everything known about the given class file, so that its modification date and digest
+     * are computed again next time they are requested.</p>
+     *
+     * @param className name of the class as it is stored in the class path.
+     * @return name of the class as it is seen by TeaVM, after applying package and class prefixes.
+     */
+    public String invalidate(String className) {
+        String mappedName = renameClass(className);
+        modificationDates.remove(className);
+        modificationDates.remove(mappedName);
+        digests.remove(className);
+        digests.remove(mappedName);
+        return mappedName;
+    }
+
+    private byte[] calculateDigest(String className) {
+        int dotIndex = className.lastIndexOf('.');
+        String packageName;
+        String simpleName;
+        if (dotIndex > 0) {
+            packageName = className.substring(0, dotIndex + 1);
+            simpleName = className.substring(dotIndex + 1);
+        } else {
+            packageName = "";
+            simpleName = className;
+        }
+        for (Transformation transformation : transformations) {
+            if (packageName.startsWith(transformation.packageName)) {
+                String fullName = transformation.packagePrefix + packageName + transformation.classPrefix + simpleName;
+                byte[] digest = getOriginalDigest(fullName);
+                if (digest != null) {
+                    return digest;
+                }
+            }
+        }
+        return getOriginalDigest(className);
+    }
+
+    private byte[] getOriginalDigest(String className) {
+        try (InputStream input = classLoader.getResourceAsStream(className.replace('.', '/') + ".class")) {
+            if (input == null) {
+                return null;
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[8192];
+            while (true) {
+                int bytesRead = input.read(buffer);
+                if (bytesRead < 0) {
+                    break;
+                }
+                digest.update(buffer, 0, bytesRead);
+            }
+            return digest.digest();
+        } catch (IOException e) {
+            // If class file can't be read, we just report that class should be reparsed
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-1 is expected to be supported", e);
+        }
+    }
+
     static class ModificationDate {
         Date date;
     }
+
+    static class Digest {
+        byte[] value;
+    }
 }
@@ -25,7 +25,7 @@ import org.teavm.model.ClassHolderSource;
  * @author Alexey Andreev
  */
 public class MapperClassHolderSource implements ClassHolderSource {
-    private Mapper<String, ClassHolder> mapper;
+    private CachedMapper<String, ClassHolder> mapper;
 
     public MapperClassHolderSource(Mapper<String, ClassHolder> mapper) {
         this.mapper = new CachedMapper<>(mapper);
@@ -35,4 +35,8 @@ public class MapperClassHolderSource implements ClassHolderSource {
     public ClassHolder get(String name) {
         return mapper.map(name);
     }
+
+    public void invalidate(String name) {
+        mapper.invalidate(name);
+    }
 }
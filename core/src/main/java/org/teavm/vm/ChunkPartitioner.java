@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.callgraph.CallGraph;
+import org.teavm.callgraph.CallGraphNode;
+import org.teavm.callgraph.CallSite;
+import org.teavm.callgraph.ClassAccessSite;
+import org.teavm.callgraph.FieldAccessSite;
+import org.teavm.common.DominatorTree;
+import org.teavm.common.Graph;
+import org.teavm.common.GraphBuilder;
+import org.teavm.common.GraphUtils;
+import org.teavm.common.IntegerStack;
+import org.teavm.dependency.DependencyChecker;
+import org.teavm.model.ClassReader;
+import org.teavm.model.ListableClassReaderSource;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+
+/**
+ * <p>Splits classes into the main part and chunks that are loaded on demand.</p>
+ *
+ * <p>Each chunk is built around a root class that has a static initializer, and contains classes that can only
+ * be reached through the root, i.e. classes that are strictly dominated by the root in the graph of class
+ * references. No code of the root class can run before its initializer, so the initializer is where the chunk
+ * gets loaded. The root itself stays in the part that dominates it.</p>
+ *
+ * <p>Class references are taken from the call graph. Methods and classes that were linked outside of the call
+ * graph (by the host, by plugins, or as supertypes of other classes) are referenced from the virtual root node,
+ * so they never go to chunks.</p>
+ *
+ * @author Alexey Andreev
+ */
+class ChunkPartitioner {
+    private static final MethodDescriptor CLINIT = new MethodDescriptor("<clinit>", void.class);
+    private final DependencyChecker dependencyChecker;
+    private final ListableClassReaderSource classes;
+    private final int minChunkClasses;
+    private final List<String> classNames = new ArrayList<>();
+    private final Map<String, Integer> classIndexes = new HashMap<>();
+
+    ChunkPartitioner(DependencyChecker dependencyChecker, ListableClassReaderSource classes, int minChunkClasses) {
+        this.dependencyChecker = dependencyChecker;
+        this.classes = classes;
+        this.minChunkClasses = minChunkClasses;
+    }
+
+    /**
+     * <p>Computes partition of classes.</p>
+     *
+     * @return map from names of classes that go to chunks to names of roots of their chunks. Classes that
+     * are not in the map belong to the main part.
+     */
+    Map<String, String> partition() {
+        classNames.add(null);
+        for (String className : classes.getClassNames()) {
+            classIndexes.put(className, classNames.size());
+            classNames.add(className);
+        }
+        Graph graph = buildGraph();
+        DominatorTree domTree = GraphUtils.buildDominatorTree(graph);
+
+        Integer[] nodesByLevel = new Integer[graph.size() - 1];
+        for (int i = 0; i < nodesByLevel.length; ++i) {
+            nodesByLevel[i] = i + 1;
+        }
+        Arrays.sort(nodesByLevel, (a, b) -> Integer.compare(domTree.levelOf(a), domTree.levelOf(b)));
+
+        int[] dominatedCount = new int[graph.size()];
+        for (int i = nodesByLevel.length - 1; i >= 0; --i) {
+            int node = nodesByLevel[i];
+            dominatedCount[domTree.immediateDominatorOf(node)] += dominatedCount[node] + 1;
+        }
+
+        int[] chunkRoots = new int[graph.size()];
+        Arrays.fill(chunkRoots, -1);
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int node : nodesByLevel) {
+            int dominator = domTree.immediateDominatorOf(node);
+            if (chunkRoots[dominator] >= 0) {
+                chunkRoots[node] = chunkRoots[dominator];
+            } else if (dominator > 0 && dominatedCount[dominator] >= minChunkClasses
+                    && hasInitializer(classNames.get(dominator))) {
+                chunkRoots[node] = dominator;
+            }
+            if (chunkRoots[node] >= 0) {
+                result.put(classNames.get(node), classNames.get(chunkRoots[node]));
+            }
+        }
+        return result;
+    }
+
+    private Graph buildGraph() {
+        GraphBuilder builder = new GraphBuilder(classNames.size());
+        for (MethodReference method : dependencyChecker.getRootMethods()) {
+            addEdge(builder, 0, method.getClassName());
+        }
+        for (String className : dependencyChecker.getRootClasses()) {
+            addEdge(builder, 0, className);
+        }
+
+        CallGraph callGraph = dependencyChecker.getCallGraph();
+        for (int i = 1; i < classNames.size(); ++i) {
+            ClassReader cls = classes.get(classNames.get(i));
+            for (MethodReader method : cls.getMethods()) {
+                CallGraphNode node = callGraph.getNode(method.getReference());
+                if (node == null) {
+                    continue;
+                }
+                for (CallSite callSite : node.getCallSites()) {
+                    addEdge(builder, i, callSite.getCallee().getMethod().getClassName());
+                }
+                for (FieldAccessSite accessSite : node.getFieldAccessSites()) {
+                    addEdge(builder, i, accessSite.getField().getClassName());
+                }
+                for (ClassAccessSite accessSite : node.getClassAccessSites()) {
+                    addEdge(builder, i, accessSite.getClassName());
+                }
+            }
+        }
+
+        // Classes that can't be reached from the root (for example, classes generated by plugins)
+        // are referenced in a way the call graph does not know about, so they are kept in the main part
+        boolean[] reached = new boolean[classNames.size()];
+        Graph graph = builder.build();
+        IntegerStack stack = new IntegerStack(classNames.size());
+        stack.push(0);
+        reached[0] = true;
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            for (int next : graph.outgoingEdges(node)) {
+                if (!reached[next]) {
+                    reached[next] = true;
+                    stack.push(next);
+                }
+            }
+        }
+        for (int i = 1; i < reached.length; ++i) {
+            if (!reached[i]) {
+                builder.addEdge(0, i);
+            }
+        }
+        return builder.build();
+    }
+
+    private void addEdge(GraphBuilder builder, int from, String className) {
+        Integer to = classIndexes.get(className);
+        if (to != null && to != from) {
+            builder.addEdge(from, to);
+        }
+    }
+
+    private boolean hasInitializer(String className) {
+        ClassReader cls = classes.get(className);
+        return cls != null && cls.getMethod(CLINIT) != null;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Describes a part of generated JavaScript, produced when code splitting is on. The first chunk is
+ * the main script, other chunks are loaded on demand, when their root classes get initialized.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class CodeChunk {
+    private String fileName;
+    private String rootClass;
+    private List<String> classNames = new ArrayList<>();
+    private long size;
+
+    CodeChunk(String fileName, String rootClass) {
+        this.fileName = fileName;
+        this.rootClass = rootClass;
+    }
+
+    /**
+     * <p>Gets name of the file the chunk was written to. For the main script returns <code>null</code>,
+     * since name of the main script is not known to TeaVM.</p>
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * <p>Gets name of the class whose initialization triggers loading of the chunk, or <code>null</code>
+     * for the main script.</p>
+     */
+    public String getRootClass() {
+        return rootClass;
+    }
+
+    public List<String> getClassNames() {
+        return Collections.unmodifiableList(classNames);
+    }
+
+    void addClass(String className) {
+        classNames.add(className);
+    }
+
+    /**
+     * <p>Gets number of characters of generated code in this chunk.</p>
+     */
+    public long getSize() {
+        return size;
+    }
+
+    void setSize(long size) {
+        this.size = size;
+    }
+}
@@ -21,11 +21,14 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -33,8 +36,11 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import org.teavm.cache.NoCache;
 import org.teavm.codegen.AliasProvider;
+import org.teavm.codegen.ChunkedOutput;
 import org.teavm.codegen.DefaultAliasProvider;
 import org.teavm.codegen.DefaultNamingStrategy;
 import org.teavm.codegen.MinifyingAliasProvider;
@@ -45,17 +51,25 @@ import org.teavm.debugging.information.DebugInformationEmitter;
 import org.teavm.debugging.information.SourceLocation;
 import org.teavm.dependency.BootstrapMethodSubstitutor;
 import org.teavm.dependency.DependencyChecker;
+import org.teavm.dependency.DependencyHeapReport;
 import org.teavm.dependency.DependencyInfo;
 import org.teavm.dependency.DependencyListener;
+import org.teavm.dependency.DependencyType;
 import org.teavm.dependency.Linker;
 import org.teavm.dependency.MethodDependency;
 import org.teavm.diagnostics.AccumulationDiagnostics;
 import org.teavm.diagnostics.ProblemProvider;
+import org.teavm.javascript.ArrayRepresentation;
 import org.teavm.javascript.Decompiler;
 import org.teavm.javascript.EmptyRegularMethodNodeCache;
+import org.teavm.javascript.LongRepresentation;
 import org.teavm.javascript.MethodNodeCache;
+import org.teavm.javascript.NativeStringTransformer;
 import org.teavm.javascript.Renderer;
 import org.teavm.javascript.RenderingException;
+import org.teavm.javascript.StringConcatenationInjector;
+import org.teavm.javascript.StringRepresentation;
+import org.teavm.javascript.SynchronizedMethodNodeCache;
 import org.teavm.javascript.ast.ClassNode;
 import org.teavm.javascript.spi.GeneratedBy;
 import org.teavm.javascript.spi.Generator;
@@ -92,10 +106,19 @@ import org.teavm.model.util.ModelUtils;
 import org.teavm.model.util.ProgramUtils;
 import org.teavm.model.util.RegisterAllocator;
 import org.teavm.optimization.ArrayUnwrapMotion;
+import org.teavm.optimization.ClassInitializerElimination;
 import org.teavm.optimization.Devirtualization;
 import org.teavm.optimization.GlobalValueNumbering;
+import org.teavm.optimization.Inlining;
 import org.teavm.optimization.LoopInvariantMotion;
-import org.teavm.optimization.MethodOptimization;
+import org.teavm.optimization.LoopInversion;
+import org.teavm.optimization.OptimizationLevel;
+import org.teavm.optimization.OptimizationPass;
+import org.teavm.optimization.PassManager;
+import org.teavm.optimization.PassStatistics;
+import org.teavm.optimization.ScalarReplacement;
+import org.teavm.optimization.SparseConditionalConstantPropagation;
+import org.teavm.optimization.StringBuilderElimination;
 import org.teavm.optimization.UnusedVariableElimination;
 import org.teavm.vm.spi.RendererListener;
 import org.teavm.vm.spi.TeaVMHost;
@@ -135,7 +158,23 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
     private final DependencyChecker dependencyChecker;
     private final AccumulationDiagnostics diagnostics = new AccumulationDiagnostics();
     private final ClassLoader classLoader;
+    private final int threadCount;
+    private final OptimizationLevel optimizationLevel;
+    private final List<OptimizationPass> optimizationPasses;
+    private PassManager passManager;
+    private static final int MIN_CHUNK_CLASSES = 8;
     private boolean minifying = true;
+    private boolean codeSplitting;
+    private boolean chunkPrefetching;
+    private boolean inlining;
+    private Inlining inliner;
+    private LongRepresentation longRepresentation = LongRepresentation.OBJECT;
+    private ArrayRepresentation arrayRepresentation = ArrayRepresentation.WRAPPED;
+    private StringRepresentation stringRepresentation = StringRepresentation.CHAR_ARRAY;
+    private boolean lazyStringPool;
+    private boolean lazyMetadata;
+    private String chunkFileNamePrefix = "chunk-";
+    private final List<CodeChunk> codeChunks = new ArrayList<>();
     private boolean bytecodeLogging;
     private final OutputStream logStream = System.out;
     private final Map<String, TeaVMEntryPoint> entryPoints = new HashMap<>();
@@ -150,15 +189,26 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
     private MethodNodeCache astCache = new EmptyRegularMethodNodeCache();
     private boolean incremental;
     private TeaVMProgressListener progressListener;
-    private boolean cancelled;
+    private volatile boolean cancelled;
     private ListableClassHolderSource writtenClasses;
     private final Set<MethodReference> asyncMethods = new HashSet<>();
     private final Set<MethodReference> asyncFamilyMethods = new HashSet<>();
 
-    TeaVM(ClassReaderSource classSource, ClassLoader classLoader) {
-        this.classSource = classSource;
-        this.classLoader = classLoader;
+    TeaVM(TeaVMBuilder builder) {
+        this.classSource = builder.classSource;
+        this.classLoader = builder.classLoader;
+        this.threadCount = builder.threadCount;
+        this.optimizationLevel = builder.optimizationLevel;
+        this.optimizationPasses = builder.optimizationPasses;
         dependencyChecker = new DependencyChecker(this.classSource, classLoader, this, diagnostics);
+        if (builder.concurrentDependencyAnalysis) {
+            dependencyChecker.setPropagationThreadCount(threadCount);
+        }
+        dependencyChecker.setBatchedPropagation(builder.batchedPropagation);
+        dependencyChecker.addClassTransformer((cls, innerSource, diagnostics) -> {
+            new NativeStringTransformer(stringRepresentation == StringRepresentation.NATIVE)
+                    .transformClass(cls, innerSource, diagnostics);
+        });
         progressListener = new TeaVMProgressListener() {
             @Override public TeaVMProgressFeedback progressReached(int progress) {
                 return TeaVMProgressFeedback.CONTINUE;
@@ -224,6 +274,152 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         this.minifying = minifying;
     }
 
+    public LongRepresentation getLongRepresentation() {
+        return longRepresentation;
+    }
+
+    /**
+     * <p>Specifies how Java <code>long</code> values are represented in generated code.</p>
+     *
+     * @param longRepresentation representation of long values.
+     */
+    public void setLongRepresentation(LongRepresentation longRepresentation) {
+        this.longRepresentation = longRepresentation;
+    }
+
+    public ArrayRepresentation getArrayRepresentation() {
+        return arrayRepresentation;
+    }
+
+    /**
+     * <p>Specifies how Java arrays of primitive types are represented in generated code.</p>
+     *
+     * @param arrayRepresentation representation of arrays.
+     */
+    public void setArrayRepresentation(ArrayRepresentation arrayRepresentation) {
+        this.arrayRepresentation = arrayRepresentation;
+    }
+
+    public StringRepresentation getStringRepresentation() {
+        return stringRepresentation;
+    }
+
+    /**
+     * <p>Specifies how instances of <code>java.lang.String</code> are represented in generated code.
+     * Should be called before any entry point is added.</p>
+     *
+     * @param stringRepresentation representation of strings.
+     */
+    public void setStringRepresentation(StringRepresentation stringRepresentation) {
+        this.stringRepresentation = stringRepresentation;
+    }
+
+    public boolean isLazyStringPool() {
+        return lazyStringPool;
+    }
+
+    /**
+     * <p>Specifies whether string constants should be turned into Java strings on first access instead
+     * of all at once when the script starts. Startup of applications with many string constants becomes faster,
+     * while each access to a string constant has to check whether the string was already created.</p>
+     *
+     * @param lazyStringPool whether TeaVM should create string constants on demand.
+     */
+    public void setLazyStringPool(boolean lazyStringPool) {
+        this.lazyStringPool = lazyStringPool;
+    }
+
+    public boolean isLazyMetadata() {
+        return lazyMetadata;
+    }
+
+    /**
+     * <p>Specifies whether metadata of classes (<code>$meta</code>, used by reflection and type checks) should be
+     * created on first access. In this mode prototype chains and virtual methods of classes are set up by
+     * statements generated at compile time instead of being computed by <code>$rt_metadata</code> when
+     * the script starts.</p>
+     *
+     * @param lazyMetadata whether TeaVM should create class metadata on demand.
+     */
+    public void setLazyMetadata(boolean lazyMetadata) {
+        this.lazyMetadata = lazyMetadata;
+    }
+
+    public boolean isInlining() {
+        return inlining;
+    }
+
+    /**
+     * <p>Specifies whether TeaVM should replace direct calls to small methods (static and private methods,
+     * constructors and devirtualized methods) with bodies of these methods. Inlining is not performed
+     * in incremental mode, since it makes optimized code of a method depend on other methods.</p>
+     *
+     * @param inlining whether TeaVM should inline methods.
+     */
+    public void setInlining(boolean inlining) {
+        this.inlining = inlining;
+    }
+
+    public boolean isCodeSplitting() {
+        return codeSplitting;
+    }
+
+    /**
+     * <p>Specifies whether TeaVM should move classes that are only reachable through initialization of some
+     * other class into separate chunks, loaded on demand. Chunks are written into the build target,
+     * see {@link #getCodeChunks()}. Code splitting is disabled by default.</p>
+     *
+     * <p>Class initialization can't be suspended, so a chunk is loaded and evaluated synchronously when its
+     * root class is initialized. In browsers a chunk is fetched by a synchronous request, unless it was
+     * prefetched (see {@link #setChunkPrefetching(boolean)}), and evaluated as an inline script that carries
+     * the nonce of the main script, so no <code>unsafe-eval</code> is needed in Content-Security-Policy.
+     * Web workers and Node.js read chunks synchronously.</p>
+     *
+     * @param codeSplitting whether TeaVM should split generated code.
+     */
+    public void setCodeSplitting(boolean codeSplitting) {
+        this.codeSplitting = codeSplitting;
+    }
+
+    public boolean isChunkPrefetching() {
+        return chunkPrefetching;
+    }
+
+    /**
+     * <p>Specifies whether browsers should download all chunks asynchronously as soon as the main script starts.
+     * This avoids synchronous requests when chunks are needed, but downloads the whole program.
+     * Prefetching is disabled by default, so only chunks that are actually needed are downloaded.</p>
+     *
+     * @param chunkPrefetching whether chunks should be prefetched.
+     */
+    public void setChunkPrefetching(boolean chunkPrefetching) {
+        this.chunkPrefetching = chunkPrefetching;
+    }
+
+    public String getChunkFileNamePrefix() {
+        return chunkFileNamePrefix;
+    }
+
+    /**
+     * <p>Specifies how chunk files are named. Name of each chunk consists of the prefix, the chunk's number and
+     * <code>.js</code> extension. Chunks are loaded relatively to the main script.</p>
+     *
+     * @param chunkFileNamePrefix prefix of chunk file names.
+     */
+    public void setChunkFileNamePrefix(String chunkFileNamePrefix) {
+        this.chunkFileNamePrefix = chunkFileNamePrefix;
+    }
+
+    /**
+     * <p>Gets chunks produced by the last build. The first chunk is the main script, others are loaded on demand.
+     * When code splitting is off, the list is empty.</p>
+     *
+     * @return chunks of generated code.
+     */
+    public List<CodeChunk> getCodeChunks() {
+        return Collections.unmodifiableList(codeChunks);
+    }
+
     public boolean isBytecodeLogging() {
         return bytecodeLogging;
     }
@@ -287,6 +483,26 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         return cancelled;
     }
 
+    /**
+     * Reports how many threads this TeaVM instance uses to optimize and decompile methods.
+     *
+     * @see TeaVMBuilder#setThreadCount(int)
+     * @return number of worker threads.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Gets statistics of optimization passes applied during the last build: how much time each pass
+     * took and how it changed the size of methods. Methods taken from program cache are not accounted.
+     *
+     * @return statistics for each configured pass, in order of application.
+     */
+    public List<PassStatistics> getOptimizationStatistics() {
+        return passManager != null ? passManager.getStatistics() : Collections.emptyList();
+    }
+
     public ProblemProvider getProblemProvider() {
         return diagnostics;
     }
@@ -381,6 +597,18 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         return dependencyChecker;
     }
 
+    public long getPropagationTaskCount() {
+        return dependencyChecker.getPropagationTaskCount();
+    }
+
+    public long getPropagatedTypeCount() {
+        return dependencyChecker.getPropagatedTypeCount();
+    }
+
+    public DependencyHeapReport getDependencyHeapReport() {
+        return dependencyChecker.getHeapReport();
+    }
+
     public ListableClassReaderSource getWrittenClasses() {
         return writtenClasses;
     }
@@ -393,6 +621,24 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         this.debugEmitter = debugEmitter;
     }
 
+    /**
+     * <p>Does actual build, like {@link #build(Appendable, BuildTarget)}, but writes generated code directly
+     * to the channel in UTF-8 encoding. Code is written in chunks as it is generated, so it's never held in
+     * memory entirely. The channel is closed after the build.</p>
+     *
+     * @param channel where to generate JavaScript. Should not be null.
+     * @param target where to generate additional resources.
+     *
+     * @throws RenderingException when something went wrong during rendering phase.
+     */
+    public void build(WritableByteChannel channel, BuildTarget target) throws RenderingException {
+        try (ChunkedOutput output = new ChunkedOutput(channel)) {
+            build(output, target);
+        } catch (IOException e) {
+            throw new RenderingException("IO error occured", e);
+        }
+    }
+
     /**
      * <p>Does actual build. Call this method after TeaVM is fully configured and all entry points
      * are specified. This method may fail if there are items (classes, methods and fields)
@@ -421,11 +667,39 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
                 null).use();
         dependencyChecker.linkMethod(new MethodReference(String.class, "getChars", int.class, int.class, char[].class,
                 int.class, void.class), null).use();
-        MethodDependency internDep = dependencyChecker.linkMethod(new MethodReference(String.class, "intern",
-                String.class), null);
+        MethodDependency internDep = dependencyChecker.linkMethod(new MethodReference(String.class,
+                "internLiteral", String.class), null);
         internDep.getVariable(0).propagate(dependencyChecker.getType("java.lang.String"));
         internDep.use();
         dependencyChecker.linkMethod(new MethodReference(String.class, "length", int.class), null).use();
+        if (stringRepresentation == StringRepresentation.NATIVE) {
+            dependencyChecker.linkField(NativeStringTransformer.NATIVE_STRING, null);
+            Injector concatenationInjector = new StringConcatenationInjector();
+            for (MethodReference method : StringConcatenationInjector.METHODS) {
+                methodInjectors.putIfAbsent(method, concatenationInjector);
+            }
+            MethodDependency doubleToStringDep = dependencyChecker.linkMethod(
+                    StringConcatenationInjector.DOUBLE_TO_STRING, null);
+            doubleToStringDep.getResult().propagate(dependencyChecker.getType("java.lang.String"));
+            doubleToStringDep.use();
+        }
+        if (getOptimizationPasses().contains(OptimizationPass.STRING_BUILDER_ELIMINATION)) {
+            linkStringBuilderElimination();
+        }
+        if (inlining && !incremental && getOptimizationPasses().contains(OptimizationPass.INLINING)) {
+            // Inlined instance methods check their receivers for null after dependency analysis
+            MethodDependency npeDep = dependencyChecker.linkMethod(new MethodReference(NullPointerException.class,
+                    "<init>", void.class), null);
+            npeDep.getVariable(0).propagate(dependencyChecker.getType(NullPointerException.class.getName()));
+            npeDep.use();
+        }
+        if (longRepresentation == LongRepresentation.BIG_INT) {
+            // Long_div and Long_rem throw ArithmeticException on division by zero
+            MethodDependency arithmeticDep = dependencyChecker.linkMethod(new MethodReference(
+                    ArithmeticException.class, "<init>", void.class), null);
+            arithmeticDep.getVariable(0).propagate(dependencyChecker.getType(ArithmeticException.class.getName()));
+            arithmeticDep.use();
+        }
         dependencyChecker.linkMethod(new MethodReference(Object.class, "clone", Object.class), null).use();
         dependencyChecker.linkMethod(new MethodReference(Thread.class, "currentThread", Thread.class), null).use();
         dependencyChecker.linkMethod(new MethodReference(Thread.class, "getMainThread", Thread.class), null).use();
@@ -446,6 +720,11 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         exceptionCons.use();
         exceptionCons.getVariable(0).propagate(dependencyChecker.getType(NoSuchMethodError.class.getName()));
         exceptionCons.getVariable(1).propagate(dependencyChecker.getType("java.lang.String"));
+        if (!properties.isEmpty()) {
+            // System.getProperty may return values of build properties after constant propagation
+            dependencyChecker.linkMethod(SparseConditionalConstantPropagation.GET_PROPERTY, null).getResult()
+                    .propagate(dependencyChecker.getType("java.lang.String"));
+        }
         dependencyChecker.processDependencies();
         if (wasCancelled() || !diagnostics.getSevereProblems().isEmpty()) {
             return;
@@ -464,6 +743,9 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
 
         // Optimize and allocate registers
         if (!incremental) {
+            if (getOptimizationPasses().contains(OptimizationPass.CLASS_INITIALIZER_ELIMINATION)) {
+                new ClassInitializerElimination(classSet).apply();
+            }
             devirtualize(classSet, dependencyChecker);
             if (wasCancelled()) {
                 return;
@@ -471,6 +753,19 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         }
 
         List<ClassNode> clsNodes = modelToAst(classSet);
+        if (wasCancelled()) {
+            return;
+        }
+        codeChunks.clear();
+        Map<String, List<ClassNode>> chunkNodes = new HashMap<>();
+        CountingAppendable mainChunkOutput = null;
+        if (codeSplitting) {
+            if (target == null) {
+                throw new RenderingException("Build target is required to split code");
+            }
+            clsNodes = splitClasses(classSet, clsNodes, chunkNodes);
+            mainChunkOutput = new CountingAppendable(writer);
+        }
 
         // Render
         reportPhase(TeaVMPhase.RENDERING, classSet.getClassNames().size());
@@ -480,11 +775,16 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         DefaultNamingStrategy naming = new DefaultNamingStrategy(aliasProvider, dependencyChecker.getClassSource());
         SourceWriterBuilder builder = new SourceWriterBuilder(naming);
         builder.setMinified(minifying);
-        SourceWriter sourceWriter = builder.build(writer);
+        SourceWriter sourceWriter = builder.build(mainChunkOutput != null ? mainChunkOutput : writer);
         Renderer renderer = new Renderer(sourceWriter, classSet, classLoader, this, asyncMethods, asyncFamilyMethods,
                 diagnostics);
         renderer.setProperties(properties);
         renderer.setMinifying(minifying);
+        renderer.setLongRepresentation(longRepresentation);
+        renderer.setArrayRepresentation(arrayRepresentation);
+        renderer.setStringRepresentation(stringRepresentation);
+        renderer.setLazyStringPool(lazyStringPool);
+        renderer.setLazyMetadata(lazyMetadata);
         if (debugEmitter != null) {
             int classIndex = 0;
             for (String className : classSet.getClassNames()) {
@@ -505,12 +805,26 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         for (Map.Entry<MethodReference, Injector> entry : methodInjectors.entrySet()) {
             renderer.addInjector(entry.getKey(), entry.getValue());
         }
+        for (int i = 1; i < codeChunks.size(); ++i) {
+            renderer.addChunkTrigger(codeChunks.get(i).getRootClass(), i - 1);
+        }
         try {
             for (RendererListener listener : rendererListeners) {
                 listener.begin(renderer, target);
             }
             sourceWriter.append("\"use strict\";").newLine();
             renderer.renderRuntime();
+            if (!chunkNodes.isEmpty()) {
+                sourceWriter.append("$rt_chunks([");
+                for (int i = 1; i < codeChunks.size(); ++i) {
+                    if (i > 1) {
+                        sourceWriter.append(",").ws();
+                    }
+                    sourceWriter.append("\"").append(Renderer.escapeString(codeChunks.get(i).getFileName()))
+                            .append("\"");
+                }
+                sourceWriter.append("],").ws().append(chunkPrefetching ? "true" : "false").append(");").newLine();
+            }
             renderer.render(clsNodes);
             renderer.renderStringPool();
             for (Map.Entry<String, TeaVMEntryPoint> entry : entryPoints.entrySet()) {
@@ -523,6 +837,10 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
                 sourceWriter.append("var ").append(entry.getKey()).ws().append("=").ws()
                         .appendClass(entry.getValue()).append(";").newLine();
             }
+            if (mainChunkOutput != null) {
+                codeChunks.get(0).setSize(mainChunkOutput.count);
+                renderChunks(renderer, builder, target, chunkNodes);
+            }
             for (RendererListener listener : rendererListeners) {
                 listener.complete();
             }
@@ -531,6 +849,44 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         }
     }
 
+    private List<ClassNode> splitClasses(ListableClassHolderSource classSet, List<ClassNode> clsNodes,
+            Map<String, List<ClassNode>> chunkNodes) {
+        Map<String, String> chunkRoots = new ChunkPartitioner(dependencyChecker, classSet, MIN_CHUNK_CLASSES)
+                .partition();
+        CodeChunk mainChunk = new CodeChunk(null, null);
+        codeChunks.add(mainChunk);
+        List<ClassNode> mainNodes = new ArrayList<>();
+        Map<String, CodeChunk> chunksByRoot = new HashMap<>();
+        for (ClassNode clsNode : clsNodes) {
+            String root = chunkRoots.get(clsNode.getName());
+            if (root == null) {
+                mainNodes.add(clsNode);
+                mainChunk.addClass(clsNode.getName());
+                continue;
+            }
+            CodeChunk chunk = chunksByRoot.computeIfAbsent(root, key -> {
+                CodeChunk newChunk = new CodeChunk(chunkFileNamePrefix + codeChunks.size() + ".js", key);
+                codeChunks.add(newChunk);
+                return newChunk;
+            });
+            chunk.addClass(clsNode.getName());
+            chunkNodes.computeIfAbsent(root, key -> new ArrayList<>()).add(clsNode);
+        }
+        return mainNodes;
+    }
+
+    private void renderChunks(Renderer renderer, SourceWriterBuilder builder, BuildTarget target,
+            Map<String, List<ClassNode>> chunkNodes) throws IOException {
+        for (CodeChunk chunk : codeChunks.subList(1, codeChunks.size())) {
+            try (ChunkedOutput output = new ChunkedOutput(Channels.newChannel(
+                    target.createResource(chunk.getFileName())))) {
+                CountingAppendable chunkOutput = new CountingAppendable(output);
+                renderer.renderChunk(builder.build(chunkOutput), chunkNodes.get(chunk.getRootClass()));
+                chunk.setSize(chunkOutput.count);
+            }
+        }
+    }
+
     @SuppressWarnings("WeakerAccess")
     public ListableClassHolderSource link(DependencyInfo dependency) {
         reportPhase(TeaVMPhase.LINKING, dependency.getReachableClasses().size());
@@ -612,17 +968,24 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         asyncFinder.find(classes);
         asyncMethods.addAll(asyncFinder.getAsyncMethods());
         asyncFamilyMethods.addAll(asyncFinder.getAsyncFamilyMethods());
+        inliner = null;
+        if (inlining && !incremental) {
+            inliner = new Inlining();
+            // System.getProperty should stay a call, so that constant propagation could substitute build properties
+            inliner.collectCallees(classes, dependencyChecker, method -> methodGenerators.containsKey(method)
+                    || methodInjectors.containsKey(method) || asyncMethods.contains(method)
+                    || asyncFamilyMethods.contains(method)
+                    || method.equals(SparseConditionalConstantPropagation.GET_PROPERTY)
+                    || method.equals(SparseConditionalConstantPropagation.GET_PROPERTY_WITH_DEFAULT));
+        }
+        passManager = createPassManager();
 
         progressListener.phaseStarted(TeaVMPhase.DECOMPILATION, classes.getClassNames().size());
-        Decompiler decompiler = new Decompiler(classes, classLoader, asyncMethods, asyncFamilyMethods);
-        decompiler.setRegularMethodCache(incremental ? astCache : null);
-
-        for (Map.Entry<MethodReference, Generator> entry : methodGenerators.entrySet()) {
-            decompiler.addGenerator(entry.getKey(), entry.getValue());
-        }
-        for (MethodReference injectedMethod : methodInjectors.keySet()) {
-            decompiler.addMethodToPass(injectedMethod);
+        if (threadCount > 1) {
+            return modelToAstParallel(classes);
         }
+
+        Decompiler decompiler = createDecompiler(classes, incremental ? astCache : null);
         List<String> classOrder = decompiler.getClassOrdering(classes.getClassNames());
         List<ClassNode> classNodes = new ArrayList<>();
         int index = 0;
@@ -632,13 +995,18 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
                 ClassHolder cls = classes.get(className);
                 for (MethodHolder method : cls.getMethods()) {
                     processMethod(method);
-                    preprocessNativeMethod(method);
+                    if (preprocessNativeMethod(method)) {
+                        reportMissingNativeMethod(method);
+                    }
                     if (bytecodeLogging) {
                         logMethodBytecode(bytecodeLogger, method);
                     }
                 }
                 classNodes.add(decompiler.decompile(cls));
-                progressListener.progressReached(++index);
+                reportProgress(++index);
+                if (wasCancelled()) {
+                    break;
+                }
             }
         } catch (UnsupportedEncodingException e) {
             throw new AssertionError("UTF-8 is expected to be supported");
@@ -646,13 +1014,107 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         return classNodes;
     }
 
-    private void preprocessNativeMethod(MethodHolder method) {
+    private List<ClassNode> modelToAstParallel(ListableClassHolderSource classes) {
+        MethodNodeCache sharedAstCache = incremental ? new SynchronizedMethodNodeCache(astCache) : null;
+        ThreadLocal<Decompiler> decompilers = ThreadLocal.withInitial(() -> createDecompiler(classes,
+                sharedAstCache));
+        List<String> classOrder = decompilers.get().getClassOrdering(classes.getClassNames());
+        List<ClassNode> classNodes = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        try {
+            // Methods are processed in the same order as in sequential mode, while diagnostics and bytecode log
+            // are collected per class and written in class order
+            List<ForkJoinTask<ProcessedClass>> optimizationTasks = new ArrayList<>();
+            for (String className : classOrder) {
+                ClassHolder cls = classes.get(className);
+                optimizationTasks.add(pool.submit(() -> processClass(cls)));
+            }
+            try (PrintWriter bytecodeLogger = bytecodeLogging
+                    ? new PrintWriter(new OutputStreamWriter(logStream, "UTF-8")) : null) {
+                for (ForkJoinTask<ProcessedClass> task : optimizationTasks) {
+                    ProcessedClass processedClass = task.join();
+                    if (processedClass == null) {
+                        return classNodes;
+                    }
+                    for (MethodHolder method : processedClass.nativeMethods) {
+                        reportMissingNativeMethod(method);
+                    }
+                    if (bytecodeLogging) {
+                        bytecodeLogger.print(processedClass.bytecodeLog);
+                    }
+                    // Classes are counted once they are decompiled, here we only check for cancellation
+                    reportProgress(0);
+                    if (wasCancelled()) {
+                        return classNodes;
+                    }
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new AssertionError("UTF-8 is expected to be supported");
+            }
+
+            List<ForkJoinTask<ClassNode>> decompilationTasks = new ArrayList<>();
+            for (String className : classOrder) {
+                ClassHolder cls = classes.get(className);
+                decompilationTasks.add(pool.submit(() -> !wasCancelled() ? decompilers.get().decompile(cls) : null));
+            }
+            int index = 0;
+            for (ForkJoinTask<ClassNode> task : decompilationTasks) {
+                ClassNode classNode = task.join();
+                if (classNode == null) {
+                    break;
+                }
+                classNodes.add(classNode);
+                reportProgress(++index);
+                if (wasCancelled()) {
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return classNodes;
+    }
+
+    private ProcessedClass processClass(ClassHolder cls) {
+        ProcessedClass result = new ProcessedClass();
+        StringWriter log = new StringWriter();
+        PrintWriter logWriter = new PrintWriter(log);
+        for (MethodHolder method : cls.getMethods()) {
+            if (wasCancelled()) {
+                return null;
+            }
+            processMethod(method);
+            if (preprocessNativeMethod(method)) {
+                result.nativeMethods.add(method);
+            }
+            if (bytecodeLogging) {
+                logMethodBytecode(logWriter, method);
+            }
+        }
+        logWriter.flush();
+        result.bytecodeLog = log.toString();
+        return result;
+    }
+
+    private Decompiler createDecompiler(ListableClassHolderSource classes, MethodNodeCache regularMethodCache) {
+        Decompiler decompiler = new Decompiler(classes, classLoader, asyncMethods, asyncFamilyMethods);
+        decompiler.setRegularMethodCache(regularMethodCache);
+        for (Map.Entry<MethodReference, Generator> entry : methodGenerators.entrySet()) {
+            decompiler.addGenerator(entry.getKey(), entry.getValue());
+        }
+        for (MethodReference injectedMethod : methodInjectors.keySet()) {
+            decompiler.addMethodToPass(injectedMethod);
+        }
+        return decompiler;
+    }
+
+    private boolean preprocessNativeMethod(MethodHolder method) {
         if (!method.getModifiers().contains(ElementModifier.NATIVE)
                 || methodGenerators.get(method.getReference()) != null
                 || methodInjectors.get(method.getReference()) != null
                 || method.getAnnotations().get(GeneratedBy.class.getName()) != null
                 || method.getAnnotations().get(InjectedBy.class.getName()) != null) {
-            return;
+            return false;
         }
         method.getModifiers().remove(ElementModifier.NATIVE);
 
@@ -681,7 +1143,10 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         RaiseInstruction raiseInsn = new RaiseInstruction();
         raiseInsn.setException(exceptionVar);
         block.getInstructions().add(raiseInsn);
+        return true;
+    }
 
+    private void reportMissingNativeMethod(MethodHolder method) {
         diagnostics.error(new CallLocation(method.getReference()), "Native method {{m0}} has no implementation",
                 method.getReference());
     }
@@ -693,26 +1158,109 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
 
         boolean noCache = method.getAnnotations().get(NoCache.class.getName()) != null;
         Program optimizedProgram = incremental && !noCache && programCache != null
-                ? programCache.get(method.getReference()) : null;
+                ? getCachedProgram(method.getReference()) : null;
         if (optimizedProgram == null) {
             optimizedProgram = ProgramUtils.copy(method.getProgram());
             if (optimizedProgram.basicBlockCount() > 0) {
-                for (MethodOptimization optimization : getOptimizations()) {
-                    optimization.optimize(method, optimizedProgram);
-                }
+                passManager.optimize(method, optimizedProgram);
                 RegisterAllocator allocator = new RegisterAllocator();
                 allocator.allocateRegisters(method, optimizedProgram);
             }
             if (incremental && programCache != null) {
-                programCache.store(method.getReference(), optimizedProgram);
+                synchronized (programCache) {
+                    programCache.store(method.getReference(), optimizedProgram);
+                }
             }
         }
         method.setProgram(optimizedProgram);
     }
 
-    private List<MethodOptimization> getOptimizations() {
-        return Arrays.asList(new ArrayUnwrapMotion(), /*new LoopInversion(),*/ new LoopInvariantMotion(),
-                new GlobalValueNumbering(), new UnusedVariableElimination());
+    private Program getCachedProgram(MethodReference method) {
+        synchronized (programCache) {
+            return programCache.get(method);
+        }
+    }
+
+    private List<OptimizationPass> getOptimizationPasses() {
+        return optimizationPasses != null ? optimizationPasses : optimizationLevel.getPasses();
+    }
+
+    private void linkStringBuilderElimination() {
+        // Calls to these methods appear after dependency analysis, when builder chains are replaced
+        DependencyType stringType = dependencyChecker.getType("java.lang.String");
+        MethodDependency concatDep = dependencyChecker.linkMethod(StringBuilderElimination.CONCATENATE, null);
+        concatDep.getVariable(1).propagate(stringType);
+        concatDep.getVariable(2).propagate(stringType);
+        concatDep.getResult().propagate(stringType);
+        concatDep.use();
+        concatDep = dependencyChecker.linkMethod(StringBuilderElimination.CONCATENATE_ARRAY, null);
+        concatDep.getVariable(1).propagate(dependencyChecker.getType("[java.lang.String"));
+        concatDep.getVariable(1).getArrayItem().propagate(stringType);
+        concatDep.getResult().propagate(stringType);
+        concatDep.use();
+        MethodDependency valueOfDep = dependencyChecker.linkMethod(StringBuilderElimination.VALUE_OF_OBJECT, null);
+        valueOfDep.getVariable(1).propagate(dependencyChecker.getType("java.lang.Object"));
+        valueOfDep.getResult().propagate(stringType);
+        valueOfDep.use();
+        // Objects appended to a builder are converted by String.valueOf instead, so its toString call must see
+        // every type that reaches append
+        for (Class<?> type : new Class<?>[] { Object.class, String.class, CharSequence.class, StringBuffer.class }) {
+            MethodDependency appendDep = dependencyChecker.linkMethod(new MethodReference(StringBuilder.class,
+                    "append", type, StringBuilder.class), null);
+            appendDep.getVariable(1).connect(valueOfDep.getVariable(1));
+        }
+        for (MethodReference method : StringBuilderElimination.VALUE_OF_PRIMITIVE) {
+            valueOfDep = dependencyChecker.linkMethod(method, null);
+            valueOfDep.getResult().propagate(stringType);
+            valueOfDep.use();
+        }
+    }
+
+    private PassManager createPassManager() {
+        PassManager passManager = new PassManager();
+        passManager.setMaxRounds(optimizationLevel.getMaxRounds());
+        // Cached programs don't depend on build properties, so they are not substituted in incremental mode
+        Properties constantProperties = incremental ? new Properties() : properties;
+        boolean nativeStrings = stringRepresentation == StringRepresentation.NATIVE;
+        for (OptimizationPass pass : getOptimizationPasses()) {
+            switch (pass) {
+                case STRING_BUILDER_ELIMINATION:
+                    passManager.add(pass.getName(), () -> new StringBuilderElimination(nativeStrings));
+                    break;
+                case INLINING:
+                    if (inliner != null) {
+                        Inlining passInliner = inliner;
+                        passManager.addOnce(pass.getName(), () -> passInliner);
+                    }
+                    break;
+                case SCALAR_REPLACEMENT:
+                    passManager.add(pass.getName(), ScalarReplacement::new);
+                    break;
+                case CONSTANT_PROPAGATION:
+                    passManager.add(pass.getName(), () -> new SparseConditionalConstantPropagation(
+                            constantProperties));
+                    break;
+                case ARRAY_UNWRAP_MOTION:
+                    passManager.add(pass.getName(), ArrayUnwrapMotion::new);
+                    break;
+                case LOOP_INVERSION:
+                    passManager.add(pass.getName(), LoopInversion::new);
+                    break;
+                case LOOP_INVARIANT_MOTION:
+                    passManager.add(pass.getName(), LoopInvariantMotion::new);
+                    break;
+                case GLOBAL_VALUE_NUMBERING:
+                    passManager.add(pass.getName(), GlobalValueNumbering::new);
+                    break;
+                case UNUSED_VARIABLE_ELIMINATION:
+                    passManager.add(pass.getName(), UnusedVariableElimination::new);
+                    break;
+                case CLASS_INITIALIZER_ELIMINATION:
+                    // Runs over the whole program after linking rather than per method
+                    break;
+            }
+        }
+        return passManager;
     }
 
     private void logMethodBytecode(PrintWriter writer, MethodHolder method) {
@@ -843,4 +1391,39 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
     public <T> void registerService(Class<T> type, T instance) {
         services.put(type, instance);
     }
+
+    private static class ProcessedClass {
+        final List<MethodHolder> nativeMethods = new ArrayList<>();
+        String bytecodeLog;
+    }
+
+    private static class CountingAppendable implements Appendable {
+        private final Appendable inner;
+        long count;
+
+        CountingAppendable(Appendable inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            count += csq.length();
+            inner.append(csq);
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            count += end - start;
+            inner.append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            ++count;
+            inner.append(c);
+            return this;
+        }
+    }
 }
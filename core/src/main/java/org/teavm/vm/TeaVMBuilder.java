@@ -15,7 +15,11 @@
  */
 package org.teavm.vm;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.teavm.model.ClassHolderSource;
+import org.teavm.optimization.OptimizationLevel;
+import org.teavm.optimization.OptimizationPass;
 import org.teavm.parsing.ClasspathClassHolderSource;
 
 /**
@@ -25,6 +29,11 @@ import org.teavm.parsing.ClasspathClassHolderSource;
 public class TeaVMBuilder {
     ClassHolderSource classSource;
     ClassLoader classLoader;
+    int threadCount = 1;
+    boolean concurrentDependencyAnalysis;
+    boolean batchedPropagation;
+    OptimizationLevel optimizationLevel = OptimizationLevel.FULL;
+    List<OptimizationPass> optimizationPasses;
 
     public TeaVMBuilder() {
         classLoader = TeaVMBuilder.class.getClassLoader();
@@ -49,7 +58,96 @@ public class TeaVMBuilder {
         return this;
     }
 
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Specifies how many threads TeaVM uses to optimize and decompile methods. When set to {@code 1}
+     * (the default), all methods are processed sequentially in the calling thread. Otherwise,
+     * independent methods are processed concurrently in a fork-join pool of the given size.
+     * Generated code does not depend on this setting.
+     *
+     * @param threadCount number of worker threads, must be positive.
+     * @return this builder.
+     */
+    public TeaVMBuilder setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public boolean isConcurrentDependencyAnalysis() {
+        return concurrentDependencyAnalysis;
+    }
+
+    /**
+     * Specifies whether dependency analysis propagates types using {@link #getThreadCount()} threads
+     * instead of the sequential engine. Both engines produce the same dependency information.
+     *
+     * @param concurrentDependencyAnalysis whether to use the concurrent propagation engine.
+     * @return this builder.
+     */
+    public TeaVMBuilder setConcurrentDependencyAnalysis(boolean concurrentDependencyAnalysis) {
+        this.concurrentDependencyAnalysis = concurrentDependencyAnalysis;
+        return this;
+    }
+
+    public boolean isBatchedPropagation() {
+        return batchedPropagation;
+    }
+
+    /**
+     * Specifies whether dependency analysis coalesces types sent to the same consumer into a single task.
+     *
+     * @see org.teavm.dependency.DependencyChecker#setBatchedPropagation(boolean)
+     * @param batchedPropagation whether to coalesce propagation tasks.
+     * @return this builder.
+     */
+    public TeaVMBuilder setBatchedPropagation(boolean batchedPropagation) {
+        this.batchedPropagation = batchedPropagation;
+        return this;
+    }
+
+    public OptimizationLevel getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    /**
+     * Specifies which optimizations are applied to methods, {@link OptimizationLevel#FULL} by default.
+     *
+     * @param optimizationLevel optimization level.
+     * @return this builder.
+     */
+    public TeaVMBuilder setOptimizationLevel(OptimizationLevel optimizationLevel) {
+        if (optimizationLevel == null) {
+            throw new IllegalArgumentException("Optimization level must not be null");
+        }
+        this.optimizationLevel = optimizationLevel;
+        return this;
+    }
+
+    public List<OptimizationPass> getOptimizationPasses() {
+        return optimizationPasses;
+    }
+
+    /**
+     * Specifies exact sequence of optimization passes applied to methods. When set, this sequence is used
+     * instead of passes of {@link #getOptimizationLevel()}, while the level still determines how many times
+     * the sequence may be repeated.
+     *
+     * @param optimizationPasses optimization passes in order of application, or {@code null} to use
+     * passes of the optimization level.
+     * @return this builder.
+     */
+    public TeaVMBuilder setOptimizationPasses(List<OptimizationPass> optimizationPasses) {
+        this.optimizationPasses = optimizationPasses != null ? new ArrayList<>(optimizationPasses) : null;
+        return this;
+    }
+
     public TeaVM build() {
-        return new TeaVM(classSource, classLoader);
+        return new TeaVM(this);
     }
 }
@@ -121,23 +121,20 @@ if (typeof 'ArrayBuffer' !== 'undefined') {
 function $rt_arraycls(cls) {
     var result = cls.$array;
     if (result === null) {
-        var arraycls = function(data) {
-            this.data = data;
-            this.$id = 0;
-        };
-        arraycls.prototype = new ($rt_objcls())();
-        arraycls.prototype.constructor = arraycls;
-        arraycls.prototype.toString = function() {
-            var str = "[";
-            for (var i = 0; i < this.data.length; ++i) {
-                if (i > 0) {
-                    str += ", ";
-                }
-                str += this.data[i].toString();
-            }
-            str += "]";
-            return str;
-        };
+        var arraycls;
+        if (cls.$typedArray !== undefined) {
+            arraycls = $rt_typedArraycls(cls.$typedArray);
+        } else if ($rt_pairedLongArrays && cls === $rt_longcls()) {
+            arraycls = $rt_pairedLongArraycls();
+        } else {
+            arraycls = function(data) {
+                this.data = data;
+                this.$id = 0;
+            };
+            arraycls.prototype = new ($rt_objcls())();
+            arraycls.prototype.constructor = arraycls;
+            arraycls.prototype.toString = $rt_arrayToString;
+        }
         var name = "[" + cls.$meta.binaryName;
         arraycls.$meta = { item : cls, supertypes : [$rt_objcls()], primitive : false, superclass : $rt_objcls(),
                 name : name, binaryName : name, enum : false };
@@ -148,6 +145,205 @@ function $rt_arraycls(cls) {
     }
     return result;
 }
+function $rt_arrayToString() {
+    var data = this.data;
+    var str = "[";
+    for (var i = 0; i < data.length; ++i) {
+        if (i > 0) {
+            str += ", ";
+        }
+        str += data[i].toString();
+    }
+    str += "]";
+    return str;
+}
+function $rt_cloneArray(arr) {
+    return $rt_wrapArray(arr.constructor.$meta.item, arr.data.slice());
+}
+function $rt_longArrayGet(arr, index) {
+    return arr.data[index];
+}
+function $rt_longArraySet(arr, index, value) {
+    arr.data[index] = value;
+}
+function $rt_longArrayFill(arr, from, to, value) {
+    $rt_arrayFill(arr, from, to, value);
+}
+function $rt_arraycopy(src, srcPos, dest, destPos, length) {
+    if ($rt_pairedLongArrays && src.constructor.$meta.item === $rt_longcls()) {
+        $rt_copyTypedArray(src.lo, srcPos, dest.lo, destPos, length);
+        $rt_copyTypedArray(src.hi, srcPos, dest.hi, destPos, length);
+        return;
+    }
+    var srcData = src.data;
+    var destData = dest.data;
+    if (srcData.buffer !== undefined && destData.buffer !== undefined) {
+        $rt_copyTypedArray(srcData, srcPos, destData, destPos, length);
+        return;
+    }
+    var i;
+    if (srcData !== destData || destPos < srcPos) {
+        for (i = 0; i < length; i = (i + 1) | 0) {
+            destData[destPos++] = srcData[srcPos++];
+        }
+    } else {
+        srcPos = (srcPos + length) | 0;
+        destPos = (destPos + length) | 0;
+        for (i = 0; i < length; i = (i + 1) | 0) {
+            destData[--destPos] = srcData[--srcPos];
+        }
+    }
+}
+function $rt_copyTypedArray(src, srcPos, dest, destPos, length) {
+    if (src === dest && dest.copyWithin !== undefined) {
+        dest.copyWithin(destPos, srcPos, (srcPos + length) | 0);
+    } else {
+        dest.set(src.subarray(srcPos, (srcPos + length) | 0), destPos);
+    }
+}
+function $rt_arrayFill(arr, from, to, value) {
+    var data = arr.data;
+    if (data.fill !== undefined) {
+        data.fill(value, from, to);
+    } else {
+        for (var i = from; i < to; i = (i + 1) | 0) {
+            data[i] = value;
+        }
+    }
+}
+function $rt_charsToString(data, offset, count) {
+    var end = (offset + count) | 0;
+    var result = "";
+    while (offset < end) {
+        var chunkEnd = Math.min(end, (offset + 8192) | 0);
+        var chunk = data.subarray !== undefined ? data.subarray(offset, chunkEnd) : data.slice(offset, chunkEnd);
+        result += String.fromCharCode.apply(null, chunk);
+        offset = chunkEnd;
+    }
+    return result;
+}
+function $rt_stringToChars(str, begin, end, data, offset) {
+    for (var i = begin; i < end; i = (i + 1) | 0) {
+        data[offset++] = str.charCodeAt(i);
+    }
+}
+function $rt_doubleToString(value, slowPath) {
+    if (value === Math.floor(value) && Math.abs(value) < 1e7 && (value !== 0 || 1 / value > 0)) {
+        return value + ".0";
+    }
+    return $rt_ustr(slowPath(value));
+}
+var $rt_pairedLongArrays = false;
+function $rt_useTypedArrays(bigIntLongs) {
+    $rt_booleancls().$typedArray = Int8Array;
+    $rt_bytecls().$typedArray = Int8Array;
+    $rt_shortcls().$typedArray = Int16Array;
+    $rt_charcls().$typedArray = Uint16Array;
+    $rt_intcls().$typedArray = Int32Array;
+    $rt_floatcls().$typedArray = Float32Array;
+    $rt_doublecls().$typedArray = Float64Array;
+    if (bigIntLongs) {
+        $rt_longcls().$typedArray = BigInt64Array;
+        $rt_createLongArray = function(sz) { return $rt_createTypedArray($rt_longcls(), sz); };
+    } else {
+        $rt_pairedLongArrays = true;
+        $rt_createLongArray = function(sz) {
+            return new ($rt_arraycls($rt_longcls()))(new Int32Array(sz), new Int32Array(sz));
+        };
+        $rt_longArrayGet = function(arr, index) {
+            return new Long(arr.lo[index], arr.hi[index]);
+        };
+        $rt_longArraySet = function(arr, index, value) {
+            arr.lo[index] = value.lo;
+            arr.hi[index] = value.hi;
+        };
+        $rt_longArrayFill = function(arr, from, to, value) {
+            arr.lo.fill(value.lo, from, to);
+            arr.hi.fill(value.hi, from, to);
+        };
+    }
+    $rt_createNumericArray = $rt_createTypedArray;
+    $rt_createBooleanArray = function(sz) { return $rt_createTypedArray($rt_booleancls(), sz); };
+    $rt_createByteArray = function(sz) { return $rt_createTypedArray($rt_bytecls(), sz); };
+    $rt_createShortArray = function(sz) { return $rt_createTypedArray($rt_shortcls(), sz); };
+    $rt_createCharArray = function(sz) { return $rt_createTypedArray($rt_charcls(), sz); };
+    $rt_createIntArray = function(sz) { return $rt_createTypedArray($rt_intcls(), sz); };
+    $rt_createFloatArray = function(sz) { return $rt_createTypedArray($rt_floatcls(), sz); };
+    $rt_createDoubleArray = function(sz) { return $rt_createTypedArray($rt_doublecls(), sz); };
+    $rt_wrapArray = function(cls, data) {
+        if (cls.$typedArray !== undefined) {
+            return $rt_createTypedArray(cls, data);
+        } else if ($rt_pairedLongArrays && cls === $rt_longcls()) {
+            var arr = $rt_createLongArray(data.length);
+            for (var i = 0; i < data.length; i = (i + 1) | 0) {
+                $rt_longArraySet(arr, i, data[i]);
+            }
+            return arr;
+        }
+        return new ($rt_arraycls(cls))(data);
+    };
+    $rt_cloneArray = function(arr) {
+        var cls = arr.constructor.$meta.item;
+        if ($rt_pairedLongArrays && cls === $rt_longcls()) {
+            return new (arr.constructor)(arr.lo.slice(), arr.hi.slice());
+        }
+        return $rt_wrapArray(cls, arr.data.slice());
+    };
+}
+function $rt_createTypedArray(cls, data) {
+    var ctor = cls.$typedArray;
+    var arraycls = $rt_arraycls(cls);
+    if (typeof data === 'number') {
+        return Reflect.construct(ctor, [data], arraycls);
+    } else if (data instanceof ctor) {
+        return Reflect.construct(ctor, [data.buffer, data.byteOffset, data.length], arraycls);
+    }
+    return Reflect.construct(ctor, [data], arraycls);
+}
+function $rt_typedArraycls(ctor) {
+    var arraycls = function(data) {
+        return $rt_createTypedArray(arraycls.$meta.item, data);
+    };
+    arraycls.prototype = $rt_arrayPrototype(Object.create(ctor.prototype));
+    arraycls.prototype.constructor = arraycls;
+    arraycls.prototype.toString = $rt_arrayToString;
+    return arraycls;
+}
+function $rt_pairedLongArraycls() {
+    var arraycls = function(lo, hi) {
+        this.lo = lo;
+        this.hi = hi;
+        this.$id = 0;
+    };
+    arraycls.prototype = new ($rt_objcls())();
+    arraycls.prototype.constructor = arraycls;
+    Object.defineProperty(arraycls.prototype, "data", { get : function() {
+        throw new Error("long[] is stored as a pair of Int32Array and has no data array, "
+                + "use $rt_longArrayGet/$rt_longArraySet");
+    } });
+    Object.defineProperty(arraycls.prototype, "length", { get : function() { return this.lo.length; } });
+    arraycls.prototype.toString = function() {
+        var str = "[";
+        for (var i = 0; i < this.lo.length; ++i) {
+            if (i > 0) {
+                str += ", ";
+            }
+            str += $rt_longArrayGet(this, i).toString();
+        }
+        str += "]";
+        return str;
+    };
+    return arraycls;
+}
+function $rt_arrayPrototype(proto) {
+    var template = new ($rt_objcls())();
+    for (var key in template) {
+        Object.defineProperty(proto, key, { value : template[key], writable : true, configurable : true });
+    }
+    Object.defineProperty(proto, "$id", { value : 0, writable : true, configurable : true });
+    Object.defineProperty(proto, "data", { get : function() { return this; } });
+    return proto;
+}
 function $rt_createcls() {
     return {
         $array : null,
@@ -429,6 +625,50 @@ function $rt_metadata(data) {
         cls.$array = null;
     }
 }
+function $rt_noClinit() {
+}
+var $rt_lazyMetaProperty = {
+    get : function() {
+        return $rt_createLazyMeta(this);
+    },
+    set : function(value) {
+        Object.defineProperty(this, "$meta", { value : value, writable : true, enumerable : true,
+                configurable : true });
+    },
+    configurable : true
+};
+function $rt_lazyMetadata(data) {
+    for (var i = 0; i < data.length; i += 6) {
+        var cls = data[i];
+        cls.$metadata = data;
+        cls.$metadataIndex = i;
+        Object.defineProperty(cls, "$meta", $rt_lazyMetaProperty);
+        var clinit = data[i + 5];
+        cls.$clinit = clinit !== 0 ? clinit : $rt_noClinit;
+        cls.classObject = null;
+        cls.$array = null;
+    }
+}
+function $rt_createLazyMeta(cls) {
+    var data = cls.$metadata;
+    var i = cls.$metadataIndex;
+    var m = {};
+    m.name = data[i + 1];
+    m.binaryName = "L" + m.name + ";";
+    var superclass = data[i + 2];
+    m.superclass = superclass !== 0 ? superclass : null;
+    m.supertypes = data[i + 3].slice();
+    if (m.superclass) {
+        m.supertypes.push(m.superclass);
+    }
+    m.enum = (data[i + 4] & 1) != 0;
+    m.primitive = false;
+    m.item = null;
+    cls.$metadata = null;
+    cls.$metadataIndex = 0;
+    cls.$meta = m;
+    return m;
+}
 function $rt_threadStarter(f) {
     return function() {
         var args = Array.prototype.slice.apply(arguments);
@@ -459,6 +699,108 @@ function $rt_stringPool(strings) {
 function $rt_s(index) {
     return $rt_stringPool_instance[index];
 }
+function $rt_stringPoolAppend(strings) {
+    if (!$rt_stringPool_instance) {
+        $rt_stringPool_instance = [];
+    }
+    for (var i = 0; i < strings.length; i += 2) {
+        if ($rt_stringPool_source) {
+            $rt_stringPool_source[strings[i]] = strings[i + 1];
+        } else {
+            $rt_stringPool_instance[strings[i]] = $rt_intern($rt_str(strings[i + 1]));
+        }
+    }
+}
+var $rt_stringPool_source;
+function $rt_lazyStringPool(strings) {
+    $rt_stringPool_source = strings;
+    $rt_stringPool_instance = new Array(strings.length);
+    $rt_s = $rt_lazyS;
+}
+function $rt_lazyS(index) {
+    var str = $rt_stringPool_instance[index];
+    if (str === undefined) {
+        str = $rt_intern($rt_str($rt_stringPool_source[index]));
+        $rt_stringPool_instance[index] = str;
+        $rt_stringPool_source[index] = null;
+    }
+    return str;
+}
+var $rt_chunkBase = "";
+var $rt_chunkFiles = [];
+var $rt_loadedChunks = [];
+var $rt_chunkSources = [];
+var $rt_chunkNonce = null;
+function $rt_chunks(files, prefetch) {
+    $rt_chunkFiles = files;
+    if (typeof document !== 'undefined' && document.currentScript) {
+        var script = document.currentScript;
+        $rt_chunkNonce = script.nonce || script.getAttribute("nonce");
+        if (script.src) {
+            $rt_chunkBase = script.src.substring(0, script.src.lastIndexOf('/') + 1);
+        }
+    } else if (typeof __dirname !== 'undefined') {
+        $rt_chunkBase = __dirname + "/";
+    }
+    if (prefetch && typeof importScripts !== 'function' && typeof XMLHttpRequest !== 'undefined') {
+        for (var i = 0; i < files.length; ++i) {
+            $rt_prefetchChunk(i);
+        }
+    }
+}
+function $rt_prefetchChunk(index) {
+    var xhr = new XMLHttpRequest();
+    xhr.open("GET", $rt_chunkBase + $rt_chunkFiles[index], true);
+    xhr.onload = function() {
+        if ((xhr.status === 200 || xhr.status === 0) && !$rt_loadedChunks[index]) {
+            $rt_chunkSources[index] = xhr.responseText;
+        }
+    };
+    xhr.send();
+}
+function $rt_loadChunk(index) {
+    if ($rt_loadedChunks[index]) {
+        return;
+    }
+    $rt_loadedChunks[index] = true;
+    var url = $rt_chunkBase + $rt_chunkFiles[index];
+    if (typeof importScripts === 'function') {
+        importScripts(url);
+    } else if (typeof require === 'function' && typeof XMLHttpRequest === 'undefined') {
+        require('vm').runInThisContext(require('fs').readFileSync(url, 'utf8'), url);
+    } else {
+        var source = $rt_chunkSources[index];
+        $rt_chunkSources[index] = null;
+        if (typeof source !== 'string') {
+            // Chunk is needed before it was prefetched, so there is no choice but to block
+            var xhr = new XMLHttpRequest();
+            xhr.open("GET", url, false);
+            xhr.send();
+            if (xhr.status !== 200 && xhr.status !== 0) {
+                $rt_loadedChunks[index] = false;
+                throw new Error("Could not load code chunk " + url + ": " + xhr.status);
+            }
+            source = xhr.responseText;
+        }
+        $rt_runChunk(source, url);
+    }
+}
+function $rt_runChunk(source, url) {
+    source += "\n//# sourceURL=" + url;
+    if (typeof document === 'undefined') {
+        (0, eval)(source);
+        return;
+    }
+    // Inline script with the nonce of the main script works under CSP that forbids eval
+    var script = document.createElement("script");
+    if ($rt_chunkNonce) {
+        script.setAttribute("nonce", $rt_chunkNonce);
+    }
+    script.text = source;
+    var parent = document.head || document.documentElement;
+    parent.appendChild(script);
+    parent.removeChild(script);
+}
 function TeaVMThread(runner) {
     this.status = 3;
     this.stack = [];
@@ -702,6 +1044,12 @@ function Long_compare(a, b) {
     }
     return (a.lo & 1) - (b.lo & 1);
 }
+function Long_not(a) {
+    return new Long(~a.lo, ~a.hi);
+}
+function Long_hashCode(a) {
+    return a.hi ^ a.lo;
+}
 function Long_isPositive(a) {
     return (a.hi & 0x80000000) === 0;
 }
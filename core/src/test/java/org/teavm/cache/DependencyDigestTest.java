@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2014 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.parsing.ClassDigestProvider;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public class DependencyDigestTest {
+    @Test
+    public void manyDependencies() throws IOException {
+        List<String> classNames = new ArrayList<>();
+        for (int i = 0; i < 40000; ++i) {
+            classNames.add("foo.Class" + i);
+        }
+        ClassDigestProvider digestProvider = className -> className.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DependencyDigest.write(new DataOutputStream(output), classNames, digestProvider);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+
+        assertThat(DependencyDigest.check(input, digestProvider), is(true));
+    }
+
+    @Test
+    public void changedDependency() throws IOException {
+        List<String> classNames = new ArrayList<>();
+        classNames.add("foo.A");
+        classNames.add("foo.B");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DependencyDigest.write(new DataOutputStream(output), classNames,
+                className -> className.getBytes(StandardCharsets.UTF_8));
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+
+        assertThat(DependencyDigest.check(input, className -> className.equals("foo.B")
+                ? new byte[] { 1 } : className.getBytes(StandardCharsets.UTF_8)), is(false));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.platform;
+
+import org.teavm.jso.JSBody;
+import org.teavm.jso.typedarrays.ArrayBufferView;
+import org.teavm.jso.typedarrays.Float32Array;
+import org.teavm.jso.typedarrays.Float64Array;
+import org.teavm.jso.typedarrays.Int16Array;
+import org.teavm.jso.typedarrays.Int32Array;
+import org.teavm.jso.typedarrays.Int8Array;
+import org.teavm.jso.typedarrays.Uint16Array;
+
+/**
+ * <p>Converts Java arrays of primitives to JavaScript typed arrays and back without copying. Both arrays share
+ * the same memory, so changes made on one side are visible on the other one. With typed array representation
+ * a Java array is returned as is, otherwise its underlying typed array is returned. Requires an engine that
+ * supports typed arrays.</p>
+ *
+ * @author Alexey Andreev
+ */
+public final class PlatformArrays {
+    private PlatformArrays() {
+    }
+
+    public static Int8Array asInt8Array(byte[] array) {
+        return (Int8Array) getData(Platform.getPlatformObject(array));
+    }
+
+    public static Int16Array asInt16Array(short[] array) {
+        return (Int16Array) getData(Platform.getPlatformObject(array));
+    }
+
+    public static Uint16Array asUint16Array(char[] array) {
+        return (Uint16Array) getData(Platform.getPlatformObject(array));
+    }
+
+    public static Int32Array asInt32Array(int[] array) {
+        return (Int32Array) getData(Platform.getPlatformObject(array));
+    }
+
+    public static Float32Array asFloat32Array(float[] array) {
+        return (Float32Array) getData(Platform.getPlatformObject(array));
+    }
+
+    public static Float64Array asFloat64Array(double[] array) {
+        return (Float64Array) getData(Platform.getPlatformObject(array));
+    }
+
+    @JSBody(params = "array", script = "return array.data;")
+    private static native ArrayBufferView getData(PlatformObject array);
+
+    public static byte[] asByteArray(Int8Array array) {
+        return (byte[]) (Object) wrapBytes(array);
+    }
+
+    public static short[] asShortArray(Int16Array array) {
+        return (short[]) (Object) wrapShorts(array);
+    }
+
+    public static char[] asCharArray(Uint16Array array) {
+        return (char[]) (Object) wrapChars(array);
+    }
+
+    public static int[] asIntArray(Int32Array array) {
+        return (int[]) (Object) wrapInts(array);
+    }
+
+    public static float[] asFloatArray(Float32Array array) {
+        return (float[]) (Object) wrapFloats(array);
+    }
+
+    public static double[] asDoubleArray(Float64Array array) {
+        return (double[]) (Object) wrapDoubles(array);
+    }
+
+    @JSBody(params = "array", script = "return $rt_wrapArray($rt_bytecls(), array);")
+    private static native PlatformObject wrapBytes(Int8Array array);
+
+    @JSBody(params = "array", script = "return $rt_wrapArray($rt_shortcls(), array);")
+    private static native PlatformObject wrapShorts(Int16Array array);
+
+    @JSBody(params = "array", script = "return $rt_wrapArray($rt_charcls(), array);")
+    private static native PlatformObject wrapChars(Uint16Array array);
+
+    @JSBody(params = "array", script = "return $rt_wrapArray($rt_intcls(), array);")
+    private static native PlatformObject wrapInts(Int32Array array);
+
+    @JSBody(params = "array", script = "return $rt_wrapArray($rt_floatcls(), array);")
+    private static native PlatformObject wrapFloats(Float32Array array);
+
+    @JSBody(params = "array", script = "return $rt_wrapArray($rt_doublecls(), array);")
+    private static native PlatformObject wrapDoubles(Float64Array array);
+}
@@ -157,6 +157,10 @@ public class PlatformGenerator implements Generator, Injector, DependencyPlugin
 
     private void generateClone(GeneratorContext context, SourceWriter writer) throws IOException {
         String obj = context.getParameterName(1);
+        writer.append("if").ws().append("(" + obj + ".constructor.$meta.item)").ws().append("{").softNewLine()
+                .indent();
+        writer.append("return $rt_cloneArray(" + obj + ");").softNewLine();
+        writer.outdent().append("}").softNewLine();
         writer.append("var copy").ws().append("=").ws().append("new ").append(obj).append(".constructor();")
                 .softNewLine();
         writer.append("for").ws().append("(var field in " + obj + ")").ws().append("{").softNewLine().indent();
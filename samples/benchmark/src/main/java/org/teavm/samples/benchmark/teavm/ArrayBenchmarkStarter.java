@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.samples.benchmark.teavm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.teavm.jso.browser.Performance;
+import org.teavm.jso.browser.Window;
+import org.teavm.jso.dom.html.HTMLDocument;
+import org.teavm.jso.dom.html.HTMLElement;
+
+/**
+ * <p>Measures bulk operations on arrays: <code>System.arraycopy</code>, <code>Arrays.fill</code>,
+ * <code>Arrays.copyOf</code> and insertion into <code>ArrayList</code> and <code>StringBuilder</code>,
+ * see <code>arrays.html</code>.</p>
+ *
+ * @author Alexey Andreev
+ */
+public final class ArrayBenchmarkStarter {
+    private static final int SIZE = 65536;
+    private static final int REPEAT = 100;
+    private static final int RUNS = 5;
+    private static HTMLDocument document = Window.current().getDocument();
+    private static HTMLElement resultTableBody = document.getElementById("result-table-body");
+    private static byte[] bytes = new byte[SIZE];
+    private static byte[] byteCopy = new byte[SIZE];
+    private static int[] ints = new int[SIZE];
+    private static long[] longs = new long[SIZE];
+    private static double[] doubles = new double[SIZE];
+    private static char[] chars = new char[SIZE];
+    private static long sink;
+
+    private ArrayBenchmarkStarter() {
+    }
+
+    public static void main(String[] args) {
+        for (int i = 0; i < SIZE; ++i) {
+            bytes[i] = (byte) i;
+            ints[i] = i;
+        }
+        for (int i = 0; i < RUNS; ++i) {
+            measure("System.arraycopy, byte[]", ArrayBenchmarkStarter::copyBytes);
+            measure("System.arraycopy, overlapping int[]", ArrayBenchmarkStarter::shiftInts);
+            measure("Arrays.fill", ArrayBenchmarkStarter::fill);
+            measure("Arrays.copyOf and copyOfRange", ArrayBenchmarkStarter::copyOf);
+            measure("Insertion into ArrayList and StringBuilder", ArrayBenchmarkStarter::insert);
+        }
+    }
+
+    private static void measure(String name, Runnable benchmark) {
+        double start = Performance.now();
+        for (int i = 0; i < REPEAT; ++i) {
+            benchmark.run();
+        }
+        double end = Performance.now();
+
+        HTMLElement row = document.createElement("tr");
+        resultTableBody.appendChild(row);
+        HTMLElement nameCell = document.createElement("td");
+        row.appendChild(nameCell);
+        nameCell.appendChild(document.createTextNode(name));
+        HTMLElement timeCell = document.createElement("td");
+        row.appendChild(timeCell);
+        timeCell.appendChild(document.createTextNode(String.valueOf(end - start)));
+    }
+
+    private static void copyBytes() {
+        System.arraycopy(bytes, 0, byteCopy, 0, SIZE);
+        sink += byteCopy[SIZE - 1];
+    }
+
+    private static void shiftInts() {
+        System.arraycopy(ints, 0, ints, 1, SIZE - 1);
+        System.arraycopy(ints, 1, ints, 0, SIZE - 1);
+        sink += ints[SIZE / 2];
+    }
+
+    private static void fill() {
+        Arrays.fill(ints, 23);
+        Arrays.fill(doubles, 1, SIZE - 1, 0.5);
+        Arrays.fill(longs, 42L);
+        sink += ints[SIZE - 1];
+    }
+
+    private static void copyOf() {
+        char[] charCopy = Arrays.copyOf(chars, SIZE * 2);
+        long[] longCopy = Arrays.copyOfRange(longs, 1, SIZE);
+        sink += charCopy.length + longCopy.length;
+    }
+
+    private static void insert() {
+        List<Integer> list = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            list.add(0, i);
+            sb.insert(0, 'x');
+        }
+        sink += list.size() + sb.length();
+    }
+}
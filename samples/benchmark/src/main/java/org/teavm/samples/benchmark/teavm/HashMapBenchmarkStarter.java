@@ -0,0 +1,156 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.samples.benchmark.teavm;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.jso.browser.Performance;
+import org.teavm.jso.browser.Window;
+import org.teavm.jso.dom.html.HTMLDocument;
+import org.teavm.jso.dom.html.HTMLElement;
+
+/**
+ * <p>Measures typical uses of <code>HashMap</code>, <code>HashSet</code> and <code>LinkedHashMap</code>,
+ * see <code>hashmap.html</code>. Run it against different versions of the class library to compare
+ * implementations of these collections.</p>
+ *
+ * @author Alexey Andreev
+ */
+public final class HashMapBenchmarkStarter {
+    private static final int SIZE = 10000;
+    private static final int REPEAT = 20;
+    private static final int RUNS = 5;
+    private static HTMLDocument document = Window.current().getDocument();
+    private static HTMLElement resultTableBody = document.getElementById("result-table-body");
+    private static String[] keys = new String[SIZE];
+    private static Object[] objects = new Object[SIZE];
+    private static long sink;
+
+    private HashMapBenchmarkStarter() {
+    }
+
+    public static void main(String[] args) {
+        for (int i = 0; i < SIZE; ++i) {
+            keys[i] = "key" + i;
+            objects[i] = new Object();
+        }
+        for (int i = 0; i < RUNS; ++i) {
+            measure("HashMap<String, Integer> put and get", HashMapBenchmarkStarter::putAndGetStrings);
+            measure("HashMap<Object, Integer> put and get", HashMapBenchmarkStarter::putAndGetObjects);
+            measure("HashSet<Integer> add and remove", HashMapBenchmarkStarter::addAndRemoveIntegers);
+            measure("LinkedHashMap iteration", HashMapBenchmarkStarter::iterateLinkedMap);
+            measure("LinkedHashMap as LRU cache", HashMapBenchmarkStarter::evictFromAccessOrderedMap);
+            measure("Small HashMap creation", HashMapBenchmarkStarter::createSmallMaps);
+        }
+    }
+
+    private static void measure(String name, Runnable benchmark) {
+        double start = Performance.now();
+        for (int i = 0; i < REPEAT; ++i) {
+            benchmark.run();
+        }
+        double end = Performance.now();
+
+        HTMLElement row = document.createElement("tr");
+        resultTableBody.appendChild(row);
+        HTMLElement nameCell = document.createElement("td");
+        row.appendChild(nameCell);
+        nameCell.appendChild(document.createTextNode(name));
+        HTMLElement timeCell = document.createElement("td");
+        row.appendChild(timeCell);
+        timeCell.appendChild(document.createTextNode(String.valueOf(end - start)));
+    }
+
+    private static void putAndGetStrings() {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < SIZE; ++i) {
+            map.put(keys[i], i);
+        }
+        int sum = 0;
+        for (int i = 0; i < SIZE; ++i) {
+            sum += map.get(keys[i]);
+        }
+        sink += sum;
+    }
+
+    private static void putAndGetObjects() {
+        Map<Object, Integer> map = new HashMap<>();
+        for (int i = 0; i < SIZE; ++i) {
+            map.put(objects[i], i);
+        }
+        int sum = 0;
+        for (int i = 0; i < SIZE; ++i) {
+            sum += map.get(objects[i]);
+        }
+        sink += sum;
+    }
+
+    private static void addAndRemoveIntegers() {
+        Set<Integer> set = new HashSet<>();
+        for (int i = 0; i < SIZE; ++i) {
+            set.add(i);
+            if (i % 3 == 0) {
+                set.remove(i / 2);
+            }
+        }
+        sink += set.size();
+    }
+
+    private static void iterateLinkedMap() {
+        Map<Integer, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < SIZE; ++i) {
+            map.put(i, i);
+        }
+        int sum = 0;
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            sum += entry.getValue();
+        }
+        sink += sum;
+    }
+
+    private static void evictFromAccessOrderedMap() {
+        Map<Integer, Integer> cache = new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > 100;
+            }
+        };
+        int hits = 0;
+        for (int i = 0; i < SIZE; ++i) {
+            int key = (i * 7) % 150;
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, i);
+            }
+        }
+        sink += hits;
+    }
+
+    private static void createSmallMaps() {
+        int sum = 0;
+        for (int i = 0; i < SIZE / 10; ++i) {
+            Map<String, Integer> map = new HashMap<>();
+            map.put(keys[1], 1);
+            map.put(keys[2], 2);
+            sum += map.get(keys[1]);
+        }
+        sink += sum;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.samples.benchmark.teavm;
+
+import org.teavm.jso.browser.Performance;
+import org.teavm.jso.browser.Window;
+import org.teavm.jso.dom.html.HTMLDocument;
+import org.teavm.jso.dom.html.HTMLElement;
+
+/**
+ * <p>Measures arithmetic on <code>long</code> values. The same class is compiled with each representation
+ * of longs, see <code>long-object.html</code> and <code>long-bigint.html</code>.</p>
+ *
+ * @author Alexey Andreev
+ */
+public final class LongBenchmarkStarter {
+    private static final int ITERATIONS = 1000000;
+    private static final int RUNS = 5;
+    private static HTMLDocument document = Window.current().getDocument();
+    private static HTMLElement resultTableBody = document.getElementById("result-table-body");
+    private static long sink;
+
+    private LongBenchmarkStarter() {
+    }
+
+    public static void main(String[] args) {
+        for (int i = 0; i < RUNS; ++i) {
+            measure("FNV-1a hash", LongBenchmarkStarter::hash);
+            measure("Linear congruential generator", LongBenchmarkStarter::random);
+            measure("Division and remainder", LongBenchmarkStarter::divide);
+            measure("Conversion to string", LongBenchmarkStarter::format);
+        }
+    }
+
+    private static void measure(String name, Runnable benchmark) {
+        double start = Performance.now();
+        benchmark.run();
+        double end = Performance.now();
+
+        HTMLElement row = document.createElement("tr");
+        resultTableBody.appendChild(row);
+        HTMLElement nameCell = document.createElement("td");
+        row.appendChild(nameCell);
+        nameCell.appendChild(document.createTextNode(name));
+        HTMLElement timeCell = document.createElement("td");
+        row.appendChild(timeCell);
+        timeCell.appendChild(document.createTextNode(String.valueOf(end - start)));
+    }
+
+    private static void hash() {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < ITERATIONS; ++i) {
+            hash ^= i & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        sink += hash;
+    }
+
+    private static void random() {
+        long seed = 42;
+        long sum = 0;
+        for (int i = 0; i < ITERATIONS; ++i) {
+            seed = (seed * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+            sum += seed >>> 16;
+        }
+        sink += sum;
+    }
+
+    private static void divide() {
+        long value = Long.MAX_VALUE;
+        long sum = 0;
+        for (int i = 1; i <= ITERATIONS; ++i) {
+            sum += value / i + value % i;
+        }
+        sink += sum;
+    }
+
+    private static void format() {
+        long value = System.currentTimeMillis();
+        int length = 0;
+        for (int i = 0; i < ITERATIONS / 10; ++i) {
+            length += Long.toString(value + i).length();
+        }
+        sink += length;
+    }
+}
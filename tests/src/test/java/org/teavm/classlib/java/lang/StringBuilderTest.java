@@ -347,6 +347,20 @@ public class StringBuilderTest {
         assertEquals(0, sb.length());
     }
 
+    @Test
+    public void deletesToEndBeyondLength() {
+        StringBuilder sb = new StringBuilder("abcdef");
+        sb.delete(3, 10);
+        assertEquals("abc", sb.toString());
+    }
+
+    @Test
+    public void insertsAndDeletes() {
+        StringBuilder sb = new StringBuilder("abcdef");
+        sb.insert(2, "XY").deleteCharAt(0).delete(3, 5);
+        assertEquals("bXYef", sb.toString());
+    }
+
     @Test
     public void replacesRangeWithSequenceOfSameLength() {
         StringBuilder sb = new StringBuilder();
@@ -407,4 +421,43 @@ public class StringBuilderTest {
     public void substringWithUpperBoundAtEndWorks() {
         assertEquals("23", "123".substring(1, 3));
     }
+
+    @Test
+    public void appendsAfterModification() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("abc").append(23).append('d');
+        sb.setCharAt(0, 'x');
+        sb.append("ef");
+        assertEquals("xbc23def", sb.toString());
+        sb.setLength(3);
+        sb.append(1.5);
+        assertEquals("xbc1.5", sb.toString());
+        sb.setLength(0);
+        sb.append("g");
+        assertEquals("g", sb.toString());
+    }
+
+    @Test
+    public void concatenatesPrimitivesAndNulls() {
+        String s = null;
+        Object o = null;
+        int i = -23;
+        char c = 'c';
+        boolean b = true;
+        long l = 1L << 40;
+        assertEquals("a-23ctruenull1099511627776null", "a" + i + c + b + s + l + o);
+        assertEquals("-23", i + "");
+        assertEquals("cnull", c + "" + s);
+        assertEquals("-22", "" + (i + 1));
+    }
+
+    @Test
+    public void concatenatesDoubles() {
+        double[] values = { 3, -0.0, 0.5, 1E7, 9999999, Double.NaN };
+        StringBuilder sb = new StringBuilder();
+        for (double value : values) {
+            sb.append("[" + value + "]");
+        }
+        assertEquals("[3.0][-0.0][0.5][1.0E7][9999999.0][NaN]", sb.toString());
+    }
 }
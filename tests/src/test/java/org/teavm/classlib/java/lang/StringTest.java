@@ -156,6 +156,15 @@ public class StringTest {
         assertEquals(7, str.lastIndexOf('c'));
     }
 
+    @Test
+    public void doesNotFindInvalidCodePoint() {
+        String str = "a\uffffb";
+        assertEquals(-1, str.indexOf(-1));
+        assertEquals(-1, str.indexOf(0x110000 + 'b'));
+        assertEquals(-1, str.lastIndexOf(-1));
+        assertEquals(-1, str.lastIndexOf('a' - 0x10000));
+    }
+
     @Test
     public void findsString() {
         assertEquals(1, "abcdbcd".indexOf("bc"));
@@ -184,6 +193,18 @@ public class StringTest {
         assertTrue("abcd".contains("bc"));
     }
 
+    @Test
+    public void containsChecksEnd() {
+        assertFalse("abcd".contains("de"));
+        assertTrue("abcd".contains("cd"));
+        assertTrue("abcd".contains(""));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void substringChecksUpperBound() {
+        "abc".substring(1, 4);
+    }
+
     @Test
     public void sequenceReplaced() {
         assertEquals("ba", "aaa".replace("aa", "b"));
@@ -44,6 +44,23 @@ public class SystemTest {
         assertEquals(25, dest[2]);
     }
 
+    @Test
+    public void copiesOverlappingPrimitiveArray() {
+        int[] array = { 0, 1, 2, 3, 4, 5 };
+        System.arraycopy(array, 0, array, 1, 5);
+        assertArrayEquals(new int[] { 0, 0, 1, 2, 3, 4 }, array);
+        System.arraycopy(array, 2, array, 0, 4);
+        assertArrayEquals(new int[] { 1, 2, 3, 4, 3, 4 }, array);
+    }
+
+    @Test
+    public void copiesLongArray() {
+        long[] src = { 1, -1, 1L << 40, Long.MIN_VALUE };
+        long[] dest = new long[5];
+        System.arraycopy(src, 1, dest, 2, 3);
+        assertArrayEquals(new long[] { 0, 0, -1, 1L << 40, Long.MIN_VALUE }, dest);
+    }
+
     @Test
     public void copiesToSubclassArray() {
         String[] src = { "foo", "bar", "baz" };
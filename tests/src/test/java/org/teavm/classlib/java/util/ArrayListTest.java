@@ -55,6 +55,19 @@ public class ArrayListTest {
         assertEquals(Integer.valueOf(9), list.get(10));
     }
 
+    @Test
+    public void elementsInsertedAtStart() {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            list.add(0, i);
+        }
+        list.remove(50);
+        assertEquals(99, list.size());
+        assertEquals(Integer.valueOf(99), list.get(0));
+        assertEquals(Integer.valueOf(48), list.get(50));
+        assertEquals(Integer.valueOf(0), list.get(98));
+    }
+
     @Test
     public void elementsRemoved() {
         List<Integer> list = fillFromZeroToNine();
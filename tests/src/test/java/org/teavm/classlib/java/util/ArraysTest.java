@@ -63,4 +63,26 @@ public class ArraysTest {
         array[3] = array;
         assertEquals("[1, 2, null, [...], foo]", Arrays.deepToString(array));
     }
+
+    @Test
+    public void arrayFilled() {
+        int[] ints = new int[4];
+        Arrays.fill(ints, 23);
+        assertArrayEquals(new int[] { 23, 23, 23, 23 }, ints);
+        double[] doubles = new double[4];
+        Arrays.fill(doubles, 1, 3, 0.5);
+        assertArrayEquals(new double[] { 0, 0.5, 0.5, 0 }, doubles, 0.001);
+        long[] longs = new long[3];
+        Arrays.fill(longs, 1L << 40);
+        assertArrayEquals(new long[] { 1L << 40, 1L << 40, 1L << 40 }, longs);
+    }
+
+    @Test
+    public void arrayCopied() {
+        char[] chars = { 'a', 'b', 'c' };
+        assertArrayEquals(new char[] { 'a', 'b', 'c', 0 }, Arrays.copyOf(chars, 4));
+        assertArrayEquals(new char[] { 'a', 'b' }, Arrays.copyOf(chars, 2));
+        long[] longs = { 1, 1L << 40, 3 };
+        assertArrayEquals(new long[] { 1L << 40, 3, 0 }, Arrays.copyOfRange(longs, 1, 4));
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import static org.junit.Assert.*;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class HashMapTest {
+    private static final int SIZE = 1000;
+
+    @Test
+    public void putsAndGetsStrings() {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < SIZE; ++i) {
+            map.put("key" + i, i);
+        }
+        assertEquals(SIZE, map.size());
+        assertEquals(Integer.valueOf(123), map.get("key" + 123));
+        assertNull(map.get("key" + SIZE));
+    }
+
+    @Test
+    public void addsAndRemovesIntegers() {
+        Set<Integer> set = new HashSet<>();
+        for (int i = 0; i < SIZE; ++i) {
+            set.add(i);
+            set.remove(i - 2);
+        }
+        assertEquals(2, set.size());
+        assertTrue(set.contains(SIZE - 1));
+        assertFalse(set.contains(SIZE - 3));
+    }
+
+    @Test
+    public void removesWhileIteratingLinkedMap() {
+        Map<Integer, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < SIZE; ++i) {
+            map.put(i, i);
+        }
+        for (Iterator<Integer> iter = map.keySet().iterator(); iter.hasNext();) {
+            if (iter.next() % 2 == 0) {
+                iter.remove();
+            }
+        }
+        int expected = 1;
+        for (int key : map.keySet()) {
+            assertEquals(expected, key);
+            expected += 2;
+        }
+    }
+
+    @Test
+    public void evictsFromAccessOrderedMap() {
+        Map<Integer, Integer> cache = new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > 100;
+            }
+        };
+        for (int i = 0; i < SIZE; ++i) {
+            int key = (i * 7) % 150;
+            if (cache.get(key) == null) {
+                cache.put(key, i);
+            }
+        }
+        assertEquals(100, cache.size());
+        cache.get(cache.keySet().iterator().next());
+        cache.put(-1, 0);
+        assertEquals(100, cache.size());
+        assertTrue(cache.containsKey(-1));
+    }
+
+    @Test
+    public void entryOutlivesRemoval() {
+        Map<String, String> map = new HashMap<>();
+        map.put("a", "1");
+        map.put("b", "2");
+        Iterator<Map.Entry<String, String>> iter = map.entrySet().iterator();
+        Map.Entry<String, String> entry = iter.next();
+        String value = entry.getValue();
+        iter.remove();
+        assertEquals(value, entry.getValue());
+        assertEquals(1, map.size());
+        for (int i = 0; i < 100; ++i) {
+            map.put("k" + i, "v");
+        }
+        Map.Entry<String, String> other = null;
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            if (e.getKey().equals("k50")) {
+                other = e;
+            }
+        }
+        map.remove("k0");
+        other.setValue("w");
+        assertEquals("w", map.get("k50"));
+    }
+
+    @Test
+    public void keepsOrderAndDetectsModification() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("b", 1);
+        map.put("a", 2);
+        map.put("c", 3);
+        map.remove("a");
+        map.put("a", 4);
+        StringBuilder sb = new StringBuilder();
+        for (String key : map.keySet()) {
+            sb.append(key);
+        }
+        assertEquals("bca", sb.toString());
+        try {
+            for (String key : map.keySet()) {
+                map.put(key + key, 0);
+            }
+            fail("ConcurrentModificationException expected");
+        } catch (ConcurrentModificationException e) {
+            // ok
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import static org.junit.Assert.*;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.SkipJVM;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class WeakHashMapTest {
+    @Test
+    public void putsGetsAndRemoves() {
+        Map<String, Integer> map = new WeakHashMap<>();
+        String[] keys = new String[100];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = "key" + i;
+            assertNull(map.put(keys[i], i));
+        }
+        assertEquals(100, map.size());
+        assertEquals(Integer.valueOf(23), map.get("key23"));
+        assertEquals(Integer.valueOf(23), map.put(keys[23], -23));
+        assertEquals(Integer.valueOf(-23), map.remove("key23"));
+        assertFalse(map.containsKey("key23"));
+        assertTrue(map.containsValue(42));
+        assertEquals(99, map.size());
+    }
+
+    @Test
+    public void supportsNullKeysAndValues() {
+        Map<String, String> map = new WeakHashMap<>();
+        map.put(null, "a");
+        map.put("b", null);
+        assertEquals("a", map.get(null));
+        assertTrue(map.containsKey("b"));
+        assertTrue(map.containsValue(null));
+        assertEquals("a", map.remove(null));
+        assertFalse(map.containsKey(null));
+    }
+
+    @Test
+    public void iteratesAndRemovesEntries() {
+        Map<Integer, Integer> map = new WeakHashMap<>();
+        Integer[] keys = new Integer[50];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = i * 1000;
+            map.put(keys[i], i);
+        }
+        Map<Integer, Integer> copy = new HashMap<>(map);
+        assertEquals(map, copy);
+
+        Iterator<Map.Entry<Integer, Integer>> iter = map.entrySet().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().getValue() % 2 == 0) {
+                iter.remove();
+            }
+        }
+        assertEquals(25, map.size());
+        assertFalse(map.containsKey(keys[2]));
+        assertTrue(map.containsKey(keys[3]));
+
+        iter = map.entrySet().iterator();
+        iter.next();
+        map.put(-1, -1);
+        try {
+            iter.next();
+            fail("Concurrent modification not detected");
+        } catch (ConcurrentModificationException e) {
+            // OK
+        }
+    }
+
+    @Test
+    public void removesEntryOfReclaimedKey() {
+        // A test can't make the garbage collector reclaim a key, and in JavaScript the cleanup callback
+        // of FinalizationRegistry only runs in a later task. Entries of the map are references registered
+        // with its queue, so enqueue an entry the way the collector would and check that the map drops it.
+        Map<String, Integer> map = new WeakHashMap<>();
+        String first = new String("first");
+        String second = new String("second");
+        map.put(first, 1);
+        map.put(second, 2);
+        Map.Entry<String, Integer> firstEntry = null;
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            if (entry.getKey().equals("first")) {
+                firstEntry = entry;
+            }
+        }
+        assertTrue(((Reference<?>) firstEntry).enqueue());
+        assertEquals(1, map.size());
+        assertFalse(map.containsKey("first"));
+        assertEquals(Integer.valueOf(2), map.get("second"));
+    }
+
+    @Test
+    @SkipJVM
+    public void removedEntryDoesNotRetainValue() {
+        // The map can't observe the garbage collector, but it can check that entries it has dropped
+        // don't refer to values anymore, so they don't keep them alive while the key is reachable
+        Map<String, Object> map = new WeakHashMap<>();
+        String first = new String("first");
+        String second = new String("second");
+        map.put(first, new Object());
+        map.put(second, new Object());
+        Map.Entry<String, Object> firstEntry = null;
+        Map.Entry<String, Object> secondEntry = null;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (entry.getKey().equals("first")) {
+                firstEntry = entry;
+            } else {
+                secondEntry = entry;
+            }
+        }
+
+        assertNotNull(map.remove(first));
+        assertNull(firstEntry.getValue());
+        assertNull(((Reference<?>) firstEntry).get());
+        assertNotNull(secondEntry.getValue());
+
+        map.clear();
+        assertNull(secondEntry.getValue());
+        assertNull(((Reference<?>) secondEntry).get());
+    }
+
+    @Test
+    public void weakReferenceReturnsReachableReferent() {
+        Object referent = new Object();
+        WeakReference<Object> ref = new WeakReference<>(referent);
+        assertSame(referent, ref.get());
+        assertFalse(ref.isEnqueued());
+        ref.clear();
+        assertNull(ref.get());
+    }
+
+    @Test
+    public void enqueuedReferenceIsPolled() {
+        ReferenceQueue<Object> queue = new ReferenceQueue<>();
+        Object referent = new Object();
+        WeakReference<Object> ref = new WeakReference<>(referent, queue);
+        assertNull(queue.poll());
+        assertTrue(ref.enqueue());
+        assertTrue(ref.isEnqueued());
+        assertFalse(ref.enqueue());
+        assertSame(ref, queue.poll());
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimizations;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMOptimizations;
+import org.teavm.junit.TeaVMTestRunner;
+import org.teavm.optimization.OptimizationPass;
+
+@RunWith(TeaVMTestRunner.class)
+@TeaVMOptimizations(passes = OptimizationPass.CLASS_INITIALIZER_ELIMINATION)
+public class ClassInitializerEliminationTest {
+    static StringBuilder log = new StringBuilder();
+
+    @Test
+    public void computesValuesInLoop() {
+        assertEquals(45, Computed.SUM);
+        assertEquals(1L << 40, Computed.POWER);
+        assertEquals(0.75, Computed.FRACTION, 0.0);
+    }
+
+    @Test
+    public void readsOwnFields() {
+        assertEquals(2, Dependent.A);
+        assertEquals(6, Dependent.B);
+        assertEquals(7, Dependent.c);
+    }
+
+    @Test
+    public void keepsSideEffectsLazy() {
+        log.setLength(0);
+        assertEquals("", log.toString());
+        assertEquals(1, WithSideEffect.VALUE);
+        assertEquals(1, WithSideEffect.VALUE);
+        assertEquals("init;", log.toString());
+    }
+
+    @Test
+    public void readsFieldsOfOtherClassesAtRunTime() {
+        Counter.value = 10;
+        assertEquals(11, ReadsOtherClass.VALUE);
+    }
+
+    @Test
+    public void keepsReferenceFields() {
+        assertEquals("x5", WithReference.TEXT);
+        assertEquals(3, WithReference.ARRAY.length);
+        assertEquals(2, WithReference.ARRAY[1]);
+    }
+
+    static class Computed {
+        static final int SUM;
+        static final long POWER;
+        static final double FRACTION;
+
+        static {
+            int sum = 0;
+            for (int i = 0; i < 10; ++i) {
+                sum += i;
+            }
+            SUM = sum;
+            POWER = 1L << (SUM - 5);
+            FRACTION = 3.0 / 4;
+        }
+    }
+
+    static class Dependent {
+        static final int A;
+        static final int B;
+        static int c;
+
+        static {
+            int a = 1;
+            A = ++a;
+        }
+
+        static {
+            B = A * 3;
+            c = B + 1;
+        }
+    }
+
+    static class WithSideEffect {
+        static final int VALUE;
+
+        static {
+            log.append("init;");
+            VALUE = 1;
+        }
+    }
+
+    static class Counter {
+        static int value;
+    }
+
+    static class ReadsOtherClass {
+        static final int VALUE;
+
+        static {
+            VALUE = Counter.value + 1;
+        }
+    }
+
+    static class WithReference {
+        static final String TEXT;
+        static final int[] ARRAY;
+
+        static {
+            int five = 5;
+            TEXT = "x" + five;
+            ARRAY = new int[] { 1, 2, 3 };
+        }
+    }
+}
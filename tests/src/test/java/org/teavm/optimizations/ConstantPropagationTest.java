@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimizations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.SkipJVM;
+import org.teavm.junit.TeaVMOptimizations;
+import org.teavm.junit.TeaVMProperties;
+import org.teavm.junit.TeaVMProperty;
+import org.teavm.junit.TeaVMTestRunner;
+import org.teavm.optimization.OptimizationPass;
+
+@RunWith(TeaVMTestRunner.class)
+@TeaVMProperties(@TeaVMProperty(key = "teavm.test.constant", value = "foo"))
+@TeaVMOptimizations(passes = { OptimizationPass.CONSTANT_PROPAGATION,
+        OptimizationPass.UNUSED_VARIABLE_ELIMINATION })
+public class ConstantPropagationTest {
+    private static int unknown = 2;
+
+    @Test
+    public void propagatesThroughBranches() {
+        int a = 2;
+        int b;
+        if (a > 1) {
+            b = a * 3;
+        } else {
+            b = unknown;
+        }
+        assertEquals(6, b);
+    }
+
+    @Test
+    public void mergesDifferentValues() {
+        int a = 1;
+        if (unknown > 1) {
+            a = 2;
+        }
+        assertEquals(2, a);
+    }
+
+    @Test
+    public void respectsLoopOutput() {
+        int a = 1;
+        int i = 0;
+        while (i < 5) {
+            a *= 2;
+            ++i;
+        }
+        assertEquals(32, a);
+    }
+
+    @Test
+    public void foldsIntegerArithmeticAsJava() {
+        int max = Integer.MAX_VALUE;
+        int min = Integer.MIN_VALUE;
+        int minusOne = -1;
+        int shift = 33;
+        assertEquals(Integer.MIN_VALUE, max + 1);
+        assertEquals(Integer.MIN_VALUE, min / minusOne);
+        assertEquals(-1, -7 % shiftBack(3));
+        assertEquals(2, 1 << shift);
+        assertEquals(Integer.MAX_VALUE, minusOne >>> 1);
+        assertEquals(-56, (byte) (max - 2147483447));
+        assertEquals(65535, (char) minusOne);
+    }
+
+    @Test
+    public void foldsLongArithmeticAsJava() {
+        long max = Long.MAX_VALUE;
+        long a = 1L << 40;
+        assertEquals(Long.MIN_VALUE, max + 1);
+        assertEquals(1099511627776L, a);
+        assertEquals(256, (int) (a >> 32));
+        assertEquals(0, (int) a);
+    }
+
+    @Test
+    public void foldsFloatingPointAsJava() {
+        double zero = 0.0;
+        float third = 1F / 3;
+        assertTrue(Double.isNaN(zero / zero));
+        assertTrue(Double.isInfinite(1 / zero));
+        assertEquals(0.33333334F, third, 0F);
+        assertEquals(2, (int) 2.9);
+        assertEquals(-2, (int) -2.9);
+        assertFalse(zero / zero == zero / zero);
+    }
+
+    @Test
+    @SkipJVM
+    public void replacesKnownProperty() {
+        assertEquals("foo", System.getProperty("teavm.test.constant"));
+        assertEquals("foo", System.getProperty("teavm.test.constant", "bar"));
+    }
+
+    private static int shiftBack(int value) {
+        return value;
+    }
+}
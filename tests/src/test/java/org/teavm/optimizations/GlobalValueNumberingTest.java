@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimizations;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMOptimizations;
+import org.teavm.junit.TeaVMTestRunner;
+import org.teavm.optimization.OptimizationPass;
+
+@RunWith(TeaVMTestRunner.class)
+@TeaVMOptimizations(passes = { OptimizationPass.GLOBAL_VALUE_NUMBERING,
+        OptimizationPass.UNUSED_VARIABLE_ELIMINATION })
+public class GlobalValueNumberingTest {
+    private static int counter;
+
+    @Test
+    public void reusesCommonSubexpressions() {
+        int a = counter + 3;
+        int b = counter + 4;
+        int c = a * b;
+        int d = a * b;
+        assertEquals(c, d);
+        assertEquals(12, c - counter * 7 - counter * counter);
+    }
+
+    @Test
+    public void reloadsFieldAfterStore() {
+        Holder holder = new Holder();
+        int before = holder.value;
+        holder.value = 5;
+        int after = holder.value;
+        assertEquals(0, before);
+        assertEquals(5, after);
+    }
+
+    @Test
+    public void reloadsFieldAfterStoreThroughAlias() {
+        Holder a = new Holder();
+        Holder b = choose(a, new Holder());
+        int before = a.value;
+        b.value = 7;
+        int after = a.value;
+        assertEquals(0, before);
+        assertEquals(7, after);
+    }
+
+    @Test
+    public void reloadsFieldAfterCall() {
+        Holder holder = new Holder();
+        int before = holder.value;
+        holder.increment();
+        int after = holder.value;
+        assertEquals(1, after - before);
+    }
+
+    @Test
+    public void reloadsStaticFieldAfterCall() {
+        counter = 0;
+        int before = counter;
+        incrementCounter();
+        int after = counter;
+        assertEquals(1, after - before);
+    }
+
+    @Test
+    public void reloadsArrayElementAfterStore() {
+        int[] array = new int[4];
+        int i = counter & 1;
+        int j = i;
+        int before = array[i];
+        array[j] = 3;
+        int after = array[i];
+        assertEquals(0, before);
+        assertEquals(3, after);
+    }
+
+    @Test
+    public void distinguishesValuesInBranches() {
+        int[] results = new int[2];
+        for (int i = 0; i < 2; ++i) {
+            int value;
+            if (i == 0) {
+                value = i + 10;
+            } else {
+                value = i + 20;
+            }
+            results[i] = value + i;
+        }
+        assertEquals(10, results[0]);
+        assertEquals(22, results[1]);
+    }
+
+    private static Holder choose(Holder first, Holder second) {
+        return counter >= 0 ? first : second;
+    }
+
+    private static void incrementCounter() {
+        counter++;
+    }
+
+    static class Holder {
+        int value;
+
+        void increment() {
+            value++;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimizations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMOptimizations;
+import org.teavm.junit.TeaVMTestRunner;
+import org.teavm.optimization.OptimizationPass;
+
+@RunWith(TeaVMTestRunner.class)
+@TeaVMOptimizations(passes = { OptimizationPass.INLINING, OptimizationPass.SCALAR_REPLACEMENT,
+        OptimizationPass.UNUSED_VARIABLE_ELIMINATION })
+public class ScalarReplacementTest {
+    private static Point escaped;
+    private static int three = 3;
+
+    @Test
+    public void keepsFieldsAssignedInBranches() {
+        Point p = new Point(0, 0);
+        if (three > 2) {
+            p.x = 1;
+        } else {
+            p.y = 2;
+        }
+        assertEquals(1, p.x);
+        assertEquals(0, p.y);
+    }
+
+    @Test
+    public void keepsFieldsAssignedInLoop() {
+        Point p = new Point(0, 1);
+        for (int i = 0; i < 10; ++i) {
+            int next = p.x + p.y;
+            p.x = p.y;
+            p.y = next;
+        }
+        assertEquals(55, p.x);
+    }
+
+    @Test
+    public void initializesFieldsWithDefaultValues() {
+        Fields fields = new Fields();
+        fields.flag = !fields.flag;
+        assertEquals(0L, fields.longValue);
+        assertEquals(0.0, fields.doubleValue, 0.0);
+        assertEquals(0F, fields.floatValue, 0F);
+        assertEquals('\0', fields.charValue);
+        assertNull(fields.reference);
+        assertTrue(fields.flag);
+    }
+
+    @Test
+    public void keepsIdentity() {
+        Point a = new Point(1, 2);
+        Point b = new Point(1, 2);
+        assertNotSame(a, b);
+        assertSame(a, a);
+    }
+
+    @Test
+    public void keepsObjectEscapingInOneBranch() {
+        escaped = null;
+        Point p = new Point(1, 2);
+        if (three > 2) {
+            escaped = p;
+        }
+        p.x = 5;
+        assertSame(p, escaped);
+        assertEquals(5, escaped.x);
+    }
+
+    static class Point {
+        int x;
+        int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    static class Fields {
+        long longValue;
+        double doubleValue;
+        float floatValue;
+        char charValue;
+        boolean flag;
+        Object reference;
+    }
+}
@@ -19,10 +19,24 @@ import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.rmi.AlreadyBoundException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.commons.cli.*;
+import org.teavm.javascript.ArrayRepresentation;
+import org.teavm.javascript.LongRepresentation;
+import org.teavm.javascript.StringRepresentation;
+import org.teavm.optimization.OptimizationLevel;
+import org.teavm.optimization.OptimizationPass;
 import org.teavm.tooling.RuntimeCopyOperation;
 import org.teavm.tooling.TeaVMTool;
 import org.teavm.tooling.TeaVMToolException;
+import org.teavm.tooling.daemon.BuildDaemon;
+import org.teavm.tooling.daemon.RemoteBuildRequest;
+import org.teavm.tooling.daemon.RemoteBuildResponse;
+import org.teavm.tooling.daemon.RemoteBuildService;
 import org.teavm.vm.TeaVMPhase;
 import org.teavm.vm.TeaVMProgressFeedback;
 import org.teavm.vm.TeaVMProgressListener;
@@ -36,6 +50,8 @@ public final class TeaVMRunner {
     private static long phaseStartTime;
     private static TeaVMPhase currentPhase;
     private static String[] classPath;
+    private static int daemonPort = RemoteBuildService.DEFAULT_PORT;
+    private static boolean remote;
 
     private TeaVMRunner() {
     }
@@ -59,6 +75,64 @@ public final class TeaVMRunner {
                 .withDescription("causes TeaVM to generate minimized JavaScript file")
                 .withLongOpt("minify")
                 .create("m"));
+        options.addOption(OptionBuilder
+                .withDescription("causes TeaVM to move parts of code that are needed only after initialization "
+                        + "of some class into separate files loaded on demand")
+                .withLongOpt("split")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("causes split code to be downloaded in background right after startup "
+                        + "instead of on first use")
+                .withLongOpt("prefetchchunks")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("causes TeaVM to inline small methods and constructors that are called directly")
+                .withLongOpt("inline")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("causes TeaVM to create string constants on first access instead of at startup")
+                .withLongOpt("lazystrings")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("causes TeaVM to create class metadata on first access instead of at startup")
+                .withLongOpt("lazymetadata")
+                .create());
+        options.addOption(OptionBuilder
+                .withArgName("none|simple|full|aggressive")
+                .hasArg()
+                .withDescription("which optimizations to apply to methods. Possible values are: "
+                        + "none|simple|full|aggressive")
+                .withLongOpt("optimization")
+                .create("O"));
+        options.addOption(OptionBuilder
+                .withArgName("passes")
+                .hasArg()
+                .withDescription("comma-separated list of optimization passes to apply instead of passes of "
+                        + "the optimization level, e.g. sccp,gvn,unused-variables")
+                .withLongOpt("passes")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("causes TeaVM to write statistics of optimization passes into a JSON file")
+                .withLongOpt("optreport")
+                .create());
+        options.addOption(OptionBuilder
+                .withArgName("object|bigint")
+                .hasArg()
+                .withDescription("how to represent long values. Possible values are: object|bigint")
+                .withLongOpt("long")
+                .create());
+        options.addOption(OptionBuilder
+                .withArgName("wrapped|typed")
+                .hasArg()
+                .withDescription("how to represent arrays of primitives. Possible values are: wrapped|typed")
+                .withLongOpt("arrays")
+                .create());
+        options.addOption(OptionBuilder
+                .withArgName("chararray|native")
+                .hasArg()
+                .withDescription("how to represent strings. Possible values are: chararray|native")
+                .withLongOpt("strings")
+                .create());
         options.addOption(OptionBuilder
                 .withArgName("separate|merge|none")
                 .hasArg()
@@ -91,6 +165,16 @@ public final class TeaVMRunner {
                 .withDescription("Incremental build cache directory")
                 .withLongOpt("cachedir")
                 .create('c'));
+        options.addOption(OptionBuilder
+                .withArgName("number")
+                .hasArg()
+                .withDescription("Number of threads used to optimize and decompile methods (1 by default)")
+                .withLongOpt("threads")
+                .create('t'));
+        options.addOption(OptionBuilder
+                .withDescription("Propagate types concurrently during dependency analysis")
+                .withLongOpt("concurrentdeps")
+                .create());
         options.addOption(OptionBuilder
                 .withDescription("Wait for command after compilation, in order to enable hot recompilation")
                 .withLongOpt("wait")
@@ -101,6 +185,27 @@ public final class TeaVMRunner {
                 .withDescription("Additional classpath that will be reloaded by TeaVM each time in wait mode")
                 .withLongOpt("classpath")
                 .create('p'));
+        options.addOption(OptionBuilder
+                .withDescription("Start build daemon that keeps the compiler and caches in memory between builds")
+                .withLongOpt("daemon")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("Hand the build to the daemon running on the local host")
+                .withLongOpt("remote")
+                .create());
+        options.addOption(OptionBuilder
+                .withArgName("port")
+                .hasArg()
+                .withDescription("Port of the build daemon (" + RemoteBuildService.DEFAULT_PORT + " by default)")
+                .withLongOpt("daemonport")
+                .create());
+        options.addOption(OptionBuilder
+                .withArgName("number")
+                .hasArg()
+                .withDescription("Number of class paths the daemon keeps caches for ("
+                        + BuildDaemon.DEFAULT_MAX_WORKSPACES + " by default)")
+                .withLongOpt("daemonworkspaces")
+                .create());
 
         if (args.length == 0) {
             printUsage(options);
@@ -115,6 +220,40 @@ public final class TeaVMRunner {
             return;
         }
 
+        if (commandLine.hasOption("daemonport")) {
+            try {
+                daemonPort = Integer.parseInt(commandLine.getOptionValue("daemonport"));
+            } catch (NumberFormatException e) {
+                System.err.println("Wrong parameter for --daemonport option specified");
+                printUsage(options);
+                return;
+            }
+        }
+        if (commandLine.hasOption("daemon")) {
+            int maxWorkspaces = BuildDaemon.DEFAULT_MAX_WORKSPACES;
+            if (commandLine.hasOption("daemonworkspaces")) {
+                try {
+                    maxWorkspaces = Integer.parseInt(commandLine.getOptionValue("daemonworkspaces"));
+                } catch (NumberFormatException e) {
+                    maxWorkspaces = 0;
+                }
+                if (maxWorkspaces < 1) {
+                    System.err.println("Wrong parameter for --daemonworkspaces option specified");
+                    printUsage(options);
+                    return;
+                }
+            }
+            try {
+                BuildDaemon.start(daemonPort, maxWorkspaces);
+            } catch (IOException | AlreadyBoundException e) {
+                e.printStackTrace(System.err);
+                System.exit(-2);
+            }
+            System.out.println("TeaVM daemon started on port " + daemonPort);
+            return;
+        }
+        remote = commandLine.hasOption("remote");
+
         TeaVMTool tool = new TeaVMTool();
         tool.setBytecodeLogging(commandLine.hasOption("logbytecode"));
         if (commandLine.hasOption("d")) {
@@ -128,6 +267,89 @@ public final class TeaVMRunner {
         } else {
             tool.setMinifying(false);
         }
+        tool.setCodeSplitting(commandLine.hasOption("split"));
+        tool.setChunkPrefetching(commandLine.hasOption("prefetchchunks"));
+        tool.setInlining(commandLine.hasOption("inline"));
+        tool.setLazyStringPool(commandLine.hasOption("lazystrings"));
+        tool.setLazyMetadata(commandLine.hasOption("lazymetadata"));
+        if (commandLine.hasOption("O")) {
+            switch (commandLine.getOptionValue("O")) {
+                case "none":
+                    tool.setOptimizationLevel(OptimizationLevel.NONE);
+                    break;
+                case "simple":
+                    tool.setOptimizationLevel(OptimizationLevel.SIMPLE);
+                    break;
+                case "full":
+                    tool.setOptimizationLevel(OptimizationLevel.FULL);
+                    break;
+                case "aggressive":
+                    tool.setOptimizationLevel(OptimizationLevel.AGGRESSIVE);
+                    break;
+                default:
+                    System.err.println("Wrong parameter for -O option specified");
+                    printUsage(options);
+                    return;
+            }
+        }
+        if (commandLine.hasOption("passes")) {
+            List<OptimizationPass> passes = new ArrayList<>();
+            try {
+                for (String passName : commandLine.getOptionValue("passes").split(",")) {
+                    if (!passName.trim().isEmpty()) {
+                        passes.add(OptimizationPass.byName(passName.trim()));
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                printUsage(options);
+                return;
+            }
+            tool.setOptimizationPasses(passes);
+        }
+        tool.setOptimizationReportGenerated(commandLine.hasOption("optreport"));
+        if (commandLine.hasOption("long")) {
+            switch (commandLine.getOptionValue("long")) {
+                case "object":
+                    tool.setLongRepresentation(LongRepresentation.OBJECT);
+                    break;
+                case "bigint":
+                    tool.setLongRepresentation(LongRepresentation.BIG_INT);
+                    break;
+                default:
+                    System.err.println("Wrong parameter for --long option specified");
+                    printUsage(options);
+                    return;
+            }
+        }
+        if (commandLine.hasOption("arrays")) {
+            switch (commandLine.getOptionValue("arrays")) {
+                case "wrapped":
+                    tool.setArrayRepresentation(ArrayRepresentation.WRAPPED);
+                    break;
+                case "typed":
+                    tool.setArrayRepresentation(ArrayRepresentation.TYPED);
+                    break;
+                default:
+                    System.err.println("Wrong parameter for --arrays option specified");
+                    printUsage(options);
+                    return;
+            }
+        }
+        if (commandLine.hasOption("strings")) {
+            switch (commandLine.getOptionValue("strings")) {
+                case "chararray":
+                    tool.setStringRepresentation(StringRepresentation.CHAR_ARRAY);
+                    break;
+                case "native":
+                    tool.setStringRepresentation(StringRepresentation.NATIVE);
+                    break;
+                default:
+                    System.err.println("Wrong parameter for --strings option specified");
+                    printUsage(options);
+                    return;
+            }
+        }
         if (commandLine.hasOption("r")) {
             switch (commandLine.getOptionValue("r")) {
                 case "separate":
@@ -162,6 +384,18 @@ public final class TeaVMRunner {
         } else {
             tool.setCacheDirectory(new File(tool.getTargetDirectory(), "teavm-cache"));
         }
+        if (commandLine.hasOption('t')) {
+            try {
+                tool.setThreadCount(Integer.parseInt(commandLine.getOptionValue('t')));
+            } catch (NumberFormatException e) {
+                System.err.println("Wrong parameter for -t option specified");
+                printUsage(options);
+                return;
+            }
+        }
+        if (commandLine.hasOption("concurrentdeps")) {
+            tool.setConcurrentDependencyAnalysis(true);
+        }
         if (commandLine.hasOption('p')) {
             classPath = commandLine.getOptionValues('p');
         }
@@ -210,19 +444,23 @@ public final class TeaVMRunner {
                 }
             } while (!quit);
         } else {
+            boolean successful = false;
             try {
-                build(tool);
+                successful = build(tool);
             } catch (Exception e) {
                 e.printStackTrace(System.err);
                 System.exit(-2);
             }
-            if (!tool.getProblemProvider().getSevereProblems().isEmpty()) {
+            if (!successful) {
                 System.exit(-2);
             }
         }
     }
 
-    private static void build(TeaVMTool tool) throws TeaVMToolException {
+    private static boolean build(TeaVMTool tool) throws TeaVMToolException, RemoteException, NotBoundException {
+        if (remote) {
+            return buildRemotely(tool);
+        }
         resetClassLoader(tool);
         currentPhase = null;
         startTime = System.currentTimeMillis();
@@ -230,6 +468,24 @@ public final class TeaVMRunner {
         tool.generate();
         reportPhaseComplete();
         System.out.println("Build complete for " + ((System.currentTimeMillis() - startTime) / 1000.0) + " seconds");
+        return tool.getProblemProvider().getSevereProblems().isEmpty();
+    }
+
+    private static boolean buildRemotely(TeaVMTool tool) throws RemoteException, NotBoundException {
+        startTime = System.currentTimeMillis();
+        RemoteBuildRequest request = RemoteBuildRequest.fromTool(tool);
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            request.classPath.add(new File(entry).getAbsolutePath());
+        }
+        if (classPath != null) {
+            for (String entry : classPath) {
+                request.classPath.add(new File(entry).getAbsolutePath());
+            }
+        }
+        RemoteBuildResponse response = BuildDaemon.build(daemonPort, request);
+        response.replayLog(tool.getLog());
+        System.out.println("Build complete for " + ((System.currentTimeMillis() - startTime) / 1000.0) + " seconds");
+        return response.errorMessage == null && response.severeProblemCount == 0;
     }
 
     private static void resetClassLoader(TeaVMTool tool) {
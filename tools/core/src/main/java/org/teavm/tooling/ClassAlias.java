@@ -15,11 +15,13 @@
  */
 package org.teavm.tooling;
 
+import java.io.Serializable;
+
 /**
  *
  * @author Alexey Andreev
  */
-public class ClassAlias {
+public class ClassAlias implements Serializable {
     private String className;
     private String alias;
 
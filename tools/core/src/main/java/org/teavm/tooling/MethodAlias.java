@@ -15,11 +15,13 @@
  */
 package org.teavm.tooling;
 
+import java.io.Serializable;
+
 /**
  *
  * @author Alexey Andreev
  */
-public class MethodAlias {
+public class MethodAlias implements Serializable {
     private String alias;
     private String className;
     private String methodName;
@@ -16,18 +16,28 @@
 package org.teavm.tooling;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import org.apache.commons.io.IOUtils;
+import org.teavm.cache.CachePack;
 import org.teavm.cache.DiskCachedClassHolderSource;
 import org.teavm.cache.DiskProgramCache;
 import org.teavm.cache.DiskRegularMethodNodeCache;
 import org.teavm.cache.FileSymbolTable;
+import org.teavm.codegen.ChunkedOutput;
 import org.teavm.debugging.information.DebugInformation;
 import org.teavm.debugging.information.DebugInformationBuilder;
 import org.teavm.dependency.DependencyInfo;
 import org.teavm.diagnostics.ProblemProvider;
+import org.teavm.javascript.ArrayRepresentation;
+import org.teavm.javascript.LongRepresentation;
 import org.teavm.javascript.RenderingContext;
+import org.teavm.javascript.StringRepresentation;
 import org.teavm.model.*;
+import org.teavm.optimization.OptimizationLevel;
+import org.teavm.optimization.OptimizationPass;
+import org.teavm.optimization.PassStatistics;
 import org.teavm.parsing.ClasspathClassHolderSource;
 import org.teavm.tooling.sources.SourceFileProvider;
 import org.teavm.tooling.sources.SourceFilesCopier;
@@ -42,6 +52,14 @@ public class TeaVMTool implements BaseTeaVMTool {
     private File targetDirectory = new File(".");
     private String targetFileName = "classes.js";
     private boolean minifying = true;
+    private boolean codeSplitting;
+    private boolean chunkPrefetching;
+    private boolean inlining;
+    private boolean lazyStringPool;
+    private boolean lazyMetadata;
+    private LongRepresentation longRepresentation = LongRepresentation.OBJECT;
+    private ArrayRepresentation arrayRepresentation = ArrayRepresentation.WRAPPED;
+    private StringRepresentation stringRepresentation = StringRepresentation.CHAR_ARRAY;
     private String mainClass;
     private RuntimeCopyOperation runtime = RuntimeCopyOperation.SEPARATE;
     private Properties properties = new Properties();
@@ -51,12 +69,23 @@ public class TeaVMTool implements BaseTeaVMTool {
     private boolean sourceMapsFileGenerated;
     private boolean sourceFilesCopied;
     private boolean incremental;
+    private int threadCount = 1;
+    private boolean concurrentDependencyAnalysis;
+    private boolean batchedPropagation;
+    private OptimizationLevel optimizationLevel = OptimizationLevel.FULL;
+    private List<OptimizationPass> optimizationPasses;
+    private boolean optimizationReportGenerated;
+    private boolean keepingCaches;
     private File cacheDirectory = new File("./teavm-cache");
     private List<ClassHolderTransformer> transformers = new ArrayList<>();
     private List<ClassAlias> classAliases = new ArrayList<>();
     private List<MethodAlias> methodAliases = new ArrayList<>();
     private TeaVMToolLog log = new EmptyTeaVMToolLog();
     private ClassLoader classLoader = TeaVMTool.class.getClassLoader();
+    private CachePack cachePack;
+    private ClassLoader cachesClassLoader;
+    private ClasspathClassHolderSource classPathSource;
+    private PreOptimizingClassHolderSource preOptimizedSource;
     private DiskCachedClassHolderSource cachedClassSource;
     private DiskProgramCache programCache;
     private DiskRegularMethodNodeCache astCache;
@@ -93,6 +122,70 @@ public class TeaVMTool implements BaseTeaVMTool {
         this.minifying = minifying;
     }
 
+    public LongRepresentation getLongRepresentation() {
+        return longRepresentation;
+    }
+
+    public void setLongRepresentation(LongRepresentation longRepresentation) {
+        this.longRepresentation = longRepresentation;
+    }
+
+    public ArrayRepresentation getArrayRepresentation() {
+        return arrayRepresentation;
+    }
+
+    public void setArrayRepresentation(ArrayRepresentation arrayRepresentation) {
+        this.arrayRepresentation = arrayRepresentation;
+    }
+
+    public StringRepresentation getStringRepresentation() {
+        return stringRepresentation;
+    }
+
+    public void setStringRepresentation(StringRepresentation stringRepresentation) {
+        this.stringRepresentation = stringRepresentation;
+    }
+
+    public boolean isInlining() {
+        return inlining;
+    }
+
+    public void setInlining(boolean inlining) {
+        this.inlining = inlining;
+    }
+
+    public boolean isLazyStringPool() {
+        return lazyStringPool;
+    }
+
+    public void setLazyStringPool(boolean lazyStringPool) {
+        this.lazyStringPool = lazyStringPool;
+    }
+
+    public boolean isLazyMetadata() {
+        return lazyMetadata;
+    }
+
+    public void setLazyMetadata(boolean lazyMetadata) {
+        this.lazyMetadata = lazyMetadata;
+    }
+
+    public boolean isCodeSplitting() {
+        return codeSplitting;
+    }
+
+    public void setCodeSplitting(boolean codeSplitting) {
+        this.codeSplitting = codeSplitting;
+    }
+
+    public boolean isChunkPrefetching() {
+        return chunkPrefetching;
+    }
+
+    public void setChunkPrefetching(boolean chunkPrefetching) {
+        this.chunkPrefetching = chunkPrefetching;
+    }
+
     public boolean isIncremental() {
         return incremental;
     }
@@ -102,6 +195,74 @@ public class TeaVMTool implements BaseTeaVMTool {
         this.incremental = incremental;
     }
 
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public boolean isConcurrentDependencyAnalysis() {
+        return concurrentDependencyAnalysis;
+    }
+
+    public void setConcurrentDependencyAnalysis(boolean concurrentDependencyAnalysis) {
+        this.concurrentDependencyAnalysis = concurrentDependencyAnalysis;
+    }
+
+    public boolean isBatchedPropagation() {
+        return batchedPropagation;
+    }
+
+    public void setBatchedPropagation(boolean batchedPropagation) {
+        this.batchedPropagation = batchedPropagation;
+    }
+
+    public OptimizationLevel getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    public void setOptimizationLevel(OptimizationLevel optimizationLevel) {
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    public List<OptimizationPass> getOptimizationPasses() {
+        return optimizationPasses;
+    }
+
+    public void setOptimizationPasses(List<OptimizationPass> optimizationPasses) {
+        this.optimizationPasses = optimizationPasses;
+    }
+
+    public boolean isOptimizationReportGenerated() {
+        return optimizationReportGenerated;
+    }
+
+    /**
+     * <p>Specifies whether TeaVM should write statistics of optimization passes (time spent, number of
+     * instructions and basic blocks before and after each pass) into a JSON file next to the generated
+     * file.</p>
+     */
+    public void setOptimizationReportGenerated(boolean optimizationReportGenerated) {
+        this.optimizationReportGenerated = optimizationReportGenerated;
+    }
+
+    public boolean isKeepingCaches() {
+        return keepingCaches;
+    }
+
+    /**
+     * <p>Specifies whether parsed classes and caches should be kept in memory between subsequent calls
+     * of {@link #generate()}. They are kept as long as the class loader stays the same. It's up to the caller
+     * to report changed classes via {@link #invalidateClasses(Collection)}.</p>
+     *
+     * @param keepingCaches whether to keep caches in memory.
+     */
+    public void setKeepingCaches(boolean keepingCaches) {
+        this.keepingCaches = keepingCaches;
+    }
+
     public String getMainClass() {
         return mainClass;
     }
@@ -267,32 +428,31 @@ public class TeaVMTool implements BaseTeaVMTool {
             cancelled = false;
             log.info("Building JavaScript file");
             TeaVMBuilder vmBuilder = new TeaVMBuilder();
+            prepareClassSources();
             if (incremental) {
-                cacheDirectory.mkdirs();
-                symbolTable = new FileSymbolTable(new File(cacheDirectory, "symbols"));
-                fileTable = new FileSymbolTable(new File(cacheDirectory, "files"));
-                ClasspathClassHolderSource innerClassSource = new ClasspathClassHolderSource(classLoader);
-                ClassHolderSource classSource = new PreOptimizingClassHolderSource(innerClassSource);
-                cachedClassSource = new DiskCachedClassHolderSource(cacheDirectory, symbolTable, fileTable,
-                        classSource, innerClassSource);
-                programCache = new DiskProgramCache(cacheDirectory, symbolTable, fileTable, innerClassSource);
-                astCache = new DiskRegularMethodNodeCache(cacheDirectory, symbolTable, fileTable, innerClassSource);
-                try {
-                    symbolTable.update();
-                    fileTable.update();
-                } catch (IOException e) {
-                    log.info("Cache is missing");
-                }
                 vmBuilder.setClassLoader(classLoader).setClassSource(cachedClassSource);
             } else {
-                vmBuilder.setClassLoader(classLoader).setClassSource(new PreOptimizingClassHolderSource(
-                        new ClasspathClassHolderSource(classLoader)));
+                vmBuilder.setClassLoader(classLoader).setClassSource(preOptimizedSource);
             }
+            vmBuilder.setThreadCount(threadCount);
+            vmBuilder.setConcurrentDependencyAnalysis(concurrentDependencyAnalysis);
+            vmBuilder.setBatchedPropagation(batchedPropagation);
+            vmBuilder.setOptimizationLevel(optimizationLevel);
+            vmBuilder.setOptimizationPasses(optimizationPasses);
             vm = vmBuilder.build();
             if (progressListener != null) {
                 vm.setProgressListener(progressListener);
             }
             vm.setMinifying(minifying);
+            vm.setCodeSplitting(codeSplitting);
+            vm.setChunkPrefetching(chunkPrefetching);
+            vm.setInlining(inlining);
+            vm.setLazyStringPool(lazyStringPool);
+            vm.setLazyMetadata(lazyMetadata);
+            vm.setLongRepresentation(longRepresentation);
+            vm.setArrayRepresentation(arrayRepresentation);
+            vm.setStringRepresentation(stringRepresentation);
+            vm.setChunkFileNamePrefix(getChunkFileNamePrefix());
             vm.setBytecodeLogging(bytecodeLogging);
             vm.setProperties(properties);
             DebugInformationBuilder debugEmitter = debugInformationGenerated || sourceMapsFileGenerated
@@ -336,8 +496,9 @@ public class TeaVMTool implements BaseTeaVMTool {
                 }
             }
             targetDirectory.mkdirs();
-            try (Writer writer = new OutputStreamWriter(new BufferedOutputStream(
-                    new FileOutputStream(new File(targetDirectory, targetFileName)), 65536), "UTF-8")) {
+            try (ChunkedOutput writer = new ChunkedOutput(FileChannel.open(
+                    new File(targetDirectory, targetFileName).toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
                 if (runtime == RuntimeCopyOperation.MERGED) {
                     vm.add(runtimeInjector);
                 }
@@ -350,6 +511,13 @@ public class TeaVMTool implements BaseTeaVMTool {
                 if (mainClass != null) {
                     writer.append("main = $rt_mainStarter(main);\n");
                 }
+                log.debug("Dependency propagation: " + vm.getPropagationTaskCount() + " tasks scheduled, "
+                        + vm.getPropagatedTypeCount() + " types delivered");
+                log.debug(vm.getDependencyHeapReport().toString());
+                if (codeSplitting) {
+                    reportCodeChunks();
+                }
+                reportOptimizations();
                 ProblemProvider problemProvider = vm.getProblemProvider();
                 if (problemProvider.getProblems().isEmpty()) {
                     log.info("JavaScript file successfully built");
@@ -380,6 +548,13 @@ public class TeaVMTool implements BaseTeaVMTool {
                     }
                     log.info("Source maps successfully written");
                 }
+                if (optimizationReportGenerated) {
+                    try (Writer reportOut = new OutputStreamWriter(new FileOutputStream(new File(targetDirectory,
+                            targetFileName + ".optimization.json")), "UTF-8")) {
+                        writeOptimizationReport(reportOut);
+                    }
+                    log.info("Optimization report successfully written");
+                }
                 if (sourceFilesCopied) {
                     copySourceFiles();
                     log.info("Source files successfully written");
@@ -388,8 +563,12 @@ public class TeaVMTool implements BaseTeaVMTool {
                     programCache.flush();
                     astCache.flush();
                     cachedClassSource.flush();
+                    cachePack.flush();
                     symbolTable.flush();
                     fileTable.flush();
+                    if (!keepingCaches) {
+                        closeCachePack();
+                    }
                     log.info("Cache updated");
                 }
             }
@@ -412,6 +591,86 @@ public class TeaVMTool implements BaseTeaVMTool {
         }
     }
 
+    private void prepareClassSources() {
+        boolean reusable = keepingCaches && classPathSource != null && cachesClassLoader == classLoader
+                && (!incremental || cachedClassSource != null);
+        if (reusable) {
+            if (incremental) {
+                programCache.invalidate();
+                astCache.invalidate();
+            }
+            return;
+        }
+
+        cachesClassLoader = classLoader;
+        classPathSource = new ClasspathClassHolderSource(classLoader);
+        preOptimizedSource = new PreOptimizingClassHolderSource(classPathSource);
+        if (!incremental) {
+            cachedClassSource = null;
+            return;
+        }
+        cacheDirectory.mkdirs();
+        closeCachePack();
+        symbolTable = new FileSymbolTable(new File(cacheDirectory, "symbols"));
+        fileTable = new FileSymbolTable(new File(cacheDirectory, "files"));
+        cachePack = new CachePack(new File(cacheDirectory, "cache.teavm-pack"));
+        cachedClassSource = new DiskCachedClassHolderSource(cachePack, symbolTable, fileTable,
+                preOptimizedSource, classPathSource);
+        programCache = new DiskProgramCache(cachePack, symbolTable, fileTable, classPathSource);
+        astCache = new DiskRegularMethodNodeCache(cachePack, symbolTable, fileTable, classPathSource);
+        try {
+            symbolTable.update();
+            fileTable.update();
+            cachePack.open();
+        } catch (IOException e) {
+            log.info("Cache is missing");
+        }
+    }
+
+    /**
+     * <p>Makes the tool parse the given classes again during the next build. Makes sense only if the tool
+     * keeps caches between builds.</p>
+     *
+     * @param classNames names of classes as they are stored in the class path.
+     * @see #setKeepingCaches(boolean)
+     */
+    public void invalidateClasses(Collection<String> classNames) {
+        if (classPathSource == null) {
+            return;
+        }
+        for (String className : classNames) {
+            String mappedName = classPathSource.invalidate(className);
+            for (String name : Arrays.asList(className, mappedName)) {
+                preOptimizedSource.invalidate(name);
+                if (cachedClassSource != null) {
+                    cachedClassSource.invalidate(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Drops all caches kept in memory, so that the next build starts from scratch.</p>
+     */
+    public void invalidateCaches() {
+        cachesClassLoader = null;
+        classPathSource = null;
+        preOptimizedSource = null;
+        cachedClassSource = null;
+        closeCachePack();
+    }
+
+    private void closeCachePack() {
+        if (cachePack != null) {
+            try {
+                cachePack.close();
+            } catch (IOException e) {
+                log.info("Could not close cache file");
+            }
+            cachePack = null;
+        }
+    }
+
     private void copySourceFiles() {
         if (vm.getWrittenClasses() == null) {
             return;
@@ -432,6 +691,69 @@ public class TeaVMTool implements BaseTeaVMTool {
         }
     };
 
+    private String getChunkFileNamePrefix() {
+        String baseName = targetFileName;
+        if (baseName.endsWith(".js")) {
+            baseName = baseName.substring(0, baseName.length() - 3);
+        }
+        return baseName + "-";
+    }
+
+    private void reportCodeChunks() {
+        List<CodeChunk> chunks = vm.getCodeChunks();
+        if (chunks.isEmpty()) {
+            return;
+        }
+        CodeChunk mainChunk = chunks.get(0);
+        log.info("Code split into " + chunks.size() + " chunks");
+        log.info("  " + targetFileName + ": " + mainChunk.getClassNames().size() + " classes, "
+                + mainChunk.getSize() + " characters");
+        for (CodeChunk chunk : chunks.subList(1, chunks.size())) {
+            log.info("  " + chunk.getFileName() + ": " + chunk.getClassNames().size() + " classes, "
+                    + chunk.getSize() + " characters, loaded by " + chunk.getRootClass());
+        }
+    }
+
+    private void reportOptimizations() {
+        for (PassStatistics pass : vm.getOptimizationStatistics()) {
+            log.debug("Optimization pass " + pass.getName() + ": " + pass.getRunCount() + " runs, "
+                    + pass.getTime() / 1000000 + " ms, instructions " + pass.getInstructionsBefore() + " -> "
+                    + pass.getInstructionsAfter() + ", basic blocks " + pass.getBasicBlocksBefore() + " -> "
+                    + pass.getBasicBlocksAfter());
+        }
+    }
+
+    private void writeOptimizationReport(Writer writer) throws IOException {
+        writer.append("{\n");
+        if (optimizationPasses != null) {
+            // An explicit pass list overrides passes of the level, only the number of rounds comes from the level
+            writer.append("  \"passList\": [");
+            boolean first = true;
+            for (OptimizationPass pass : optimizationPasses) {
+                writer.append(first ? "" : ", ").append('"').append(pass.getName()).append('"');
+                first = false;
+            }
+            writer.append("],\n  \"maxRounds\": ").append(String.valueOf(optimizationLevel.getMaxRounds()));
+        } else {
+            writer.append("  \"level\": \"").append(optimizationLevel.name()).append('"');
+        }
+        writer.append(",\n  \"passes\": [");
+        boolean first = true;
+        for (PassStatistics pass : vm.getOptimizationStatistics()) {
+            writer.append(first ? "\n" : ",\n");
+            first = false;
+            writer.append("    {\"name\": \"").append(pass.getName()).append('"')
+                    .append(", \"runs\": ").append(String.valueOf(pass.getRunCount()))
+                    .append(", \"timeNanos\": ").append(String.valueOf(pass.getTime()))
+                    .append(", \"instructionsBefore\": ").append(String.valueOf(pass.getInstructionsBefore()))
+                    .append(", \"instructionsAfter\": ").append(String.valueOf(pass.getInstructionsAfter()))
+                    .append(", \"basicBlocksBefore\": ").append(String.valueOf(pass.getBasicBlocksBefore()))
+                    .append(", \"basicBlocksAfter\": ").append(String.valueOf(pass.getBasicBlocksAfter()))
+                    .append('}');
+        }
+        writer.append(first ? "]\n}\n" : "\n  ]\n}\n");
+    }
+
     private void resourceToFile(String resource, String fileName) throws IOException {
         try (InputStream input = TeaVMTool.class.getClassLoader().getResourceAsStream(resource)) {
             try (OutputStream output = new FileOutputStream(new File(targetDirectory, fileName))) {
@@ -0,0 +1,438 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tooling.daemon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.rmi.AccessException;
+import java.rmi.AlreadyBoundException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.rmi.server.UnicastRemoteObject;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.model.ClassHolderTransformer;
+import org.teavm.tooling.TeaVMTool;
+import org.teavm.tooling.TeaVMToolException;
+import org.teavm.tooling.TeaVMToolLog;
+import org.teavm.tooling.daemon.RemoteBuildResponse.LogEntry;
+import org.teavm.tooling.daemon.RemoteBuildResponse.LogLevel;
+
+/**
+ * <p>Long-living build server. Keeps parsed classes, incremental caches and, last but not least,
+ * JIT-compiled TeaVM itself between builds, so subsequent builds of the same class path are much faster than
+ * builds performed by a fresh JVM. Before each build the daemon checks class path for changes: modified
+ * class files are parsed again, while changes in archives or resources make the daemon start from scratch.</p>
+ *
+ * <p>Caches are kept for at most {@link #DEFAULT_MAX_WORKSPACES} different class paths. This number can be
+ * changed by the second command line argument or by <code>--daemonworkspaces</code> option of the CLI.
+ * When a build of another class path is requested, caches of the least recently built class path
+ * are dropped.</p>
+ *
+ * <p>The service is exported via RMI registry, which only accepts connections from the local host.
+ * Since a build request makes the daemon load and run classes from the requested class path, other users
+ * of the host must not be able to send requests. On start, the daemon writes a random token into
+ * <code>~/.teavm/daemon-&lt;port&gt;.token</code>, readable only by the owner, and rejects every call that
+ * does not present this token. Arguments of calls are deserialized through a filter that only accepts
+ * classes of {@link RemoteBuildRequest}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class BuildDaemon implements RemoteBuildService {
+    public static final int DEFAULT_MAX_WORKSPACES = 4;
+    private static final RMIServerSocketFactory LOCAL_SOCKET_FACTORY = new LocalServerSocketFactory();
+    private static final String SERIAL_FILTER_PROPERTY = "jdk.serialFilter";
+    static final String SERIAL_FILTER = "maxdepth=20;maxrefs=100000;maxarray=100000;maxbytes=10000000;"
+            + "org.teavm.tooling.daemon.RemoteBuildRequest;org.teavm.tooling.ClassAlias;"
+            + "org.teavm.tooling.MethodAlias;org.teavm.tooling.RuntimeCopyOperation;"
+            + "org.teavm.javascript.ArrayRepresentation;org.teavm.javascript.LongRepresentation;"
+            + "org.teavm.javascript.StringRepresentation;org.teavm.optimization.OptimizationLevel;"
+            + "org.teavm.optimization.OptimizationPass;java.lang.String;java.lang.Enum;java.util.ArrayList;"
+            + "java.util.Properties;java.util.Hashtable;java.util.Map$Entry;!*";
+    private final int maxWorkspaces;
+    private final byte[] token;
+    private final Map<List<String>, Workspace> workspaces = new LinkedHashMap<>(16, 0.75f, true);
+
+    public BuildDaemon(int maxWorkspaces, String token) {
+        if (maxWorkspaces < 1) {
+            throw new IllegalArgumentException("Daemon should keep at least one workspace: " + maxWorkspaces);
+        }
+        this.maxWorkspaces = maxWorkspaces;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws IOException, AlreadyBoundException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxWorkspaces = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_WORKSPACES;
+        start(port, maxWorkspaces);
+        System.out.println("TeaVM daemon started on port " + port);
+    }
+
+    public static Registry start(int port) throws IOException, AlreadyBoundException {
+        return start(port, DEFAULT_MAX_WORKSPACES);
+    }
+
+    public static Registry start(int port, int maxWorkspaces) throws IOException, AlreadyBoundException {
+        if (System.getProperty("java.rmi.server.hostname") == null) {
+            System.setProperty("java.rmi.server.hostname", InetAddress.getLoopbackAddress().getHostAddress());
+        }
+        boolean exportFilterSupported = isExportFilterSupported();
+        if (!exportFilterSupported && System.getProperty(SERIAL_FILTER_PROPERTY) == null) {
+            // Before Java 9 a filter can't be set for a particular remote object, only for the whole process.
+            // It should be set before RMI reads the property, i.e. before the registry is created
+            System.setProperty(SERIAL_FILTER_PROPERTY, SERIAL_FILTER);
+        }
+        Registry registry = LocateRegistry.createRegistry(port, null, LOCAL_SOCKET_FACTORY);
+        BuildDaemon daemon = new BuildDaemon(maxWorkspaces, writeToken(port));
+        if (exportFilterSupported) {
+            exportWithFilter(daemon);
+        } else {
+            UnicastRemoteObject.exportObject(daemon, 0, null, LOCAL_SOCKET_FACTORY);
+        }
+        registry.bind(ID, daemon);
+        return registry;
+    }
+
+    public static RemoteBuildService connect(int port) throws RemoteException, NotBoundException {
+        Registry registry = LocateRegistry.getRegistry(InetAddress.getLoopbackAddress().getHostAddress(), port);
+        return (RemoteBuildService) registry.lookup(ID);
+    }
+
+    /**
+     * <p>Sends the request to the daemon running on the given port of the local host, authenticating
+     * by the token the daemon has written for the current user.</p>
+     *
+     * @param port port of the daemon.
+     * @param request the build request.
+     * @return result of the build.
+     */
+    public static RemoteBuildResponse build(int port, RemoteBuildRequest request)
+            throws RemoteException, NotBoundException {
+        String token;
+        try {
+            token = new String(Files.readAllBytes(getTokenFile(port)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new AccessException("Could not read token of TeaVM daemon from " + getTokenFile(port), e);
+        }
+        return connect(port).build(token, request);
+    }
+
+    static Path getTokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".teavm", "daemon-" + port + ".token");
+    }
+
+    private static String writeToken(int port) throws IOException {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        String token = sb.toString();
+
+        Path file = getTokenFile(port);
+        Path directory = file.getParent();
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (posix) {
+            if (!Files.isDirectory(directory)) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rwx------")));
+            }
+            Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+            Files.deleteIfExists(file);
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(file);
+            Files.createFile(file);
+            File javaFile = file.toFile();
+            if (!javaFile.setReadable(false, false) || !javaFile.setReadable(true, true)
+                    || !javaFile.setWritable(false, false) || !javaFile.setWritable(true, true)) {
+                Files.delete(file);
+                throw new IOException("Could not restrict access to " + file);
+            }
+        }
+        Files.write(file, token.getBytes(StandardCharsets.UTF_8));
+        file.toFile().deleteOnExit();
+        return token;
+    }
+
+    private static boolean isExportFilterSupported() {
+        try {
+            Class.forName("java.io.ObjectInputFilter");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static void exportWithFilter(BuildDaemon daemon) throws RemoteException {
+        // Java 9 API, called reflectively since TeaVM is compiled for Java 8
+        try {
+            Class<?> filterType = Class.forName("java.io.ObjectInputFilter");
+            Class<?> configType = Class.forName("java.io.ObjectInputFilter$Config");
+            Object filter = configType.getMethod("createFilter", String.class).invoke(null, SERIAL_FILTER);
+            UnicastRemoteObject.class.getMethod("exportObject", Remote.class, int.class,
+                    RMIClientSocketFactory.class, RMIServerSocketFactory.class, filterType)
+                    .invoke(null, daemon, 0, null, LOCAL_SOCKET_FACTORY, filter);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RemoteException) {
+                throw (RemoteException) e.getCause();
+            }
+            throw new RemoteException("Could not export TeaVM daemon", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RemoteException("Could not install serialization filter", e);
+        }
+    }
+
+    @Override
+    public RemoteBuildResponse build(String token, RemoteBuildRequest request) throws AccessException {
+        if (token == null || !MessageDigest.isEqual(this.token, token.getBytes(StandardCharsets.UTF_8))) {
+            throw new AccessException("Wrong token of TeaVM daemon");
+        }
+        return build(request);
+    }
+
+    private synchronized RemoteBuildResponse build(RemoteBuildRequest request) {
+        RemoteBuildResponse response = new RemoteBuildResponse();
+        Workspace workspace = workspaces.get(request.classPath);
+        try {
+            if (workspace == null) {
+                evictWorkspaces(maxWorkspaces - 1);
+                workspace = new Workspace(request.classPath);
+                workspaces.put(new ArrayList<>(request.classPath), workspace);
+            }
+            workspace.update();
+            TeaVMTool tool = workspace.tool;
+            configure(tool, workspace.classLoader, request);
+            tool.setLog(new ResponseLog(response));
+            tool.generate();
+            response.cancelled = tool.wasCancelled();
+            response.problemCount = tool.getProblemProvider().getProblems().size();
+            response.severeProblemCount = tool.getProblemProvider().getSevereProblems().size();
+            response.classes = new HashSet<>(tool.getClasses());
+            response.usedResources = new HashSet<>(tool.getUsedResources());
+            response.successful = !response.cancelled && response.severeProblemCount == 0;
+        } catch (TeaVMToolException | RuntimeException | ReflectiveOperationException | MalformedURLException e) {
+            response.errorMessage = e.toString();
+            response.log.add(new LogEntry(LogLevel.ERROR, "Build failed\n" + stackTrace(e)));
+            if (workspace != null) {
+                workspace.tool.invalidateCaches();
+            }
+        }
+        return response;
+    }
+
+    private void evictWorkspaces(int limit) {
+        Iterator<Workspace> iter = workspaces.values().iterator();
+        while (workspaces.size() > limit && iter.hasNext()) {
+            iter.next().dispose();
+            iter.remove();
+        }
+    }
+
+    private static void configure(TeaVMTool tool, ClassLoader classLoader, RemoteBuildRequest request)
+            throws ReflectiveOperationException {
+        if (request.targetDirectory != null) {
+            tool.setTargetDirectory(new File(request.targetDirectory));
+        }
+        tool.setTargetFileName(request.targetFileName);
+        tool.setMinifying(request.minifying);
+        tool.setCodeSplitting(request.codeSplitting);
+        tool.setChunkPrefetching(request.chunkPrefetching);
+        tool.setInlining(request.inlining);
+        tool.setLazyStringPool(request.lazyStringPool);
+        tool.setLazyMetadata(request.lazyMetadata);
+        tool.setLongRepresentation(request.longRepresentation);
+        tool.setArrayRepresentation(request.arrayRepresentation);
+        tool.setStringRepresentation(request.stringRepresentation);
+        tool.setMainClass(request.mainClass);
+        tool.setRuntime(request.runtime);
+        tool.getProperties().clear();
+        tool.getProperties().putAll(request.properties);
+        tool.setMainPageIncluded(request.mainPageIncluded);
+        tool.setBytecodeLogging(request.bytecodeLogging);
+        tool.setDebugInformationGenerated(request.debugInformationGenerated);
+        tool.setSourceMapsFileGenerated(request.sourceMapsFileGenerated);
+        tool.setIncremental(request.incremental);
+        if (request.cacheDirectory != null) {
+            tool.setCacheDirectory(new File(request.cacheDirectory));
+        }
+        tool.setThreadCount(request.threadCount);
+        tool.setConcurrentDependencyAnalysis(request.concurrentDependencyAnalysis);
+        tool.setBatchedPropagation(request.batchedPropagation);
+        tool.setOptimizationLevel(request.optimizationLevel);
+        tool.setOptimizationPasses(request.optimizationPasses);
+        tool.setOptimizationReportGenerated(request.optimizationReportGenerated);
+        tool.getTransformers().clear();
+        for (String transformerName : request.transformers) {
+            Class<? extends ClassHolderTransformer> transformerType = Class.forName(transformerName, true,
+                    classLoader).asSubclass(ClassHolderTransformer.class);
+            tool.getTransformers().add(transformerType.getConstructor().newInstance());
+        }
+        tool.getClassAliases().clear();
+        tool.getClassAliases().addAll(request.classAliases);
+        tool.getMethodAliases().clear();
+        tool.getMethodAliases().addAll(request.methodAliases);
+    }
+
+    private static String stackTrace(Throwable e) {
+        StringWriter writer = new StringWriter();
+        e.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    static class Workspace {
+        final List<File> classPathEntries = new ArrayList<>();
+        final ClassPathWatcher watcher;
+        final TeaVMTool tool = new TeaVMTool();
+        URLClassLoader classLoader;
+
+        Workspace(List<String> classPath) {
+            for (String entry : classPath) {
+                classPathEntries.add(new File(entry));
+            }
+            watcher = new ClassPathWatcher(classPathEntries);
+            tool.setKeepingCaches(true);
+        }
+
+        void update() throws MalformedURLException {
+            Set<String> changedClasses = watcher.poll();
+            if (classLoader != null && changedClasses != null) {
+                tool.invalidateClasses(changedClasses);
+                return;
+            }
+
+            if (classLoader != null) {
+                try {
+                    classLoader.close();
+                } catch (IOException e) {
+                    // Old class loader is not used anymore, so we can ignore errors
+                }
+            }
+            URL[] urls = new URL[classPathEntries.size()];
+            for (int i = 0; i < urls.length; ++i) {
+                urls[i] = classPathEntries.get(i).toURI().toURL();
+            }
+            classLoader = new URLClassLoader(urls, BuildDaemon.class.getClassLoader());
+            tool.invalidateCaches();
+            tool.setClassLoader(classLoader);
+        }
+
+        void dispose() {
+            tool.invalidateCaches();
+            if (classLoader != null) {
+                try {
+                    classLoader.close();
+                } catch (IOException e) {
+                    // Class loader is not used anymore, so we can ignore errors
+                }
+                classLoader = null;
+            }
+        }
+    }
+
+    static class ResponseLog implements TeaVMToolLog {
+        private final RemoteBuildResponse response;
+
+        ResponseLog(RemoteBuildResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void info(String text) {
+            response.log.add(new LogEntry(LogLevel.INFO, text));
+        }
+
+        @Override
+        public void debug(String text) {
+            response.log.add(new LogEntry(LogLevel.DEBUG, text));
+        }
+
+        @Override
+        public void warning(String text) {
+            response.log.add(new LogEntry(LogLevel.WARNING, text));
+        }
+
+        @Override
+        public void error(String text) {
+            response.log.add(new LogEntry(LogLevel.ERROR, text));
+        }
+
+        @Override
+        public void info(String text, Throwable e) {
+            info(text + "\n" + stackTrace(e));
+        }
+
+        @Override
+        public void debug(String text, Throwable e) {
+            debug(text + "\n" + stackTrace(e));
+        }
+
+        @Override
+        public void warning(String text, Throwable e) {
+            warning(text + "\n" + stackTrace(e));
+        }
+
+        @Override
+        public void error(String text, Throwable e) {
+            error(text + "\n" + stackTrace(e));
+        }
+    }
+
+    static class LocalServerSocketFactory implements RMIServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            return new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof LocalServerSocketFactory;
+        }
+
+        @Override
+        public int hashCode() {
+            return LocalServerSocketFactory.class.hashCode();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tooling.daemon;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Detects changes in class path between builds by comparing modification dates of files.</p>
+ *
+ * @author Alexey Andreev
+ */
+class ClassPathWatcher {
+    private final List<File> entries;
+    private final Map<File, Long> archiveDates = new HashMap<>();
+    private final Map<File, Map<String, Long>> directoryDates = new HashMap<>();
+
+    ClassPathWatcher(List<File> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * <p>Finds class files that were added, modified or removed since the previous call.</p>
+     *
+     * @return names of changed classes or <code>null</code>, if something else has changed (an archive
+     * or a resource), so that all information about class path should be dropped.
+     */
+    Set<String> poll() {
+        Set<String> changedClasses = new LinkedHashSet<>();
+        boolean reset = false;
+        for (File entry : entries) {
+            if (entry.isDirectory()) {
+                if (archiveDates.remove(entry) != null) {
+                    reset = true;
+                }
+                Map<String, Long> dates = new HashMap<>();
+                scan(entry, "", dates);
+                Map<String, Long> oldDates = directoryDates.put(entry, dates);
+                if (oldDates == null) {
+                    continue;
+                }
+                Set<String> changedFiles = new LinkedHashSet<>();
+                for (Map.Entry<String, Long> file : dates.entrySet()) {
+                    if (!file.getValue().equals(oldDates.get(file.getKey()))) {
+                        changedFiles.add(file.getKey());
+                    }
+                }
+                for (String file : oldDates.keySet()) {
+                    if (!dates.containsKey(file)) {
+                        changedFiles.add(file);
+                    }
+                }
+                for (String file : changedFiles) {
+                    if (!file.endsWith(".class")) {
+                        reset = true;
+                    } else {
+                        changedClasses.add(file.substring(0, file.length() - ".class".length()).replace('/', '.'));
+                    }
+                }
+            } else {
+                if (directoryDates.remove(entry) != null) {
+                    reset = true;
+                }
+                long date = entry.exists() ? entry.lastModified() : -1;
+                Long oldDate = archiveDates.put(entry, date);
+                if (oldDate != null && oldDate != date) {
+                    reset = true;
+                }
+            }
+        }
+        return reset ? null : changedClasses;
+    }
+
+    private void scan(File directory, String path, Map<String, Long> dates) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String filePath = path + file.getName();
+            if (file.isDirectory()) {
+                scan(file, filePath + "/", dates);
+            } else {
+                dates.put(filePath, file.lastModified());
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tooling.daemon;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.teavm.javascript.ArrayRepresentation;
+import org.teavm.javascript.LongRepresentation;
+import org.teavm.javascript.StringRepresentation;
+import org.teavm.model.ClassHolderTransformer;
+import org.teavm.optimization.OptimizationLevel;
+import org.teavm.optimization.OptimizationPass;
+import org.teavm.tooling.ClassAlias;
+import org.teavm.tooling.MethodAlias;
+import org.teavm.tooling.RuntimeCopyOperation;
+import org.teavm.tooling.TeaVMTool;
+
+/**
+ * <p>Describes a build that should be performed by {@link BuildDaemon}. Mirrors settings
+ * of {@link org.teavm.tooling.TeaVMTool}, except for the class loader, which is replaced by the list
+ * of class path entries, and transformers, which are specified by their class names.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class RemoteBuildRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public final List<String> classPath = new ArrayList<>();
+    public String targetDirectory;
+    public String targetFileName = "classes.js";
+    public boolean minifying = true;
+    public boolean codeSplitting;
+    public boolean chunkPrefetching;
+    public boolean inlining;
+    public boolean lazyStringPool;
+    public boolean lazyMetadata;
+    public LongRepresentation longRepresentation = LongRepresentation.OBJECT;
+    public ArrayRepresentation arrayRepresentation = ArrayRepresentation.WRAPPED;
+    public StringRepresentation stringRepresentation = StringRepresentation.CHAR_ARRAY;
+    public String mainClass;
+    public RuntimeCopyOperation runtime = RuntimeCopyOperation.SEPARATE;
+    public final Properties properties = new Properties();
+    public boolean mainPageIncluded;
+    public boolean bytecodeLogging;
+    public boolean debugInformationGenerated;
+    public boolean sourceMapsFileGenerated;
+    public boolean incremental;
+    public String cacheDirectory;
+    public int threadCount = 1;
+    public boolean concurrentDependencyAnalysis;
+    public boolean batchedPropagation;
+    public OptimizationLevel optimizationLevel = OptimizationLevel.FULL;
+    public List<OptimizationPass> optimizationPasses;
+    public boolean optimizationReportGenerated;
+    public final List<String> transformers = new ArrayList<>();
+    public final List<ClassAlias> classAliases = new ArrayList<>();
+    public final List<MethodAlias> methodAliases = new ArrayList<>();
+
+    /**
+     * <p>Creates request that repeats settings of the given tool. Class path should be filled separately.</p>
+     *
+     * @param tool the tool to take settings from.
+     * @return the request.
+     */
+    public static RemoteBuildRequest fromTool(TeaVMTool tool) {
+        RemoteBuildRequest request = new RemoteBuildRequest();
+        request.targetDirectory = tool.getTargetDirectory().getAbsolutePath();
+        request.targetFileName = tool.getTargetFileName();
+        request.minifying = tool.isMinifying();
+        request.codeSplitting = tool.isCodeSplitting();
+        request.chunkPrefetching = tool.isChunkPrefetching();
+        request.inlining = tool.isInlining();
+        request.lazyStringPool = tool.isLazyStringPool();
+        request.lazyMetadata = tool.isLazyMetadata();
+        request.longRepresentation = tool.getLongRepresentation();
+        request.arrayRepresentation = tool.getArrayRepresentation();
+        request.stringRepresentation = tool.getStringRepresentation();
+        request.mainClass = tool.getMainClass();
+        request.runtime = tool.getRuntime();
+        request.properties.putAll(tool.getProperties());
+        request.mainPageIncluded = tool.isMainPageIncluded();
+        request.bytecodeLogging = tool.isBytecodeLogging();
+        request.debugInformationGenerated = tool.isDebugInformationGenerated();
+        request.sourceMapsFileGenerated = tool.isSourceMapsFileGenerated();
+        request.incremental = tool.isIncremental();
+        request.cacheDirectory = tool.getCacheDirectory().getAbsolutePath();
+        request.threadCount = tool.getThreadCount();
+        request.concurrentDependencyAnalysis = tool.isConcurrentDependencyAnalysis();
+        request.batchedPropagation = tool.isBatchedPropagation();
+        request.optimizationLevel = tool.getOptimizationLevel();
+        if (tool.getOptimizationPasses() != null) {
+            request.optimizationPasses = new ArrayList<>(tool.getOptimizationPasses());
+        }
+        request.optimizationReportGenerated = tool.isOptimizationReportGenerated();
+        for (ClassHolderTransformer transformer : tool.getTransformers()) {
+            request.transformers.add(transformer.getClass().getName());
+        }
+        request.classAliases.addAll(tool.getClassAliases());
+        request.methodAliases.addAll(tool.getMethodAliases());
+        return request;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tooling.daemon;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.teavm.tooling.TeaVMToolLog;
+
+/**
+ * <p>Outcome of a build performed by {@link BuildDaemon}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class RemoteBuildResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public boolean successful;
+    public boolean cancelled;
+    public int problemCount;
+    public int severeProblemCount;
+    public String errorMessage;
+    public Set<String> classes;
+    public Set<String> usedResources;
+    public final List<LogEntry> log = new ArrayList<>();
+
+    /**
+     * <p>Reproduces messages reported by the remote tool in the given log.</p>
+     *
+     * @param target log to write messages to.
+     */
+    public void replayLog(TeaVMToolLog target) {
+        for (LogEntry entry : log) {
+            switch (entry.level) {
+                case DEBUG:
+                    target.debug(entry.text);
+                    break;
+                case INFO:
+                    target.info(entry.text);
+                    break;
+                case WARNING:
+                    target.warning(entry.text);
+                    break;
+                case ERROR:
+                    target.error(entry.text);
+                    break;
+            }
+        }
+    }
+
+    public enum LogLevel {
+        DEBUG,
+        INFO,
+        WARNING,
+        ERROR
+    }
+
+    public static class LogEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+        public final LogLevel level;
+        public final String text;
+
+        public LogEntry(LogLevel level, String text) {
+            this.level = level;
+            this.text = text;
+        }
+    }
+}
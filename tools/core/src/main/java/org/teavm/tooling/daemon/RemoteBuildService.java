@@ -0,0 +1,32 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.tooling.daemon;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * <p>Build service exposed by {@link BuildDaemon} via RMI registry on the local host. Every call
+ * carries the token the daemon has written on start, see {@link BuildDaemon#build(int, RemoteBuildRequest)}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public interface RemoteBuildService extends Remote {
+    String ID = "TeaVM-Daemon";
+    int DEFAULT_PORT = 9090;
+
+    RemoteBuildResponse build(String token, RemoteBuildRequest request) throws RemoteException;
+}
@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.teavm.optimization.OptimizationLevel;
+import org.teavm.optimization.OptimizationPass;
+
+/**
+ * <p>Specifies optimizations that are applied when tests of a class are compiled by TeaVM.
+ * Method inlining is enabled when the passes include {@link OptimizationPass#INLINING}.</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface TeaVMOptimizations {
+    OptimizationLevel level() default OptimizationLevel.FULL;
+
+    /**
+     * <p>Passes to run instead of passes of {@link #level()}. The level still determines how many
+     * rounds are run.</p>
+     */
+    OptimizationPass[] passes() default {};
+}
@@ -56,6 +56,7 @@ import org.teavm.model.MethodHolder;
 import org.teavm.model.MethodReference;
 import org.teavm.model.PreOptimizingClassHolderSource;
 import org.teavm.model.ValueType;
+import org.teavm.optimization.OptimizationPass;
 import org.teavm.parsing.ClasspathClassHolderSource;
 import org.teavm.testing.JUnitTestAdapter;
 import org.teavm.testing.TestAdapter;
@@ -345,12 +346,14 @@ public class TeaVMTestRunner extends Runner {
         MethodHolder methodHolder = classHolder.getMethod(getDescriptor(method));
         Class<?> runnerType = testAdapter.getRunner(methodHolder);
 
-        TeaVM vm = new TeaVMBuilder()
+        TeaVMBuilder vmBuilder = new TeaVMBuilder()
                 .setClassLoader(classLoader)
-                .setClassSource(classSource)
-                .build();
+                .setClassSource(classSource);
+        applyOptimizations(method.getDeclaringClass(), vmBuilder);
+        TeaVM vm = vmBuilder.build();
         vm.setIncremental(false);
         vm.setMinifying(false);
+        vm.setInlining(getOptimizationPasses(vmBuilder).contains(OptimizationPass.INLINING));
         vm.installPlugins();
 
         new TestExceptionPlugin().install(vm);
@@ -387,6 +390,25 @@ public class TeaVMTestRunner extends Runner {
         }
     }
 
+    private void applyOptimizations(Class<?> cls, TeaVMBuilder builder) {
+        while (cls != null) {
+            TeaVMOptimizations optimizations = cls.getAnnotation(TeaVMOptimizations.class);
+            if (optimizations != null) {
+                builder.setOptimizationLevel(optimizations.level());
+                if (optimizations.passes().length > 0) {
+                    builder.setOptimizationPasses(Arrays.asList(optimizations.passes()));
+                }
+                return;
+            }
+            cls = cls.getSuperclass();
+        }
+    }
+
+    private List<OptimizationPass> getOptimizationPasses(TeaVMBuilder builder) {
+        return builder.getOptimizationPasses() != null ? builder.getOptimizationPasses()
+                : builder.getOptimizationLevel().getPasses();
+    }
+
     private MethodDescriptor getDescriptor(Method method) {
         ValueType[] signature = Stream.concat(Arrays.stream(method.getParameterTypes()).map(ValueType::parse),
                 Stream.of(ValueType.parse(method.getReturnType())))
@@ -90,6 +90,8 @@ public abstract class AbstractJavascriptMojo extends AbstractMojo {
 
     protected ClassLoader classLoader;
 
+    protected final List<String> classPathEntries = new ArrayList<>();
+
     protected abstract File getTargetDirectory();
 
     protected final List<ClassHolderTransformer> instantiateTransformers(ClassLoader classLoader)
@@ -157,6 +159,7 @@ public abstract class AbstractJavascriptMojo extends AbstractMojo {
             Log log = getLog();
             log.info("Preparing classpath for JavaScript generation");
             List<URL> urls = new ArrayList<>();
+            classPathEntries.clear();
             StringBuilder classpath = new StringBuilder();
             for (Artifact artifact : project.getArtifacts()) {
                 if (!filterByScope(artifact)) {
@@ -168,15 +171,18 @@ public abstract class AbstractJavascriptMojo extends AbstractMojo {
                 }
                 classpath.append(file.getPath());
                 urls.add(file.toURI().toURL());
+                classPathEntries.add(file.getAbsolutePath());
             }
             if (classpath.length() > 0) {
                 classpath.append(':');
             }
             classpath.append(classFiles.getPath());
             urls.add(classFiles.toURI().toURL());
+            classPathEntries.add(classFiles.getAbsolutePath());
             for (File additionalEntry : getAdditionalClassPath()) {
                 classpath.append(':').append(additionalEntry.getPath());
                 urls.add(additionalEntry.toURI().toURL());
+                classPathEntries.add(additionalEntry.getAbsolutePath());
             }
             log.info("Using the following classpath for JavaScript generation: " + classpath);
             classLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]),
@@ -16,6 +16,8 @@
 package org.teavm.maven;
 
 import java.io.File;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
 import java.util.Arrays;
 import java.util.List;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -24,11 +26,19 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.teavm.javascript.ArrayRepresentation;
+import org.teavm.javascript.LongRepresentation;
+import org.teavm.javascript.StringRepresentation;
+import org.teavm.optimization.OptimizationLevel;
+import org.teavm.optimization.OptimizationPass;
 import org.teavm.tooling.ClassAlias;
 import org.teavm.tooling.MethodAlias;
 import org.teavm.tooling.RuntimeCopyOperation;
 import org.teavm.tooling.TeaVMTool;
 import org.teavm.tooling.TeaVMToolException;
+import org.teavm.tooling.daemon.BuildDaemon;
+import org.teavm.tooling.daemon.RemoteBuildRequest;
+import org.teavm.tooling.daemon.RemoteBuildResponse;
 import org.teavm.tooling.sources.DirectorySourceFileProvider;
 import org.teavm.tooling.sources.SourceFileProvider;
 
@@ -70,9 +80,51 @@ public class BuildJavascriptMojo extends AbstractJavascriptMojo {
     @Parameter
     protected RuntimeCopyOperation runtime = RuntimeCopyOperation.SEPARATE;
 
+    @Parameter
+    private int threadCount = 1;
+
+    @Parameter
+    private boolean concurrentDependencyAnalysis;
+
+    @Parameter
+    private boolean codeSplitting;
+
+    @Parameter
+    private boolean chunkPrefetching;
+
+    @Parameter
+    private boolean inlining;
+
+    @Parameter
+    private boolean lazyStringPool;
+
+    @Parameter
+    private boolean lazyMetadata;
+
+    @Parameter
+    private LongRepresentation longRepresentation = LongRepresentation.OBJECT;
+
+    @Parameter
+    private ArrayRepresentation arrayRepresentation = ArrayRepresentation.WRAPPED;
+
+    @Parameter
+    private StringRepresentation stringRepresentation = StringRepresentation.CHAR_ARRAY;
+
+    @Parameter
+    private OptimizationLevel optimizationLevel = OptimizationLevel.FULL;
+
+    @Parameter
+    private OptimizationPass[] optimizationPasses;
+
+    @Parameter
+    private boolean optimizationReportGenerated;
+
     @Parameter(defaultValue = "${project.build.directory}/teavm-cache")
     protected File cacheDirectory;
 
+    @Parameter
+    private int daemonPort;
+
     private TeaVMTool tool = new TeaVMTool();
 
     @Override
@@ -91,6 +143,21 @@ public class BuildJavascriptMojo extends AbstractJavascriptMojo {
             tool.setMainPageIncluded(mainPageIncluded);
             tool.setRuntime(runtime);
             tool.setTargetFileName(targetFileName);
+            tool.setThreadCount(threadCount);
+            tool.setConcurrentDependencyAnalysis(concurrentDependencyAnalysis);
+            tool.setCodeSplitting(codeSplitting);
+            tool.setChunkPrefetching(chunkPrefetching);
+            tool.setInlining(inlining);
+            tool.setLazyStringPool(lazyStringPool);
+            tool.setLazyMetadata(lazyMetadata);
+            tool.setLongRepresentation(longRepresentation);
+            tool.setArrayRepresentation(arrayRepresentation);
+            tool.setStringRepresentation(stringRepresentation);
+            tool.setOptimizationLevel(optimizationLevel);
+            if (optimizationPasses != null) {
+                tool.setOptimizationPasses(Arrays.asList(optimizationPasses));
+            }
+            tool.setOptimizationReportGenerated(optimizationReportGenerated);
             if (classAliases != null) {
                 tool.getClassAliases().addAll(Arrays.asList(classAliases));
             }
@@ -98,6 +165,10 @@ public class BuildJavascriptMojo extends AbstractJavascriptMojo {
                 tool.getMethodAliases().addAll(Arrays.asList(methodAliases));
             }
             tool.setCacheDirectory(cacheDirectory);
+            if (daemonPort > 0 && !sourceFilesCopied) {
+                buildRemotely();
+                return;
+            }
             tool.generate();
             if (stopOnErrors && !tool.getProblemProvider().getSevereProblems().isEmpty()) {
                 throw new MojoExecutionException("Build error");
@@ -109,6 +180,24 @@ public class BuildJavascriptMojo extends AbstractJavascriptMojo {
         }
     }
 
+    private void buildRemotely() throws MojoExecutionException {
+        RemoteBuildRequest request = RemoteBuildRequest.fromTool(tool);
+        request.classPath.addAll(classPathEntries);
+        RemoteBuildResponse response;
+        try {
+            response = BuildDaemon.build(daemonPort, request);
+        } catch (RemoteException | NotBoundException e) {
+            throw new MojoExecutionException("Could not connect to TeaVM daemon on port " + daemonPort, e);
+        }
+        response.replayLog(tool.getLog());
+        if (response.errorMessage != null) {
+            throw new MojoExecutionException("Unexpected error occured: " + response.errorMessage);
+        }
+        if (stopOnErrors && response.severeProblemCount > 0) {
+            throw new MojoExecutionException("Build error");
+        }
+    }
+
     @Override
     protected void addSourceProviders(List<SourceFileProvider> providers) {
         providers.add(new DirectorySourceFileProvider(sourceDirectory));